@@ -22,8 +22,15 @@ package br.com.riselabs.cotonet;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -32,13 +39,45 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
 
+import br.com.riselabs.cotonet.builder.BuildBudget;
+import br.com.riselabs.cotonet.builder.ConfiguredMerger;
+import br.com.riselabs.cotonet.builder.FileScope;
+import br.com.riselabs.cotonet.builder.HistoryWindow;
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.builder.ScenarioPrefilter;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.builder.ScenarioSample;
+import br.com.riselabs.cotonet.builder.SkipLog;
+import br.com.riselabs.cotonet.crawler.CloneThrottle;
+import br.com.riselabs.cotonet.crawler.CrawlerPipeline;
+import br.com.riselabs.cotonet.crawler.JobTracker;
+import br.com.riselabs.cotonet.crawler.RepositoryCostEstimator;
 import br.com.riselabs.cotonet.crawler.RepositoryCrawler;
+import br.com.riselabs.cotonet.crawler.RepositoryOptimizer;
+import br.com.riselabs.cotonet.crawler.WorkCoordinator;
+import br.com.riselabs.cotonet.crawler.WorkQueueWorker;
+import br.com.riselabs.cotonet.crawler.threads.MemoryGovernor;
+import br.com.riselabs.cotonet.crawler.threads.RCExecutor;
+import br.com.riselabs.cotonet.crawler.threads.RCForkJoinExecutor;
+import br.com.riselabs.cotonet.crawler.threads.RCPipelineStageMBean;
 import br.com.riselabs.cotonet.crawler.threads.RCThreadPoolExecutor;
+import br.com.riselabs.cotonet.crawler.threads.RCVirtualThreadExecutor;
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.ExecutorType;
+import br.com.riselabs.cotonet.model.enums.JobState;
 import br.com.riselabs.cotonet.model.enums.NetworkType;
 import br.com.riselabs.cotonet.model.exceptions.EmptyContentException;
+import br.com.riselabs.cotonet.model.exceptions.InvalidCotonetBeanException;
 import br.com.riselabs.cotonet.model.exceptions.InvalidNumberOfTagsException;
 import br.com.riselabs.cotonet.util.CodefaceHelper;
+import br.com.riselabs.cotonet.util.Directories;
 import br.com.riselabs.cotonet.util.IOHandler;
 import br.com.riselabs.cotonet.util.Logger;
 
@@ -87,6 +126,126 @@ public class Main {
 		 * + "the recreation of the merge scenarios based tags.").hasArg(false).
 		 * build());
 		 */
+		options.addOption(Option.builder("bs").longOpt("blameSides")
+				.desc("bs - blames each side of the conflicting chunks at its own commit (left at the left commit and "
+						+ "right at the right commit) instead of blaming the merged file in the working tree.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("nm").longOpt("noMergeMemo")
+				.desc("nm - disables the memo that reuses the diffs of the merges of files with the same base, "
+						+ "left, and right contents across merge scenarios and projects.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("nr").longOpt("noResultStore")
+				.desc("nr - disables the store that reuses the results of the merge scenarios already analyzed "
+						+ "(e.g., the ones shared by forks) across projects and runs.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("t").longOpt("threads")
+				.desc("t - the number of repositories crawled at the same time. By default, it is derived from the "
+						+ "number of cores. It can also be changed at runtime through JMX.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("x").longOpt("executor")
+				.desc("x - how the repositories are crawled: 'pool' (default) crawls each repository in one thread; "
+						+ "'forkjoin' runs them in a work-stealing pool that also forks the scenarios of each "
+						+ "repository; 'virtual' (Java 21 or newer) runs each repository in a virtual thread and "
+						+ "only its merging and network building in a bounded pool; 'pipeline' runs the stages "
+						+ "of the repositories (open, build, persist, and codeface) in their own pools.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("st").longOpt("stageThreads")
+				.desc("st - the number of threads of each stage of the 'pipeline' executor, e.g., "
+						+ "\"clone=4,open=8,build=4,persist=2,codeface=1\". 't' sets the threads of the build stage, "
+						+ "and 'cl' the ones of the clone stage.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("d").longOpt("deadline")
+				.desc("d - the maximum time (in minutes) to wait for the repositories. The ones not finished by then "
+						+ "are reported as timed out. By default, it waits for all of them.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("p").longOpt("progress")
+				.desc("p - how often (in seconds) the progress is logged and the status file "
+						+ "(cotonet-files/stats/" + JobTracker.STATUS_FILE + ") is written. Default: 60.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("b").longOpt("budget")
+				.desc("b - the limits of the work done for each merge scenario, e.g., \"scenarioSeconds=600,"
+						+ "repositoryMinutes=120,files=500,blamedMB=256\". The scenarios exceeding them are skipped and "
+						+ "recorded in cotonet-files/logs/" + SkipLog.FILE_NAME + ". By default, there are no limits.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("cl").longOpt("cloneLimit")
+				.desc("cl - the number of repositories cloned (or fetched) at the same time, whatever the executor. "
+						+ "By default, the number of cores. The partial clones of a failed run are resumed by the next.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("rp").longOpt("repack")
+				.desc("rp - repacks each repository before analyzing it, writing reachability bitmaps and a "
+						+ "commit-graph with the native git when available (or running the JGit GC otherwise).")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("fs").longOpt("fileScope")
+				.desc("fs - the files whose conflicts are merged and blamed, e.g., \"include=*.java;*.c;*.h,"
+						+ "exclude=vendor/**;*.min.js;package-lock.json,maxBlobKB=512\". A glob without '/' matches the "
+						+ "file name, one with '/' the path. By default, every file is.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("ms").longOpt("mergeStrategy")
+				.desc("ms - the strategy of the merges that find the conflicts: 'recursive' (default) or 'resolve'. "
+						+ "The latter skips the criss-cross merges instead of merging their merge bases.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("da").longOpt("diffAlgorithm")
+				.desc("da - the diff algorithm of the merges and the blames: 'histogram' or 'myers'. By default, "
+						+ "the one of the git configuration.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("si").longOpt("since")
+				.desc("si - only the merges committed since the given date (e.g., \"2015-01-01\" or "
+						+ "\"2015-01-01T12:00:00\").")
+				.hasArg().build());
+
+		options.addOption(Option.builder("un").longOpt("until")
+				.desc("un - only the merges committed until the given date (inclusive), e.g., \"2016-12-31\".")
+				.hasArg().build());
+
+		options.addOption(Option.builder("rf").longOpt("refs")
+				.desc("rf - only the merges reachable from the given comma-separated refs (e.g., "
+						+ "\"master,release-1.x\"). The refs missing in a repository are ignored. By default, HEAD.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("sm").longOpt("sample")
+				.desc("sm - replays the merges in a random order until enough conflicting scenarios are found, e.g., "
+						+ "\"mode=stratified,seed=42,conflicts=200,strata=12\". The mode is 'uniform' (default) or "
+						+ "'stratified' by time. The parameters are recorded in the Codeface files. Not with 'ws'.")
+				.hasArg().build());
+
+		options.addOption(Option.builder("dr").longOpt("dryRun")
+				.desc("dr - instead of crawling the repositories, fetches their mirrors and estimates the merges, the "
+						+ "ones that may conflict (i.e., whose sides changed some file in common), and the volume of "
+						+ "their blame, in cotonet-files/stats/" + RepositoryCostEstimator.DRY_RUN_FILE + ". Nothing "
+						+ "is merged, blamed, nor written to the database. The next runs schedule the repositories "
+						+ "from these estimates. Use it with 'c', 'cf', or 'f', and optionally 'si', 'un', 'rf', and 'fs'.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("co").longOpt("coordinate")
+				.desc("co - instead of crawling the repositories, enqueues them in the work queue of the database "
+						+ "and waits for the workers (see 'w') to drain it. Use it with 'c', 'cf', or 'f'.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("ws").longOpt("workScenarios")
+				.desc("ws - with 'co', enqueues each merge scenario as a task on its own, so the workers share the "
+						+ "scenarios of large repositories. The coordinator clones the repositories to find them.")
+				.hasArg(false).build());
+
+		options.addOption(Option.builder("w").longOpt("worker")
+				.desc("w - runs the given number of workers that lease the tasks of the work queue of the database "
+						+ "until it is drained. Several processes (on one or many nodes) may run workers at the "
+						+ "same time.")
+				.hasArg().build());
+
 		options.addOption("h", "help", false, "Print this help page");
 
 		File reposListFile = null;
@@ -98,6 +257,17 @@ public class Main {
 				new HelpFormatter().printHelp("java ", options);
 				System.exit(0);
 			}
+			if (cmd.hasOption("cl")) {
+				CloneThrottle.INSTANCE.setLimit(Integer.parseInt(cmd.getOptionValue("cl")));
+			}
+
+			if (cmd.hasOption("w")) {
+				if (!runWorkers(Integer.parseInt(cmd.getOptionValue("w")), cmd)) {
+					Logger.log("COTONET worker stopped before the work queue was drained.");
+					System.exit(1);
+				}
+				Logger.log("COTONET worker finished.");
+			}
 
 			/* "c", "cf", and "f" are the three available options
 			* "c" builds the chunk-based network with developers that contribute to the conflict
@@ -132,11 +302,63 @@ public class Main {
 					System.exit(1);
 				}
 
+				if (cmd.hasOption("dr")) {
+					dryRun(type, reposListFile, cmd);
+					Logger.log("COTONET dry run finished.");
+					return;
+				}
+
+				if (cmd.hasOption("co")) {
+					if (!coordinate(type, reposListFile, cmd)) {
+						Logger.log("COTONET reached the deadline before the work queue was drained.");
+						System.exit(2);
+					}
+					Logger.log("COTONET finished. Work queue drained.");
+					return;
+				}
+
 				skipCloneAndNetworks = (cmd.hasOption("rw") || cmd.hasOption("rwt")) ? true : false;
 
 				MainThread m = new MainThread(type, reposListFile, skipCloneAndNetworks);
+				if (cmd.hasOption("bs")) {
+					m.setBlameMode(BlameMode.COMMITTED_SIDES);
+				}
+				if (cmd.hasOption("t")) {
+					m.setPoolSize(Integer.parseInt(cmd.getOptionValue("t")));
+				}
+				if (cmd.hasOption("x")) {
+					m.setExecutorType(ExecutorType.fromName(cmd.getOptionValue("x")));
+				}
+				if (cmd.hasOption("st")) {
+					m.setStageThreads(CrawlerPipeline.parseThreads(cmd.getOptionValue("st")));
+				}
+				if (cmd.hasOption("b")) {
+					m.setBudget(BuildBudget.parse(cmd.getOptionValue("b")));
+				}
+				if (cmd.hasOption("rp")) {
+					m.setOptimizer(new RepositoryOptimizer());
+				}
+				if (cmd.hasOption("fs")) {
+					m.setFileScope(FileScope.parse(cmd.getOptionValue("fs")));
+				}
+				m.setMergeStrategy(ConfiguredMerger.parseStrategy(cmd.getOptionValue("ms")));
+				m.setDiffAlgorithm(ConfiguredMerger.parseDiffAlgorithm(cmd.getOptionValue("da")));
+				m.setHistoryWindow(parseHistoryWindow(cmd));
+				m.setSample(ScenarioSample.parse(cmd.getOptionValue("sm")));
+				if (cmd.hasOption("d")) {
+					m.setDeadline(Long.parseLong(cmd.getOptionValue("d")), TimeUnit.MINUTES);
+				}
+				if (cmd.hasOption("p")) {
+					m.setProgressPeriod(Long.parseLong(cmd.getOptionValue("p")), TimeUnit.SECONDS);
+				}
+				MergeMemo.INSTANCE.setEnabled(!cmd.hasOption("nm"));
+				ScenarioResultStore.INSTANCE.setEnabled(!cmd.hasOption("nr"));
 				m.start();
 				m.join();
+				if (m.isTimedOut()) {
+					Logger.log("COTONET reached the deadline before all repositories finished.");
+					System.exit(2);
+				}
 				Logger.log("COTONET finished. Files rewritten.");
 
 			} else {
@@ -154,10 +376,170 @@ public class Main {
 		}
 	}
 
+	/**
+	 * Enqueues the repositories in the work queue and waits for the workers.
+	 * 
+	 * @return - {@code false} when the deadline passed first.
+	 */
+	private static boolean coordinate(NetworkType type, File reposListFile, CommandLine cmd)
+			throws InterruptedException, InvalidCotonetBeanException, SQLException {
+		WorkCoordinator coordinator = new WorkCoordinator(type);
+		coordinator.setSplitScenarios(cmd.hasOption("ws"));
+		coordinator.setHistoryWindow(parseHistoryWindow(cmd));
+		if (cmd.hasOption("p")) {
+			coordinator.setPollInterval(Long.parseLong(cmd.getOptionValue("p")), TimeUnit.SECONDS);
+		}
+		coordinator.enqueue(new IOHandler().readFile(reposListFile));
+		long deadline = cmd.hasOption("d") ? Long.parseLong(cmd.getOptionValue("d")) : Long.MAX_VALUE;
+		boolean drained = coordinator.awaitDrained(deadline, TimeUnit.MINUTES);
+
+		List<String> systems_name = new ArrayList<String>();
+		for (String url : coordinator.getDoneRepositories()) {
+			systems_name.add(new Project(url).getName());
+		}
+		try {
+			CodefaceHelper.createCodefaceRunScript(systems_name);
+		} catch (NullPointerException | IOException | EmptyContentException e) {
+			Logger.logStackTrace(e);
+		}
+		return drained;
+	}
+
+	/**
+	 * Fetches the mirrors of the repositories and estimates the cost of
+	 * crawling them (see {@code ScenarioPrefilter}). The estimates are
+	 * written to the dry-run report, largest first, and saved with the costs
+	 * of the repositories, so the next runs are scheduled from them.
+	 */
+	private static void dryRun(NetworkType type, File reposListFile, CommandLine cmd)
+			throws InterruptedException, IOException {
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator();
+		HistoryWindow window = parseHistoryWindow(cmd);
+		FileScope scope = FileScope.parse(cmd.getOptionValue("fs"));
+		List<String> urls = new IOHandler().readFile(reposListFile);
+		Map<String, ScenarioPrefilter> prefilters = new ConcurrentHashMap<String, ScenarioPrefilter>();
+		int threads = cmd.hasOption("t") ? Integer.parseInt(cmd.getOptionValue("t"))
+				: Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		for (String url : urls) {
+			pool.execute(() -> {
+				try {
+					// only the mirror is fetched, the worktree is not touched
+					new RepositoryCrawler(url, true, type).fetch();
+					ScenarioPrefilter prefilter = new ScenarioPrefilter().setHistoryWindow(window)
+							.setFileScope(scope);
+					estimator.dryRun(url, prefilter);
+					prefilters.put(url, prefilter);
+				} catch (EmptyContentException | GitAPIException | IOException e) {
+					Logger.log("[" + new Project(url).getName() + "] could not be estimated: " + e.getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+		List<String> report = new ArrayList<String>();
+		report.add("url\tmerges\tcandidates\toverlapping_paths\tblame_bytes\tpredicted_minutes");
+		for (String url : estimator.sort(urls)) {
+			ScenarioPrefilter prefilter = prefilters.get(url);
+			if (prefilter == null) {
+				continue;
+			}
+			long minutes = TimeUnit.MILLISECONDS.toMinutes((long) estimator.predict(estimator.getCost(url)));
+			report.add(url + "\t" + prefilter.getMerges() + "\t" + prefilter.getCandidates() + "\t"
+					+ prefilter.getOverlappingPaths() + "\t" + prefilter.getBlameBytes() + "\t" + minutes);
+			Logger.log("[" + new Project(url).getName() + "] " + prefilter.getMerges() + " merges, "
+					+ prefilter.getCandidates() + " may conflict (" + prefilter.getOverlappingPaths()
+					+ " overlapping paths, " + (prefilter.getBlameBytes() >> 20) + " MB to blame), about " + minutes
+					+ " minutes.");
+		}
+		File reportFile = new File(Directories.getStatsDir(), RepositoryCostEstimator.DRY_RUN_FILE);
+		IOHandler io = new IOHandler();
+		io.checkAndRemove(reportFile);
+		try {
+			io.writeFile(reportFile, report);
+		} catch (EmptyContentException e) {
+			// the header is always there
+		}
+		estimator.save();
+	}
+
+	/**
+	 * Runs the given number of workers of the work queue and waits for them.
+	 * 
+	 * @return - {@code false} when some worker stopped because the work queue
+	 *         failed.
+	 */
+	private static boolean runWorkers(int threads, CommandLine cmd) throws InterruptedException {
+		BuildBudget budget = cmd.hasOption("b") ? BuildBudget.parse(cmd.getOptionValue("b")) : new BuildBudget();
+		MergeMemo.INSTANCE.setEnabled(!cmd.hasOption("nm"));
+		ScenarioResultStore.INSTANCE.setEnabled(!cmd.hasOption("nr"));
+		RepositoryOptimizer optimizer = cmd.hasOption("rp") ? new RepositoryOptimizer() : null;
+		FileScope scope = FileScope.parse(cmd.getOptionValue("fs"));
+		ThreeWayMergeStrategy strategy = ConfiguredMerger.parseStrategy(cmd.getOptionValue("ms"));
+		SupportedAlgorithm algorithm = ConfiguredMerger.parseDiffAlgorithm(cmd.getOptionValue("da"));
+		HistoryWindow window = parseHistoryWindow(cmd);
+		ScenarioSample sample = ScenarioSample.parse(cmd.getOptionValue("sm"));
+		List<Thread> workers = new ArrayList<Thread>();
+		List<WorkQueueWorker> queueWorkers = new ArrayList<WorkQueueWorker>();
+		for (int i = 0; i < Math.max(1, threads); i++) {
+			WorkQueueWorker worker = new WorkQueueWorker(WorkQueueWorker.defaultName() + "-" + i);
+			queueWorkers.add(worker);
+			worker.setBudget(budget);
+			worker.setOptimizer(optimizer);
+			worker.setFileScope(scope);
+			worker.setMergeStrategy(strategy);
+			worker.setDiffAlgorithm(algorithm);
+			worker.setHistoryWindow(window);
+			worker.setSample(sample);
+			if (cmd.hasOption("bs")) {
+				worker.setBlameMode(BlameMode.COMMITTED_SIDES);
+			}
+			Thread t = new Thread(worker, "cotonet-worker-" + i);
+			t.start();
+			workers.add(t);
+		}
+		for (Thread t : workers) {
+			t.join();
+		}
+		for (WorkQueueWorker worker : queueWorkers) {
+			if (worker.getQueueError() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the window of the history given by 'si', 'un', and 'rf'.
+	 */
+	private static HistoryWindow parseHistoryWindow(CommandLine cmd) {
+		return new HistoryWindow().setSince(HistoryWindow.parseDate(cmd.getOptionValue("si"), false))
+				.setUntil(HistoryWindow.parseDate(cmd.getOptionValue("un"), true))
+				.setRefs(HistoryWindow.parseRefs(cmd.getOptionValue("rf")));
+	}
+
 	static class MainThread extends Thread {
 		private File list;
 		private boolean skip;
 		private NetworkType type;
+		private BlameMode blameMode = BlameMode.MERGED_FILE;
+		private Integer poolSize;
+		private ExecutorType executorType = ExecutorType.POOL;
+		private Map<String, Integer> stageThreads = new HashMap<String, Integer>();
+		private long deadlineNanos = Long.MAX_VALUE;
+		private long progressNanos = TimeUnit.MINUTES.toNanos(1);
+		private JobTracker tracker = new JobTracker();
+		private boolean timedOut;
+		private BuildBudget budget = new BuildBudget();
+		private RepositoryOptimizer optimizer;
+		private FileScope scope = new FileScope();
+		private ThreeWayMergeStrategy mergeStrategy = MergeStrategy.RECURSIVE;
+		private SupportedAlgorithm diffAlgorithm;
+		private HistoryWindow window = new HistoryWindow();
+		private ScenarioSample sample;
 
 		public MainThread(NetworkType type, File reposListFile, boolean skipCloneAndNetworks) {
 			this.list = reposListFile;
@@ -165,28 +547,225 @@ public class Main {
 			this.type = type;			
 		}
 
+		public void setBlameMode(BlameMode mode) {
+			this.blameMode = mode;
+		}
+
+		public void setPoolSize(Integer size) {
+			this.poolSize = size;
+		}
+
+		public void setExecutorType(ExecutorType aType) {
+			this.executorType = aType;
+		}
+
+		public void setStageThreads(Map<String, Integer> threads) {
+			this.stageThreads = threads;
+		}
+
+		public void setBudget(BuildBudget aBudget) {
+			this.budget = aBudget;
+		}
+
+		public void setOptimizer(RepositoryOptimizer anOptimizer) {
+			this.optimizer = anOptimizer;
+		}
+
+		public void setFileScope(FileScope aScope) {
+			this.scope = aScope;
+		}
+
+		public void setMergeStrategy(ThreeWayMergeStrategy aStrategy) {
+			this.mergeStrategy = aStrategy;
+		}
+
+		public void setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+			this.diffAlgorithm = anAlgorithm;
+		}
+
+		public void setHistoryWindow(HistoryWindow aWindow) {
+			this.window = aWindow;
+		}
+
+		public void setSample(ScenarioSample aSample) {
+			this.sample = aSample;
+		}
+
+		/**
+		 * Sets how long to wait for the repositories, counting from the start
+		 * of the run.
+		 */
+		public void setDeadline(long timeout, TimeUnit unit) {
+			this.deadlineNanos = unit.toNanos(timeout);
+		}
+
+		public void setProgressPeriod(long period, TimeUnit unit) {
+			this.progressNanos = Math.max(1, unit.toNanos(period));
+		}
+
+		public JobTracker getTracker() {
+			return tracker;
+		}
+
+		/**
+		 * @return whether the deadline passed before all repositories finished.
+		 */
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+
+		private CrawlerPipeline createPipeline() {
+			Map<String, Integer> threads = new HashMap<String, Integer>(stageThreads);
+			if (poolSize != null && !threads.containsKey(CrawlerPipeline.BUILD)) {
+				threads.put(CrawlerPipeline.BUILD, poolSize);
+			}
+			return new CrawlerPipeline(threads);
+		}
+
+		private RCExecutor createExecutor() {
+			if (executorType == ExecutorType.VIRTUAL) {
+				if (RCVirtualThreadExecutor.isSupported()) {
+					return (poolSize == null) ? new RCVirtualThreadExecutor() : new RCVirtualThreadExecutor(poolSize);
+				}
+				Logger.log("Virtual threads require Java 21 or newer. Falling back to the thread pool.");
+			} else if (executorType == ExecutorType.FORK_JOIN) {
+				return (poolSize == null) ? new RCForkJoinExecutor() : new RCForkJoinExecutor(poolSize);
+			}
+			return (poolSize == null) ? new RCThreadPoolExecutor() : new RCThreadPoolExecutor(poolSize);
+		}
+
 		public void run() {
+			long runStarted = System.nanoTime();
 			IOHandler io = new IOHandler();
+			// the largest repositories first, so none of them is left to the end
+			RepositoryCostEstimator estimator = new RepositoryCostEstimator();
+			// admits the repositories while the heap has room for them
+			MemoryGovernor governor = new MemoryGovernor();
+			Map<RepositoryCrawler, Long> reservations = new ConcurrentHashMap<RepositoryCrawler, Long>();
 			// responsible to coordinate the threads for each system
-			RCThreadPoolExecutor pool = new RCThreadPoolExecutor();
-			List<String> systems = io.readFile(list);
-			List<String> systems_name = new ArrayList<String>();
+			RCExecutor pool = null;
+			CrawlerPipeline pipeline = null;
+			if (executorType == ExecutorType.PIPELINE) {
+				pipeline = createPipeline();
+				pipeline.setOnFinished((crawler, millis, failure) -> {
+					governor.release(reservations.remove(crawler));
+					if (failure == null) {
+						crawler.getJob().setState(JobState.DONE);
+					} else {
+						crawler.getJob().fail(failure);
+					}
+					estimator.record(crawler.getProject().getUrl(), millis);
+				});
+				pipeline.start();
+				for (RCPipelineStageMBean stage : pipeline.getStages()) {
+					Logger.log("Crawling stage " + stage.getName() + " with " + stage.getThreads() + " threads.");
+				}
+			} else {
+				pool = createExecutor();
+				Logger.log("Crawling with " + pool.getPoolSize() + " threads.");
+			}
+			List<String> systems = estimator.sort(io.readFile(list));
+			for (String url : systems) {
+				tracker.add(url);
+			}
+			tracker.startReporting(progressNanos, TimeUnit.NANOSECONDS);
+			Logger.log("Crawling with " + (governor.getBudgetBytes() >> 20) + " MB of heap for the repositories.");
 
 			for (String url : systems) {
 				try {
 
-					pool.runTask(new RepositoryCrawler(url, skip, type));
+					RepositoryCrawler crawler = new RepositoryCrawler(url, skip, type);
+					crawler.setBlameMode(blameMode);
+					crawler.setJob(tracker.get(url));
+					crawler.setBudget(budget);
+					crawler.setOptimizer(optimizer);
+					crawler.setFileScope(scope);
+					crawler.setMergeStrategy(mergeStrategy);
+					crawler.setDiffAlgorithm(diffAlgorithm);
+					crawler.setHistoryWindow(window);
+					crawler.setSample(sample);
+					// blocks while the heap has no room for the repository
+					long reservation = governor.admit(MemoryGovernor.estimateFootprint(estimator.getCost(url)));
+					reservations.put(crawler, reservation);
+					// both block while saturated
+					try {
+						if (pipeline != null) {
+							pipeline.submit(crawler);
+						} else {
+							crawler.setComputeExecutor(pool.getComputeExecutor());
+							pool.runTask(() -> {
+								long start = System.currentTimeMillis();
+								try {
+									crawler.run();
+								} catch (RuntimeException e) {
+									crawler.getJob().fail(e);
+									throw e;
+								} finally {
+									governor.release(reservations.remove(crawler));
+								}
+								estimator.record(url, System.currentTimeMillis() - start);
+							});
+						}
+					} catch (InterruptedException | RuntimeException e) {
+						// it was not scheduled
+						Long unused = reservations.remove(crawler);
+						if (unused != null) {
+							governor.release(unused);
+						}
+						throw e;
+					}
 					
 				} catch (IOException e) {
+					tracker.get(url).fail(e);
 					Logger.logStackTrace(e);
+					continue;
+				} catch (InterruptedException e) {
+					Logger.logStackTrace(e);
+					break;
 				}
 				Logger.log("Repository scheduled: " + url);
-				String[] str = url.split("/");
-				systems_name.add(str[str.length - 1]);
 			}
 
-			pool.shutDown();
+			long remaining = (deadlineNanos == Long.MAX_VALUE) ? Long.MAX_VALUE
+					: Math.max(0, deadlineNanos - (System.nanoTime() - runStarted));
+			boolean finished = false;
+			try {
+				if (pipeline != null) {
+					pipeline.shutDown();
+					finished = pipeline.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+					for (RCPipelineStageMBean stage : pipeline.getStages()) {
+						Logger.log(stage.toString());
+					}
+				} else {
+					pool.shutDown();
+					finished = pool.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+				}
+			} catch (InterruptedException e) {
+				Logger.logStackTrace(e);
+			}
+			if (!finished) {
+				timedOut = true;
+			}
+			// the ones not scheduled or still running
+			tracker.timeOutUnfinished();
+			tracker.stopReporting();
+			Logger.log("Memory: " + governor);
+			governor.close();
+			if (SkipLog.INSTANCE.getCount() > 0) {
+				Logger.log(SkipLog.INSTANCE.getCount() + " scenarios skipped for exceeding the budget.");
+			}
+
+			try {
+				estimator.save();
+			} catch (IOException e) {
+				Logger.logStackTrace(e);
+			}
 			
+			// only the repositories whose Codeface files were written
+			List<String> systems_name = new ArrayList<String>();
+			for (CrawlJob job : tracker.getJobs(JobState.DONE)) {
+				systems_name.add(job.getName());
+			}
 			try {
 				CodefaceHelper.createCodefaceRunScript(systems_name);
 			} catch (NullPointerException | IOException | EmptyContentException e) {
@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.util.concurrent.TimeUnit;
+
+import br.com.riselabs.cotonet.model.enums.BudgetType;
+import br.com.riselabs.cotonet.model.exceptions.BudgetExceededException;
+
+/**
+ * The limits on the work done for each merge scenario (and for the networks
+ * of a repository), so a few pathological merges (e.g., huge generated files
+ * or thousands of conflicting paths) do not hold a worker for hours. The
+ * scenarios that exceed a budget are skipped (see {@code SkipLog}).
+ * 
+ * The time budgets are checked between files, i.e., a file being blamed is
+ * not interrupted. Every budget is unlimited by default.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class BuildBudget {
+
+	public static final long UNLIMITED = -1;
+
+	private long maxScenarioMillis = UNLIMITED;
+	private long maxRepositoryMillis = UNLIMITED;
+	private long maxConflictingFiles = UNLIMITED;
+	private long maxBlamedBytes = UNLIMITED;
+
+	public long getMaxScenarioMillis() {
+		return maxScenarioMillis;
+	}
+
+	public BuildBudget setMaxScenarioMillis(long millis) {
+		this.maxScenarioMillis = millis;
+		return this;
+	}
+
+	public long getMaxRepositoryMillis() {
+		return maxRepositoryMillis;
+	}
+
+	/**
+	 * Sets the wall time of the networks of a repository. Once it is over, the
+	 * remaining scenarios of the repository are skipped.
+	 * 
+	 * @param millis
+	 * @return
+	 */
+	public BuildBudget setMaxRepositoryMillis(long millis) {
+		this.maxRepositoryMillis = millis;
+		return this;
+	}
+
+	public long getMaxConflictingFiles() {
+		return maxConflictingFiles;
+	}
+
+	public BuildBudget setMaxConflictingFiles(long files) {
+		this.maxConflictingFiles = files;
+		return this;
+	}
+
+	public long getMaxBlamedBytes() {
+		return maxBlamedBytes;
+	}
+
+	/**
+	 * Sets the size of the files blamed for a scenario, i.e., the sides of
+	 * each conflicting file (or the marker-annotated file in the working
+	 * tree).
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public BuildBudget setMaxBlamedBytes(long bytes) {
+		this.maxBlamedBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * Parses a budget, e.g., "scenarioSeconds=600,repositoryMinutes=120,
+	 * files=500,blamedMB=256". The missing budgets are unlimited.
+	 * 
+	 * @param spec
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             - if the spec is malformed or names an unknown budget.
+	 */
+	public static BuildBudget parse(String spec) {
+		BuildBudget budget = new BuildBudget();
+		if (spec == null || spec.trim().isEmpty()) {
+			return budget;
+		}
+		for (String entry : spec.split(",")) {
+			String[] pair = entry.split("=");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Malformed budget: " + entry);
+			}
+			long value = Long.parseLong(pair[1].trim());
+			switch (pair[0].trim()) {
+			case "scenarioSeconds":
+				budget.setMaxScenarioMillis(TimeUnit.SECONDS.toMillis(value));
+				break;
+			case "repositoryMinutes":
+				budget.setMaxRepositoryMillis(TimeUnit.MINUTES.toMillis(value));
+				break;
+			case "files":
+				budget.setMaxConflictingFiles(value);
+				break;
+			case "blamedMB":
+				budget.setMaxBlamedBytes(value * 1024 * 1024);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown budget: " + pair[0].trim());
+			}
+		}
+		return budget;
+	}
+
+	/**
+	 * Starts measuring a scenario.
+	 * 
+	 * @param repositoryStarted
+	 *            - when the networks of the repository started (from
+	 *            {@code System#nanoTime()}).
+	 * @return
+	 */
+	public Meter newMeter(long repositoryStarted) {
+		return new Meter(repositoryStarted);
+	}
+
+	private static void check(BudgetType type, long limit, long actual) throws BudgetExceededException {
+		if (limit != UNLIMITED && actual > limit) {
+			throw new BudgetExceededException(type, limit, actual);
+		}
+	}
+
+	/**
+	 * What a scenario spent of the budget so far.
+	 */
+	public class Meter {
+		private final long repositoryStarted;
+		private final long started;
+		private long blamedBytes;
+
+		Meter(long repositoryStarted) {
+			this.repositoryStarted = repositoryStarted;
+			this.started = System.nanoTime();
+		}
+
+		/**
+		 * @throws BudgetExceededException
+		 *             - if the scenario or the repository is out of time.
+		 */
+		public void checkTime() throws BudgetExceededException {
+			long now = System.nanoTime();
+			check(BudgetType.REPOSITORY_TIME, maxRepositoryMillis,
+					TimeUnit.NANOSECONDS.toMillis(now - repositoryStarted));
+			check(BudgetType.SCENARIO_TIME, maxScenarioMillis, TimeUnit.NANOSECONDS.toMillis(now - started));
+		}
+
+		public void checkConflictingFiles(int files) throws BudgetExceededException {
+			check(BudgetType.CONFLICTING_FILES, maxConflictingFiles, files);
+		}
+
+		/**
+		 * Adds the size of a file about to be blamed.
+		 * 
+		 * @throws BudgetExceededException
+		 *             - if the scenario blamed too many bytes.
+		 */
+		public void addBlamedBytes(long bytes) throws BudgetExceededException {
+			blamedBytes += bytes;
+			check(BudgetType.BLAMED_BYTES, maxBlamedBytes, blamedBytes);
+		}
+
+		public long getBlamedBytes() {
+			return blamedBytes;
+		}
+
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.errors.NoMergeBaseException;
+import org.eclipse.jgit.errors.NoMergeBaseException.MergeBaseFailureReason;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeAlgorithm;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.RecursiveMerger;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * A merger whose strategy, diff algorithm, and files can be set:
+ * <ul>
+ * <li>the {@code MergeStrategy.RECURSIVE} strategy merges the merge bases of
+ * criss-cross merges into a virtual one, while the
+ * {@code MergeStrategy.RESOLVE} strategy only takes a single merge base, so
+ * it fails fast with a {@code NoMergeBaseException} for criss-cross merges;</li>
+ * <li>the diff algorithm finds the chunks of the files (the one of the
+ * repository configuration, by default), and its diffs are memoized by the
+ * {@code MergeMemo};</li>
+ * <li>the files out of the {@code FileScope} are skipped by the walk of the
+ * trees, so they are neither read nor merged, and their conflicts are not
+ * reported. Hence, a scope is only meant to find the conflicts in-core: the
+ * merged tree lacks the files out of the scope.</li>
+ * </ul>
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ConfiguredMerger extends RecursiveMerger {
+
+	private boolean recursive = true;
+	private FileScope scope;
+
+	/**
+	 * @param repository
+	 * @param inCore
+	 *            - whether the merge leaves the index and the working tree
+	 *            untouched.
+	 */
+	public ConfiguredMerger(Repository repository, boolean inCore) {
+		super(repository, inCore);
+		setDiffAlgorithm(null);
+	}
+
+	/**
+	 * Sets the strategy of the merge, either {@code MergeStrategy.RECURSIVE}
+	 * (the default) or {@code MergeStrategy.RESOLVE}.
+	 * 
+	 * @param aStrategy
+	 * @throws IllegalArgumentException
+	 *             - for any other strategy.
+	 */
+	public ConfiguredMerger setStrategy(ThreeWayMergeStrategy aStrategy) {
+		checkStrategy(aStrategy);
+		this.recursive = aStrategy == MergeStrategy.RECURSIVE;
+		return this;
+	}
+
+	/**
+	 * Sets the diff algorithm of the merge of the files. When {@code null},
+	 * it is the one of the repository configuration.
+	 * 
+	 * @param anAlgorithm
+	 */
+	public ConfiguredMerger setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+		if (anAlgorithm == null) {
+			anAlgorithm = db.getConfig().getEnum(ConfigConstants.CONFIG_DIFF_SECTION, null,
+					ConfigConstants.CONFIG_KEY_ALGORITHM, SupportedAlgorithm.HISTOGRAM);
+		}
+		this.mergeAlgorithm = new MergeAlgorithm(MergeMemo.INSTANCE.memoize(anAlgorithm));
+		return this;
+	}
+
+	/**
+	 * Sets the files to merge. When {@code null}, all of them are merged.
+	 * 
+	 * @param aScope
+	 */
+	public ConfiguredMerger setFileScope(FileScope aScope) {
+		this.scope = aScope;
+		return this;
+	}
+
+	@Override
+	protected RevCommit getBaseCommit(RevCommit a, RevCommit b, int callDepth) throws IOException {
+		if (recursive) {
+			return super.getBaseCommit(a, b, callDepth);
+		}
+		// the same as the resolve strategy, i.e., a single merge base
+		walk.reset();
+		walk.setRevFilter(RevFilter.MERGE_BASE);
+		walk.markStart(a);
+		walk.markStart(b);
+		RevCommit base = walk.next();
+		if (base == null) {
+			return null;
+		}
+		RevCommit other = walk.next();
+		if (other != null) {
+			throw new NoMergeBaseException(MergeBaseFailureReason.MULTIPLE_MERGE_BASES_NOT_SUPPORTED,
+					"Multiple merge bases for: \n  " + a.name() + "\n  " + b.name() + " found:\n  " + base.name()
+							+ "\n  " + other.name());
+		}
+		return base;
+	}
+
+	@Override
+	protected boolean mergeTreeWalk(TreeWalk treeWalk, boolean ignoreConflicts) throws IOException {
+		TreeFilter filter = (scope == null) ? TreeFilter.ALL : scope.toMergeFilter();
+		if (filter != TreeFilter.ALL) {
+			TreeFilter current = treeWalk.getFilter();
+			treeWalk.setFilter((current == TreeFilter.ALL) ? filter : AndTreeFilter.create(current, filter));
+		}
+		return super.mergeTreeWalk(treeWalk, ignoreConflicts);
+	}
+
+	/**
+	 * Returns the strategy of the merges with the given diff algorithm, e.g.,
+	 * for the {@code MergeCommand}.
+	 * 
+	 * @param aStrategy
+	 *            - either {@code MergeStrategy.RECURSIVE} or
+	 *            {@code MergeStrategy.RESOLVE}.
+	 * @param anAlgorithm
+	 *            - the diff algorithm, or {@code null} for the one of the
+	 *            repository configuration.
+	 */
+	public static ThreeWayMergeStrategy strategy(final ThreeWayMergeStrategy aStrategy,
+			final SupportedAlgorithm anAlgorithm) {
+		checkStrategy(aStrategy);
+		return new ThreeWayMergeStrategy() {
+
+			@Override
+			public String getName() {
+				return aStrategy.getName();
+			}
+
+			@Override
+			public ThreeWayMerger newMerger(Repository db) {
+				return newMerger(db, false);
+			}
+
+			@Override
+			public ThreeWayMerger newMerger(Repository db, boolean inCore) {
+				return new ConfiguredMerger(db, inCore).setStrategy(aStrategy).setDiffAlgorithm(anAlgorithm);
+			}
+		};
+	}
+
+	/**
+	 * Parses the name of a merge strategy, i.e., "recursive" or "resolve".
+	 * 
+	 * @param name
+	 * @return the strategy, or {@code MergeStrategy.RECURSIVE} when the name
+	 *         is {@code null}.
+	 * @throws IllegalArgumentException
+	 *             - for any other name.
+	 */
+	public static ThreeWayMergeStrategy parseStrategy(String name) {
+		if (name == null) {
+			return MergeStrategy.RECURSIVE;
+		}
+		MergeStrategy strategy = MergeStrategy.get(name.trim().toLowerCase());
+		if (strategy != MergeStrategy.RECURSIVE && strategy != MergeStrategy.RESOLVE) {
+			throw new IllegalArgumentException("Unsupported merge strategy: " + name);
+		}
+		return (ThreeWayMergeStrategy) strategy;
+	}
+
+	/**
+	 * Parses the name of a diff algorithm, i.e., "histogram" or "myers".
+	 * 
+	 * @param name
+	 * @return the algorithm, or {@code null} when the name is {@code null}.
+	 * @throws IllegalArgumentException
+	 *             - for any other name.
+	 */
+	public static SupportedAlgorithm parseDiffAlgorithm(String name) {
+		if (name == null) {
+			return null;
+		}
+		try {
+			return SupportedAlgorithm.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unsupported diff algorithm: " + name);
+		}
+	}
+
+	private static void checkStrategy(ThreeWayMergeStrategy aStrategy) {
+		if (aStrategy != MergeStrategy.RECURSIVE && aStrategy != MergeStrategy.RESOLVE) {
+			throw new IllegalArgumentException("Unsupported merge strategy: " + aStrategy.getName());
+		}
+	}
+}
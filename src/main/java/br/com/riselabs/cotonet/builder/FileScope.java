@@ -0,0 +1,286 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * The files whose conflicts are merged and blamed: the paths matching the
+ * include globs (all of them, when there is none) and none of the exclude
+ * globs, whose blobs are not larger than the ceiling. A glob without a slash
+ * matches the name of the file (e.g., {@code *.java}), and one with a slash
+ * matches its path from the repository root (e.g., {@code src/**}).
+ * 
+ * The scope is applied as a {@code TreeFilter} while merging in-core (see
+ * {@code ScopedMerger}), so the merges whose conflicts are all out of scope
+ * are taken as clean, and again before blaming each conflicting file. The
+ * directories excluded as a whole (e.g., {@code node_modules/**}) are not
+ * even walked. Everything is in the scope by default.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class FileScope {
+
+	public static final long UNLIMITED = -1;
+
+	private final List<String> includes = new ArrayList<String>();
+	private final List<String> excludes = new ArrayList<String>();
+	private final List<PathMatcher> includeMatchers = new ArrayList<PathMatcher>();
+	private final List<PathMatcher> excludeMatchers = new ArrayList<PathMatcher>();
+	/** the excluded directories, i.e., the excludes ending with "/**" */
+	private final List<PathMatcher> excludedDirs = new ArrayList<PathMatcher>();
+	private long maxBlobBytes = UNLIMITED;
+
+	/**
+	 * Adds a glob the paths in the scope must match (any of them).
+	 * 
+	 * @param glob
+	 * @return
+	 */
+	public FileScope include(String glob) {
+		includes.add(glob);
+		includeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+		return this;
+	}
+
+	/**
+	 * Adds a glob the paths in the scope must not match.
+	 * 
+	 * @param glob
+	 * @return
+	 */
+	public FileScope exclude(String glob) {
+		excludes.add(glob);
+		excludeMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+		if (glob.endsWith("/**")) {
+			excludedDirs.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(0, glob.length() - 3)));
+		}
+		return this;
+	}
+
+	public long getMaxBlobBytes() {
+		return maxBlobBytes;
+	}
+
+	/**
+	 * Sets the size of the largest blob (of either side of a conflicting
+	 * file) in the scope.
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public FileScope setMaxBlobBytes(long bytes) {
+		this.maxBlobBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * @return whether every file is in the scope.
+	 */
+	public boolean isEverything() {
+		return includes.isEmpty() && excludes.isEmpty() && maxBlobBytes == UNLIMITED;
+	}
+
+	/**
+	 * @param path
+	 *            - the path of a file relative to the repository root.
+	 * @return whether the path of the given file is in the scope.
+	 */
+	public boolean accepts(String path) {
+		if (!includeMatchers.isEmpty() && !matchesAny(includeMatchers, path)) {
+			return false;
+		}
+		return !matchesAny(excludeMatchers, path);
+	}
+
+	/**
+	 * @param path
+	 *            - the path of a directory relative to the repository root.
+	 * @return whether the files of the given directory may be in the scope.
+	 */
+	public boolean acceptsDirectory(String path) {
+		for (PathMatcher dir : excludedDirs) {
+			if (dir.matches(Paths.get(path))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the given blobs are not larger than the ceiling. The
+	 *         size is read from the object headers, the blobs are not loaded.
+	 */
+	public boolean acceptsSize(ObjectReader reader, AnyObjectId... blobs)
+			throws MissingObjectException, IncorrectObjectTypeException, IOException {
+		if (maxBlobBytes == UNLIMITED) {
+			return true;
+		}
+		for (AnyObjectId blob : blobs) {
+			if (blob != null && !ObjectId.zeroId().equals(blob)
+					&& reader.getObjectSize(blob, Constants.OBJ_BLOB) > maxBlobBytes) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesAny(List<PathMatcher> matchers, String path) {
+		int slash = path.lastIndexOf('/');
+		String name = (slash < 0) ? path : path.substring(slash + 1);
+		for (int i = 0; i < matchers.size(); i++) {
+			PathMatcher matcher = matchers.get(i);
+			if (matcher.matches(Paths.get(path)) || matcher.matches(Paths.get(name))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the filter of the trees walked by a three-way merge (with the
+	 * base, ours, and theirs trees at the indexes 0, 1, and 2). The size is
+	 * only checked for the files changed on both sides, i.e., the ones that
+	 * may conflict.
+	 */
+	public TreeFilter toMergeFilter() {
+		return isEverything() ? TreeFilter.ALL : new MergeFilter();
+	}
+
+	/**
+	 * @return the scope in the format read by {@code #parse(String)}, or the
+	 *         empty string when every file is in the scope.
+	 */
+	@Override
+	public String toString() {
+		List<String> entries = new ArrayList<String>();
+		if (!includes.isEmpty()) {
+			entries.add("include=" + String.join(";", includes));
+		}
+		if (!excludes.isEmpty()) {
+			entries.add("exclude=" + String.join(";", excludes));
+		}
+		if (maxBlobBytes != UNLIMITED) {
+			entries.add("maxBlobKB=" + (maxBlobBytes / 1024));
+		}
+		return String.join(",", entries);
+	}
+
+	/**
+	 * Parses a scope, e.g., "include=*.java;*.c;*.h,exclude=vendor/**;
+	 * *.min.js,maxBlobKB=512". Each entry lists its globs separated by ';'.
+	 * 
+	 * @param spec
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             - if the spec is malformed or names an unknown entry.
+	 */
+	public static FileScope parse(String spec) {
+		FileScope scope = new FileScope();
+		if (spec == null || spec.trim().isEmpty()) {
+			return scope;
+		}
+		for (String entry : spec.split(",")) {
+			String[] pair = entry.split("=");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Malformed scope: " + entry);
+			}
+			switch (pair[0].trim()) {
+			case "include":
+				for (String glob : pair[1].split(";")) {
+					scope.include(glob.trim());
+				}
+				break;
+			case "exclude":
+				for (String glob : pair[1].split(";")) {
+					scope.exclude(glob.trim());
+				}
+				break;
+			case "maxBlobKB":
+				scope.setMaxBlobBytes(Long.parseLong(pair[1].trim()) * 1024);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown scope entry: " + pair[0].trim());
+			}
+		}
+		return scope;
+	}
+
+	private class MergeFilter extends TreeFilter {
+
+		private static final int BASE = 0;
+		private static final int OURS = 1;
+		private static final int THEIRS = 2;
+
+		@Override
+		public boolean include(TreeWalk walker)
+				throws MissingObjectException, IncorrectObjectTypeException, IOException {
+			if (walker.isSubtree()) {
+				return acceptsDirectory(walker.getPathString());
+			}
+			if (!accepts(walker.getPathString())) {
+				return false;
+			}
+			if (maxBlobBytes == UNLIMITED || !isFile(walker, OURS) || !isFile(walker, THEIRS)
+					|| walker.idEqual(OURS, THEIRS) || walker.idEqual(BASE, OURS)
+					|| walker.idEqual(BASE, THEIRS)) {
+				return true;
+			}
+			return acceptsSize(walker.getObjectReader(), walker.getObjectId(OURS), walker.getObjectId(THEIRS));
+		}
+
+		private boolean isFile(TreeWalk walker, int nth) {
+			return FileMode.REGULAR_FILE.equals(walker.getRawMode(nth))
+					|| FileMode.EXECUTABLE_FILE.equals(walker.getRawMode(nth));
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return false;
+		}
+
+		@Override
+		public TreeFilter clone() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return FileScope.this.toString();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * The part of the history where the merge scenarios are looked for: the
+ * merges committed in a time window and reachable from some refs (HEAD by
+ * default). The window is pushed into the walk of the history, i.e., the
+ * walk starts from the refs and stops at the first commit older than the
+ * start of the window, instead of going through the whole history.
+ * 
+ * Like {@code git log --since}, it relies on the commit times, so a commit
+ * with a skewed clock may end the walk early.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class HistoryWindow {
+
+	private Date since;
+	private Date until;
+	private List<String> refs = new ArrayList<String>();
+
+	public Date getSince() {
+		return since;
+	}
+
+	/**
+	 * Sets the oldest commit time of the merges, or {@code null} for no
+	 * limit.
+	 * 
+	 * @param aDate
+	 */
+	public HistoryWindow setSince(Date aDate) {
+		this.since = aDate;
+		return this;
+	}
+
+	public Date getUntil() {
+		return until;
+	}
+
+	/**
+	 * Sets the newest commit time of the merges, or {@code null} for no
+	 * limit.
+	 * 
+	 * @param aDate
+	 */
+	public HistoryWindow setUntil(Date aDate) {
+		this.until = aDate;
+		return this;
+	}
+
+	public List<String> getRefs() {
+		return refs;
+	}
+
+	/**
+	 * Sets the branches (e.g., "master" or "release-1.x") or commit ids whose
+	 * history is walked. When empty, the history of HEAD is walked. Tags are
+	 * not fetched into the mirrors, so refs to tags do not resolve.
+	 * 
+	 * @param someRefs
+	 */
+	public HistoryWindow setRefs(Collection<String> someRefs) {
+		this.refs = (someRefs == null) ? new ArrayList<String>() : new ArrayList<String>(someRefs);
+		return this;
+	}
+
+	/**
+	 * @return whether the window is the whole history of HEAD.
+	 */
+	public boolean isEverything() {
+		return since == null && until == null && refs.isEmpty();
+	}
+
+	/**
+	 * Returns the merge commits (with two parents) of the window, newest
+	 * first. The refs missing in the repository are logged and ignored.
+	 * 
+	 * @param repository
+	 * @return
+	 * @throws IOException
+	 *             when refs were given and none of them resolves to a commit.
+	 */
+	public List<RevCommit> findMerges(Repository repository) throws IOException {
+		List<RevCommit> merges = new ArrayList<RevCommit>();
+		try (RevWalk walk = new RevWalk(repository)) {
+			boolean started = false;
+			for (String ref : refs.isEmpty() ? Collections.singletonList(Constants.HEAD) : refs) {
+				ObjectId id = repository.resolve(ref);
+				if (id == null) {
+					Logger.log("The ref " + ref + " does not resolve in " + repository.getDirectory() + ".");
+					continue;
+				}
+				try {
+					walk.markStart(walk.parseCommit(id));
+					started = true;
+				} catch (IncorrectObjectTypeException e) {
+					// e.g., a ref to a tree or a blob
+					Logger.log("The ref " + ref + " is not a commit in " + repository.getDirectory() + ".");
+					continue;
+				}
+			}
+			if (!started) {
+				if (!refs.isEmpty()) {
+					throw new IOException("None of the refs " + refs + " resolves in " + repository.getDirectory() + ".");
+				}
+				// an empty repository
+				return merges;
+			}
+			walk.setRevFilter(toRevFilter());
+			for (RevCommit commit : walk) {
+				if (commit.getParentCount() == 2) {
+					merges.add(commit);
+				}
+			}
+		}
+		return merges;
+	}
+
+	/**
+	 * @return the filter of the commit times of the window. It ends the walk
+	 *         at the first commit older than the window.
+	 */
+	private RevFilter toRevFilter() {
+		if (since != null && until != null) {
+			return CommitTimeRevFilter.between(since, until);
+		} else if (since != null) {
+			return CommitTimeRevFilter.after(since);
+		} else if (until != null) {
+			return CommitTimeRevFilter.before(until);
+		}
+		return RevFilter.ALL;
+	}
+
+	@Override
+	public String toString() {
+		List<String> entries = new ArrayList<String>();
+		if (since != null) {
+			entries.add("since=" + since);
+		}
+		if (until != null) {
+			entries.add("until=" + until);
+		}
+		if (!refs.isEmpty()) {
+			entries.add("refs=" + String.join(";", refs));
+		}
+		return String.join(",", entries);
+	}
+
+	/**
+	 * Parses the bound of a window, either a date (e.g., "2016-05-31") or a
+	 * date and time (e.g., "2016-05-31T18:30:00"), in the local time zone.
+	 * 
+	 * @param spec
+	 * @param end
+	 *            - whether a date (without time) means its end, rather than
+	 *            its start.
+	 * @return the bound, or {@code null} when the spec is {@code null}.
+	 * @throws IllegalArgumentException
+	 *             - if the spec is malformed.
+	 */
+	public static Date parseDate(String spec, boolean end) {
+		if (spec == null || spec.trim().isEmpty()) {
+			return null;
+		}
+		LocalDateTime time;
+		try {
+			if (spec.contains("T")) {
+				time = LocalDateTime.parse(spec.trim());
+			} else {
+				LocalDate date = LocalDate.parse(spec.trim());
+				time = end ? date.plusDays(1).atStartOfDay().minusSeconds(1) : date.atStartOfDay();
+			}
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Malformed date: " + spec, e);
+		}
+		return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+	}
+
+	/**
+	 * Parses a comma-separated list of refs, e.g., "master,release-1.x".
+	 * 
+	 * @param spec
+	 * @return
+	 */
+	public static List<String> parseRefs(String spec) {
+		List<String> refs = new ArrayList<String>();
+		if (spec != null) {
+			for (String ref : spec.split(",")) {
+				if (!ref.trim().isEmpty()) {
+					refs.add(ref.trim());
+				}
+			}
+		}
+		return refs;
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Memo of the diffs the merges of the files are made of. The merge of a file
+ * is determined by its (base, left, right) contents: its chunks follow from
+ * the diff of the base to the left and the diff of the base to the right,
+ * which are keyed by the contents they compare and the diff algorithm. So the
+ * same file-level merge is diffed only once even when it reappears in other
+ * scenarios, in forks, or in unrelated projects, and whatever path or history
+ * reached it. The memo holds no blame: the chunks are attributed to the
+ * developers by the blame of each scenario.
+ * 
+ * The memo stores the coordinates of the edits, and hands out new edits on
+ * each hit. It evicts the least recently used entries when it is full.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum MergeMemo {
+	// Singleton implementation
+	INSTANCE;
+
+	private static final int DEFAULT_MAX_ENTRIES = 16384;
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private boolean enabled = true;
+	private long hits;
+	private long misses;
+
+	private final Map<DiffKey, int[]> memo = new LinkedHashMap<DiffKey, int[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<DiffKey, int[]> eldest) {
+			return size() > maxEntries;
+		}
+	};
+
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			memo.clear();
+		}
+	}
+
+	public synchronized void setMaxEntries(int max) {
+		this.maxEntries = max;
+	}
+
+	/**
+	 * Returns the given diff algorithm memoized by this memo, or the
+	 * algorithm itself in case the memo is disabled. The returned algorithm
+	 * is meant for a single merger, i.e., a single thread.
+	 * 
+	 * @param anAlgorithm
+	 * @return
+	 */
+	public DiffAlgorithm memoize(SupportedAlgorithm anAlgorithm) {
+		DiffAlgorithm algorithm = DiffAlgorithm.getAlgorithm(anAlgorithm);
+		return isEnabled() ? new MemoizedDiff(anAlgorithm, algorithm) : algorithm;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		memo.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	private synchronized int[] get(DiffKey key) {
+		int[] edits = memo.get(key);
+		if (edits == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return edits;
+	}
+
+	private synchronized void put(DiffKey key, int[] edits) {
+		if (enabled) {
+			memo.put(key, edits);
+		}
+	}
+
+	/**
+	 * Returns the id of the given text, i.e., the digest of its lines.
+	 */
+	private static ObjectId getContentId(RawText text) {
+		final MessageDigest md = Constants.newMessageDigest();
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+				md.update((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				md.update(b, off, len);
+			}
+		};
+		try {
+			for (int i = 0; i < text.size(); i++) {
+				text.writeLine(out, i);
+				out.write('\n');
+			}
+		} catch (IOException e) {
+			// the digest never fails to write
+			throw new IllegalStateException(e);
+		}
+		md.update((byte) (text.isMissingNewlineAtEnd() ? 0 : 1));
+		return ObjectId.fromRaw(md.digest());
+	}
+
+	/**
+	 * A diff algorithm that looks the diffs of the texts up in the memo
+	 * before computing them. Other sequences, or texts compared other than
+	 * byte by byte, are always diffed.
+	 */
+	private static final class MemoizedDiff extends DiffAlgorithm {
+		private final SupportedAlgorithm name;
+		private final DiffAlgorithm algorithm;
+
+		// a merge diffs its base against each side in turn
+		private Sequence lastText;
+		private ObjectId lastId;
+
+		MemoizedDiff(SupportedAlgorithm name, DiffAlgorithm algorithm) {
+			this.name = name;
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public <S extends Sequence> EditList diff(SequenceComparator<? super S> cmp, S a, S b) {
+			if (cmp != RawTextComparator.DEFAULT || a.getClass() != RawText.class
+					|| b.getClass() != RawText.class) {
+				return algorithm.diff(cmp, a, b);
+			}
+			if (a != lastText) {
+				lastId = getContentId((RawText) a);
+				lastText = a;
+			}
+			DiffKey key = new DiffKey(name, lastId, getContentId((RawText) b));
+			int[] edits = INSTANCE.get(key);
+			if (edits != null) {
+				return toEditList(edits);
+			}
+			EditList result = algorithm.diff(cmp, a, b);
+			INSTANCE.put(key, toArray(result));
+			return result;
+		}
+
+		@Override
+		public <S extends Sequence> EditList diffNonCommon(SequenceComparator<? super S> cmp, S a, S b) {
+			return algorithm.diffNonCommon(cmp, a, b);
+		}
+
+		private static int[] toArray(EditList edits) {
+			int[] result = new int[edits.size() * 4];
+			int i = 0;
+			for (Edit edit : edits) {
+				result[i++] = edit.getBeginA();
+				result[i++] = edit.getEndA();
+				result[i++] = edit.getBeginB();
+				result[i++] = edit.getEndB();
+			}
+			return result;
+		}
+
+		private static EditList toEditList(int[] edits) {
+			EditList result = new EditList(edits.length / 4);
+			for (int i = 0; i < edits.length; i += 4) {
+				result.add(new Edit(edits[i], edits[i + 1], edits[i + 2], edits[i + 3]));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The key of a diff: the ids of the contents it compares and the diff
+	 * algorithm.
+	 */
+	private static final class DiffKey {
+		private final SupportedAlgorithm algorithm;
+		private final ObjectId a;
+		private final ObjectId b;
+
+		DiffKey(SupportedAlgorithm algorithm, ObjectId a, ObjectId b) {
+			this.algorithm = algorithm;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + algorithm.hashCode();
+			result = prime * result + a.hashCode();
+			result = prime * result + b.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			DiffKey other = (DiffKey) obj;
+			return algorithm == other.algorithm && a.equals(other.a) && b.equals(other.b);
+		}
+	}
+}
@@ -24,11 +24,22 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.Git;
@@ -38,14 +49,29 @@ import org.eclipse.jgit.api.ResetCommand.ResetType;
 import org.eclipse.jgit.api.errors.CheckoutConflictException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Sequence;
 import org.eclipse.jgit.errors.NoMergeBaseException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
 import org.eclipse.jgit.merge.ThreeWayMerger;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
 
 import br.com.riselabs.cotonet.builder.commands.ExternalGitCommand;
 import br.com.riselabs.cotonet.builder.commands.ExternalGitCommand.CommandType;
+import br.com.riselabs.cotonet.builder.commands.IncrementalBlame;
+import br.com.riselabs.cotonet.builder.commands.SideBlame;
+import br.com.riselabs.cotonet.model.beans.BlameDictionary;
 import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
 import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
 import br.com.riselabs.cotonet.model.beans.ConflictChunk;
@@ -54,10 +80,13 @@ import br.com.riselabs.cotonet.model.beans.DeveloperNode;
 import br.com.riselabs.cotonet.model.beans.MergeScenario;
 import br.com.riselabs.cotonet.model.beans.Project;
 import br.com.riselabs.cotonet.model.db.DBWritter;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
 import br.com.riselabs.cotonet.model.enums.MergeCommitSide;
 import br.com.riselabs.cotonet.model.enums.NetworkType;
 import br.com.riselabs.cotonet.model.exceptions.BlameException;
+import br.com.riselabs.cotonet.model.exceptions.BudgetExceededException;
 import br.com.riselabs.cotonet.util.Logger;
+import br.com.riselabs.cotonet.util.WorktreeLock;
 
 /**
  * @author Alcemir R. Santos
@@ -70,6 +99,28 @@ public class NetworkBuilder<T> {
 	protected NetworkType type;
 	protected Project project;
 	protected File log;
+	protected BlameMode blameMode = BlameMode.MERGED_FILE;
+	protected IncrementalBlame blamer;
+	protected BuildBudget budget = new BuildBudget();
+	protected FileScope scope = new FileScope();
+	protected ThreeWayMergeStrategy mergeStrategy = MergeStrategy.RECURSIVE;
+	/** the diff algorithm, or {@code null} for the default ones */
+	protected SupportedAlgorithm diffAlgorithm;
+	protected HistoryWindow window = new HistoryWindow();
+	/** the sample of the merge commits, or {@code null} for all */
+	protected ScenarioSample sample;
+	/** the ids of the merge commits to consider, or {@code null} for all */
+	protected Set<String> scenarioFilter;
+	/** held while a scenario is merged in the working tree, if any */
+	protected WorktreeLock worktreeLock;
+	/** where the CPU-bound stages run, or {@code null} for this thread */
+	protected ExecutorService computeExecutor;
+	/** the results of the scenarios found in the {@code ScenarioResultStore} */
+	private final Map<ObjectId, ScenarioResultStore.Result> storedResults = new ConcurrentHashMap<ObjectId, ScenarioResultStore.Result>();
+	/** the network of the scenarios that have no result to store */
+	private static final ConflictBasedNetwork NOT_STORED = new ConflictBasedNetwork();
+	/** when the last {@code #build()} started, from {@code System#nanoTime()} */
+	private long buildStarted = System.nanoTime();
 
 	public NetworkBuilder(Project project, NetworkType type) {
 		setProject(project);
@@ -96,6 +147,155 @@ public class NetworkBuilder<T> {
 		this.log = log;
 	}
 
+	public BlameMode getBlameMode() {
+		return blameMode;
+	}
+
+	/**
+	 * Sets how the conflicting chunks are blamed. The default mode is
+	 * {@code BlameMode.MERGED_FILE}.
+	 * 
+	 * @param mode
+	 */
+	public void setBlameMode(BlameMode mode) {
+		this.blameMode = mode;
+	}
+
+	public BuildBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the limits of the work done for each scenario. The scenarios that
+	 * exceed them are skipped and recorded in the {@code SkipLog}. By
+	 * default, there are no limits.
+	 * 
+	 * @param aBudget
+	 */
+	public void setBudget(BuildBudget aBudget) {
+		this.budget = aBudget;
+	}
+
+	public FileScope getFileScope() {
+		return scope;
+	}
+
+	/**
+	 * Sets the files whose conflicts are merged and blamed (see
+	 * {@code FileScope}). The scenarios whose conflicts are all out of the
+	 * scope are taken as clean. By default, every file is in the scope.
+	 * 
+	 * @param aScope
+	 */
+	public void setFileScope(FileScope aScope) {
+		this.scope = aScope;
+	}
+
+	public ThreeWayMergeStrategy getMergeStrategy() {
+		return mergeStrategy;
+	}
+
+	/**
+	 * Sets the strategy of the merges that find (and replay) the conflicts,
+	 * either {@code MergeStrategy.RECURSIVE} (the default) or
+	 * {@code MergeStrategy.RESOLVE}. The latter does not merge the several
+	 * merge bases of criss-cross merges, so these scenarios are skipped.
+	 * 
+	 * @param aStrategy
+	 * @throws IllegalArgumentException
+	 *             - for any other strategy.
+	 */
+	public void setMergeStrategy(ThreeWayMergeStrategy aStrategy) {
+		if (aStrategy != MergeStrategy.RECURSIVE && aStrategy != MergeStrategy.RESOLVE) {
+			throw new IllegalArgumentException("Unsupported merge strategy: " + aStrategy.getName());
+		}
+		this.mergeStrategy = aStrategy;
+	}
+
+	public SupportedAlgorithm getDiffAlgorithm() {
+		return diffAlgorithm;
+	}
+
+	/**
+	 * Sets the diff algorithm of both the merges and the blames. By default
+	 * (i.e., {@code null}), the merges use the one of the repository
+	 * configuration, the native blame uses the one of the git configuration,
+	 * and the in-core blame uses the histogram diff.
+	 * 
+	 * @param anAlgorithm
+	 */
+	public void setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+		this.diffAlgorithm = anAlgorithm;
+	}
+
+	public HistoryWindow getHistoryWindow() {
+		return window;
+	}
+
+	/**
+	 * Restricts the build to the merges of the given window of the history
+	 * (see {@code HistoryWindow}). By default, it is the whole history of
+	 * HEAD.
+	 * 
+	 * @param aWindow
+	 */
+	public void setHistoryWindow(HistoryWindow aWindow) {
+		this.window = aWindow;
+	}
+
+	public ScenarioSample getSample() {
+		return sample;
+	}
+
+	/**
+	 * Restricts the build to a random sample of the merge scenarios (see
+	 * {@code ScenarioSample}). The parameters of the sample are recorded with
+	 * the project. By default, all the merge scenarios are considered.
+	 * 
+	 * @param aSample
+	 */
+	public void setSample(ScenarioSample aSample) {
+		this.sample = aSample;
+	}
+
+	/**
+	 * Restricts the build to the scenarios of the given merge commits. By
+	 * default, all the merge commits of the repository are considered.
+	 * 
+	 * @param mergeCommits
+	 *            - the ids of the merge commits, or {@code null} for all.
+	 */
+	public void setScenarioFilter(Collection<String> mergeCommits) {
+		this.scenarioFilter = (mergeCommits == null) ? null : new HashSet<String>(mergeCommits);
+	}
+
+	/**
+	 * Sets the lock held while each scenario is merged (and blamed) in the
+	 * working tree, so that other builders of the same repository (e.g., the
+	 * ones of other workers) do not change it in the meantime. The lock is
+	 * not taken in the {@code BlameMode.COMMITTED_SIDES} mode, which never
+	 * touches the working tree. By default, there is no lock.
+	 * 
+	 * @param aLock
+	 */
+	public void setWorktreeLock(WorktreeLock aLock) {
+		this.worktreeLock = aLock;
+	}
+
+	/**
+	 * Sets the executor of the CPU-bound stages of the build, i.e., the
+	 * in-core merges and the building of the graphs. The stages that block
+	 * (i.e., the checkouts, the merges in the working tree, and the external
+	 * blames) stay in the thread calling {@code #build()}, so a blocked
+	 * blame does not hold a thread of the executor. By default, every stage
+	 * runs in the calling thread.
+	 * 
+	 * @param anExecutor
+	 */
+	public void setComputeExecutor(ExecutorService anExecutor) {
+		this.computeExecutor = anExecutor;
+	}
+
 	/**
 	 * Builds the conflict based network considering the previously network type
 
@@ -113,11 +313,23 @@ public class NetworkBuilder<T> {
 	 */
 	public void build() throws IOException, CheckoutConflictException, GitAPIException, InterruptedException {
 		Logger.log(log, "[" + project.getName() + "] Network building start.");
+		buildStarted = System.nanoTime();
 		List<MergeScenario> conflictingScenarios = getMergeScenarios();
-		for (MergeScenario scenario : conflictingScenarios) {
-			ConflictBasedNetwork connet = getConflictNetwork(scenario);
-			if (connet != null) {
-				project.add(scenario, connet);
+		List<ConflictBasedNetwork> networks;
+		if (blameMode == BlameMode.COMMITTED_SIDES && ForkJoinTask.inForkJoinPool()) {
+			// the side blames do not touch the working tree, so the scenarios
+			// can be handled by idle workers of the pool.
+			networks = forkAll(conflictingScenarios, this::getConflictNetwork);
+		} else {
+			networks = new ArrayList<ConflictBasedNetwork>();
+			for (MergeScenario scenario : conflictingScenarios) {
+				networks.add(getConflictNetwork(scenario));
+			}
+		}
+		// the networks are added in the order the scenarios were found
+		for (int i = 0; i < conflictingScenarios.size(); i++) {
+			if (networks.get(i) != null) {
+				project.add(conflictingScenarios.get(i), networks.get(i));
 			}
 		}
 		Logger.log(log, "[" + project.getName() + "] Network building finished.");
@@ -134,65 +346,249 @@ public class NetworkBuilder<T> {
 	}
 
 	/**
-	 * Returns the conflicting merge scenarios
+	 * Returns the conflicting merge scenarios in the order of the log. When
+	 * running in a fork-join pool, the merges are replayed by forked tasks.
 	 * 
 	 * @return - a list of merge scenarios. it may be empty in case of no
 	 *         conflict.
 	 * @throws IOException
 	 */
-	private List<MergeScenario> getMergeScenarios() throws IOException {
-		List<MergeScenario> result = new ArrayList<MergeScenario>();
+	private List<MergeScenario> getMergeScenarios() throws IOException, GitAPIException, InterruptedException {
 		List<RevCommit> mergeCommits = new ArrayList<RevCommit>();
-		Iterable<RevCommit> gitlog;
-		try {
-			Git git = Git.wrap(getProject().getRepository());
-			gitlog = git.log().call();
-			for (RevCommit commit : gitlog) {
-				if (commit.getParentCount() == 2) {
-					mergeCommits.add(commit);
-					// collecting merge commits
-					// we know there is only to parents
-					RevCommit leftParent = commit.getParent(0);
-					RevCommit rightParent = commit.getParent(1);
-					ThreeWayMerger merger = MergeStrategy.RECURSIVE.newMerger(getProject().getRepository(), true);
-					// selecting the conflicting ones
-					boolean noConflicts = false;
-					try {
-						noConflicts = merger.merge(leftParent, rightParent);
-					} catch (NoMergeBaseException e) {
-						StringBuilder sb = new StringBuilder();
-						sb.append("[" + project.getName() + ":" + project.getUrl() + "] "
-								+ "Skipping merge scenario due to '" + e.getMessage() + "'\n");
-						sb.append("---> Skipped scenario:\n");
-						sb.append("::Base (<several>): \n");
-						sb.append("::Left (" + leftParent.getAuthorIdent().getWhen().toString() + "):"
-								+ leftParent.getName() + "\n");
-						sb.append("::Right (" + rightParent.getAuthorIdent().getWhen().toString() + "):"
-								+ rightParent.getName() + "\n");
-						Logger.log(log, sb.toString());
-						Logger.logStackTrace(log, e);
-						continue;
-					}
-					if (noConflicts) {
-						continue;
-					}
-					RevWalk walk = new RevWalk(getProject().getRepository());
-					// for merges without a base commit
-					if (merger.getBaseCommitId() == null)
-						continue;
-					RevCommit baseCommit = walk.lookupCommit(merger.getBaseCommitId());
-					walk.close();
-
-					Timestamp mergeDate = new Timestamp(commit.getAuthorIdent().getWhen().getTime());
-					result.add(new MergeScenario(baseCommit, leftParent, rightParent, commit, mergeDate));
+		// collecting merge commits
+		for (RevCommit commit : window.findMerges(getProject().getRepository())) {
+			if (scenarioFilter == null || scenarioFilter.contains(commit.getName())) {
+				mergeCommits.add(commit);
+			}
+		}
+
+		if (sample != null) {
+			return getSampledScenarios(mergeCommits);
+		}
+		List<MergeScenario> result = new ArrayList<MergeScenario>();
+		for (MergeScenario scenario : replayAll(mergeCommits)) {
+			if (scenario != null) {
+				result.add(scenario);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replays the merge commits in the order of the sample until it has
+	 * enough conflicting scenarios. In a fork-join pool, the merges are
+	 * replayed in batches, but only the first conflicting ones (in the order
+	 * of the sample) are kept, so the result does not depend on the pool.
+	 */
+	private List<MergeScenario> getSampledScenarios(List<RevCommit> mergeCommits)
+			throws IOException, GitAPIException, InterruptedException {
+		List<RevCommit> ordered = sample.order(mergeCommits);
+		List<MergeScenario> result = new ArrayList<MergeScenario>();
+		int examined = 0;
+		while (examined < ordered.size() && result.size() < sample.getMaxConflicting()) {
+			int missing = sample.getMaxConflicting() - result.size();
+			int batch = ForkJoinTask.inForkJoinPool() ? Math.max(missing, ForkJoinTask.getPool().getParallelism())
+					: 1;
+			List<RevCommit> next = ordered.subList(examined, Math.min(ordered.size(), examined + batch));
+			for (MergeScenario scenario : replayAll(next)) {
+				examined++;
+				if (scenario != null && result.add(scenario) && result.size() == sample.getMaxConflicting()) {
+					break;
 				}
 			}
-		} catch (GitAPIException e) {
+		}
+		String sampling = sample + ",merges=" + ordered.size() + ",examined=" + examined;
+		project.setSampling(sampling);
+		Logger.log(log, "[" + project.getName() + "] Sampled " + result.size() + " conflicting scenarios ("
+				+ sampling + ").");
+		return result;
+	}
+
+	/**
+	 * Replays the given merge commits, forking them in case of running in a
+	 * fork-join pool.
+	 * 
+	 * @return the scenario of each commit, or {@code null} for the ones
+	 *         without conflicts.
+	 */
+	private List<MergeScenario> replayAll(List<RevCommit> mergeCommits)
+			throws IOException, GitAPIException, InterruptedException {
+		if (ForkJoinTask.inForkJoinPool()) {
+			return forkAll(mergeCommits, this::replayMerge);
+		}
+		List<MergeScenario> replayed = new ArrayList<MergeScenario>();
+		for (RevCommit commit : mergeCommits) {
+			replayed.add(compute(commit, this::replayMerge));
+		}
+		return replayed;
+	}
+
+	/**
+	 * Replays the given merge commit (in-core) and returns its scenario.
+	 * 
+	 * @return - the scenario, or {@code null} when the merge has no conflicts
+	 *         or no merge base.
+	 */
+	private MergeScenario replayMerge(RevCommit commit) throws IOException {
+		// we know there is only to parents
+		RevCommit leftParent = commit.getParent(0);
+		RevCommit rightParent = commit.getParent(1);
+		ScenarioResultStore.Result known = ScenarioResultStore.INSTANCE.get(commit, type, getResultVariant());
+		if (known != null) {
+			// another project (e.g., a fork) had the same merge
+			if (!known.isConflicting()) {
+				return null;
+			}
+			MergeScenario scenario;
+			try (RevWalk walk = new RevWalk(getProject().getRepository())) {
+				scenario = new MergeScenario(walk.lookupCommit(known.getBase()), leftParent, rightParent, commit,
+						new Timestamp(commit.getAuthorIdent().getWhen().getTime()));
+			}
+			scenario.setRepository(getProject().getRepository());
+			storedResults.put(commit.copy(), known);
+			return scenario;
+		}
+		ThreeWayMerger merger = newInCoreMerger();
+		// selecting the conflicting ones
+		boolean noConflicts = false;
+		try {
+			noConflicts = merger.merge(leftParent, rightParent);
+		} catch (NoMergeBaseException e) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("[" + project.getName() + ":" + project.getUrl() + "] "
+					+ "Skipping merge scenario due to '" + e.getMessage() + "'\n");
+			sb.append("---> Skipped scenario:\n");
+			sb.append("::Base (<several>): \n");
+			sb.append("::Left (" + leftParent.getAuthorIdent().getWhen().toString() + "):"
+					+ leftParent.getName() + "\n");
+			sb.append("::Right (" + rightParent.getAuthorIdent().getWhen().toString() + "):"
+					+ rightParent.getName() + "\n");
+			Logger.log(log, sb.toString());
 			Logger.logStackTrace(log, e);
+			return null;
+		}
+		if (noConflicts) {
+			ScenarioResultStore.INSTANCE.putClean(commit, type, getResultVariant());
+			return null;
+		}
+		// for merges without a base commit
+		if (merger.getBaseCommitId() == null) {
+			ScenarioResultStore.INSTANCE.putClean(commit, type, getResultVariant());
+			return null;
+		}
+		RevCommit baseCommit;
+		try (RevWalk walk = new RevWalk(getProject().getRepository())) {
+			if (getProject().getRepository().hasObject(merger.getBaseCommitId())) {
+				baseCommit = walk.lookupCommit(merger.getBaseCommitId());
+			} else {
+				// the virtual base of a criss-cross merge is not in the
+				// repository, so the scenario takes the first merge base
+				walk.setRevFilter(RevFilter.MERGE_BASE);
+				walk.markStart(walk.parseCommit(leftParent));
+				walk.markStart(walk.parseCommit(rightParent));
+				baseCommit = walk.next();
+			}
+		}
+
+		Timestamp mergeDate = new Timestamp(commit.getAuthorIdent().getWhen().getTime());
+		MergeScenario scenario = new MergeScenario(baseCommit, leftParent, rightParent, commit, mergeDate);
+		// keeps only the ids, the commits are parsed again on demand
+		scenario.setRepository(getProject().getRepository());
+		return scenario;
+	}
+
+	/**
+	 * A step of the network building applied to each scenario (or merge
+	 * commit) of the project.
+	 */
+	@FunctionalInterface
+	private interface ScenarioStep<I, R> {
+		R apply(I input) throws IOException, GitAPIException, InterruptedException;
+	}
+
+	/**
+	 * Forks one task for each input and waits for all of them, so that idle
+	 * workers of the pool can steal them. It must be called from a fork-join
+	 * pool.
+	 * 
+	 * @return - the results in the same order of the inputs.
+	 */
+	private <I, R> List<R> forkAll(List<I> inputs, ScenarioStep<I, R> step)
+			throws IOException, GitAPIException, InterruptedException {
+		List<ScenarioTask<I, R>> tasks = new ArrayList<ScenarioTask<I, R>>();
+		for (I input : inputs) {
+			tasks.add(new ScenarioTask<I, R>(input, step));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		List<R> result = new ArrayList<R>();
+		for (ScenarioTask<I, R> task : tasks) {
+			task.rethrow();
+			result.add(task.getRawResult());
 		}
 		return result;
 	}
 
+	/**
+	 * Applies the given step to the input in the compute executor and waits
+	 * for it. Without an executor, the step is applied in this thread. The
+	 * step must be a CPU-bound stage, i.e., it must not block.
+	 */
+	private <I, R> R compute(I input, ScenarioStep<I, R> step)
+			throws IOException, GitAPIException, InterruptedException {
+		if (computeExecutor == null) {
+			return step.apply(input);
+		}
+		ScenarioTask<I, R> task = new ScenarioTask<I, R>(input, step);
+		Future<R> future = computeExecutor.submit(task::compute);
+		R result;
+		try {
+			result = future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			// the task keeps the exceptions but the errors
+			throw (Error) e.getCause();
+		}
+		task.rethrow();
+		return result;
+	}
+
+	private static class ScenarioTask<I, R> extends RecursiveTask<R> {
+		private static final long serialVersionUID = 1L;
+
+		private final I input;
+		private final ScenarioStep<I, R> step;
+		private Exception failure;
+
+		ScenarioTask(I input, ScenarioStep<I, R> step) {
+			this.input = input;
+			this.step = step;
+		}
+
+		@Override
+		protected R compute() {
+			try {
+				return step.apply(input);
+			} catch (IOException | GitAPIException | InterruptedException | RuntimeException e) {
+				failure = e;
+				return null;
+			}
+		}
+
+		void rethrow() throws IOException, GitAPIException, InterruptedException {
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof GitAPIException) {
+				throw (GitAPIException) failure;
+			} else if (failure instanceof InterruptedException) {
+				throw (InterruptedException) failure;
+			} else if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		}
+	}
+
 	/**
 	 * Returns the conflicting files of the given scenario.
 	 * 
@@ -227,7 +623,7 @@ public class NetworkBuilder<T> {
 
 		MergeCommand mergeCmd = git.merge();
 		mergeCmd.setCommit(false);
-		mergeCmd.setStrategy(MergeStrategy.RECURSIVE);
+		mergeCmd.setStrategy(ConfiguredMerger.strategy(mergeStrategy, diffAlgorithm));
 		mergeCmd.include(scenario.getRight());
 
 		Set<String> conflictingPaths;
@@ -257,21 +653,91 @@ public class NetworkBuilder<T> {
 
 	private ConflictBasedNetwork getConflictNetwork(MergeScenario scenario)
 			throws IOException, GitAPIException, InterruptedException {
-		List<File> files = getConflictingFiles(scenario);
-		if (files == null) {
-			return null; // dealing with ghost scenarios or fail to hard reset.
+		ScenarioResultStore.Result known = storedResults.get(scenario.getMergeId());
+		if (known != null) {
+			return known.toNetwork(project, scenario, type);
+		}
+		// the files that could not be blamed
+		List<String> skipped = new ArrayList<String>();
+		ConflictBasedNetwork network;
+		if (blameMode == BlameMode.COMMITTED_SIDES) {
+			// merged and blamed in-core
+			network = compute(scenario, s -> buildConflictNetwork(s, skipped));
+		} else {
+			network = buildConflictNetwork(scenario, skipped);
+		}
+		if (network == NOT_STORED) {
+			return null;
+		}
+		if (skipped.isEmpty()) {
+			ScenarioResultStore.INSTANCE.put(scenario, type, getResultVariant(), network, project.getRepository());
+		}
+		return network;
+	}
+
+	/**
+	 * Merges the files of the given scenario, blames their conflicts, and
+	 * builds the network of the developers.
+	 * 
+	 * @param skipped
+	 *            - collects the paths of the files that could not be
+	 *            blamed, which are left out of the network.
+	 * @return the network, {@code null} when the scenario has no edges, or
+	 *         {@code #NOT_STORED} when the scenario was skipped (i.e., it has
+	 *         no result to store).
+	 */
+	private ConflictBasedNetwork buildConflictNetwork(MergeScenario scenario, List<String> skipped)
+			throws IOException, GitAPIException, InterruptedException {
+		Map<String, List<ConflictChunk<CommandLineBlameResult>>> chunksByFile;
+		BuildBudget.Meter meter = budget.newMeter(buildStarted);
+		try {
+			meter.checkTime();
+			if (blameMode == BlameMode.COMMITTED_SIDES) {
+				chunksByFile = getConflictChunksFromSides(scenario, meter, skipped);
+			} else {
+				if (worktreeLock != null) {
+					worktreeLock.lock();
+				}
+				try {
+					chunksByFile = getConflictChunksFromMergedFiles(scenario, meter, skipped);
+				} finally {
+					if (worktreeLock != null) {
+						worktreeLock.unlock();
+					}
+				}
+			}
+		} catch (BudgetExceededException e) {
+			Logger.log(log, "[" + project.getName() + "] Skipping merge scenario " + scenario.getMergeId().getName()
+					+ ": " + e.getMessage());
+			SkipLog.INSTANCE.record(project, scenario, e, meter.getElapsedMillis());
+			return NOT_STORED;
+		}
+		if (chunksByFile == null) {
+			return NOT_STORED; // dealing with ghost scenarios or fail to hard reset.
 		}
+		if (blameMode == BlameMode.COMMITTED_SIDES) {
+			// already in the compute stage (see #getConflictNetwork)
+			return buildGraph(scenario, chunksByFile);
+		}
+		return compute(chunksByFile, chunks -> buildGraph(scenario, chunks));
+	}
+
+	/**
+	 * Builds the network of the developers of the given chunks. It only works
+	 * in memory.
+	 * 
+	 * @return the network, or {@code null} when the scenario has no edges.
+	 */
+	private ConflictBasedNetwork buildGraph(MergeScenario scenario,
+			Map<String, List<ConflictChunk<CommandLineBlameResult>>> chunksByFile) {
 		List<DeveloperNode> nodes = new ArrayList<DeveloperNode>();
 		List<DeveloperEdge> edges = new ArrayList<DeveloperEdge>();
+		// the side each developer comes from in this scenario. the project's
+		// nodes are shared by the scenarios built at the same time.
+		Map<DeveloperNode, MergeCommitSide> sides = new IdentityHashMap<DeveloperNode, MergeCommitSide>();
 
-		for (File file : files) {
-			List<ConflictChunk<CommandLineBlameResult>> cchunks;
-			try {
-				cchunks = getConflictChunks(scenario, file);
-			} catch (BlameException e) {
-				Logger.log(log, "[" + project.getName() + "]" + e.getMessage());
-				continue;
-			}
+		for (Entry<String, List<ConflictChunk<CommandLineBlameResult>>> file : chunksByFile.entrySet()) {
+			List<ConflictChunk<CommandLineBlameResult>> cchunks = file.getValue();
 			HashMap<String, List<DeveloperNode>> fNodes = null;
 			List<DeveloperEdge> fEdges = null;
 
@@ -280,7 +746,7 @@ public class NetworkBuilder<T> {
 			 */
 
 			for (ConflictChunk<CommandLineBlameResult> cChunk : cchunks) {
-				fNodes = (HashMap<String, List<DeveloperNode>>) (getDeveloperNodes(scenario, cChunk));
+				fNodes = (HashMap<String, List<DeveloperNode>>) (getDeveloperNodes(scenario, cChunk, sides));
 
 				// if program type chunk-based get developer edges that
 				// contribute to the conflict
@@ -305,7 +771,7 @@ public class NetworkBuilder<T> {
 			// make the previous graph full
 			if (type == NetworkType.FILE_BASED) {
 
-				edges = getDeveloperFileEdges(nodes, file.getAbsolutePath(), edges);
+				edges = getDeveloperFileEdges(nodes, sides, file.getKey(), edges);
 			}
 
 		}
@@ -316,14 +782,18 @@ public class NetworkBuilder<T> {
 		return new ConflictBasedNetwork(project, scenario, nodes, edges, type);
 	}
 
-	private List<DeveloperEdge> getDeveloperFileEdges(List<DeveloperNode> nodes, String filePath,
-			List<DeveloperEdge> oldEdges) {
+	private List<DeveloperEdge> getDeveloperFileEdges(List<DeveloperNode> nodes,
+			Map<DeveloperNode, MergeCommitSide> sides, String filePath, List<DeveloperEdge> oldEdges) {
 
 		// if there is only one developer, create loop
 		if (nodes.size() == 1) {
 			return oldEdges;
 		}
 
+		Set<Long> known = new HashSet<Long>();
+		for (DeveloperEdge edge : oldEdges) {
+			known.add(getEdgeKey(edge.getDevA(), edge.getDevB()));
+		}
 		// create a conflict file graph -> Edge's weight 2 or 3
 		for (DeveloperNode from : nodes) {
 			for (DeveloperNode to : nodes) {
@@ -333,13 +803,13 @@ public class NetworkBuilder<T> {
 				DeveloperEdge newEdge;
 				// create edge with weight 2 to developers in which contribute
 				// in the same side
-				if (from.getSideCommitComesFrom().equals(to.getSideCommitComesFrom())) {
+				if (sides.get(from).equals(sides.get(to))) {
 					newEdge = new DeveloperEdge(from, to, 2, "-", filePath);
 
 				} else {
 					newEdge = new DeveloperEdge(from, to, 3, "-", filePath);
 				}
-				if (!oldEdges.contains(newEdge)) {
+				if (known.add(getEdgeKey(from, to))) {
 					oldEdges.add(newEdge);
 				}
 			}
@@ -350,6 +820,7 @@ public class NetworkBuilder<T> {
 	private List<DeveloperEdge> getDeveloperEdges(Map<String, List<DeveloperNode>> nodes,
 			ConflictChunk<CommandLineBlameResult> cChunk) {
 		List<DeveloperEdge> edges = new ArrayList<DeveloperEdge>();
+		Set<Long> known = new HashSet<Long>();
 
 		Iterator<List<DeveloperNode>> ilist = nodes.values().iterator();
 		List<DeveloperNode> groupA = ilist.next();
@@ -363,7 +834,7 @@ public class NetworkBuilder<T> {
 				}
 				DeveloperEdge newEdge;
 				newEdge = new DeveloperEdge(from, to, 1, cChunk.getChunkRange(), cChunk.getPath().toString());
-				if (!edges.contains(newEdge)) {
+				if (known.add(getEdgeKey(from, to))) {
 					edges.add(newEdge);
 				}
 			}
@@ -376,6 +847,7 @@ public class NetworkBuilder<T> {
 			ConflictChunk<CommandLineBlameResult> cChunk) {
 
 		List<DeveloperEdge> edges = new ArrayList<DeveloperEdge>();
+		Set<Long> known = new HashSet<Long>();
 		Iterator<List<DeveloperNode>> ilist = nodes.values().iterator();
 		List<DeveloperNode> groupA = ilist.next();
 		List<DeveloperNode> groupB = ilist.next();
@@ -392,7 +864,7 @@ public class NetworkBuilder<T> {
 				}
 				DeveloperEdge newEdge;
 				newEdge = new DeveloperEdge(from, to, 0, cChunk.getChunkRange(), cChunk.getPath().toString());
-				if (!edges.contains(newEdge)) {
+				if (known.add(getEdgeKey(from, to))) {
 					edges.add(newEdge);
 				}
 			}
@@ -406,7 +878,7 @@ public class NetworkBuilder<T> {
 				}
 				DeveloperEdge newEdge;
 				newEdge = new DeveloperEdge(from, to, 0, cChunk.getChunkRange(), cChunk.getPath().toString());
-				if (!edges.contains(newEdge)) {
+				if (known.add(getEdgeKey(from, to))) {
 					edges.add(newEdge);
 				}
 			}
@@ -420,7 +892,7 @@ public class NetworkBuilder<T> {
 				}
 				DeveloperEdge newEdge;
 				newEdge = new DeveloperEdge(from, to, 1, cChunk.getChunkRange(), cChunk.getPath().toString());
-				if (!edges.contains(newEdge)) {
+				if (known.add(getEdgeKey(from, to))) {
 					edges.add(newEdge);
 				}
 			}
@@ -429,6 +901,224 @@ public class NetworkBuilder<T> {
 		return edges;
 	}
 
+	/**
+	 * Returns the key of the (undirected) edge between two developers of the
+	 * project, i.e., the pair of their local IDs with the lowest one first.
+	 */
+	private static long getEdgeKey(DeveloperNode devA, DeveloperNode devB) {
+		int a = devA.getLocalID();
+		int b = devB.getLocalID();
+		return (a < b) ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	/**
+	 * Returns the conflict chunks of each conflicting file of the given
+	 * scenario. The chunks are blamed in the marker-annotated files left in
+	 * the working tree by the merge.
+	 * 
+	 * @param scenario
+	 * @param skipped
+	 *            - collects the paths of the files that could not be blamed.
+	 * @return - a map from the file path to its chunks, or {@code null} in case
+	 *         of ghost scenarios or fail to hard reset.
+	 */
+	private Map<String, List<ConflictChunk<CommandLineBlameResult>>> getConflictChunksFromMergedFiles(
+			MergeScenario scenario, BuildBudget.Meter meter, List<String> skipped)
+			throws CheckoutConflictException, GitAPIException, IOException, BudgetExceededException {
+		List<File> files = getConflictingFiles(scenario);
+		if (files == null) {
+			return null;
+		}
+		File workTree = getProject().getRepository().getWorkTree();
+		List<File> inScope = new ArrayList<File>();
+		for (File file : files) {
+			String path = workTree.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+			if (scope.accepts(path) && acceptsSize(scenario, path)) {
+				inScope.add(file);
+			}
+		}
+		meter.checkConflictingFiles(inScope.size());
+		Map<String, List<ConflictChunk<CommandLineBlameResult>>> result = new LinkedHashMap<>();
+		for (File file : inScope) {
+			meter.checkTime();
+			// the marker-annotated file is the one blamed
+			meter.addBlamedBytes(file.length());
+			List<ConflictChunk<CommandLineBlameResult>> cchunks;
+			try {
+				cchunks = getConflictChunks(scenario, file);
+			} catch (BlameException e) {
+				Logger.log(log, "[" + project.getName() + "]" + e.getMessage());
+				skipped.add(file.getAbsolutePath());
+				continue;
+			}
+			result.put(file.getAbsolutePath(), cchunks);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the conflict chunks of each conflicting file of the given
+	 * scenario. The scenario is merged in-core and each side of the chunks is
+	 * blamed at its own commit, so the working tree is never touched.
+	 * 
+	 * @param scenario
+	 * @param skipped
+	 *            - collects the paths of the files that could not be blamed.
+	 * @return - a map from the file path to its chunks, or {@code null} in case
+	 *         of ghost scenarios.
+	 */
+	private Map<String, List<ConflictChunk<CommandLineBlameResult>>> getConflictChunksFromSides(
+			MergeScenario scenario, BuildBudget.Meter meter, List<String> skipped)
+			throws IOException, BudgetExceededException {
+		Repository repository = getProject().getRepository();
+		ResolveMerger merger = newInCoreMerger();
+		try {
+			if (merger.merge(scenario.getLeft(), scenario.getRight())) {
+				return null;
+			}
+		} catch (NoMergeBaseException e) {
+			Logger.log(log, "[" + project.getName() + ":" + project.getUrl() + "] "
+					+ "Skipping merge scenario due to '" + e.getMessage() + "'");
+			return null;
+		}
+		List<Entry<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>>> conflicting = new ArrayList<>();
+		for (Entry<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>> e : merger.getMergeResults().entrySet()) {
+			// the merger already left the paths out of the scope aside
+			if (e.getValue().containsConflicts()) {
+				conflicting.add(e);
+			}
+		}
+		meter.checkConflictingFiles(conflicting.size());
+		Map<String, List<ConflictChunk<CommandLineBlameResult>>> result = new LinkedHashMap<>();
+		for (Entry<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>> e : conflicting) {
+			meter.checkTime();
+			SideBlame blamer = new SideBlame(repository);
+			blamer.setMergeScenario(scenario).setFilePath(e.getKey()).setMergeResult(e.getValue())
+					.setIncrementalBlame(getIncrementalBlame());
+			if (budget.getMaxBlamedBytes() != BuildBudget.UNLIMITED) {
+				// each side is blamed at its own commit
+				meter.addBlamedBytes(getSidesSize(scenario, e.getKey()));
+			}
+			List<ConflictChunk<CommandLineBlameResult>> cchunks;
+			try {
+				cchunks = blamer.call();
+			} catch (BlameException be) {
+				Logger.log(log, "[" + project.getName() + "]" + be.getMessage());
+				skipped.add(blamer.getChunkPath());
+				continue;
+			}
+			result.put(blamer.getChunkPath(), cchunks);
+		}
+		return result;
+	}
+
+	/**
+	 * @return whether the left and right blobs of a file are not larger than
+	 *         the ceiling of the scope. Only their sizes are read.
+	 */
+	private boolean acceptsSize(MergeScenario scenario, String path) throws IOException {
+		if (scope.getMaxBlobBytes() == FileScope.UNLIMITED) {
+			return true;
+		}
+		ObjectId[] sides = getSideBlobs(scenario, path);
+		if (sides == null) {
+			return true;
+		}
+		try (ObjectReader reader = getProject().getRepository().newObjectReader()) {
+			return scope.acceptsSize(reader, sides);
+		}
+	}
+
+	/**
+	 * Returns the in-core merger of the scenarios, which merges only the
+	 * files of the scope.
+	 */
+	private ResolveMerger newInCoreMerger() {
+		return new ConfiguredMerger(getProject().getRepository(), true).setStrategy(mergeStrategy)
+				.setDiffAlgorithm(diffAlgorithm).setFileScope(scope);
+	}
+
+	/**
+	 * Returns what, besides the merge commit and the network type, the
+	 * results of the scenarios depend on, i.e., the blame mode, the scope of
+	 * the files, the merge strategy, and the diff algorithm. It is
+	 * {@code null} for the default settings.
+	 */
+	protected String getResultVariant() {
+		List<String> settings = new ArrayList<String>();
+		if (blameMode != BlameMode.MERGED_FILE) {
+			settings.add(blameMode.name().toLowerCase().replace('_', '-'));
+		}
+		if (mergeStrategy != MergeStrategy.RECURSIVE) {
+			settings.add(mergeStrategy.getName());
+		}
+		if (diffAlgorithm != null) {
+			settings.add(diffAlgorithm.name().toLowerCase());
+		}
+		if (!scope.isEverything()) {
+			byte[] spec = Constants.encode(scope.toString());
+			settings.add("scope-" + ObjectId.fromRaw(Constants.newMessageDigest().digest(spec)).abbreviate(8).name());
+		}
+		return settings.isEmpty() ? null : String.join("-", settings);
+	}
+
+	/**
+	 * Returns the size (in bytes) of the left and right blobs of a file.
+	 */
+	private long getSidesSize(MergeScenario scenario, String path) throws IOException {
+		ObjectId[] sides = getSideBlobs(scenario, path);
+		if (sides == null) {
+			return 0;
+		}
+		long size = 0;
+		try (ObjectReader reader = getProject().getRepository().newObjectReader()) {
+			for (ObjectId id : sides) {
+				if (!ObjectId.zeroId().equals(id)) {
+					size += reader.getObjectSize(id, Constants.OBJ_BLOB);
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the blame engine shared by the scenarios of this project.
+	 */
+	private synchronized IncrementalBlame getIncrementalBlame() {
+		if (blamer == null || blamer.getRepository() != getProject().getRepository()) {
+			blamer = new IncrementalBlame(getProject().getRepository());
+			if (diffAlgorithm != null) {
+				blamer.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(diffAlgorithm));
+			}
+		}
+		return blamer;
+	}
+
+	/**
+	 * Returns the (left, right) blob ids of the given path in the given
+	 * scenario, or {@code null} in case the path is in none of them. A side
+	 * without the file is represented by {@code ObjectId.zeroId()}.
+	 * 
+	 * @param scenario
+	 * @param path
+	 *            - the path relative to the repository root.
+	 * @return
+	 * @throws IOException
+	 */
+	private ObjectId[] getSideBlobs(MergeScenario scenario, String path) throws IOException {
+		Repository repository = getProject().getRepository();
+		try (RevWalk walk = new RevWalk(repository)) {
+			RevTree left = walk.parseCommit(scenario.getLeft()).getTree();
+			RevTree right = walk.parseCommit(scenario.getRight()).getTree();
+			try (TreeWalk tw = TreeWalk.forPath(repository, path, left, right)) {
+				if (tw == null) {
+					return null;
+				}
+				return new ObjectId[] { tw.getObjectId(0), tw.getObjectId(1) };
+			}
+		}
+	}
+
 	/**
 	 * Returns the conflict chunks of a given file.
 	 * 
@@ -437,11 +1127,12 @@ public class NetworkBuilder<T> {
 	 * @param file
 	 *            - a file with conflicts
 	 */
-	private List<ConflictChunk<CommandLineBlameResult>> getConflictChunks(MergeScenario scenario, File file)
+	protected List<ConflictChunk<CommandLineBlameResult>> getConflictChunks(MergeScenario scenario, File file)
 			throws BlameException {
 		ExternalGitCommand egit = new ExternalGitCommand();
 		List<ConflictChunk<CommandLineBlameResult>> blames = null;
-		blames = egit.setMergeScenario(scenario).setDirectory(file).setType(CommandType.BLAME).call();
+		blames = egit.setMergeScenario(scenario).setDirectory(file).setType(CommandType.BLAME)
+				.setDiffAlgorithm(diffAlgorithm).call();
 		return blames;
 	}
 
@@ -452,7 +1143,7 @@ public class NetworkBuilder<T> {
 	 * @return
 	 */
 	private Map<String, List<DeveloperNode>> getDeveloperNodes(MergeScenario scenario,
-			ConflictChunk<CommandLineBlameResult> cChunk) {
+			ConflictChunk<CommandLineBlameResult> cChunk, Map<DeveloperNode, MergeCommitSide> sides) {
 
 		Map<String, List<DeveloperNode>> result = new HashMap<>();
 
@@ -460,38 +1151,39 @@ public class NetworkBuilder<T> {
 		CommandLineBlameResult leftResult = cChunk.getLeft().getResult();
 
 		result.put(scenario.getLeft().getName(),
-				extractNodes(scenario.getBase(), scenario.getLeft(), leftResult, MergeCommitSide.LEFT));
+				extractNodes(scenario.getBase(), scenario.getLeft(), leftResult, MergeCommitSide.LEFT, sides));
 		// getting nodes from the bottom part of the conflict
 		CommandLineBlameResult rightResult = cChunk.getRight().getResult();
 		result.put(scenario.getRight().getName(),
-				extractNodes(scenario.getBase(), scenario.getRight(), rightResult, MergeCommitSide.RIGHT));
+				extractNodes(scenario.getBase(), scenario.getRight(), rightResult, MergeCommitSide.RIGHT, sides));
 
 		return result;
 	}
 
 	private List<DeveloperNode> extractNodes(RevCommit base, RevCommit side, CommandLineBlameResult aResult,
-			MergeCommitSide mergeCommitSide) {
+			MergeCommitSide mergeCommitSide, Map<DeveloperNode, MergeCommitSide> sides) {
 
 		List<DeveloperNode> result = new ArrayList<>();
-		for (DeveloperNode aDev : aResult.getAuthors()) {
-			if (!getProject().getDevs().values().contains(aDev)) {
-				// if there is no such dev in the project, then add it
-				getProject().add(aDev);
-			} else {
-				// else update the reference with the project one
-				aDev = getProject().getDevByMail(aDev.getEmail());
+		BlameDictionary dictionary = aResult.getDictionary();
+		// whether each commit of the dictionary is in the range (0: unknown)
+		byte[] inRange = new byte[dictionary.getCommitCount()];
+		for (int row = 0; row < aResult.size(); row++) {
+			int author = aResult.getAuthorIndex(row);
+			int commit = aResult.getCommitIndex(row);
+			if (author < 0 || commit < 0) {
+				continue;
 			}
-
-			if (!result.contains(aDev)) {
-				for (int line : aResult.getLineAuthorsMap().keySet()) {
-					String lineCommit = aResult.getLineCommitMap().get(line);
-
-					if (aResult.getLineAuthorsMap().get(line).equals(aDev) && inRange(lineCommit, base, side)) {
-						aDev.setSideCommitComesFrom(mergeCommitSide);
-						result.add(aDev);
-						break;
-					}
-				}
+			// adds the dev to the project or gets the project's reference
+			DeveloperNode aDev = getProject().intern(dictionary.getAuthor(author));
+			if (result.contains(aDev)) {
+				continue;
+			}
+			if (inRange[commit] == 0) {
+				inRange[commit] = inRange(dictionary.getCommit(commit), base, side) ? (byte) 1 : (byte) -1;
+			}
+			if (inRange[commit] > 0) {
+				sides.put(aDev, mergeCommitSide);
+				result.add(aDev);
 			}
 		}
 
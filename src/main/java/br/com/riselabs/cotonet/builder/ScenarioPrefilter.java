@@ -0,0 +1,213 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Estimates the work of crawling a repository without merging nor blaming
+ * anything: for each merge of the history window, the trees of its merge
+ * base and of its parents are diffed, and the paths (in the file scope)
+ * changed differently on both sides are the ones that may conflict. The
+ * merges with some of them are the candidates, i.e., the ones that may need
+ * to be blamed, and the sizes of both sides of those paths are the projected
+ * blame volume.
+ * 
+ * It is an upper bound: the sides may change disjoint lines of a file, and
+ * the merge of a criss-cross is estimated from its first merge base. The
+ * subtrees equal on the three trees are not walked, and the sizes are read
+ * from the object headers, so no blob is loaded. Nothing is written to the
+ * repository.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ScenarioPrefilter {
+
+	private static final int BASE = 0;
+	private static final int LEFT = 1;
+	private static final int RIGHT = 2;
+
+	private Repository repo;
+	private HistoryWindow window = new HistoryWindow();
+	private FileScope scope = new FileScope();
+
+	private long merges;
+	private long candidates;
+	private long overlappingPaths;
+	private long blameBytes;
+
+	public ScenarioPrefilter() {
+		this(null);
+	}
+
+	public ScenarioPrefilter(Repository aRepository) {
+		this.repo = aRepository;
+	}
+
+	public ScenarioPrefilter setRepository(Repository aRepository) {
+		this.repo = aRepository;
+		return this;
+	}
+
+	/**
+	 * Sets the part of the history whose merges are estimated (see
+	 * {@code NetworkBuilder#setHistoryWindow(HistoryWindow)}).
+	 * 
+	 * @param aWindow
+	 */
+	public ScenarioPrefilter setHistoryWindow(HistoryWindow aWindow) {
+		this.window = (aWindow == null) ? new HistoryWindow() : aWindow;
+		return this;
+	}
+
+	/**
+	 * Sets the files that may conflict (see
+	 * {@code NetworkBuilder#setFileScope(FileScope)}).
+	 * 
+	 * @param aScope
+	 */
+	public ScenarioPrefilter setFileScope(FileScope aScope) {
+		this.scope = (aScope == null) ? new FileScope() : aScope;
+		return this;
+	}
+
+	/**
+	 * @return the number of merges of the history window.
+	 */
+	public long getMerges() {
+		return merges;
+	}
+
+	/**
+	 * @return the number of merges whose sides changed some path in common.
+	 */
+	public long getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return the number of paths changed on both sides, summed over the
+	 *         merges.
+	 */
+	public long getOverlappingPaths() {
+		return overlappingPaths;
+	}
+
+	/**
+	 * @return the size (in bytes) of both sides of the paths changed on both
+	 *         sides, summed over the merges.
+	 */
+	public long getBlameBytes() {
+		return blameBytes;
+	}
+
+	/**
+	 * Estimates the merges of the repository. It does nothing when the
+	 * repository was not set.
+	 * 
+	 * @return this prefilter, with the estimates.
+	 * @throws IOException
+	 */
+	public ScenarioPrefilter call() throws IOException {
+		merges = 0;
+		candidates = 0;
+		overlappingPaths = 0;
+		blameBytes = 0;
+		if (repo == null) {
+			return this;
+		}
+		List<RevCommit> mergeCommits = window.findMerges(repo);
+		merges = mergeCommits.size();
+		try (RevWalk walk = new RevWalk(repo); ObjectReader reader = repo.newObjectReader()) {
+			walk.setRetainBody(false);
+			for (RevCommit merge : mergeCommits) {
+				RevCommit left = walk.parseCommit(merge.getParent(0));
+				RevCommit right = walk.parseCommit(merge.getParent(1));
+				walk.reset();
+				walk.setRevFilter(RevFilter.MERGE_BASE);
+				walk.markStart(left);
+				walk.markStart(right);
+				RevCommit base = walk.next();
+				if (base == null) {
+					// the builder takes the merges without a base as clean
+					continue;
+				}
+				long paths = diff(reader, base.getTree(), left.getTree(), right.getTree());
+				if (paths > 0) {
+					candidates++;
+					overlappingPaths += paths;
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Walks the three trees, adding the sizes of the paths changed
+	 * differently on both sides to the blame volume.
+	 * 
+	 * @return the number of those paths.
+	 */
+	private long diff(ObjectReader reader, RevTree base, RevTree left, RevTree right) throws IOException {
+		long paths = 0;
+		try (TreeWalk walker = new TreeWalk(reader)) {
+			walker.addTree(base);
+			walker.addTree(left);
+			walker.addTree(right);
+			walker.setRecursive(true);
+			TreeFilter filter = scope.toMergeFilter();
+			walker.setFilter(
+					(filter == TreeFilter.ALL) ? TreeFilter.ANY_DIFF : AndTreeFilter.create(TreeFilter.ANY_DIFF, filter));
+			while (walker.next()) {
+				if (walker.idEqual(BASE, LEFT) || walker.idEqual(BASE, RIGHT) || walker.idEqual(LEFT, RIGHT)) {
+					continue;
+				}
+				paths++;
+				blameBytes += getSize(walker, LEFT) + getSize(walker, RIGHT);
+			}
+		}
+		return paths;
+	}
+
+	private static long getSize(TreeWalk walker, int nth) throws IOException {
+		int mode = walker.getRawMode(nth);
+		if (!FileMode.REGULAR_FILE.equals(mode) && !FileMode.EXECUTABLE_FILE.equals(mode)
+				&& !FileMode.SYMLINK.equals(mode)) {
+			// missing on that side, or a submodule
+			return 0;
+		}
+		return walker.getObjectReader().getObjectSize(walker.getObjectId(nth), Constants.OBJ_BLOB);
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
+import br.com.riselabs.cotonet.model.beans.DeveloperEdge;
+import br.com.riselabs.cotonet.model.beans.DeveloperNode;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.util.Directories;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Store of the results of the merge scenarios, keyed by the id of the merge
+ * commit and the network type. The same merge commit is found in every fork
+ * of the repository it was made in, so its merge and blame are done only
+ * once. The other projects link to the stored result, i.e., they get a copy
+ * of the network with their own developers, marked as shared so the
+ * database links their scenarios to the network already saved instead of
+ * saving it again.
+ * 
+ * Each result is a file named after the merge commit (as the loose objects
+ * of git), so the store is shared by the projects, the runs, and the
+ * processes using the same directory. The results built with other than the
+ * default settings (e.g., a {@code FileScope}) are kept apart. The scenarios
+ * skipped for exceeding a budget, or with files that could not be blamed,
+ * are not stored.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum ScenarioResultStore {
+	// Singleton implementation
+	INSTANCE;
+
+	public static final String DIR_NAME = "scenario-results";
+
+	private static final String CLEAN = "clean";
+	private static final String CONFLICTING = "conflicting";
+	/** how the paths of the edges were written, i.e., relative to which root */
+	private static final char CANONICAL = 'C';
+	private static final char ABSOLUTE = 'A';
+	private static final char VERBATIM = 'V';
+
+	private volatile boolean enabled = true;
+	private volatile File dir;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public synchronized File getDirectory() {
+		if (dir == null) {
+			dir = new File(Directories.getStatsDir(), DIR_NAME);
+		}
+		return dir;
+	}
+
+	public synchronized void setDirectory(File aDir) {
+		this.dir = aDir;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private File getFile(ObjectId merge, NetworkType type, String variant) {
+		String name = merge.getName();
+		String kind = (variant == null) ? type.name() : type.name() + "-" + variant;
+		return new File(new File(new File(getDirectory(), kind), name.substring(0, 2)), name.substring(2));
+	}
+
+	/**
+	 * Returns the stored result of the given merge commit, or {@code null} in
+	 * case there is none.
+	 * 
+	 * @param merge
+	 * @param type
+	 * @return
+	 */
+	public Result get(ObjectId merge, NetworkType type) {
+		return get(merge, type, null);
+	}
+
+	/**
+	 * Returns the stored result of the given merge commit built with the
+	 * given variant of the settings (e.g., a subset of the files), or
+	 * {@code null} in case there is none.
+	 * 
+	 * @param merge
+	 * @param type
+	 * @param variant
+	 *            - the variant, or {@code null} for the default settings.
+	 * @return
+	 */
+	public Result get(ObjectId merge, NetworkType type, String variant) {
+		if (!enabled) {
+			return null;
+		}
+		File file = getFile(merge, type, variant);
+		if (!file.exists()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		try {
+			Result result = Result.parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+			if (result != null) {
+				hits.incrementAndGet();
+				return result;
+			}
+		} catch (IOException e) {
+			Logger.log("Could not read the scenario result " + file + ": " + e.getMessage());
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores that the given merge commit has no conflicts (or no merge base).
+	 */
+	public void putClean(ObjectId merge, NetworkType type) {
+		putClean(merge, type, null);
+	}
+
+	public void putClean(ObjectId merge, NetworkType type, String variant) {
+		if (enabled) {
+			write(getFile(merge, type, variant), Result.clean().format());
+		}
+	}
+
+	/**
+	 * Stores the network of the given (conflicting) scenario.
+	 * 
+	 * @param scenario
+	 * @param type
+	 * @param network
+	 *            - the network, or {@code null} when the scenario has no
+	 *            edges.
+	 * @param repository
+	 *            - the repository the paths of the edges are relative to.
+	 */
+	public void put(MergeScenario scenario, NetworkType type, ConflictBasedNetwork network, Repository repository) {
+		put(scenario, type, null, network, repository);
+	}
+
+	/**
+	 * Stores the network of the given (conflicting) scenario built with the
+	 * given variant of the settings (see
+	 * {@code #get(ObjectId, NetworkType, String)}).
+	 */
+	public void put(MergeScenario scenario, NetworkType type, String variant, ConflictBasedNetwork network,
+			Repository repository) {
+		if (enabled) {
+			write(getFile(scenario.getMergeId(), type, variant),
+					Result.of(scenario.getBaseId(), network, getRoot(repository)).format());
+		}
+	}
+
+	/**
+	 * Writes the file at once, so the readers never see it half written.
+	 */
+	private static void write(File file, List<String> lines) {
+		try {
+			file.getParentFile().mkdirs();
+			File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Logger.log("Could not store the scenario result " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static File getRoot(Repository repository) {
+		return repository.isBare() ? repository.getDirectory() : repository.getWorkTree();
+	}
+
+	/**
+	 * The stored result of a merge commit.
+	 */
+	public static class Result {
+		private boolean conflicting;
+		private ObjectId base;
+		private final List<String[]> devs = new ArrayList<String[]>();
+		private final List<Integer> nodes = new ArrayList<Integer>();
+		private final List<String[]> edges = new ArrayList<String[]>();
+
+		static Result clean() {
+			return new Result();
+		}
+
+		static Result of(ObjectId base, ConflictBasedNetwork network, File root) {
+			Result result = new Result();
+			result.conflicting = true;
+			result.base = base;
+			if (network == null) {
+				return result;
+			}
+			Map<DeveloperNode, Integer> index = new IdentityHashMap<DeveloperNode, Integer>();
+			for (DeveloperNode node : network.getNodes()) {
+				result.nodes.add(result.indexOf(node, index));
+			}
+			for (DeveloperEdge edge : network.getEdges()) {
+				result.edges.add(new String[] { String.valueOf(result.indexOf(edge.getDevA(), index)),
+						String.valueOf(result.indexOf(edge.getDevB(), index)), String.valueOf(edge.getWeight()),
+						edge.getChunkRange(), relativize(edge.getFilepath(), root) });
+			}
+			return result;
+		}
+
+		private int indexOf(DeveloperNode node, Map<DeveloperNode, Integer> index) {
+			Integer i = index.get(node);
+			if (i == null) {
+				i = devs.size();
+				index.put(node, i);
+				devs.add(new String[] { node.getName(), node.getEmail() });
+			}
+			return i;
+		}
+
+		/**
+		 * @return whether the merge commit had conflicts.
+		 */
+		public boolean isConflicting() {
+			return conflicting;
+		}
+
+		/**
+		 * @return the merge base of the scenario, or {@code null} when it
+		 *         had no conflicts.
+		 */
+		public ObjectId getBase() {
+			return base;
+		}
+
+		/**
+		 * Creates the network of the given project for the given scenario,
+		 * with the developers of the project (they are added to it when
+		 * needed).
+		 * 
+		 * @return the network, or {@code null} when the scenario has no
+		 *         edges.
+		 */
+		public ConflictBasedNetwork toNetwork(Project project, MergeScenario scenario, NetworkType type) {
+			if (!conflicting || edges.isEmpty()) {
+				return null;
+			}
+			File root = getRoot(project.getRepository());
+			List<DeveloperNode> known = new ArrayList<DeveloperNode>();
+			for (String[] dev : devs) {
+				known.add(project.intern(new DeveloperNode(dev[0], dev[1])));
+			}
+			List<DeveloperNode> lNodes = new ArrayList<DeveloperNode>();
+			for (Integer i : nodes) {
+				lNodes.add(known.get(i));
+			}
+			List<DeveloperEdge> lEdges = new ArrayList<DeveloperEdge>();
+			for (String[] edge : edges) {
+				lEdges.add(new DeveloperEdge(known.get(Integer.parseInt(edge[0])), known.get(Integer.parseInt(edge[1])),
+						Integer.parseInt(edge[2]), edge[3], resolve(edge[4], root)));
+			}
+			ConflictBasedNetwork network = new ConflictBasedNetwork(project, scenario, lNodes, lEdges, type);
+			network.setShared(true);
+			return network;
+		}
+
+		List<String> format() {
+			List<String> lines = new ArrayList<String>();
+			if (!conflicting) {
+				lines.add(CLEAN);
+				return lines;
+			}
+			lines.add(CONFLICTING + "\t" + base.getName());
+			for (String[] dev : devs) {
+				lines.add("dev\t" + clean(dev[0]) + "\t" + clean(dev[1]));
+			}
+			StringBuilder sb = new StringBuilder("nodes");
+			for (Integer i : nodes) {
+				sb.append('\t').append(i);
+			}
+			lines.add(sb.toString());
+			for (String[] edge : edges) {
+				lines.add("edge\t" + edge[0] + "\t" + edge[1] + "\t" + edge[2] + "\t" + clean(edge[3]) + "\t"
+						+ clean(edge[4]));
+			}
+			return lines;
+		}
+
+		static Result parse(List<String> lines) {
+			if (lines.isEmpty()) {
+				return null;
+			}
+			String[] header = lines.get(0).split("\t", -1);
+			if (CLEAN.equals(header[0])) {
+				return clean();
+			} else if (!CONFLICTING.equals(header[0]) || header.length != 2) {
+				return null;
+			}
+			Result result = new Result();
+			result.conflicting = true;
+			result.base = ObjectId.fromString(header[1]);
+			for (String line : lines.subList(1, lines.size())) {
+				String[] fields = line.split("\t", -1);
+				if (fields[0].equals("dev") && fields.length == 3) {
+					result.devs.add(new String[] { fields[1], fields[2] });
+				} else if (fields[0].equals("nodes")) {
+					for (int i = 1; i < fields.length; i++) {
+						result.nodes.add(Integer.parseInt(fields[i]));
+					}
+				} else if (fields[0].equals("edge") && fields.length == 6) {
+					result.edges.add(new String[] { fields[1], fields[2], fields[3], fields[4], fields[5] });
+				} else {
+					// written by an incompatible version
+					return null;
+				}
+			}
+			return result;
+		}
+
+		private static String clean(String value) {
+			return (value == null) ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+		}
+
+		/**
+		 * Makes the given path relative to the root of the repository, so it
+		 * can be resolved against the root of other projects.
+		 */
+		private static String relativize(String path, File root) {
+			if (path == null) {
+				return VERBATIM + "";
+			}
+			try {
+				String canonical = root.getCanonicalPath() + File.separator;
+				if (path.startsWith(canonical)) {
+					return CANONICAL + path.substring(canonical.length());
+				}
+			} catch (IOException e) {
+				// tries the absolute one
+			}
+			String absolute = root.getAbsolutePath() + File.separator;
+			if (path.startsWith(absolute)) {
+				return ABSOLUTE + path.substring(absolute.length());
+			}
+			return VERBATIM + path;
+		}
+
+		private static String resolve(String stored, File root) {
+			String path = stored.substring(1);
+			switch (stored.charAt(0)) {
+			case CANONICAL:
+				try {
+					return new File(root.getCanonicalFile(), path).getPath();
+				} catch (IOException e) {
+					return new File(root.getAbsoluteFile(), path).getPath();
+				}
+			case ABSOLUTE:
+				return new File(root.getAbsoluteFile(), path).getPath();
+			default:
+				return path;
+			}
+		}
+	}
+}
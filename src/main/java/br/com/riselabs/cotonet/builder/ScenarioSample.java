@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import br.com.riselabs.cotonet.model.enums.SamplingMode;
+
+/**
+ * A random sample of the merge scenarios of a repository, for exploratory
+ * runs on huge histories. The merge commits are replayed in a random order
+ * (see {@code SamplingMode}) until the given number of conflicting scenarios
+ * is found, so the cost is proportional to the sample rather than to the
+ * history.
+ * 
+ * The order depends only on the seed and on the set of merge commits (not on
+ * the order they were found), so a sample is reproducible as long as the
+ * window of the history (see {@code HistoryWindow}) is the same. The
+ * parameters of the sample are recorded with the project (see
+ * {@code Project#getSampling()}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ScenarioSample {
+
+	public static final int DEFAULT_STRATA = 10;
+
+	private SamplingMode mode = SamplingMode.UNIFORM;
+	private long seed;
+	private int maxConflicting = Integer.MAX_VALUE;
+	private int strata = DEFAULT_STRATA;
+
+	public SamplingMode getMode() {
+		return mode;
+	}
+
+	public ScenarioSample setMode(SamplingMode aMode) {
+		this.mode = aMode;
+		return this;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public ScenarioSample setSeed(long aSeed) {
+		this.seed = aSeed;
+		return this;
+	}
+
+	public int getMaxConflicting() {
+		return maxConflicting;
+	}
+
+	/**
+	 * Sets how many conflicting scenarios are enough. The sampling stops once
+	 * they are found. There is no limit by default.
+	 * 
+	 * @param max
+	 */
+	public ScenarioSample setMaxConflicting(int max) {
+		this.maxConflicting = Math.max(1, max);
+		return this;
+	}
+
+	public int getStrata() {
+		return strata;
+	}
+
+	/**
+	 * Sets in how many periods of the same length the history is split when
+	 * the mode is {@code SamplingMode.STRATIFIED}.
+	 * 
+	 * @param count
+	 */
+	public ScenarioSample setStrata(int count) {
+		this.strata = Math.max(1, count);
+		return this;
+	}
+
+	/**
+	 * Returns the given merge commits in the order they are sampled.
+	 * 
+	 * @param merges
+	 * @return
+	 */
+	public List<RevCommit> order(List<RevCommit> merges) {
+		List<RevCommit> population = new ArrayList<RevCommit>(merges);
+		// the order the commits were found must not change the sample
+		Collections.sort(population);
+		Random random = new Random(seed);
+		if (mode == SamplingMode.UNIFORM || population.size() < 2) {
+			Collections.shuffle(population, random);
+			return population;
+		}
+		int oldest = Integer.MAX_VALUE;
+		int newest = Integer.MIN_VALUE;
+		for (RevCommit commit : population) {
+			oldest = Math.min(oldest, commit.getCommitTime());
+			newest = Math.max(newest, commit.getCommitTime());
+		}
+		List<List<RevCommit>> periods = new ArrayList<List<RevCommit>>();
+		for (int i = 0; i < strata; i++) {
+			periods.add(new ArrayList<RevCommit>());
+		}
+		double length = Math.max(1, (long) newest - oldest + 1) / (double) strata;
+		for (RevCommit commit : population) {
+			periods.get((int) Math.min(strata - 1, (commit.getCommitTime() - oldest) / length)).add(commit);
+		}
+		// the i-th commit of a period of n commits comes at (i + offset) / n,
+		// so any prefix takes from each period in proportion to its size.
+		List<Draw> draws = new ArrayList<Draw>();
+		for (int p = 0; p < strata; p++) {
+			List<RevCommit> period = periods.get(p);
+			Collections.shuffle(period, random);
+			double offset = random.nextDouble();
+			for (int i = 0; i < period.size(); i++) {
+				draws.add(new Draw((i + offset) / period.size(), p, period.get(i)));
+			}
+		}
+		Collections.sort(draws, new Comparator<Draw>() {
+			@Override
+			public int compare(Draw a, Draw b) {
+				int byKey = Double.compare(a.key, b.key);
+				return (byKey != 0) ? byKey : Integer.compare(a.period, b.period);
+			}
+		});
+		List<RevCommit> result = new ArrayList<RevCommit>();
+		for (Draw draw : draws) {
+			result.add(draw.commit);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the sample in the format read by {@code #parse(String)}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("mode=").append(mode.name().toLowerCase());
+		sb.append(",seed=").append(seed);
+		if (maxConflicting != Integer.MAX_VALUE) {
+			sb.append(",conflicts=").append(maxConflicting);
+		}
+		if (mode == SamplingMode.STRATIFIED) {
+			sb.append(",strata=").append(strata);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parses a sample, e.g., "mode=stratified,seed=42,conflicts=200,strata=12".
+	 * The mode is uniform, the seed is 0, and the number of conflicting
+	 * scenarios is unlimited by default.
+	 * 
+	 * @param spec
+	 * @return the sample, or {@code null} when the spec is {@code null}.
+	 * @throws IllegalArgumentException
+	 *             - if the spec is malformed or names an unknown entry.
+	 */
+	public static ScenarioSample parse(String spec) {
+		if (spec == null) {
+			return null;
+		}
+		ScenarioSample sample = new ScenarioSample();
+		for (String entry : spec.split(",")) {
+			if (entry.trim().isEmpty()) {
+				continue;
+			}
+			String[] pair = entry.split("=");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Malformed sample: " + entry);
+			}
+			String value = pair[1].trim();
+			switch (pair[0].trim()) {
+			case "mode":
+				sample.setMode(SamplingMode.fromName(value));
+				break;
+			case "seed":
+				sample.setSeed(Long.parseLong(value));
+				break;
+			case "conflicts":
+				sample.setMaxConflicting(Integer.parseInt(value));
+				break;
+			case "strata":
+				sample.setStrata(Integer.parseInt(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown sample entry: " + pair[0].trim());
+			}
+		}
+		return sample;
+	}
+
+	private static class Draw {
+		private final double key;
+		private final int period;
+		private final RevCommit commit;
+
+		Draw(double key, int period, RevCommit commit) {
+			this.key = key;
+			this.period = period;
+			this.commit = commit;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.exceptions.BudgetExceededException;
+import br.com.riselabs.cotonet.util.Directories;
+import br.com.riselabs.cotonet.util.IOHandler;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * The record of the merge scenarios skipped for exceeding a budget (see
+ * {@code BuildBudget}). Each skip is a JSON line, so the skipped scenarios
+ * of a run can be queried (and retried) later.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum SkipLog {
+	// Singleton implementation
+	INSTANCE;
+
+	public static final String FILE_NAME = "skipped-scenarios.jsonl";
+
+	private File file;
+	private long count;
+
+	public synchronized File getFile() {
+		if (file == null) {
+			file = new File(Directories.getLogDir(), FILE_NAME);
+		}
+		return file;
+	}
+
+	public synchronized void setFile(File aFile) {
+		this.file = aFile;
+	}
+
+	/**
+	 * @return the number of scenarios skipped in this execution.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Records that the given scenario was skipped.
+	 * 
+	 * @param project
+	 * @param scenario
+	 * @param cause
+	 *            - the budget exceeded
+	 * @param elapsedMillis
+	 *            - the time spent on the scenario until it was skipped
+	 */
+	public synchronized void record(Project project, MergeScenario scenario, BudgetExceededException cause,
+			long elapsedMillis) {
+		count++;
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"project\": \"").append(escape(project.getName())).append('"');
+		sb.append(", \"url\": \"").append(escape(project.getUrl())).append('"');
+		sb.append(", \"merge\": \"").append(getName(scenario.getMergeId())).append('"');
+		sb.append(", \"base\": \"").append(getName(scenario.getBaseId())).append('"');
+		sb.append(", \"left\": \"").append(getName(scenario.getLeftId())).append('"');
+		sb.append(", \"right\": \"").append(getName(scenario.getRightId())).append('"');
+		sb.append(", \"budget\": \"").append(cause.getType()).append('"');
+		sb.append(", \"limit\": ").append(cause.getLimit());
+		sb.append(", \"actual\": ").append(cause.getActual());
+		sb.append(", \"elapsedMillis\": ").append(elapsedMillis);
+		sb.append(", \"time\": ").append(System.currentTimeMillis()).append('}');
+		try {
+			new IOHandler().appendLineToFile(getFile(), sb.toString());
+		} catch (IOException e) {
+			Logger.log("Could not record the skipped scenario: " + e.getMessage());
+		}
+	}
+
+	private static String getName(ObjectId id) {
+		return (id == null) ? "" : id.getName();
+	}
+
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
@@ -31,11 +31,12 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
 
 import br.com.riselabs.cotonet.model.beans.Blame;
+import br.com.riselabs.cotonet.model.beans.BlameDictionary;
 import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
 import br.com.riselabs.cotonet.model.beans.ConflictChunk;
-import br.com.riselabs.cotonet.model.beans.DeveloperNode;
 import br.com.riselabs.cotonet.model.beans.MergeScenario;
 import br.com.riselabs.cotonet.model.exceptions.BlameException;
 import br.com.riselabs.cotonet.util.Logger;
@@ -67,6 +68,8 @@ public class ExternalGitCommand {
 	private CommandType type;
 	private MergeScenario scenario;
 	private File file;
+	private boolean keepContents;
+	private SupportedAlgorithm algorithm;
 
 	public ExternalGitCommand() {
 	}
@@ -86,6 +89,28 @@ public class ExternalGitCommand {
 		return this;
 	}
 
+	/**
+	 * Sets whether the blame results keep the content of the lines. They do
+	 * not by default.
+	 * 
+	 * @param keep
+	 */
+	public ExternalGitCommand setKeepContents(boolean keep) {
+		this.keepContents = keep;
+		return this;
+	}
+
+	/**
+	 * Sets the diff algorithm of the blame. When not set, it is the one of the
+	 * git configuration (i.e., myers by default).
+	 * 
+	 * @param anAlgorithm
+	 */
+	public ExternalGitCommand setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+		this.algorithm = anAlgorithm;
+		return this;
+	}
+
 	/**
 	 * OBS: this method returns {@code null} when calling '
 	 * {@code git reset --hard}'.
@@ -112,6 +137,9 @@ public class ExternalGitCommand {
 			case BLAME:
 			default:
 				cmd = "git blame -p --line-porcelain";
+				if (algorithm != null) {
+					cmd += " --diff-algorithm=" + algorithm.name().toLowerCase();
+				}
 				env = new String[1];
 				// we need this to disable the pager
 				env[0] = "GIT_PAGER=cat";
@@ -130,8 +158,10 @@ public class ExternalGitCommand {
 				ConflictChunk<CommandLineBlameResult> conflict = new ConflictChunk<CommandLineBlameResult>(
 						file.getCanonicalPath());
 
+				// the chunks of the file share the same authors and commits
+				BlameDictionary dictionary = new BlameDictionary(keepContents);
 				CommandLineBlameResult bResult;
-				bResult = new CommandLineBlameResult(file.getCanonicalPath());
+				bResult = new CommandLineBlameResult(file.getCanonicalPath(), dictionary);
 				Blame<CommandLineBlameResult> cBlame;
 				cBlame = new Blame<CommandLineBlameResult>(scenario.getLeft(),
 						bResult);
@@ -162,7 +192,7 @@ public class ExternalGitCommand {
 						conflict.setBase(scenario.getBase());
 						conflict.setLeft(cBlame);
 						bResult = new CommandLineBlameResult(
-								file.getCanonicalPath());
+								file.getCanonicalPath(), dictionary);
 						cBlame = new Blame<CommandLineBlameResult>(
 								scenario.getRight(), bResult);
 						continue;
@@ -173,7 +203,7 @@ public class ExternalGitCommand {
 						addBlame = false;
 						
 						bResult = new CommandLineBlameResult(
-								file.getCanonicalPath());
+								file.getCanonicalPath(), dictionary);
 						cBlame = new Blame<CommandLineBlameResult>(
 								scenario.getLeft(), bResult);
 						
@@ -188,9 +218,8 @@ public class ExternalGitCommand {
 						contentLine = data.get(PKeys.content);
 						String name = data.get(PKeys.authorname);
 						String email = data.get(PKeys.authormail); 
-						DeveloperNode dev = new DeveloperNode(name, email);
 						conflict.setLine(linenumber);
-						bResult.addLineAuthor(linenumber, dev);
+						bResult.addLineAuthor(linenumber, name, email);
 						bResult.addLineContent(linenumber, contentLine);
 						bResult.addLineCommit(linenumber, commit);
 						continue;
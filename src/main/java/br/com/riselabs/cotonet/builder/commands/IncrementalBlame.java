@@ -0,0 +1,515 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder.commands;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * This class blames files incrementally along the history of a repository.
+ * It keeps the line attribution of the last blamed versions of each file. To
+ * blame a file at a descendant commit, it replays the diffs of the commits
+ * that changed the file since the kept version: unchanged lines keep their
+ * attribution and changed lines are attributed to the commit that changed
+ * them. When the history of the file in between is not linear (e.g., it has
+ * merges changing the file), the file is blamed from scratch. Moreover, the
+ * lines are only blamed when requested, so blaming the chunks of a hot file
+ * across consecutive merge scenarios is nearly free.
+ * <p>
+ * An engine may be shared by the scenarios built in parallel: the versions of
+ * each file are locked on their own, and the lines missing an attribution are
+ * blamed without holding any of the engine's locks.
+ *
+ * @author Alcemir R. Santos
+ */
+public class IncrementalBlame {
+
+	/**
+	 * tolerance (in seconds) for clock skew when checking whether a commit is
+	 * an ancestor of another.
+	 */
+	private static final int CLOCK_SKEW = 24 * 60 * 60;
+
+	private static final int DEFAULT_MAX_FILES = 1024;
+
+	private static final int DEFAULT_VERSIONS_PER_FILE = 4;
+
+	private Repository repo;
+	private volatile DiffAlgorithm algorithm = new HistogramDiff();
+	private volatile int maxFiles = DEFAULT_MAX_FILES;
+	private volatile int versionsPerFile = DEFAULT_VERSIONS_PER_FILE;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong derived = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/** the kept versions of the files, guarded by itself */
+	private final Map<String, FileHistory> states = new LinkedHashMap<String, FileHistory>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FileHistory> eldest) {
+			return size() > maxFiles;
+		}
+	};
+
+	public IncrementalBlame(Repository aRepository) {
+		this.repo = aRepository;
+	}
+
+	public Repository getRepository() {
+		return repo;
+	}
+
+	/**
+	 * Sets the algorithm of the diffs used both to blame the files from
+	 * scratch and to replay their changes. It is the histogram diff by
+	 * default.
+	 * 
+	 * @param anAlgorithm
+	 */
+	public IncrementalBlame setDiffAlgorithm(DiffAlgorithm anAlgorithm) {
+		this.algorithm = anAlgorithm;
+		return this;
+	}
+
+	public IncrementalBlame setMaxFiles(int max) {
+		this.maxFiles = max;
+		return this;
+	}
+
+	public IncrementalBlame setVersionsPerFile(int max) {
+		this.versionsPerFile = max;
+		return this;
+	}
+
+	/**
+	 * Blames the lines {@code [begin, end)} (0-based) of the file at the given
+	 * commit.
+	 *
+	 * @param path
+	 *            - the path of the file relative to the repository root.
+	 * @param commit
+	 * @param begin
+	 * @param end
+	 * @return - the blame of the file, or {@code null} in case the file does
+	 *         not exist in the commit.
+	 * @throws IOException
+	 */
+	public FileBlame blame(String path, RevCommit commit, int begin, int end) throws IOException {
+		FileHistory history = getHistory(path);
+		FileBlame state;
+		lock(history.lock);
+		try {
+			state = getState(history.versions, path, commit);
+		} finally {
+			history.lock.unlock();
+		}
+		if (state != null) {
+			state.compute(repo, algorithm, begin, end);
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the number of blames answered by an already kept version.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of blames derived from a kept version of an ancestor.
+	 */
+	public long getDerived() {
+		return derived.get();
+	}
+
+	/**
+	 * Returns the number of blames computed from scratch.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private FileHistory getHistory(String path) {
+		synchronized (states) {
+			FileHistory history = states.get(path);
+			if (history == null) {
+				history = new FileHistory();
+				states.put(path, history);
+			}
+			return history;
+		}
+	}
+
+	/**
+	 * Acquires the given lock. In a fork-join pool, it waits as a managed
+	 * blocker, so the pool may start another worker in the meantime.
+	 */
+	private static void lock(ReentrantLock lock) throws InterruptedIOException {
+		if (lock.tryLock()) {
+			return;
+		}
+		if (!ForkJoinTask.inForkJoinPool()) {
+			lock.lock();
+			return;
+		}
+		try {
+			ForkJoinPool.managedBlock(new LockBlocker(lock));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the blame of a file.");
+		}
+	}
+
+	/**
+	 * Finds (or creates) the version of the file at the given commit. The
+	 * caller holds the lock of the versions.
+	 */
+	private FileBlame getState(LinkedList<FileBlame> versions, String path, RevCommit commit) throws IOException {
+		for (Iterator<FileBlame> i = versions.iterator(); i.hasNext();) {
+			FileBlame version = i.next();
+			if (version.commit.equals(commit)) {
+				i.remove();
+				versions.addFirst(version);
+				hits.incrementAndGet();
+				return version;
+			}
+		}
+
+		ObjectId blob = getBlob(path, commit);
+		if (blob == null) {
+			return null;
+		}
+		FileBlame state = new FileBlame(path, commit, blob, getContents(blob));
+
+		boolean isDerived = false;
+		for (FileBlame version : versions) {
+			if (isAncestor(version.commit, commit) && derive(state, version)) {
+				isDerived = true;
+				break;
+			}
+		}
+		if (isDerived) {
+			derived.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		versions.addFirst(state);
+		while (versions.size() > versionsPerFile) {
+			versions.removeLast();
+		}
+		return state;
+	}
+
+	private ObjectId getBlob(String path, RevCommit commit) throws IOException {
+		try (RevWalk walk = new RevWalk(repo)) {
+			return getBlob(walk, path, commit);
+		}
+	}
+
+	private ObjectId getBlob(RevWalk walk, String path, RevCommit commit) throws IOException {
+		RevCommit c = walk.parseCommit(commit);
+		try (TreeWalk tw = TreeWalk.forPath(repo, path, c.getTree())) {
+			return (tw == null) ? null : tw.getObjectId(0);
+		}
+	}
+
+	private RawText getContents(ObjectId blob) throws IOException {
+		return new RawText(repo.open(blob, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Derives the attribution of {@code state} from the one of the given
+	 * ancestor version by replaying the commits that changed the file in
+	 * between.
+	 * 
+	 * @return - {@code false} when the history of the file in between is not
+	 *         linear.
+	 */
+	private boolean derive(FileBlame state, FileBlame ancestor) throws IOException {
+		if (ancestor.blob.equals(state.blob) && ancestor.commit.equals(state.commit)) {
+			state.copy(ancestor, 0, 0, state.size());
+			return true;
+		}
+		List<RevCommit> changes = new ArrayList<RevCommit>();
+		try (RevWalk walk = new RevWalk(repo)) {
+			walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(state.path), TreeFilter.ANY_DIFF));
+			walk.sort(RevSort.TOPO);
+			walk.sort(RevSort.REVERSE, true);
+			walk.markStart(walk.parseCommit(state.commit));
+			walk.markUninteresting(walk.parseCommit(ancestor.commit));
+			for (RevCommit cur; (cur = walk.next()) != null;) {
+				if (cur.getParentCount() != 1) {
+					return false;
+				}
+				changes.add(cur);
+			}
+
+			FileBlame current = ancestor;
+			for (RevCommit change : changes) {
+				if (!current.blob.equals(getBlob(walk, state.path, change.getParent(0)))) {
+					return false;
+				}
+				ObjectId blob = getBlob(walk, state.path, change);
+				if (blob == null) {
+					return false;
+				}
+				FileBlame next = new FileBlame(state.path, change, blob, getContents(blob));
+				next.derive(current, change, algorithm);
+				current = next;
+			}
+			if (!current.blob.equals(state.blob)) {
+				return false;
+			}
+			state.copy(current, 0, 0, state.size());
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether {@code ancestor} is reachable from {@code commit}. The
+	 * walk stops as soon as it goes past the commit time of the ancestor.
+	 */
+	private boolean isAncestor(AnyObjectId ancestor, AnyObjectId commit) throws IOException {
+		try (RevWalk walk = new RevWalk(repo)) {
+			RevCommit a = walk.parseCommit(ancestor);
+			RevCommit c = walk.parseCommit(commit);
+			if (a.getCommitTime() > c.getCommitTime() + CLOCK_SKEW) {
+				return false;
+			}
+			walk.setRevFilter(CommitTimeRevFilter.after((a.getCommitTime() - CLOCK_SKEW) * 1000L));
+			walk.markStart(c);
+			for (RevCommit cur; (cur = walk.next()) != null;) {
+				if (cur.equals(a)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The kept versions of a file, most recently used first.
+	 */
+	private static final class FileHistory {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedList<FileBlame> versions = new LinkedList<FileBlame>();
+	}
+
+	private static final class LockBlocker implements ForkJoinPool.ManagedBlocker {
+		private final ReentrantLock lock;
+		private boolean hasLock;
+
+		LockBlocker(ReentrantLock lock) {
+			this.lock = lock;
+		}
+
+		@Override
+		public boolean block() {
+			if (!hasLock) {
+				lock.lock();
+				hasLock = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return hasLock || (hasLock = lock.tryLock());
+		}
+	}
+
+	/**
+	 * The line attribution of a file at a given commit. Lines not blamed yet
+	 * have no source data. The attribution is guarded by the instance, so a
+	 * version may be blamed and derived from concurrently.
+	 */
+	public static final class FileBlame {
+		private final String path;
+		private final ObjectId commit;
+		private final ObjectId blob;
+		private final RawText contents;
+
+		private final ObjectId[] sourceCommits;
+		private final PersonIdent[] sourceAuthors;
+		private final PersonIdent[] sourceCommitters;
+
+		FileBlame(String path, AnyObjectId commit, ObjectId blob, RawText contents) {
+			this.path = path;
+			this.commit = commit.copy();
+			this.blob = blob;
+			this.contents = contents;
+			this.sourceCommits = new ObjectId[contents.size()];
+			this.sourceAuthors = new PersonIdent[contents.size()];
+			this.sourceCommitters = new PersonIdent[contents.size()];
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public ObjectId getCommit() {
+			return commit;
+		}
+
+		public int size() {
+			return contents.size();
+		}
+
+		public synchronized boolean hasSourceData(int idx) {
+			return sourceCommits[idx] != null;
+		}
+
+		public synchronized ObjectId getSourceCommit(int idx) {
+			return sourceCommits[idx];
+		}
+
+		public synchronized PersonIdent getSourceAuthor(int idx) {
+			return sourceAuthors[idx];
+		}
+
+		public synchronized PersonIdent getSourceCommitter(int idx) {
+			return sourceCommitters[idx];
+		}
+
+		public String getString(int idx) {
+			return contents.getString(idx);
+		}
+
+		/**
+		 * Copies the attribution of the lines the parent version has in common
+		 * with this one, and attributes the other lines to the given commit.
+		 */
+		synchronized void derive(FileBlame parent, RevCommit change, DiffAlgorithm algorithm) {
+			EditList edits = algorithm.diff(RawTextComparator.DEFAULT, parent.contents, contents);
+			ObjectId changeId = change.copy();
+			PersonIdent author = change.getAuthorIdent();
+			PersonIdent committer = change.getCommitterIdent();
+			int a = 0;
+			int b = 0;
+			for (Edit e : edits) {
+				copy(parent, a, b, e.getBeginB() - b);
+				for (int idx = e.getBeginB(); idx < e.getEndB(); idx++) {
+					sourceCommits[idx] = changeId;
+					sourceAuthors[idx] = author;
+					sourceCommitters[idx] = committer;
+				}
+				a = e.getEndA();
+				b = e.getEndB();
+			}
+			copy(parent, a, b, size() - b);
+		}
+
+		synchronized void copy(FileBlame parent, int from, int to, int length) {
+			synchronized (parent) {
+				System.arraycopy(parent.sourceCommits, from, sourceCommits, to, length);
+				System.arraycopy(parent.sourceAuthors, from, sourceAuthors, to, length);
+				System.arraycopy(parent.sourceCommitters, from, sourceCommitters, to, length);
+			}
+		}
+
+		/**
+		 * Blames the lines in {@code [begin, end)} that have no source data
+		 * yet. The blame itself runs without holding the lock of this
+		 * version; the lines blamed meanwhile by other threads are kept.
+		 */
+		void compute(Repository repo, DiffAlgorithm algorithm, int begin, int end) throws IOException {
+			begin = Math.max(0, begin);
+			end = Math.min(size(), end);
+			if (begin >= end) {
+				return;
+			}
+			boolean[] missing = new boolean[end - begin];
+			boolean any = false;
+			synchronized (this) {
+				for (int idx = begin; idx < end; idx++) {
+					missing[idx - begin] = !hasSourceData(idx);
+					any |= missing[idx - begin];
+				}
+			}
+			if (!any) {
+				return;
+			}
+			try (BlameGenerator generator = new BlameGenerator(repo, path)) {
+				generator.setDiffAlgorithm(algorithm);
+				generator.push(null, commit);
+				BlameResult result = BlameResult.create(generator);
+				if (result == null) {
+					return;
+				}
+				for (int idx = begin; idx < end; idx++) {
+					if (!missing[idx - begin]) {
+						continue;
+					}
+					int last = idx;
+					while (last < end && missing[last - begin]) {
+						last++;
+					}
+					result.computeRange(idx, last);
+					synchronized (this) {
+						for (; idx < last; idx++) {
+							if (result.hasSourceData(idx) && !hasSourceData(idx)) {
+								RevCommit source = result.getSourceCommit(idx);
+								sourceCommits[idx] = source.copy();
+								sourceAuthors[idx] = result.getSourceAuthor(idx);
+								sourceCommitters[idx] = result.getSourceCommitter(idx);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+}
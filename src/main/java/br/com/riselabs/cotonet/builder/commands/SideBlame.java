@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.builder.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeChunk;
+import org.eclipse.jgit.merge.MergeResult;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import br.com.riselabs.cotonet.builder.commands.IncrementalBlame.FileBlame;
+
+import br.com.riselabs.cotonet.model.beans.Blame;
+import br.com.riselabs.cotonet.model.beans.BlameDictionary;
+import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
+import br.com.riselabs.cotonet.model.beans.ConflictChunk;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.model.exceptions.BlameException;
+
+/**
+ * This class blames each side of the conflicting chunks of a file at its own
+ * commit, i.e., the left lines at {@code scenario.getLeft()} and the right
+ * lines at {@code scenario.getRight()}. Unlike {@code ExternalGitCommand},
+ * it does not need the marker-annotated file in the working tree: the chunk
+ * coordinates come from the (in-core) merge result of the file.
+ *
+ * The line numbers of the resulting chunks are the ones the file would have
+ * in the working tree after the merge, so the chunks are interchangeable
+ * with the ones produced by {@code ExternalGitCommand}.
+ *
+ * @author Alcemir R. Santos
+ */
+public class SideBlame {
+
+	private Repository repo;
+	private MergeScenario scenario;
+	private String path;
+	private MergeResult<? extends Sequence> mergeResult;
+	private IncrementalBlame blamer;
+	private boolean keepContents;
+
+	public SideBlame() {
+		this(null);
+	}
+
+	public SideBlame(Repository aRepository) {
+		this.repo = aRepository;
+	}
+
+	public SideBlame setRepository(Repository aRepository) {
+		this.repo = aRepository;
+		return this;
+	}
+
+	public SideBlame setMergeScenario(MergeScenario aScenario) {
+		this.scenario = aScenario;
+		return this;
+	}
+
+	/**
+	 * @param filepath
+	 *            - the path of the file relative to the repository root.
+	 */
+	public SideBlame setFilePath(String filepath) {
+		this.path = filepath;
+		return this;
+	}
+
+	public SideBlame setMergeResult(MergeResult<? extends Sequence> aResult) {
+		this.mergeResult = aResult;
+		return this;
+	}
+
+	/**
+	 * Sets the engine used to blame the sides. Sharing the same engine among
+	 * the scenarios of a repository lets it reuse the attribution of the
+	 * previously blamed versions of the file. When not set, the sides are
+	 * blamed from scratch.
+	 * 
+	 * @param anEngine
+	 */
+	public SideBlame setIncrementalBlame(IncrementalBlame anEngine) {
+		this.blamer = anEngine;
+		return this;
+	}
+
+	/**
+	 * Sets whether the blame results keep the content of the lines. They do
+	 * not by default.
+	 * 
+	 * @param keep
+	 */
+	public SideBlame setKeepContents(boolean keep) {
+		this.keepContents = keep;
+		return this;
+	}
+
+	/**
+	 * Returns the conflicting chunks of the file with the blame of each side.
+	 * It returns {@code null} when the repository, the scenario, the path, or
+	 * the merge result were not set.
+	 *
+	 * @return
+	 * @throws BlameException
+	 */
+	public List<ConflictChunk<CommandLineBlameResult>> call() throws BlameException {
+		if (this.repo == null || this.scenario == null || this.path == null || this.mergeResult == null) {
+			return null;
+		}
+		String chunkPath = getChunkPath();
+		List<ConflictChunk<CommandLineBlameResult>> conflicts = new ArrayList<ConflictChunk<CommandLineBlameResult>>();
+		try {
+			RevCommit left = scenario.getLeft();
+			RevCommit right = scenario.getRight();
+			IncrementalBlame engine = (blamer == null) ? new IncrementalBlame(repo) : blamer;
+			// the chunks of the file share the same authors and commits
+			BlameDictionary dictionary = new BlameDictionary(keepContents);
+
+			// the line number in the merged file (i.e., counting the markers)
+			int line = 0;
+			ConflictChunk<CommandLineBlameResult> conflict = null;
+			for (MergeChunk chunk : mergeResult) {
+				int length = chunk.getEnd() - chunk.getBegin();
+				switch (chunk.getConflictState()) {
+				case FIRST_CONFLICTING_RANGE:
+					// the '<<<<<<<' line
+					line++;
+					conflict = new ConflictChunk<CommandLineBlameResult>(chunkPath);
+					conflict.setBase(scenario.getBase());
+					conflict.setLeft(new Blame<CommandLineBlameResult>(left,
+							blameLines(chunk, engine, left, line, conflict, dictionary, chunkPath)));
+					line += length;
+					break;
+				case NEXT_CONFLICTING_RANGE:
+					// the '=======' line
+					line++;
+					conflict.setRight(new Blame<CommandLineBlameResult>(right,
+							blameLines(chunk, engine, right, line, conflict, dictionary, chunkPath)));
+					line += length;
+					// the '>>>>>>>' line
+					line++;
+					conflict.setLine(line);
+					conflicts.add(conflict);
+					break;
+				case NO_CONFLICT:
+				default:
+					line += length;
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new BlameException(chunkPath, "IO Exception", e);
+		}
+		return conflicts;
+	}
+
+	/**
+	 * Creates the blame result of the lines of one side of a chunk.
+	 *
+	 * @param chunk
+	 *            - the side of the chunk
+	 * @param engine
+	 * @param side
+	 *            - the side's commit
+	 * @param offset
+	 *            - the line (in the merged file) before the first line of the
+	 *            chunk
+	 */
+	private CommandLineBlameResult blameLines(MergeChunk chunk, IncrementalBlame engine, RevCommit side,
+			int offset, ConflictChunk<CommandLineBlameResult> conflict, BlameDictionary dictionary, String chunkPath)
+			throws IOException {
+		CommandLineBlameResult bResult = new CommandLineBlameResult(chunkPath, dictionary);
+		if (chunk.getBegin() == chunk.getEnd()) {
+			return bResult;
+		}
+		// it is null when the path does not exist in the commit.
+		FileBlame blame = engine.blame(path, side, chunk.getBegin(), chunk.getEnd());
+		for (int idx = chunk.getBegin(); idx < chunk.getEnd(); idx++) {
+			int linenumber = offset + (idx - chunk.getBegin()) + 1;
+			conflict.setLine(linenumber);
+			if (blame == null || !blame.hasSourceData(idx)) {
+				continue;
+			}
+			addLineAuthor(bResult, blame.getSourceAuthor(idx), blame.getSourceCommitter(idx), linenumber);
+			if (dictionary.isKeepContents()) {
+				bResult.addLineContent(linenumber, blame.getString(idx).trim());
+			}
+			bResult.addLineCommit(linenumber, blame.getSourceCommit(idx));
+		}
+		return bResult;
+	}
+
+	private void addLineAuthor(CommandLineBlameResult bResult, PersonIdent author, PersonIdent committer,
+			int linenumber) {
+		String email = author.getEmailAddress();
+		String name = author.getName();
+		if (email == null || email.trim().isEmpty()) {
+			// same fallback as the one used when parsing 'git blame' output
+			name = committer.getName();
+			email = committer.getEmailAddress();
+			if (email == null || email.trim().isEmpty()) {
+				email = "author-mail@L" + linenumber + "/" + path;
+			}
+		}
+		bResult.addLineAuthor(linenumber, name, email);
+	}
+
+	/**
+	 * Returns the path of the resulting chunks, i.e., the canonical path the
+	 * file has (or would have) in the working tree.
+	 */
+	public String getChunkPath() {
+		File root = repo.isBare() ? repo.getDirectory() : repo.getWorkTree();
+		try {
+			return new File(root, path).getCanonicalPath();
+		} catch (IOException e) {
+			return new File(root, path).getAbsolutePath();
+		}
+	}
+}
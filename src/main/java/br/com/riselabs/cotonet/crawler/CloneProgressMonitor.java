@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.BatchingProgressMonitor;
+
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Reports the progress of the clones and fetches of a repository (e.g.,
+ * "Receiving objects: 45% (450/1000)") in the log of its crawler and in its
+ * {@code CrawlJob}, at most once a second. The transfer is cancelled when the
+ * thread running it is interrupted.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class CloneProgressMonitor extends BatchingProgressMonitor {
+
+	private final String name;
+	private final File log;
+	private final CrawlJob job;
+
+	/**
+	 * @param aName
+	 *            - the name of the repository.
+	 * @param aLog
+	 *            - the log file, or {@code null} for the main log.
+	 * @param aJob
+	 *            - the job to update, or {@code null}.
+	 */
+	public CloneProgressMonitor(String aName, File aLog, CrawlJob aJob) {
+		this.name = aName;
+		this.log = aLog;
+		this.job = aJob;
+		// the quick tasks are not worth reporting
+		setDelayStart(1, TimeUnit.SECONDS);
+	}
+
+	@Override
+	protected void onUpdate(String taskName, int workCurr) {
+		report(taskName + ": " + workCurr, false);
+	}
+
+	@Override
+	protected void onEndTask(String taskName, int workCurr) {
+		report(taskName + ": " + workCurr + ", done.", true);
+	}
+
+	@Override
+	protected void onUpdate(String taskName, int workCurr, int workTotal, int percentDone) {
+		report(taskName + ": " + percentDone + "% (" + workCurr + "/" + workTotal + ")", false);
+	}
+
+	@Override
+	protected void onEndTask(String taskName, int workCurr, int workTotal, int percentDone) {
+		report(taskName + ": " + percentDone + "% (" + workCurr + "/" + workTotal + "), done.", true);
+	}
+
+	private void report(String progress, boolean done) {
+		if (job != null) {
+			job.setProgress(done ? null : progress);
+		}
+		String message = "[" + name + "] " + progress;
+		if (log == null) {
+			Logger.log(message);
+		} else {
+			Logger.log(log, message);
+		}
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return Thread.currentThread().isInterrupted();
+	}
+}
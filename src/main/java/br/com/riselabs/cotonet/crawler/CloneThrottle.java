@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many repositories are cloned (or fetched) at the same time,
+ * whatever the executor running the crawlers. The transfers are bound by the
+ * network and the remote, not by the cores, so they have a limit of their own
+ * (see {@code #setLimit(int)}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum CloneThrottle {
+
+	INSTANCE;
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition released = lock.newCondition();
+	private int limit = getDefaultLimit();
+	private int running;
+
+	/**
+	 * @return the default number of transfers at the same time, i.e., the
+	 *         number of cores (and at least two).
+	 */
+	public static int getDefaultLimit() {
+		return Math.max(2, Runtime.getRuntime().availableProcessors());
+	}
+
+	public int getLimit() {
+		lock.lock();
+		try {
+			return limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sets the number of transfers at the same time. The ones running above
+	 * a lower limit finish, and no other starts until they do.
+	 * 
+	 * @param aLimit
+	 */
+	public void setLimit(int aLimit) {
+		lock.lock();
+		try {
+			this.limit = Math.max(1, aLimit);
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of transfers running.
+	 */
+	public int getRunning() {
+		lock.lock();
+		try {
+			return running;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until a transfer may start. Each call must be followed by a
+	 * {@code #release()} once the transfer is over.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (running >= limit) {
+				released.await();
+			}
+			running++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void release() {
+		lock.lock();
+		try {
+			running--;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import br.com.riselabs.cotonet.crawler.threads.RCPipeline;
+
+/**
+ * The stages of a {@code RepositoryCrawler} as a pipeline: {@code clone}
+ * (clone or fetch the repository), {@code open} (open its worktree),
+ * {@code build} (find the merge scenarios,
+ * merge, blame, and build the networks), {@code persist} (write the networks
+ * to the database), and {@code codeface} (write the Codeface files). Each
+ * stage has its own workers and bounded queue, so, e.g., a slow database does
+ * not stall the blame of other repositories until the queue of
+ * {@code persist} fills up.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class CrawlerPipeline extends RCPipeline<RepositoryCrawler> {
+
+	public static final String CLONE = "clone";
+	public static final String OPEN = "open";
+	public static final String BUILD = "build";
+	public static final String PERSIST = "persist";
+	public static final String CODEFACE = "codeface";
+
+	/**
+	 * Creates the pipeline with the default number of workers per stage.
+	 */
+	public CrawlerPipeline() {
+		this(new HashMap<String, Integer>());
+	}
+
+	/**
+	 * @param threads
+	 *            - the number of workers of each stage, by stage name. The
+	 *            missing stages use the defaults (see
+	 *            {@code #getDefaultThreads(String)}).
+	 */
+	public CrawlerPipeline(Map<String, Integer> threads) {
+		addStage(CLONE, threads, RepositoryCrawler::fetch);
+		addStage(OPEN, threads, RepositoryCrawler::openOrClone);
+		addStage(BUILD, threads, crawler -> {
+			if (!crawler.isCloning()) {
+				crawler.buildNetworks(crawler.createBuilder());
+			}
+		});
+		addStage(PERSIST, threads, crawler -> {
+			if (crawler.getBuilder() != null) {
+				crawler.persistNetworks(crawler.getBuilder());
+			}
+		});
+		addStage(CODEFACE, threads, RepositoryCrawler::writeCodefaceFiles);
+		setOnFinished(null);
+	}
+
+	/**
+	 * Sets the callback for the crawlers leaving the pipeline. Their
+	 * repositories are closed before it is called, whether they went through
+	 * all stages or not.
+	 */
+	@Override
+	public RCPipeline<RepositoryCrawler> setOnFinished(FinishListener<RepositoryCrawler> callback) {
+		return super.setOnFinished((crawler, millis, failure) -> {
+			crawler.close();
+			if (callback != null) {
+				callback.finished(crawler, millis, failure);
+			}
+		});
+	}
+
+	private void addStage(String name, Map<String, Integer> threads, StageStep<RepositoryCrawler> step) {
+		int size = threads.containsKey(name) ? threads.get(name) : getDefaultThreads(name);
+		// two items waiting per worker
+		addStage(name, size, 2 * size, step);
+	}
+
+	/**
+	 * Returns the default number of workers of the given stage: the transfers
+	 * get as many as the {@code CloneThrottle} lets run, the stage waiting on
+	 * disk gets more workers than there are cores, the CPU-bound one gets one
+	 * per core, and the database and Codeface files get few, since they are
+	 * written in the same places.
+	 */
+	public static int getDefaultThreads(String stage) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		switch (stage) {
+		case CLONE:
+			return CloneThrottle.INSTANCE.getLimit();
+		case OPEN:
+			return 2 * cores;
+		case BUILD:
+			return cores;
+		case PERSIST:
+			return 2;
+		default:
+			return 1;
+		}
+	}
+
+	/**
+	 * Parses the number of workers per stage, e.g., "clone=4,build=4".
+	 * 
+	 * @param spec
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             - if the spec is malformed or names an unknown stage.
+	 */
+	public static Map<String, Integer> parseThreads(String spec) {
+		Map<String, Integer> threads = new HashMap<String, Integer>();
+		if (spec == null || spec.trim().isEmpty()) {
+			return threads;
+		}
+		for (String entry : spec.split(",")) {
+			String[] pair = entry.split("=");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Malformed stage threads: " + entry);
+			}
+			String stage = pair[0].trim();
+			if (!CLONE.equals(stage) && !OPEN.equals(stage) && !BUILD.equals(stage) && !PERSIST.equals(stage)
+					&& !CODEFACE.equals(stage)) {
+				throw new IllegalArgumentException("Unknown stage: " + stage);
+			}
+			threads.put(stage, Integer.parseInt(pair[1].trim()));
+		}
+		return threads;
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
+import br.com.riselabs.cotonet.model.enums.JobState;
+import br.com.riselabs.cotonet.util.Directories;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Keeps the crawl jobs of a run. It periodically logs the progress (i.e.,
+ * throughput and ETA) and writes the state of every job to a JSON status
+ * file, so other tools can follow the run.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class JobTracker {
+
+	public static final String STATUS_FILE = "status.json";
+
+	private final File statusFile;
+	private final long runStarted;
+	private final Map<String, CrawlJob> jobs;
+	private ScheduledExecutorService reporter;
+
+	public JobTracker() {
+		this(new File(Directories.getStatsDir(), STATUS_FILE));
+	}
+
+	public JobTracker(File aStatusFile) {
+		this.statusFile = aStatusFile;
+		this.runStarted = System.currentTimeMillis();
+		this.jobs = new LinkedHashMap<String, CrawlJob>();
+	}
+
+	/**
+	 * Creates the job of the given repository.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	public synchronized CrawlJob add(String url) {
+		CrawlJob job = new CrawlJob(url);
+		jobs.put(url, job);
+		return job;
+	}
+
+	public synchronized CrawlJob get(String url) {
+		return jobs.get(url);
+	}
+
+	/**
+	 * @return the jobs in the order they were added.
+	 */
+	public synchronized List<CrawlJob> getJobs() {
+		return new ArrayList<CrawlJob>(jobs.values());
+	}
+
+	/**
+	 * @return the jobs in the given state.
+	 */
+	public List<CrawlJob> getJobs(JobState state) {
+		List<CrawlJob> result = new ArrayList<CrawlJob>();
+		for (CrawlJob job : getJobs()) {
+			if (job.getState() == state) {
+				result.add(job);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Starts logging the progress and writing the status file with the given
+	 * period.
+	 */
+	public synchronized void startReporting(long period, TimeUnit unit) {
+		if (reporter != null) {
+			return;
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "cotonet-progress");
+			t.setDaemon(true);
+			return t;
+		});
+		reporter.scheduleAtFixedRate(this::report, period, period, unit);
+	}
+
+	/**
+	 * Stops the periodic report and reports one last time.
+	 */
+	public void stopReporting() {
+		synchronized (this) {
+			if (reporter != null) {
+				reporter.shutdownNow();
+				reporter = null;
+			}
+		}
+		report();
+	}
+
+	private void report() {
+		Logger.log(getProgress());
+		try {
+			writeStatus();
+		} catch (IOException e) {
+			Logger.log("Could not write the status file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Moves the jobs not finished yet to {@code JobState#TIMED_OUT}.
+	 */
+	public void timeOutUnfinished() {
+		for (CrawlJob job : getJobs()) {
+			job.setState(JobState.TIMED_OUT);
+		}
+	}
+
+	/**
+	 * @return the number of finished jobs per minute since the run started.
+	 */
+	public double getThroughput() {
+		long elapsed = System.currentTimeMillis() - runStarted;
+		return (elapsed <= 0) ? 0 : countFinished() * 60000.0 / elapsed;
+	}
+
+	/**
+	 * @return the expected time (in milliseconds) to finish the remaining
+	 *         jobs at the current throughput, or {@code -1} if unknown.
+	 */
+	public long getEtaMillis() {
+		int finished = countFinished();
+		if (finished == 0) {
+			return -1;
+		}
+		long elapsed = System.currentTimeMillis() - runStarted;
+		return (getJobs().size() - finished) * elapsed / finished;
+	}
+
+	private int countFinished() {
+		int finished = 0;
+		for (CrawlJob job : getJobs()) {
+			if (job.getState().isFinished()) {
+				finished++;
+			}
+		}
+		return finished;
+	}
+
+	private int countScenarios() {
+		int scenarios = 0;
+		for (CrawlJob job : getJobs()) {
+			scenarios += Math.max(0, job.getScenarios());
+		}
+		return scenarios;
+	}
+
+	/**
+	 * @return a line with the progress of the run.
+	 */
+	public String getProgress() {
+		List<CrawlJob> all = getJobs();
+		int running = all.size() - countFinished() - getJobs(JobState.QUEUED).size();
+		long eta = getEtaMillis();
+		return String.format("[progress] %d/%d repositories finished (%d failed, %d running), %d scenarios, "
+				+ "%.2f repositories/min, ETA %s", countFinished(), all.size(), getJobs(JobState.FAILED).size(),
+				running, countScenarios(), getThroughput(), (eta < 0) ? "unknown" : formatMillis(eta));
+	}
+
+	private static String formatMillis(long millis) {
+		long minutes = TimeUnit.MILLISECONDS.toMinutes(millis);
+		return String.format("%dh%02dm", minutes / 60, minutes % 60);
+	}
+
+	/**
+	 * Writes the state of the run and of each job to the status file. The
+	 * file is replaced at once, so readers never see it half written.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void writeStatus() throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"started\": ").append(runStarted).append(",\n");
+		json.append("  \"updated\": ").append(System.currentTimeMillis()).append(",\n");
+		json.append("  \"total\": ").append(jobs.size()).append(",\n");
+		for (JobState state : JobState.values()) {
+			json.append("  \"").append(state.name().toLowerCase()).append("\": ")
+					.append(getJobs(state).size()).append(",\n");
+		}
+		json.append("  \"scenarios\": ").append(countScenarios()).append(",\n");
+		json.append("  \"repositoriesPerMinute\": ").append(String.format(Locale.ROOT, "%.4f", getThroughput())).append(",\n");
+		json.append("  \"etaMillis\": ").append(getEtaMillis()).append(",\n");
+		json.append("  \"jobs\": [");
+		String separator = "\n";
+		for (CrawlJob job : jobs.values()) {
+			json.append(separator);
+			json.append("    {\"url\": ").append(quote(job.getUrl()));
+			json.append(", \"name\": ").append(quote(job.getName()));
+			json.append(", \"state\": ").append(quote(job.getState().name()));
+			json.append(", \"started\": ").append(job.getStarted());
+			json.append(", \"finished\": ").append(job.getFinished());
+			json.append(", \"scenarios\": ").append(job.getScenarios());
+			json.append(", \"progress\": ").append(quote(job.getProgress()));
+			json.append(", \"error\": ").append(quote(job.getError())).append("}");
+			separator = ",\n";
+		}
+		json.append("\n  ]\n}\n");
+
+		statusFile.getParentFile().mkdirs();
+		File tmp = new File(statusFile.getParentFile(), statusFile.getName() + ".tmp");
+		Files.write(tmp.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+		try {
+			Files.move(tmp.toPath(), statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
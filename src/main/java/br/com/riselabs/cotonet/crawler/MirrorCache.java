@@ -0,0 +1,514 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.URIish;
+
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.util.Directories;
+
+/**
+ * Keeps a bare mirror of each repository (i.e.,
+ * {@code repos/mirrors/<name>.git}), cloned once and then updated with
+ * incremental fetches. The repositories are analyzed from worktrees (i.e.,
+ * {@code repos/<name>}) whose objects are the ones of the mirror (through
+ * {@code objects/info/alternates}), so no object is stored twice. The files
+ * of a worktree are only checked out when needed.
+ * 
+ * The forks of a repository already mirrored borrow the objects of its mirror
+ * the same way: a fork is told apart by any of its branches (or tags) already
+ * being in a mirror, since that is all the remote shows before the clone.
+ * Since the forks read the objects of their base mirror, the objects of a
+ * mirror must not be pruned (see {@code RepositoryOptimizer}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MirrorCache {
+
+	public static final String MIRRORS_DIR = "mirrors";
+	public static final String PARTIAL_SUFFIX = ".partial";
+	private static final String ALTERNATES = "objects" + File.separator + "info" + File.separator + "alternates";
+	private static final RefSpec HEADS = new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*");
+
+	/** the mirrors being cloned or fetched, so each one is updated once at a time */
+	private static final Map<File, Object> LOCKS = new ConcurrentHashMap<File, Object>();
+
+	private final File reposDir;
+	private final File mirrorsDir;
+
+	public MirrorCache() {
+		this(Directories.getReposDir());
+	}
+
+	public MirrorCache(File aReposDir) {
+		this.reposDir = aReposDir;
+		this.mirrorsDir = new File(aReposDir, MIRRORS_DIR);
+	}
+
+	/**
+	 * @return the directory of the mirror of the given repository, in the
+	 *         given directory of repositories.
+	 */
+	public static File getMirrorDir(File aReposDir, String name) {
+		return new File(new File(aReposDir, MIRRORS_DIR), name + Constants.DOT_GIT);
+	}
+
+	public File getMirrorDir(Project project) {
+		return new File(mirrorsDir, project.getName() + Constants.DOT_GIT);
+	}
+
+	public File getWorktreeDir(Project project) {
+		return new File(reposDir, project.getName());
+	}
+
+	/**
+	 * @return whether the worktree of the given project is a full clone, i.e.,
+	 *         one made before the mirrors, that has its own objects.
+	 */
+	public boolean isStandaloneClone(Project project) {
+		File gitDir = new File(getWorktreeDir(project), Constants.DOT_GIT);
+		return gitDir.isDirectory() && !new File(gitDir, ALTERNATES).exists();
+	}
+
+	/**
+	 * Clones the mirror of the given project, or fetches the new commits of
+	 * its branches in case it already exists (see
+	 * {@code #update(Project, String, ProgressMonitor)}).
+	 */
+	public boolean update(Project project, String remoteURI) throws GitAPIException, IOException {
+		return update(project, remoteURI, NullProgressMonitor.INSTANCE);
+	}
+
+	/**
+	 * Clones the mirror of the given project, or fetches the new commits of
+	 * its branches in case it already exists. When some branch (or tag) of
+	 * the remote points to a commit already in another mirror (e.g., the
+	 * project is a fork of it), the new mirror borrows the objects of that
+	 * one, and only the missing objects are fetched.
+	 * 
+	 * The mirror is cloned in a partial directory (see
+	 * {@code #getPartialDir(Project)}), renamed once the clone is complete,
+	 * so a failed clone never leaves a mirror half written. The next update
+	 * resumes the partial clone of the same remote, keeping the objects
+	 * already received, and removes any other.
+	 * 
+	 * @param project
+	 * @param remoteURI
+	 *            - where to clone (or fetch) the mirror from.
+	 * @param monitor
+	 *            - reports the progress of the transfer.
+	 * @return whether the mirror was cloned.
+	 */
+	public boolean update(Project project, String remoteURI, ProgressMonitor monitor)
+			throws GitAPIException, IOException {
+		File mirrorDir = getMirrorDir(project);
+		synchronized (LOCKS.computeIfAbsent(mirrorDir.getAbsoluteFile(), k -> new Object())) {
+			if (new File(mirrorDir, Constants.HEAD).exists()) {
+				try (Repository mirror = openMirror(project); Git git = Git.wrap(mirror)) {
+					git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME).setRefSpecs(HEADS)
+							.setTagOpt(TagOpt.NO_TAGS).setRemoveDeletedRefs(true).setProgressMonitor(monitor).call();
+				}
+				return false;
+			}
+			// all the refs, so HEAD is among them
+			Collection<Ref> tips = Git.lsRemoteRepository().setRemote(remoteURI).call();
+			File partial = getPartialDir(project);
+			if (isResumable(partial, remoteURI)) {
+				removeLeftovers(partial);
+				removeIncompleteRefs(partial);
+			} else {
+				FileUtils.deleteDirectory(partial);
+				initMirror(partial, remoteURI, findMirrorWithAny(tips, mirrorDir));
+			}
+			try (Repository mirror = new FileRepositoryBuilder().setGitDir(partial).setBare().setMustExist(true)
+					.build(); Git git = Git.wrap(mirror)) {
+				// the tags of the branches, as a clone does, unless they come with the base
+				TagOpt tags = new File(partial, ALTERNATES).exists() ? TagOpt.NO_TAGS : TagOpt.AUTO_FOLLOW;
+				git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME).setRefSpecs(HEADS).setTagOpt(tags)
+						.setProgressMonitor(monitor).call();
+				// a cancelled fetch still updates the refs, without their objects
+				if (monitor.isCancelled() || !hasAllTips(mirror)) {
+					throw new IOException("The clone of " + remoteURI + " was cancelled before it was complete.");
+				}
+				String head = getRemoteHead(tips);
+				mirror.updateRef(Constants.HEAD).link((head != null) ? head : Constants.R_HEADS + Constants.MASTER);
+			}
+			move(partial, mirrorDir);
+			return true;
+		}
+	}
+
+	/**
+	 * @return the directory where the mirror of the given project is cloned
+	 *         before it is complete.
+	 */
+	public File getPartialDir(Project project) {
+		return new File(mirrorsDir, project.getName() + Constants.DOT_GIT + PARTIAL_SUFFIX);
+	}
+
+	/**
+	 * @return whether the given partial clone is a repository with the given
+	 *         remote.
+	 */
+	private static boolean isResumable(File partial, String remoteURI) {
+		if (!new File(partial, Constants.HEAD).exists()) {
+			return false;
+		}
+		try (Repository repo = new FileRepositoryBuilder().setGitDir(partial).setBare().setMustExist(true).build()) {
+			return remoteURI.equals(repo.getConfig().getString("remote", Constants.DEFAULT_REMOTE_NAME, "url"));
+		} catch (IOException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Removes what an interrupted transfer leaves behind: the packs being
+	 * received and the locks of the refs being updated.
+	 */
+	private static void removeLeftovers(File partial) throws IOException {
+		try (Stream<Path> files = Files.walk(partial.toPath())) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(".lock") || name.startsWith("incoming_") || name.startsWith("tmp_")) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether the objects of all the refs of the given repository are
+	 *         in it.
+	 */
+	private static boolean hasAllTips(Repository repo) throws IOException {
+		for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+			if (!ref.isSymbolic() && !repo.hasObject(ref.getObjectId())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the refs of the given partial clone whose history is not
+	 * complete, so the resumed fetch does not take them as common commits.
+	 */
+	private static void removeIncompleteRefs(File partial) throws IOException {
+		try (Repository repo = new FileRepositoryBuilder().setGitDir(partial).setBare().setMustExist(true)
+				.build()) {
+			List<Ref> incomplete = new ArrayList<Ref>();
+			for (Ref ref : repo.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+				if (!ref.isSymbolic() && !isComplete(repo, ref.getObjectId())) {
+					incomplete.add(ref);
+				}
+			}
+			if (incomplete.isEmpty()) {
+				return;
+			}
+			// the branch HEAD points to cannot be deleted, it is linked again after the fetch
+			repo.updateRef(Constants.HEAD).link(Constants.R_HEADS + Constants.MASTER + PARTIAL_SUFFIX);
+			for (Ref ref : incomplete) {
+				RefUpdate delete = repo.updateRef(ref.getName());
+				delete.setForceUpdate(true);
+				delete.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return whether all the objects reachable from the given one are in the
+	 *         given repository.
+	 */
+	private static boolean isComplete(Repository repo, ObjectId id) throws IOException {
+		try (ObjectWalk walk = new ObjectWalk(repo)) {
+			walk.markStart(walk.parseAny(id));
+			while (walk.next() != null) {
+				// the commits are parsed while walking
+			}
+			RevObject object;
+			while ((object = walk.nextObject()) != null) {
+				if (!walk.getObjectReader().has(object)) {
+					return false;
+				}
+			}
+			return true;
+		} catch (MissingObjectException | IncorrectObjectTypeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Renames the given directory, at once when the file system supports it.
+	 */
+	private static void move(File from, File to) throws IOException {
+		try {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from.toPath(), to.toPath());
+		}
+	}
+
+	/**
+	 * Optimizes the mirror of the given project (see
+	 * {@code RepositoryOptimizer}). The mirror must exist.
+	 * 
+	 * @return whether the mirror was optimized, i.e., it was not already.
+	 */
+	public boolean optimize(Project project, RepositoryOptimizer optimizer) throws IOException {
+		File mirrorDir = getMirrorDir(project);
+		synchronized (LOCKS.computeIfAbsent(mirrorDir.getAbsoluteFile(), k -> new Object())) {
+			return optimizer.optimize(mirrorDir, isBorrowed(project));
+		}
+	}
+
+	/**
+	 * @return whether the mirror of some other project borrows the objects of
+	 *         the given project's mirror.
+	 */
+	public boolean isBorrowed(Project project) throws IOException {
+		File mirrorDir = getMirrorDir(project);
+		String objects = new File(mirrorDir, "objects").getAbsolutePath();
+		File[] mirrors = mirrorsDir.listFiles(f -> f.isDirectory() && !f.equals(mirrorDir)
+				&& new File(f, ALTERNATES).exists());
+		if (mirrors == null) {
+			return false;
+		}
+		for (File dir : mirrors) {
+			for (String line : Files.readAllLines(new File(dir, ALTERNATES).toPath(), StandardCharsets.UTF_8)) {
+				if (new File(line.trim()).getAbsolutePath().equals(objects)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the name of the mirror whose objects the given project's mirror
+	 *         borrows, or {@code null} when it has all of its objects.
+	 */
+	public String getBorrowedMirror(Project project) throws IOException {
+		File alternates = new File(getMirrorDir(project), ALTERNATES);
+		if (!alternates.exists()) {
+			return null;
+		}
+		List<String> lines = Files.readAllLines(alternates.toPath(), StandardCharsets.UTF_8);
+		if (lines.isEmpty()) {
+			return null;
+		}
+		String name = new File(lines.get(0)).getParentFile().getName();
+		return name.endsWith(Constants.DOT_GIT) ? name.substring(0, name.length() - Constants.DOT_GIT.length()) : name;
+	}
+
+	/**
+	 * Returns the directory of a mirror having any of the given commits, or
+	 * {@code null}. The mirrors that borrow no objects come first.
+	 */
+	private File findMirrorWithAny(Collection<Ref> tips, File except) throws IOException {
+		// not the partial clones, whose objects may be missing
+		File[] mirrors = mirrorsDir.listFiles(f -> f.isDirectory() && !f.equals(except)
+				&& f.getName().endsWith(Constants.DOT_GIT) && new File(f, Constants.HEAD).exists());
+		if (mirrors == null) {
+			return null;
+		}
+		Arrays.sort(mirrors, (a, b) -> Boolean.compare(new File(a, ALTERNATES).exists(),
+				new File(b, ALTERNATES).exists()));
+		for (File dir : mirrors) {
+			try (Repository mirror = new FileRepositoryBuilder().setGitDir(dir).setBare().setMustExist(true)
+					.build()) {
+				for (Ref tip : tips) {
+					ObjectId id = (tip.getPeeledObjectId() != null) ? tip.getPeeledObjectId() : tip.getObjectId();
+					if (id != null && mirror.hasObject(id)) {
+						return dir;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates an empty bare mirror of the given remote. When a base mirror is
+	 * given, the objects of the new one are the ones of the base (and of the
+	 * ones it borrows from), so only the rest is fetched.
+	 */
+	private static void initMirror(File mirrorDir, String remoteURI, File base) throws IOException {
+		Repository mirror = FileRepositoryBuilder.create(mirrorDir);
+		try {
+			mirror.create(true);
+			if (base != null) {
+				List<String> alternates = new ArrayList<String>();
+				alternates.add(new File(base, "objects").getAbsolutePath());
+				// a single level of alternates, whatever the base borrows
+				File baseAlternates = new File(base, ALTERNATES);
+				if (baseAlternates.exists()) {
+					alternates.addAll(Files.readAllLines(baseAlternates.toPath(), StandardCharsets.UTF_8));
+				}
+				File file = new File(mirrorDir, ALTERNATES);
+				file.getParentFile().mkdirs();
+				Files.write(file.toPath(), alternates, StandardCharsets.UTF_8);
+			}
+			StoredConfig config = mirror.getConfig();
+			RemoteConfig origin = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+			origin.addURI(new URIish(remoteURI));
+			origin.addFetchRefSpec(HEADS);
+			origin.update(config);
+			config.save();
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid remote: " + remoteURI, e);
+		} finally {
+			// the alternates are only read when the repository is opened
+			mirror.close();
+		}
+	}
+
+	/**
+	 * @return the branch the remote {@code HEAD} points to, preferring
+	 *         {@code master} when several branches match.
+	 */
+	private static String getRemoteHead(Collection<Ref> tips) {
+		ObjectId head = null;
+		for (Ref tip : tips) {
+			if (Constants.HEAD.equals(tip.getName())) {
+				head = tip.getObjectId();
+			}
+		}
+		String branch = null;
+		for (Ref tip : tips) {
+			if (tip.getName().startsWith(Constants.R_HEADS) && tip.getObjectId().equals(head)) {
+				if (tip.getName().equals(Constants.R_HEADS + Constants.MASTER)) {
+					return tip.getName();
+				} else if (branch == null) {
+					branch = tip.getName();
+				}
+			}
+		}
+		return branch;
+	}
+
+	public Repository openMirror(Project project) throws IOException {
+		return new FileRepositoryBuilder().setGitDir(getMirrorDir(project)).setBare().setMustExist(true).build();
+	}
+
+	/**
+	 * Opens the worktree of the given project, creating it in case it does
+	 * not exist yet. Its branches (and {@code HEAD}) are set to the ones of
+	 * the mirror, which must exist.
+	 * 
+	 * @param project
+	 * @param checkout
+	 *            - whether the files of {@code HEAD} must be in the working
+	 *            tree (e.g., to merge and blame them there). Otherwise, the
+	 *            working tree is left as it is.
+	 * @return
+	 */
+	public Repository openWorktree(Project project, boolean checkout) throws GitAPIException, IOException {
+		File gitDir = new File(getWorktreeDir(project), Constants.DOT_GIT);
+		if (!gitDir.exists()) {
+			// renamed once complete, as the mirrors
+			File partial = new File(getWorktreeDir(project), Constants.DOT_GIT + PARTIAL_SUFFIX);
+			FileUtils.deleteDirectory(partial);
+			try (Repository created = new FileRepositoryBuilder().setGitDir(partial)
+					.setWorkTree(getWorktreeDir(project)).build()) {
+				created.create(false);
+			}
+			File alternates = new File(partial, ALTERNATES);
+			alternates.getParentFile().mkdirs();
+			File objects = new File(getMirrorDir(project), "objects").getAbsoluteFile();
+			Files.write(alternates.toPath(), Collections.singletonList(objects.getPath()), StandardCharsets.UTF_8);
+			move(partial, gitDir);
+		}
+		Repository worktree = FileRepositoryBuilder.create(gitDir);
+		try (Repository mirror = openMirror(project)) {
+			syncRefs(mirror, worktree);
+		}
+		if (checkout) {
+			Git.wrap(worktree).reset().setRef(Constants.HEAD).setMode(ResetCommand.ResetType.HARD).call();
+		}
+		return worktree;
+	}
+
+	/**
+	 * Points the branches and {@code HEAD} of the worktree to the commits
+	 * they have in the mirror, and deletes the branches the mirror no longer
+	 * has (their commits may be gone once the mirror is optimized). No object
+	 * is copied, since the worktree reads the ones of the mirror.
+	 */
+	private static void syncRefs(Repository mirror, Repository worktree) throws IOException {
+		Map<String, Ref> branches = mirror.getRefDatabase().getRefs(Constants.R_HEADS);
+		for (Ref ref : branches.values()) {
+			RefUpdate update = worktree.updateRef(ref.getName());
+			update.setNewObjectId(ref.getObjectId());
+			update.setForceUpdate(true);
+			update.update();
+		}
+		Ref head = mirror.exactRef(Constants.HEAD);
+		if (head != null && head.isSymbolic()) {
+			worktree.updateRef(Constants.HEAD).link(head.getTarget().getName());
+		}
+		for (Ref ref : worktree.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+			if (!branches.containsKey(ref.getName().substring(Constants.R_HEADS.length()))) {
+				RefUpdate delete = worktree.updateRef(ref.getName());
+				delete.setForceUpdate(true);
+				delete.delete();
+			}
+		}
+	}
+}
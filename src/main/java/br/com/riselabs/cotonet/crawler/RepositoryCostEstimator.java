@@ -0,0 +1,350 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import br.com.riselabs.cotonet.builder.ScenarioPrefilter;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.beans.RepositoryCost;
+import br.com.riselabs.cotonet.model.exceptions.EmptyContentException;
+import br.com.riselabs.cotonet.util.Directories;
+import br.com.riselabs.cotonet.util.IOHandler;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Predicts how long each repository takes to be crawled, so the largest ones
+ * are scheduled first and a huge repository does not hold the end of a run.
+ * 
+ * The sizes of a repository (i.e., pack bytes, commits, and merges) are read
+ * from its object database when it was already cloned. The time each crawl
+ * takes is recorded in a stats file together with the sizes, and the
+ * milliseconds per merge of the recorded crawls are used to predict the ones
+ * never crawled. Repositories without any estimate (i.e., neither cloned nor
+ * recorded) go first, since they may be the largest.
+ * 
+ * A dry run (see {@code #dryRun(String, ScenarioPrefilter)}) adds the number
+ * of merges that may conflict, which predicts the crawl time better than the
+ * number of merges, since the clean ones are never blamed.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RepositoryCostEstimator {
+
+	public static final String STATS_FILE = "repository-costs.tsv";
+	public static final String DRY_RUN_FILE = "dry-run.tsv";
+	private static final String HEADER = "url\tpack_bytes\tcommits\tmerges\tmillis\tcandidates\tblame_bytes";
+
+	/** the initial guess, used until some crawl is recorded */
+	private static final double DEFAULT_MILLIS_PER_MERGE = 1000.0;
+	/** a candidate is merged and blamed, while most merges are clean */
+	private static final double DEFAULT_MILLIS_PER_CANDIDATE = 5000.0;
+
+	private File statsFile;
+	private File reposDir;
+	private ConcurrentMap<String, RepositoryCost> costs;
+
+	public RepositoryCostEstimator() {
+		this(new File(Directories.getStatsDir(), STATS_FILE), Directories.getReposDir());
+	}
+
+	public RepositoryCostEstimator(File aStatsFile, File aReposDir) {
+		this.statsFile = aStatsFile;
+		this.reposDir = aReposDir;
+		this.costs = new ConcurrentHashMap<String, RepositoryCost>();
+		load();
+	}
+
+	private void load() {
+		if (!statsFile.exists()) {
+			return;
+		}
+		List<String> lines = new IOHandler().readFile(statsFile);
+		if (lines == null) {
+			return;
+		}
+		for (String line : lines) {
+			RepositoryCost cost = RepositoryCost.parse(line);
+			if (cost != null) {
+				costs.put(cost.getUrl(), cost);
+			}
+		}
+	}
+
+	/**
+	 * Writes the recorded costs to the stats file.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		lines.add(HEADER);
+		for (RepositoryCost cost : costs.values()) {
+			lines.add(cost.toString());
+		}
+		IOHandler io = new IOHandler();
+		io.checkAndRemove(statsFile);
+		try {
+			io.writeFile(statsFile, lines);
+		} catch (EmptyContentException e) {
+			// the header is always there
+		}
+	}
+
+	/**
+	 * Returns the cost of the given repository. When it was already cloned,
+	 * its sizes are read from the object database. The commits are only walked
+	 * again when the size of the pack files changed since the last estimate.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	public RepositoryCost estimate(String url) {
+		RepositoryCost recorded = costs.get(url);
+		RepositoryCost cost = new RepositoryCost(url);
+		if (recorded != null) {
+			cost.setPackBytes(recorded.getPackBytes()).setCommits(recorded.getCommits())
+					.setMerges(recorded.getMerges()).setMillis(recorded.getMillis())
+					.setCandidates(recorded.getCandidates()).setBlameBytes(recorded.getBlameBytes());
+		}
+		try (Repository repo = openRepository(url)) {
+			if (repo == null) {
+				return cost;
+			}
+			long packBytes = getPackBytes(repo);
+			if (recorded == null || recorded.getPackBytes() != packBytes || recorded.getMerges() < 0) {
+				countCommits(repo, cost);
+			}
+			cost.setPackBytes(packBytes);
+		} catch (IOException e) {
+			Logger.log("[" + new Project(url).getName() + "] could not estimate the repository size: "
+					+ e.getMessage());
+		}
+		costs.put(url, cost);
+		return cost;
+	}
+
+	/**
+	 * Estimates the merges of the given repository that may conflict and the
+	 * volume of their blame with the given prefilter, which keeps the other
+	 * estimates (e.g., the number of overlapping paths). The repository is
+	 * only read: neither its worktree nor its refs change. Nothing is done
+	 * when it was not cloned.
+	 * 
+	 * @param url
+	 * @param prefilter
+	 * @return
+	 * @throws IOException
+	 */
+	public RepositoryCost dryRun(String url, ScenarioPrefilter prefilter) throws IOException {
+		RepositoryCost cost = estimate(url);
+		try (Repository repo = openRepository(url)) {
+			if (repo == null) {
+				return cost;
+			}
+			prefilter.setRepository(repo).call();
+		}
+		cost.setCandidates(prefilter.getCandidates()).setBlameBytes(prefilter.getBlameBytes());
+		return cost;
+	}
+
+	/**
+	 * Opens the object database of the given repository, i.e., its mirror
+	 * or, for the ones cloned before the mirrors, its worktree.
+	 * 
+	 * @return the repository, or {@code null} when it was not cloned.
+	 */
+	private Repository openRepository(String url) throws IOException {
+		String name = new Project(url).getName();
+		File mirror = MirrorCache.getMirrorDir(reposDir, name);
+		File dir = new File(reposDir, name);
+		FileRepositoryBuilder builder = new FileRepositoryBuilder().setMustExist(true);
+		if (mirror.exists()) {
+			// the worktree has no objects of its own
+			builder.setGitDir(mirror).setBare();
+		} else if (dir.exists()) {
+			builder.setWorkTree(dir);
+		} else {
+			return null;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the last cost estimated (or recorded) for the given repository,
+	 * or {@code null} if there is none.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	public RepositoryCost getCost(String url) {
+		return costs.get(url);
+	}
+
+	/**
+	 * Records how long the crawl of the given repository took, and refreshes
+	 * its sizes (e.g., it was just cloned).
+	 * 
+	 * @param url
+	 * @param millis
+	 */
+	public void record(String url, long millis) {
+		estimate(url).setMillis(millis);
+	}
+
+	/**
+	 * Returns the predicted crawl time (in milliseconds) of the given cost.
+	 * The last recorded time is the best prediction; otherwise the merges that
+	 * may conflict (when there was a dry run), or else all the merges, are
+	 * weighted by their average milliseconds in the recorded crawls.
+	 * 
+	 * @param cost
+	 * @return
+	 */
+	public double predict(RepositoryCost cost) {
+		if (cost.getMillis() >= 0) {
+			return cost.getMillis();
+		}
+		if (cost.getCandidates() >= 0) {
+			return cost.getCandidates() * getMillisPerCandidate();
+		}
+		return Math.max(0, cost.getMerges()) * getMillisPerMerge();
+	}
+
+	private double getMillisPerMerge() {
+		long millis = 0;
+		long merges = 0;
+		for (RepositoryCost cost : costs.values()) {
+			if (cost.getMillis() >= 0 && cost.getMerges() > 0) {
+				millis += cost.getMillis();
+				merges += cost.getMerges();
+			}
+		}
+		return (merges == 0) ? DEFAULT_MILLIS_PER_MERGE : (double) millis / merges;
+	}
+
+	private double getMillisPerCandidate() {
+		long millis = 0;
+		long candidates = 0;
+		for (RepositoryCost cost : costs.values()) {
+			if (cost.getMillis() >= 0 && cost.getCandidates() > 0) {
+				millis += cost.getMillis();
+				candidates += cost.getCandidates();
+			}
+		}
+		return (candidates == 0) ? DEFAULT_MILLIS_PER_CANDIDATE : (double) millis / candidates;
+	}
+
+	/**
+	 * Returns the given URLs ordered from the most to the least expensive.
+	 * The ones without any estimate come first, in the given order.
+	 * 
+	 * @param urls
+	 * @return
+	 */
+	public List<String> sort(List<String> urls) {
+		final Map<String, Double> predictions = new HashMap<String, Double>();
+		final Map<String, RepositoryCost> estimates = new HashMap<String, RepositoryCost>();
+		for (String url : urls) {
+			estimates.put(url, estimate(url));
+		}
+		for (String url : urls) {
+			RepositoryCost cost = estimates.get(url);
+			predictions.put(url, cost.isKnown() ? predict(cost) : Double.POSITIVE_INFINITY);
+		}
+		List<String> result = new ArrayList<String>(urls);
+		// the sort is stable, so ties keep the given order
+		Collections.sort(result, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				int c = Double.compare(predictions.get(b), predictions.get(a));
+				if (c != 0) {
+					return c;
+				}
+				c = Long.compare(estimates.get(b).getBlameBytes(), estimates.get(a).getBlameBytes());
+				if (c != 0) {
+					return c;
+				}
+				c = Long.compare(estimates.get(b).getCommits(), estimates.get(a).getCommits());
+				return (c != 0) ? c : Long.compare(estimates.get(b).getPackBytes(), estimates.get(a).getPackBytes());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the size (in bytes) of the pack files of the repository.
+	 */
+	public static long getPackBytes(Repository repo) {
+		File[] packs = new File(new File(repo.getDirectory(), "objects"), "pack").listFiles();
+		long bytes = 0;
+		if (packs != null) {
+			for (File pack : packs) {
+				if (pack.getName().endsWith(".pack")) {
+					bytes += pack.length();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Counts the commits and merges reachable from {@code HEAD}. It only
+	 * parses the headers of the commits.
+	 */
+	private static void countCommits(Repository repo, RepositoryCost cost) throws IOException {
+		ObjectId head = repo.resolve(Constants.HEAD);
+		if (head == null) {
+			cost.setCommits(0).setMerges(0);
+			return;
+		}
+		long commits = 0;
+		long merges = 0;
+		try (RevWalk walk = new RevWalk(repo)) {
+			walk.setRetainBody(false);
+			walk.markStart(walk.parseCommit(head));
+			for (RevCommit commit : walk) {
+				commits++;
+				if (commit.getParentCount() > 1) {
+					merges++;
+				}
+			}
+		}
+		cost.setCommits(commits).setMerges(merges);
+	}
+}
@@ -22,23 +22,38 @@ package br.com.riselabs.cotonet.crawler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.InvalidRemoteException;
-import org.eclipse.jgit.api.errors.TransportException;
-import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
+import br.com.riselabs.cotonet.builder.BuildBudget;
+import br.com.riselabs.cotonet.builder.FileScope;
+import br.com.riselabs.cotonet.builder.HistoryWindow;
 import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioSample;
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
 import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.JobState;
 import br.com.riselabs.cotonet.model.enums.NetworkType;
 import br.com.riselabs.cotonet.model.exceptions.EmptyContentException;
 import br.com.riselabs.cotonet.util.CodefaceHelper;
 import br.com.riselabs.cotonet.util.Directories;
 import br.com.riselabs.cotonet.util.Logger;
+import br.com.riselabs.cotonet.util.WorktreeLock;
 
 /**
  * This Runnable class can execute four activities: </br>
@@ -47,6 +62,8 @@ import br.com.riselabs.cotonet.util.Logger;
  * - it creates the <code>codeface</code> configuration file; and </br>
  * - it triggers the conflict based network construction.
  * 
+ * Each activity is a public phase, so callers may run them separately.
+ * 
  * @author Alcemir R. Santos
  *
  */
@@ -55,10 +72,25 @@ public class RepositoryCrawler implements Runnable {
 	private Project project;
 
 	private File repositoryDir;
+	private MirrorCache mirrors;
 	private boolean skipNetworks;
 	private File log;
 	
 	private NetworkType type;
+	private BlameMode blameMode = BlameMode.MERGED_FILE;
+	private ExecutorService computeExecutor;
+	private NetworkBuilder<Object> builder;
+	private CrawlJob job;
+	private BuildBudget budget = new BuildBudget();
+	private FileScope scope = new FileScope();
+	private ThreeWayMergeStrategy mergeStrategy = MergeStrategy.RECURSIVE;
+	private SupportedAlgorithm diffAlgorithm;
+	private HistoryWindow window = new HistoryWindow();
+	private ScenarioSample sample;
+	private Collection<String> scenarios;
+	private RepositoryOptimizer optimizer;
+	private WorktreeLock worktreeLock;
+	private boolean fetched;
 
 	public RepositoryCrawler(String systemURL, boolean mustClone, NetworkType type)
 			throws IOException {
@@ -77,6 +109,139 @@ public class RepositoryCrawler implements Runnable {
 		this.type = type;
 	}
 
+	public BlameMode getBlameMode() {
+		return blameMode;
+	}
+
+	public void setBlameMode(BlameMode mode) {
+		this.blameMode = mode;
+	}
+
+	/**
+	 * Sets the executor of the CPU-bound stages of the network building (see
+	 * {@code NetworkBuilder#setComputeExecutor(ExecutorService)}). When not
+	 * set, they run in the crawler's own thread.
+	 * 
+	 * @param anExecutor
+	 */
+	public void setComputeExecutor(ExecutorService anExecutor) {
+		this.computeExecutor = anExecutor;
+	}
+
+	/**
+	 * Sets the limits of the work done for each scenario (see
+	 * {@code NetworkBuilder#setBudget(BuildBudget)}).
+	 * 
+	 * @param aBudget
+	 */
+	public void setBudget(BuildBudget aBudget) {
+		this.budget = aBudget;
+	}
+
+	/**
+	 * Sets the files whose conflicts are merged and blamed (see
+	 * {@code NetworkBuilder#setFileScope(FileScope)}).
+	 * 
+	 * @param aScope
+	 */
+	public void setFileScope(FileScope aScope) {
+		this.scope = aScope;
+	}
+
+	/**
+	 * Sets the strategy of the merges (see
+	 * {@code NetworkBuilder#setMergeStrategy(ThreeWayMergeStrategy)}).
+	 * 
+	 * @param aStrategy
+	 */
+	public void setMergeStrategy(ThreeWayMergeStrategy aStrategy) {
+		this.mergeStrategy = aStrategy;
+	}
+
+	/**
+	 * Sets the diff algorithm of the merges and the blames (see
+	 * {@code NetworkBuilder#setDiffAlgorithm(SupportedAlgorithm)}).
+	 * 
+	 * @param anAlgorithm
+	 */
+	public void setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+		this.diffAlgorithm = anAlgorithm;
+	}
+
+	/**
+	 * Restricts the crawl to the merges of a window of the history (see
+	 * {@code NetworkBuilder#setHistoryWindow(HistoryWindow)}).
+	 * 
+	 * @param aWindow
+	 */
+	public void setHistoryWindow(HistoryWindow aWindow) {
+		this.window = aWindow;
+	}
+
+	/**
+	 * Restricts the crawl to a sample of the merge scenarios (see
+	 * {@code NetworkBuilder#setSample(ScenarioSample)}).
+	 * 
+	 * @param aSample
+	 */
+	public void setSample(ScenarioSample aSample) {
+		this.sample = aSample;
+	}
+
+	/**
+	 * Sets the lock held while the repository is fetched and its worktree
+	 * opened, and while each scenario is merged there (see
+	 * {@code NetworkBuilder#setWorktreeLock(WorktreeLock)}). It is needed
+	 * when other crawlers (e.g., of other workers) may work on the same
+	 * repository at the same time. By default, there is no lock.
+	 * 
+	 * @param aLock
+	 */
+	public void setWorktreeLock(WorktreeLock aLock) {
+		this.worktreeLock = aLock;
+	}
+
+	/**
+	 * Restricts the crawl to the scenarios of the given merge commits (see
+	 * {@code NetworkBuilder#setScenarioFilter(Collection)}).
+	 * 
+	 * @param mergeCommits
+	 *            - the ids of the merge commits, or {@code null} for all.
+	 */
+	public void setScenarios(Collection<String> mergeCommits) {
+		this.scenarios = mergeCommits;
+	}
+
+	/**
+	 * Sets the optimizer that prepares the repository before its analysis
+	 * (see {@code RepositoryOptimizer}). When not set, the repository is
+	 * analyzed as it was cloned (or fetched).
+	 * 
+	 * @param anOptimizer
+	 */
+	public void setOptimizer(RepositoryOptimizer anOptimizer) {
+		this.optimizer = anOptimizer;
+	}
+
+	/**
+	 * Sets the job updated with the state of this crawler.
+	 * 
+	 * @param aJob
+	 */
+	public void setJob(CrawlJob aJob) {
+		this.job = aJob;
+	}
+
+	public CrawlJob getJob() {
+		return job;
+	}
+
+	private void setState(JobState state) {
+		if (job != null) {
+			job.setState(state);
+		}
+	}
+
 	public Project getProject() {
 		return project;
 	}
@@ -89,76 +254,323 @@ public class RepositoryCrawler implements Runnable {
 		this.skipNetworks = mustClone;
 	}
 
+	/**
+	 * @return whether the crawler skips the networks (i.e., it only clones).
+	 */
+	public boolean isCloning() {
+		return skipNetworks;
+	}
+
 	public void setLogFile(File f) {
 		this.log = f;
 	}
 
+	/**
+	 * Sets the worktree of the repository. Its mirror goes in the
+	 * {@code MirrorCache#MIRRORS_DIR} directory next to it.
+	 * 
+	 * @param directory
+	 */
 	public void setRepositoryDir(File directory) {
 		this.repositoryDir = directory;
+		this.mirrors = new MirrorCache(directory.getAbsoluteFile().getParentFile());
 	}
 
 	@Override
 	public void run() {
 		try {
-			// cloning or reading
-			Repository repo;
-			try (Repository aux = openRepository()) {
-				repo = aux;
-
-				// repository already exists, so we reset it to master to make sure it is not in a weird state
-				Git git = Git.wrap(repo);
-				git.reset().setRef("master").setMode(ResetCommand.ResetType.HARD).call();
-			} catch (RepositoryNotFoundException e) {
-				repo = cloneRepository();
+			openOrClone();
+			if (!skipNetworks) {
+				NetworkBuilder<Object> builder = createBuilder();
+				buildNetworks(builder);
+				persistNetworks(builder);
+			}
+			writeCodefaceFiles();
+			setState(JobState.DONE);
+		} catch (EmptyContentException | GitAPIException | InterruptedException | IOException
+				| RuntimeException e) {
+			// e.g., the commits of the scenarios that cannot be parsed
+			if (job != null) {
+				job.fail(e);
+			}
+			Logger.logStackTrace(log, e);
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Closes the repository opened by {@code #openOrClone()}, if any. It must
+	 * be called once the crawler is done with the project (e.g., after
+	 * {@code #writeCodefaceFiles()}), so the pack files are not kept open
+	 * along the whole run.
+	 */
+	public void close() {
+		Repository repo = project.getRepository();
+		if (repo != null) {
+			project.setRepository(null);
+			repo.close();
+		}
+	}
+
+	/**
+	 * Clones the mirror of the project's repository in case it does not exist
+	 * yet, or fetches it otherwise, and then optimizes it when there is an
+	 * optimizer (see {@code #setOptimizer(RepositoryOptimizer)}). The
+	 * transfer waits for its turn in the {@code CloneThrottle}, and its
+	 * progress goes to the log and the job of this crawler.
+	 */
+	public void fetch() throws EmptyContentException, GitAPIException, IOException, InterruptedException {
+		setState(JobState.CLONING);
+		ProgressMonitor monitor = new CloneProgressMonitor(project.getName(), log, job);
+		blocking(() -> {
+			CloneThrottle.INSTANCE.acquire();
+			try {
+				if (mirrors.isStandaloneClone(project)) {
+					// cloned before the mirrors, so it is updated in place
+					try (Repository repo = openRepository(); Git git = Git.wrap(repo)) {
+						git.fetch().setProgressMonitor(monitor).call();
+					}
+				} else {
+					Logger.log(log, "[" + getProject().getName() + "] Mirror update start.");
+					if (mirrors.update(project, getRemoteURI(), monitor)) {
+						String borrowed = mirrors.getBorrowedMirror(project);
+						Logger.log(log, "[" + getProject().getName() + "] Mirror cloned"
+								+ ((borrowed == null) ? "." : ", sharing the objects of " + borrowed + "."));
+					} else {
+						Logger.log(log, "[" + getProject().getName() + "] Mirror fetched.");
+					}
+				}
+			} finally {
+				CloneThrottle.INSTANCE.release();
+			}
+			if (optimizer == null) {
+				return null;
+			}
+			// the analysis runs on the unoptimized repository as well
+			try {
+				if (mirrors.isStandaloneClone(project)) {
+					if (optimizer.optimize(new File(repositoryDir, Constants.DOT_GIT), false)) {
+						Logger.log(log, "[" + getProject().getName() + "] Repository optimized.");
+					}
+				} else if (mirrors.optimize(project, optimizer)) {
+					Logger.log(log, "[" + getProject().getName() + "] Mirror optimized with "
+							+ (optimizer.usesNativeGit() ? "git repack and commit-graph." : "JGit GC."));
+				}
+			} catch (InterruptedIOException e) {
+				throw e;
+			} catch (IOException e) {
+				Logger.log(log, "[" + getProject().getName() + "] Could not optimize the repository due to '"
+						+ e.getMessage() + "'. Analyzing it as it is.");
+			}
+			return null;
+		});
+		fetched = true;
+	}
+
+	/**
+	 * Opens the repository of the project, fetching it first (see
+	 * {@code #fetch()}) unless it was already. The files of the worktree are
+	 * only checked out when the conflicts are blamed there.
+	 */
+	public void openOrClone()
+			throws EmptyContentException, GitAPIException, IOException, InterruptedException {
+		if (worktreeLock != null) {
+			worktreeLock.lock();
+		}
+		try {
+			if (!fetched) {
+				fetch();
 			}
+			setState(JobState.OPENING);
+			Repository repo = blocking(() -> {
+				if (mirrors.isStandaloneClone(project)) {
+					return resetStandaloneClone();
+				}
+				return mirrors.openWorktree(project, needsCheckout());
+			});
 			project.setRepository(repo);
-			if (!skipNetworks) {
-				// building networks
+		} finally {
+			if (worktreeLock != null) {
+				worktreeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the conflicting files are merged (and blamed) in the
+	 *         working tree.
+	 */
+	private boolean needsCheckout() {
+		return !skipNetworks && blameMode == BlameMode.MERGED_FILE;
+	}
 
-				NetworkBuilder<Object> builder = new NetworkBuilder<Object>(getProject(), getProgramType());
-				
-				builder.setLogFile(log);
-				builder.build();
-				builder.persist();
+	private String getRemoteURI() {
+		return project.getUrl() + ".git";
+	}
+
+	private Repository resetStandaloneClone() throws GitAPIException, IOException {
+		Repository repo = openRepository();
+		// we reset it to master to make sure it is not in a weird state
+		Git.wrap(repo).reset().setRef("master").setMode(ResetCommand.ResetType.HARD).call();
+		return repo;
+	}
+
+	public NetworkBuilder<Object> createBuilder() {
+		builder = new NetworkBuilder<Object>(getProject(), getProgramType());
+		builder.setLogFile(log);
+		builder.setBlameMode(getBlameMode());
+		builder.setBudget(budget);
+		builder.setFileScope(scope);
+		builder.setMergeStrategy(mergeStrategy);
+		builder.setDiffAlgorithm(diffAlgorithm);
+		builder.setHistoryWindow(window);
+		builder.setSample(sample);
+		builder.setScenarioFilter(scenarios);
+		builder.setWorktreeLock(worktreeLock);
+		builder.setComputeExecutor(computeExecutor);
+		return builder;
+	}
+
+	/**
+	 * @return the last builder created by {@code #createBuilder()}, or
+	 *         {@code null} if none was created.
+	 */
+	public NetworkBuilder<Object> getBuilder() {
+		return builder;
+	}
+
+	/**
+	 * Finds the conflicting scenarios and builds their networks. When running
+	 * in a fork-join pool, the scenarios are forked. When there is a compute
+	 * executor, the in-core merges and the graphs are built there, while the
+	 * checkouts and the blames stay in this thread.
+	 */
+	public void buildNetworks(NetworkBuilder<Object> builder)
+			throws IOException, GitAPIException, InterruptedException {
+		setState(JobState.BUILDING);
+		try {
+			builder.build();
+		} finally {
+			if (job != null) {
+				job.setScenarios(project.getMergeScenarios().size());
 			}
+		}
+	}
+
+	/**
+	 * Persists the networks in the order their scenarios were found.
+	 */
+	public void persistNetworks(NetworkBuilder<Object> builder)
+			throws EmptyContentException, GitAPIException, IOException, InterruptedException {
+		setState(JobState.PERSISTING);
+		blocking(() -> {
+			builder.persist();
+			return null;
+		});
+	}
 
-			if (!project.getMergeScenarios().isEmpty()) {
-				// persisting aux files
+	public void writeCodefaceFiles() throws EmptyContentException, GitAPIException, IOException,
+			InterruptedException {
+		setState(JobState.WRITING);
+		if (!project.getMergeScenarios().isEmpty()) {
+			// persisting aux files
+			blocking(() -> {
 				CodefaceHelper.createCodefaceConfFiles(project);
-			} else {
-				Logger.log("[" + project.getName() + "] no merge scenarios found.");
+				return null;
+			});
+		} else {
+			Logger.log("[" + project.getName() + "] no merge scenarios found.");
+		}
+	}
+
+	/**
+	 * A phase that blocks on I/O (e.g., network, disk, or database).
+	 */
+	@FunctionalInterface
+	private interface BlockingPhase<V> {
+		V call() throws EmptyContentException, GitAPIException, IOException, InterruptedException;
+	}
+
+	/**
+	 * Runs the given phase. In a fork-join pool, it runs as a managed blocker,
+	 * so the pool may start another worker in the meantime.
+	 */
+	private <V> V blocking(BlockingPhase<V> phase)
+			throws EmptyContentException, GitAPIException, IOException, InterruptedException {
+		if (!ForkJoinTask.inForkJoinPool()) {
+			return phase.call();
+		}
+		PhaseBlocker<V> blocker = new PhaseBlocker<V>(phase);
+		ForkJoinPool.managedBlock(blocker);
+		return blocker.getResult();
+	}
+
+	private static class PhaseBlocker<V> implements ForkJoinPool.ManagedBlocker {
+		private final BlockingPhase<V> phase;
+		private boolean done;
+		private V result;
+		private Exception failure;
+
+		PhaseBlocker(BlockingPhase<V> phase) {
+			this.phase = phase;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			try {
+				result = phase.call();
+			} catch (EmptyContentException | GitAPIException | IOException | RuntimeException e) {
+				failure = e;
 			}
-		} catch (NullPointerException | EmptyContentException | GitAPIException | InterruptedException
-				| IOException e) {
-			Logger.logStackTrace(log, e);
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
 		}
-		System.gc();
+
+		V getResult() throws EmptyContentException, GitAPIException, IOException {
+			if (failure instanceof EmptyContentException) {
+				throw (EmptyContentException) failure;
+			} else if (failure instanceof GitAPIException) {
+				throw (GitAPIException) failure;
+			} else if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+			return result;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return project.getName();
 	}
 
 	/**
-	 * Clones the project's repository of this {@code RepositoryCrawler}
-	 * instance. The method {@code #getRepository()} returns an object that
-	 * represents the repository.
+	 * Clones (or fetches) the mirror of the project's repository of this
+	 * {@code RepositoryCrawler} instance and opens its worktree (see
+	 * {@code #openOrClone()}).
 	 * 
-	 * @param repositoryURL
-	 * @return
-	 * @throws IOException
-	 * @throws InvalidRemoteException
-	 * @throws TransportException
-	 * @throws GitAPIException
+	 * @return the worktree, or {@code null} when the cloning fails.
 	 */
 	public Repository cloneRepository() {
-		Git result;
 		try {
 			Logger.log(log, "[" + getProject().getName() + "] Cloning Start.");
-			result = Git.cloneRepository().setURI(project.getUrl() + ".git").setDirectory(repositoryDir).call();
+			openOrClone();
 			Logger.log(log, "[" + getProject().getName() + "] Cloning Finished.");
-			return result.getRepository();
-		} catch (GitAPIException e) {
+			return project.getRepository();
+		} catch (EmptyContentException | GitAPIException | IOException e) {
 			Logger.log(log, "[" + getProject().getName() + "] Cloning Failed.");
 			Logger.logStackTrace(log, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Logger.log(log, "[" + getProject().getName() + "] Cloning Interrupted.");
 		}
-		System.gc();
 		return null;
 	}
 
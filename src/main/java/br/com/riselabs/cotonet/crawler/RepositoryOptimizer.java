@@ -0,0 +1,238 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+
+/**
+ * Prepares the objects of a repository for the analysis, so the walks over
+ * its history do not run on the many small packs left by the clone and the
+ * fetches. When a native git that writes commit-graphs is available, it repacks the objects in a
+ * single pack with a reachability bitmap ({@code git repack -a -d -k -b})
+ * and writes a commit-graph ({@code git commit-graph write --reachable}),
+ * which the native commands run on the repository (e.g., {@code git blame})
+ * use for their walks and merge bases. Otherwise, it runs the JGit GC, which
+ * also writes the bitmaps but no commit-graph (JGit reads none).
+ * 
+ * The objects of a repository borrowed by others (see {@code MirrorCache})
+ * are never pruned: the native repack keeps the unreachable ones, and the
+ * JGit GC (which cannot) only packs the refs of such repositories. The
+ * repositories that borrow objects are repacked with their own objects only,
+ * hence without bitmaps.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RepositoryOptimizer {
+
+	private static final String ALTERNATES = "objects" + File.separator + "info" + File.separator + "alternates";
+	private static final String COMMIT_GRAPH = "objects" + File.separator + "info" + File.separator + "commit-graph";
+	private static final String PACKS = "objects" + File.separator + "pack";
+	private static final Pattern VERSION = Pattern.compile("(\\d+)\\.(\\d+)");
+
+	private static Boolean nativeGitAvailable;
+
+	private final boolean nativeGit;
+
+	public RepositoryOptimizer() {
+		this(isNativeGitAvailable());
+	}
+
+	/**
+	 * @param useNativeGit
+	 *            - whether to optimize the repositories with the native git
+	 *            (which must be in the {@code PATH}) instead of JGit.
+	 */
+	public RepositoryOptimizer(boolean useNativeGit) {
+		this.nativeGit = useNativeGit;
+	}
+
+	public boolean usesNativeGit() {
+		return nativeGit;
+	}
+
+	/**
+	 * @return whether the {@code git} command is in the {@code PATH} and
+	 *         writes commit-graphs (i.e., git 2.18 or newer).
+	 */
+	public static synchronized boolean isNativeGitAvailable() {
+		if (nativeGitAvailable == null) {
+			try {
+				List<String> output = new ArrayList<String>();
+				nativeGitAvailable = run(output, "git", "--version") == 0 && !output.isEmpty()
+						&& writesCommitGraphs(output.get(0));
+			} catch (IOException e) {
+				nativeGitAvailable = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return nativeGitAvailable;
+	}
+
+	/**
+	 * @param version
+	 *            - the output of {@code git --version}, e.g.,
+	 *            {@code git version 2.39.2}.
+	 * @return whether that version writes commit-graphs.
+	 */
+	public static boolean writesCommitGraphs(String version) {
+		Matcher m = VERSION.matcher(version);
+		if (!m.find()) {
+			return false;
+		}
+		int major = Integer.parseInt(m.group(1));
+		int minor = Integer.parseInt(m.group(2));
+		return major > 2 || (major == 2 && minor >= 18);
+	}
+
+	/**
+	 * Optimizes the given repository, unless it is already optimized (i.e.,
+	 * nothing was fetched since its last optimization).
+	 * 
+	 * @param gitDir
+	 *            - the git directory of the repository.
+	 * @param borrowed
+	 *            - whether other repositories borrow its objects.
+	 * @return whether the repository was optimized.
+	 */
+	public boolean optimize(File gitDir, boolean borrowed) throws IOException {
+		if (isOptimized(gitDir)) {
+			return false;
+		}
+		boolean borrows = new File(gitDir, ALTERNATES).exists();
+		if (nativeGit) {
+			List<String> repack = new ArrayList<String>(Arrays.asList("git", "--git-dir=" + gitDir.getAbsolutePath(),
+					"repack", "-a", "-d", "-k", "-q"));
+			// the bitmaps need all the objects in the pack
+			repack.add(borrows ? "-l" : "-b");
+			exec(repack.toArray(new String[repack.size()]));
+			exec("git", "--git-dir=" + gitDir.getAbsolutePath(), "pack-refs", "--all");
+			exec("git", "--git-dir=" + gitDir.getAbsolutePath(), "commit-graph", "write", "--reachable",
+					"--no-progress");
+			return true;
+		}
+		try (FileRepository repo = new FileRepository(gitDir)) {
+			GC gc = new GC(repo);
+			if (borrows || borrowed) {
+				// it would either copy the borrowed objects or prune the lent ones
+				gc.packRefs();
+			} else {
+				// the fetched packs are recent, so they would be kept for an hour
+				gc.setPackExpireAgeMillis(0);
+				gc.gc();
+			}
+		} catch (ParseException e) {
+			throw new IOException("Invalid gc configuration of " + gitDir, e);
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the objects of the given repository are in a single
+	 *         pack with the indexes this optimizer writes, i.e., there is no
+	 *         loose object nor pack written after its optimization.
+	 */
+	public boolean isOptimized(File gitDir) {
+		File[] packs = new File(gitDir, PACKS).listFiles(f -> f.getName().endsWith(".pack"));
+		if (packs == null) {
+			packs = new File[0];
+		}
+		// a fork may have no object of its own
+		if (packs.length > 1 || hasLooseObjects(gitDir)) {
+			return false;
+		}
+		File pack = (packs.length == 0) ? null : packs[0];
+		if (pack != null && !new File(gitDir, ALTERNATES).exists()) {
+			String name = pack.getName().substring(0, pack.getName().length() - ".pack".length());
+			if (!new File(pack.getParentFile(), name + ".bitmap").exists()) {
+				return false;
+			}
+		}
+		if (nativeGit) {
+			File graph = new File(gitDir, COMMIT_GRAPH);
+			return graph.exists() && (pack == null || graph.lastModified() >= pack.lastModified());
+		}
+		return true;
+	}
+
+	private static boolean hasLooseObjects(File gitDir) {
+		File[] dirs = new File(gitDir, "objects").listFiles(f -> f.isDirectory() && f.getName().length() == 2);
+		if (dirs == null) {
+			return false;
+		}
+		for (File dir : dirs) {
+			String[] objects = dir.list();
+			if (objects != null && objects.length > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void exec(String... command) throws IOException {
+		int exitCode;
+		try {
+			exitCode = run(null, command);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while running '" + String.join(" ", command) + "'.");
+		}
+		if (exitCode != 0) {
+			throw new IOException("'" + String.join(" ", command) + "' exited with " + exitCode + ".");
+		}
+	}
+
+	/**
+	 * Runs the given command, adding the lines of its output to the given
+	 * list, if any.
+	 */
+	private static int run(List<String> output, String... command) throws IOException, InterruptedException {
+		ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+		// we need this to disable the pager
+		builder.environment().put("GIT_PAGER", "cat");
+		Process pr = builder.start();
+		// drains the output, so the process does not block on it
+		try (BufferedReader buf = new BufferedReader(new InputStreamReader(pr.getInputStream()))) {
+			String line;
+			while ((line = buf.readLine()) != null) {
+				if (output != null) {
+					output.add(line);
+				}
+			}
+		}
+		return pr.waitFor();
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import br.com.riselabs.cotonet.builder.HistoryWindow;
+import br.com.riselabs.cotonet.model.beans.WorkTask;
+import br.com.riselabs.cotonet.model.dao.WorkQueueDAO;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.enums.TaskState;
+import br.com.riselabs.cotonet.model.exceptions.EmptyContentException;
+import br.com.riselabs.cotonet.model.exceptions.InvalidCotonetBeanException;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Fills the work queue (see {@code WorkQueueDAO}) with the repositories, or
+ * with each of their merge scenarios, and follows the workers until the queue
+ * is drained.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkCoordinator {
+
+	private final WorkQueueDAO dao = new WorkQueueDAO();
+	private final NetworkType type;
+	private boolean splitScenarios;
+	private HistoryWindow window = new HistoryWindow();
+	private int maxAttempts = WorkQueueWorker.DEFAULT_MAX_ATTEMPTS;
+	private long pollMillis = TimeUnit.SECONDS.toMillis(10);
+
+	/**
+	 * @param aType
+	 * @throws SQLException
+	 *             - if the {@code work_queue} table could not be created nor
+	 *             found.
+	 */
+	public WorkCoordinator(NetworkType aType) throws SQLException {
+		this.type = aType;
+		dao.createTable();
+	}
+
+	/**
+	 * Sets whether each merge scenario is a task on its own. It lets the
+	 * workers share the scenarios of large repositories, but the coordinator
+	 * has to clone the repositories to find them. The Codeface files are only
+	 * written for whole repositories.
+	 */
+	public WorkCoordinator setSplitScenarios(boolean split) {
+		this.splitScenarios = split;
+		return this;
+	}
+
+	/**
+	 * Sets the window of the history where the merge scenarios are looked
+	 * for when they are split. It should be the same of the workers.
+	 */
+	public WorkCoordinator setHistoryWindow(HistoryWindow aWindow) {
+		this.window = aWindow;
+		return this;
+	}
+
+	/**
+	 * Sets how many times a task is leased before it is given up as failed.
+	 * It should be the same of the workers.
+	 */
+	public WorkCoordinator setMaxAttempts(int attempts) {
+		this.maxAttempts = Math.max(1, attempts);
+		return this;
+	}
+
+	public WorkCoordinator setPollInterval(long time, TimeUnit unit) {
+		this.pollMillis = unit.toMillis(time);
+		return this;
+	}
+
+	/**
+	 * Enqueues the given repositories. The tasks already in the queue are not
+	 * enqueued again, so an interrupted run can be resumed.
+	 * 
+	 * @return - the number of tasks enqueued.
+	 */
+	public int enqueue(List<String> urls) throws InterruptedException {
+		int enqueued = 0;
+		for (String url : urls) {
+			try {
+				if (splitScenarios) {
+					enqueued += enqueueScenarios(url);
+				} else if (dao.save(new WorkTask(url, type))) {
+					enqueued++;
+				}
+			} catch (InvalidCotonetBeanException | EmptyContentException | GitAPIException | IOException e) {
+				Logger.log("Could not enqueue " + url + ": " + e.getMessage());
+				Logger.logStackTrace(e);
+			}
+		}
+		Logger.log(enqueued + " tasks enqueued.");
+		return enqueued;
+	}
+
+	/**
+	 * Enqueues a task for each merge commit of the given repository.
+	 */
+	private int enqueueScenarios(String url) throws InvalidCotonetBeanException, EmptyContentException,
+			GitAPIException, IOException, InterruptedException {
+		RepositoryCrawler crawler = new RepositoryCrawler(url, false, type);
+		crawler.openOrClone();
+		int enqueued = 0;
+		try {
+			for (RevCommit commit : window.findMerges(crawler.getProject().getRepository())) {
+				if (dao.save(new WorkTask(url, commit.getName(), type))) {
+					enqueued++;
+				}
+			}
+		} finally {
+			crawler.close();
+		}
+		Logger.log("[" + crawler.getProject().getName() + "] " + enqueued + " scenarios enqueued.");
+		return enqueued;
+	}
+
+	/**
+	 * @return the number of tasks in each state.
+	 */
+	public Map<TaskState, Integer> getCounts() throws SQLException {
+		Map<TaskState, Integer> counts = new EnumMap<TaskState, Integer>(TaskState.class);
+		for (TaskState state : TaskState.values()) {
+			counts.put(state, dao.count(state));
+		}
+		return counts;
+	}
+
+	/**
+	 * Waits until no task is pending or leased, logging the counts of the
+	 * tasks in the meantime. The tasks whose last lease expired are given up
+	 * as failed.
+	 * 
+	 * @return - {@code false} when the timeout elapsed first.
+	 */
+	public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException, SQLException {
+		long deadline = (timeout == Long.MAX_VALUE) ? Long.MAX_VALUE : System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			dao.expire(maxAttempts);
+			Map<TaskState, Integer> counts = getCounts();
+			Logger.log("Work queue: " + counts);
+			if (counts.get(TaskState.PENDING) == 0 && counts.get(TaskState.LEASED) == 0) {
+				return true;
+			}
+			if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+				return false;
+			}
+			Thread.sleep(pollMillis);
+		}
+	}
+
+	/**
+	 * @return the URLs of the whole repositories done, i.e., the ones whose
+	 *         Codeface files were written.
+	 */
+	public List<String> getDoneRepositories() throws InvalidCotonetBeanException {
+		WorkTask done = new WorkTask();
+		done.setState(TaskState.DONE);
+		List<String> urls = new ArrayList<String>();
+		for (WorkTask task : dao.search(done)) {
+			if (task.getScenario() == null && task.getType() == type) {
+				urls.add(task.getUrl());
+			}
+		}
+		return urls;
+	}
+}
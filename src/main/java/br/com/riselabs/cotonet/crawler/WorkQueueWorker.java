@@ -0,0 +1,358 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
+
+import br.com.riselabs.cotonet.builder.BuildBudget;
+import br.com.riselabs.cotonet.builder.FileScope;
+import br.com.riselabs.cotonet.builder.HistoryWindow;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioSample;
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
+import br.com.riselabs.cotonet.model.beans.WorkTask;
+import br.com.riselabs.cotonet.model.dao.WorkQueueDAO;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.JobState;
+import br.com.riselabs.cotonet.model.enums.TaskState;
+import br.com.riselabs.cotonet.model.exceptions.EmptyContentException;
+import br.com.riselabs.cotonet.util.Directories;
+import br.com.riselabs.cotonet.util.Logger;
+import br.com.riselabs.cotonet.util.WorktreeLock;
+
+/**
+ * A worker of the work queue (see {@code WorkQueueDAO}). It leases the tasks
+ * one at a time and runs the {@code RepositoryCrawler} phases for them,
+ * renewing the lease with heartbeats while it works. Several workers, in one
+ * or many processes and nodes, may share the same queue.
+ * 
+ * The workers of a node share the clones of the repositories, so a worker
+ * locks the worktree of the repository (also among processes) while it opens
+ * it and while it merges a scenario there (see {@code WorktreeLock}). The
+ * rest of the work (e.g., the in-core merges, the side blames, and the
+ * persistence) runs at the same time of the other workers.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkQueueWorker implements Runnable {
+
+	public static final int DEFAULT_LEASE_SECONDS = 300;
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	private final String name;
+	private final WorkQueueDAO dao = new WorkQueueDAO();
+	private final WorkQueueDAO heartbeatDao = new WorkQueueDAO();
+	private final ScheduledExecutorService heartbeats;
+	private int leaseSeconds = DEFAULT_LEASE_SECONDS;
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private long pollMillis = TimeUnit.SECONDS.toMillis(10);
+	private BlameMode blameMode = BlameMode.MERGED_FILE;
+	private BuildBudget budget = new BuildBudget();
+	private FileScope scope = new FileScope();
+	private ThreeWayMergeStrategy mergeStrategy = MergeStrategy.RECURSIVE;
+	private SupportedAlgorithm diffAlgorithm;
+	private HistoryWindow window = new HistoryWindow();
+	private ScenarioSample sample;
+	private RepositoryOptimizer optimizer;
+	private volatile boolean stopped;
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private volatile SQLException queueError;
+
+	public WorkQueueWorker() {
+		this(defaultName());
+	}
+
+	/**
+	 * @param aName
+	 *            - the name of the worker in the leases. It should be unique
+	 *            among the workers of the queue.
+	 */
+	public WorkQueueWorker(String aName) {
+		this.name = aName;
+		this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "cotonet-heartbeat-" + aName);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * @return the process id and host of this JVM (e.g., "4242@node1")
+	 *         followed by the id of the current thread.
+	 */
+	public static String defaultName() {
+		return ManagementFactory.getRuntimeMXBean().getName() + "#" + Thread.currentThread().getId();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Sets how long a task is held without a heartbeat. The heartbeats are
+	 * sent three times per lease.
+	 */
+	public WorkQueueWorker setLeaseSeconds(int seconds) {
+		this.leaseSeconds = Math.max(3, seconds);
+		return this;
+	}
+
+	/**
+	 * Sets how many times a task is leased before it is given up as failed.
+	 */
+	public WorkQueueWorker setMaxAttempts(int attempts) {
+		this.maxAttempts = Math.max(1, attempts);
+		return this;
+	}
+
+	/**
+	 * Sets how long the worker waits for new tasks when the queue has none
+	 * available, but some other worker still holds a task.
+	 */
+	public WorkQueueWorker setPollInterval(long time, TimeUnit unit) {
+		this.pollMillis = unit.toMillis(time);
+		return this;
+	}
+
+	public WorkQueueWorker setBlameMode(BlameMode mode) {
+		this.blameMode = mode;
+		return this;
+	}
+
+	public WorkQueueWorker setBudget(BuildBudget aBudget) {
+		this.budget = aBudget;
+		return this;
+	}
+
+	public WorkQueueWorker setFileScope(FileScope aScope) {
+		this.scope = aScope;
+		return this;
+	}
+
+	public WorkQueueWorker setMergeStrategy(ThreeWayMergeStrategy aStrategy) {
+		this.mergeStrategy = aStrategy;
+		return this;
+	}
+
+	public WorkQueueWorker setDiffAlgorithm(SupportedAlgorithm anAlgorithm) {
+		this.diffAlgorithm = anAlgorithm;
+		return this;
+	}
+
+	public WorkQueueWorker setHistoryWindow(HistoryWindow aWindow) {
+		this.window = aWindow;
+		return this;
+	}
+
+	/**
+	 * Sets the sample of the merge scenarios of the repository tasks. It does
+	 * not apply to the tasks of single scenarios.
+	 */
+	public WorkQueueWorker setSample(ScenarioSample aSample) {
+		this.sample = aSample;
+		return this;
+	}
+
+	/**
+	 * @see RepositoryCrawler#setOptimizer(RepositoryOptimizer)
+	 */
+	public WorkQueueWorker setOptimizer(RepositoryOptimizer anOptimizer) {
+		this.optimizer = anOptimizer;
+		return this;
+	}
+
+	/**
+	 * Makes the worker stop after its current task.
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the failure of the work queue that stopped the worker, or
+	 *         {@code null} when it stopped because the queue was drained (or
+	 *         it was told to).
+	 */
+	public SQLException getQueueError() {
+		return queueError;
+	}
+
+	/**
+	 * Works on the tasks of the queue until it has no pending tasks and no
+	 * task held by some worker, i.e., until no lease can expire and give a
+	 * task back to the queue. The {@code work_queue} table is created when
+	 * missing. A failure of the queue (e.g., the database is not reachable)
+	 * stops the worker (see {@code #getQueueError()}).
+	 */
+	@Override
+	public void run() {
+		Logger.log("[" + name + "] Worker started.");
+		try {
+			dao.createTable();
+			while (!stopped) {
+				WorkTask task = dao.lease(name, leaseSeconds, maxAttempts);
+				if (task != null) {
+					process(task);
+					continue;
+				}
+				dao.expire(maxAttempts);
+				if (dao.count(TaskState.PENDING) == 0 && dao.count(TaskState.LEASED) == 0) {
+					break;
+				}
+				Thread.sleep(pollMillis);
+			}
+		} catch (InterruptedException e) {
+			Logger.logStackTrace(e);
+		} catch (SQLException e) {
+			queueError = e;
+			Logger.log("[" + name + "] Worker stopped, the work queue failed: " + e.getMessage());
+			Logger.logStackTrace(e);
+		} finally {
+			heartbeats.shutdownNow();
+		}
+		Logger.log("[" + name + "] Worker finished: " + completed + " tasks done, " + failed + " failed.");
+	}
+
+	/**
+	 * Runs the given (leased) task and finishes it in the queue.
+	 */
+	public void process(WorkTask task) throws InterruptedException, SQLException {
+		Logger.log("[" + name + "] Task leased: " + task + " attempt " + task.getAttempts() + ".");
+		AtomicBoolean lost = new AtomicBoolean();
+		long period = Math.max(1, leaseSeconds / 3);
+		ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> {
+			try {
+				if (!lost.get() && !heartbeatDao.heartbeat(task, leaseSeconds)) {
+					lost.set(true);
+					Logger.log("[" + name + "] Lease lost: " + task);
+				}
+			} catch (SQLException e) {
+				// the next heartbeat tries again, before the lease expires
+				Logger.log("[" + name + "] Heartbeat failed: " + task + " " + e.getMessage());
+			}
+		}, period, period, TimeUnit.SECONDS);
+		CrawlJob job = new CrawlJob(task.getUrl());
+		try {
+			crawl(task, job, lost);
+		} finally {
+			heartbeat.cancel(false);
+		}
+		if (lost.get()) {
+			// another worker took the task, so it finishes it
+			return;
+		}
+		if (job.getState() == JobState.DONE) {
+			dao.complete(task);
+			completed.incrementAndGet();
+			Logger.log("[" + name + "] Task done: " + task);
+		} else {
+			dao.fail(task, job.getError(), maxAttempts);
+			failed.incrementAndGet();
+			Logger.log("[" + name + "] Task failed: " + task + " " + job.getError());
+		}
+	}
+
+	/**
+	 * Runs the crawler phases of the given task. The networks are only
+	 * persisted while the worker still holds the lease, otherwise the worker
+	 * that took the task over persists them.
+	 */
+	private void crawl(WorkTask task, CrawlJob job, AtomicBoolean lost) throws InterruptedException, SQLException {
+		RepositoryCrawler crawler = null;
+		try {
+			crawler = new RepositoryCrawler(task.getUrl(), false, task.getType());
+			crawler.setBlameMode(blameMode);
+			crawler.setBudget(budget);
+			crawler.setFileScope(scope);
+			crawler.setMergeStrategy(mergeStrategy);
+			crawler.setDiffAlgorithm(diffAlgorithm);
+			crawler.setHistoryWindow(window);
+			crawler.setOptimizer(optimizer);
+			crawler.setJob(job);
+			if (task.getScenario() != null) {
+				crawler.setScenarios(Collections.singletonList(task.getScenario()));
+			} else {
+				crawler.setSample(sample);
+			}
+			crawler.setWorktreeLock(
+					new WorktreeLock(new File(Directories.getReposDir(), crawler.getProject().getName() + ".lock")));
+			crawler.openOrClone();
+			NetworkBuilder<Object> builder = crawler.createBuilder();
+			crawler.buildNetworks(builder);
+			if (!holdsLease(task, lost)) {
+				return;
+			}
+			crawler.persistNetworks(builder);
+			// the Codeface files need all the scenarios of the repository
+			if (task.getScenario() == null) {
+				crawler.writeCodefaceFiles();
+			}
+			job.setState(JobState.DONE);
+		} catch (InterruptedException e) {
+			job.fail(e);
+			throw e;
+		} catch (RuntimeException | EmptyContentException | GitAPIException | IOException e) {
+			job.fail(e);
+			Logger.logStackTrace(e);
+		} finally {
+			if (crawler != null) {
+				crawler.close();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the worker still holds the lease of the given task. The
+	 *         lease is renewed, so it does not expire right after the check.
+	 */
+	private boolean holdsLease(WorkTask task, AtomicBoolean lost) throws SQLException {
+		if (!lost.get() && !dao.heartbeat(task, leaseSeconds)) {
+			lost.set(true);
+			Logger.log("[" + name + "] Lease lost: " + task);
+		}
+		return !lost.get();
+	}
+}
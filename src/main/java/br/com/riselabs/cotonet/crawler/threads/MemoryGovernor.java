@@ -0,0 +1,262 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import br.com.riselabs.cotonet.model.beans.RepositoryCost;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * Admits a new crawl only while the heap has room for it. Each crawl reserves
+ * its estimated footprint (see {@code #estimateFootprint(RepositoryCost)}),
+ * and a crawl waits while the reservations would exceed the budget or while
+ * the live heap (i.e., the heap used after the last collection) is above the
+ * high watermark. One crawl is always admitted when none is running, so a
+ * repository larger than the budget still runs, alone.
+ * 
+ * The crawls never force a collection: the collector runs when it needs to,
+ * and the admission keeps the overlapping crawls from running out of memory.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MemoryGovernor implements MemoryGovernorMBean {
+
+	private static final String OBJECT_NAME = "br.com.riselabs.cotonet:type=MemoryGovernor";
+
+	/** the fraction of the heap the crawls may reserve, by default */
+	public static final double DEFAULT_HEAP_FRACTION = 0.75;
+
+	/** the live heap fraction above which no crawl is admitted */
+	public static final double HIGH_WATERMARK = 0.85;
+
+	/** the footprint of a repository whose size is unknown */
+	public static final long DEFAULT_FOOTPRINT = 256L * 1024 * 1024;
+
+	private static final long MIN_FOOTPRINT = 64L * 1024 * 1024;
+
+	/** the objects of a pack take about this many times its size in memory */
+	private static final int PACK_FACTOR = 2;
+
+	/** how often the waiting crawls check the live heap again */
+	private static final long RECHECK_MILLIS = 1000;
+
+	private final long maxHeap;
+	private final long budget;
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition released = lock.newCondition();
+	private long reserved;
+	private int running;
+	private int waiting;
+	private ObjectName mbeanName;
+
+	public MemoryGovernor() {
+		this(DEFAULT_HEAP_FRACTION);
+	}
+
+	/**
+	 * @param heapFraction
+	 *            - the fraction of the maximum heap the crawls may reserve.
+	 */
+	public MemoryGovernor(double heapFraction) {
+		this(Runtime.getRuntime().maxMemory(), (long) (Runtime.getRuntime().maxMemory() * heapFraction));
+	}
+
+	/**
+	 * @param maxHeapBytes
+	 *            - the maximum heap
+	 * @param budgetBytes
+	 *            - the memory the crawls may reserve together
+	 */
+	public MemoryGovernor(long maxHeapBytes, long budgetBytes) {
+		this.maxHeap = maxHeapBytes;
+		this.budget = Math.max(1, budgetBytes);
+		register();
+	}
+
+	/**
+	 * Returns the estimated memory used to crawl the repository with the
+	 * given cost, i.e., a multiple of its pack size.
+	 */
+	public static long estimateFootprint(RepositoryCost cost) {
+		if (cost == null || cost.getPackBytes() <= 0) {
+			return DEFAULT_FOOTPRINT;
+		}
+		return Math.max(MIN_FOOTPRINT, PACK_FACTOR * cost.getPackBytes());
+	}
+
+	/**
+	 * Reserves the given memory, blocking until there is room for it.
+	 * 
+	 * @param bytes
+	 * @return - the memory reserved, to be given back to
+	 *         {@code #release(long)}.
+	 * @throws InterruptedException
+	 */
+	public long admit(long bytes) throws InterruptedException {
+		// a reservation larger than the budget waits for an empty heap
+		long reservation = Math.min(Math.max(0, bytes), budget);
+		lock.lock();
+		try {
+			waiting++;
+			try {
+				while (running > 0 && !hasRoom(reservation)) {
+					released.await(RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+				}
+			} finally {
+				waiting--;
+			}
+			reserved += reservation;
+			running++;
+			return reservation;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean hasRoom(long reservation) {
+		return reserved + reservation <= budget && getHeapPressure() < HIGH_WATERMARK;
+	}
+
+	/**
+	 * Gives back memory reserved by {@code #admit(long)}.
+	 * 
+	 * @param reservation
+	 */
+	public void release(long reservation) {
+		lock.lock();
+		try {
+			reserved -= reservation;
+			running--;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getMaxHeapBytes() {
+		return maxHeap;
+	}
+
+	@Override
+	public long getUsedHeapBytes() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	@Override
+	public long getLiveHeapBytes() {
+		long live = -1;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isValid()) {
+				continue;
+			}
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null) {
+				live = Math.max(0, live) + usage.getUsed();
+			}
+		}
+		return live;
+	}
+
+	@Override
+	public double getHeapPressure() {
+		long live = getLiveHeapBytes();
+		return (live < 0 || maxHeap <= 0) ? 0 : Math.min(1.0, (double) live / maxHeap);
+	}
+
+	@Override
+	public long getBudgetBytes() {
+		return budget;
+	}
+
+	@Override
+	public long getReservedBytes() {
+		lock.lock();
+		try {
+			return reserved;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getRunning() {
+		lock.lock();
+		try {
+			return running;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getWaiting() {
+		lock.lock();
+		try {
+			return waiting;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("heap pressure %.2f (%d MB used of %d MB), %d MB reserved by %d crawls, %d waiting",
+				getHeapPressure(), getUsedHeapBytes() >> 20, maxHeap >> 20, getReservedBytes() >> 20,
+				getRunning(), getWaiting());
+	}
+
+	private void register() {
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME + ",id=" + System.identityHashCode(this));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			mbeanName = name;
+		} catch (JMException | SecurityException e) {
+			Logger.log("Could not register the memory governor MBean: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters the MBean of the governor.
+	 */
+	public void close() {
+		if (mbeanName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch (JMException | SecurityException e) {
+			Logger.log("Could not unregister the memory governor MBean: " + e.getMessage());
+		}
+		mbeanName = null;
+	}
+}
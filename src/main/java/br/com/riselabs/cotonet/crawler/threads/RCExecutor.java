@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executors that run the {@code RepositoryCrawler}s.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public interface RCExecutor {
+
+	/**
+	 * Executes the given task, blocking while the executor is saturated.
+	 * 
+	 * @param task
+	 * @throws InterruptedException
+	 *             - if interrupted while waiting.
+	 */
+	void runTask(Runnable task) throws InterruptedException;
+
+	void shutDown();
+
+	/**
+	 * Blocks until all tasks have completed after a shutdown request, or the
+	 * timeout occurs.
+	 * 
+	 * @return - {@code true} if the executor terminated.
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+	int getPoolSize();
+
+	/**
+	 * Returns the executor where the CPU-bound stages of the tasks (e.g.,
+	 * merging and building the networks) must run, or {@code null} if they
+	 * run in the task's own thread.
+	 */
+	default ExecutorService getComputeExecutor() {
+		return null;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This executor runs the crawling tasks in a work-stealing pool. The tasks
+ * fork the replay of the merges and the building of the scenario networks
+ * (see {@code NetworkBuilder#build()}), so a huge repository is shared by the
+ * workers that would otherwise go idle. The blocking phases of the tasks
+ * (e.g., cloning) are managed blockers, so the pool compensates for them.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCForkJoinExecutor implements RCExecutor {
+
+	private final ForkJoinPool pool;
+
+	/** bounds the repositories submitted but not finished */
+	private final Semaphore slots;
+
+	public RCForkJoinExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public RCForkJoinExecutor(int parallelism) {
+		parallelism = Math.max(1, parallelism);
+		this.pool = new ForkJoinPool(parallelism);
+		this.slots = new Semaphore(2 * parallelism, true);
+	}
+
+	@Override
+	public void runTask(final Runnable task) throws InterruptedException {
+		slots.acquire();
+		try {
+			pool.execute(ForkJoinTask.adapt(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						slots.release();
+					}
+				}
+			}));
+		} catch (RuntimeException e) {
+			slots.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutDown() {
+		pool.shutdown();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public int getPoolSize() {
+		return pool.getParallelism();
+	}
+
+	public long getStealCount() {
+		return pool.getStealCount();
+	}
+}
@@ -0,0 +1,387 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * A pipeline of stages connected by bounded queues. Each stage has its own
+ * workers, so a slow stage (e.g., persisting networks) does not stall the
+ * others while there is room in its queue. When a queue is full, the workers
+ * of the previous stage (or the submitter) block until there is room, i.e.,
+ * the slowest stage throttles the ones before it.
+ * 
+ * Each stage registers itself as an MBean with its queue depth and latencies.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCPipeline<T> {
+
+	private static final String OBJECT_NAME = "br.com.riselabs.cotonet:type=RCPipeline";
+
+	/** how often idle workers check whether their stage was closed */
+	private static final long POLL_MILLIS = 100;
+
+	/**
+	 * The work done by a stage on each item.
+	 */
+	@FunctionalInterface
+	public interface StageStep<T> {
+		void process(T item) throws Exception;
+	}
+
+	/**
+	 * Receives the items leaving the pipeline.
+	 */
+	@FunctionalInterface
+	public interface FinishListener<T> {
+		/**
+		 * @param item
+		 * @param millis
+		 *            - the time the stages spent on the item, not counting
+		 *            the time it waited in the queues
+		 * @param failure
+		 *            - the failure that dropped the item, or {@code null} if
+		 *            it went through all stages
+		 */
+		void finished(T item, long millis, Exception failure);
+	}
+
+	private final List<Stage> stages = new ArrayList<Stage>();
+	private FinishListener<T> onFinished;
+	private boolean started;
+
+	/**
+	 * Appends a stage to the pipeline.
+	 * 
+	 * @param name
+	 *            - the name of the stage (used by the metrics)
+	 * @param threads
+	 *            - the number of workers of the stage
+	 * @param queueCapacity
+	 *            - the number of items that may wait for the stage
+	 * @param step
+	 *            - the work done on each item
+	 * @return
+	 */
+	public RCPipeline<T> addStage(String name, int threads, int queueCapacity, StageStep<T> step) {
+		if (started) {
+			throw new IllegalStateException("The pipeline was already started.");
+		}
+		stages.add(new Stage(name, threads, queueCapacity, step));
+		return this;
+	}
+
+	/**
+	 * Sets the callback for the items leaving the pipeline, either after the
+	 * last stage or after a failure.
+	 * 
+	 * @param callback
+	 * @return
+	 */
+	public RCPipeline<T> setOnFinished(FinishListener<T> callback) {
+		this.onFinished = callback;
+		return this;
+	}
+
+	/**
+	 * Starts the workers of all stages.
+	 */
+	public synchronized RCPipeline<T> start() {
+		if (stages.isEmpty()) {
+			throw new IllegalStateException("The pipeline has no stages.");
+		}
+		if (!started) {
+			started = true;
+			for (int i = 0; i < stages.size(); i++) {
+				stages.get(i).start((i + 1 < stages.size()) ? stages.get(i + 1) : null);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Puts the item in the queue of the first stage, blocking while it is
+	 * full.
+	 * 
+	 * @param item
+	 * @throws InterruptedException
+	 */
+	public void submit(T item) throws InterruptedException {
+		start();
+		stages.get(0).put(new Ticket<T>(item));
+	}
+
+	/**
+	 * Closes the pipeline: the stages finish the items already submitted and
+	 * then stop, from the first to the last.
+	 */
+	public void shutDown() {
+		start();
+		stages.get(0).close();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Stage stage : stages) {
+			if (!stage.done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public List<? extends RCPipelineStageMBean> getStages() {
+		return stages;
+	}
+
+	/**
+	 * An item and the time it entered the current queue.
+	 */
+	private static class Ticket<T> {
+		final T item;
+		long enqueued;
+		long serviceNanos;
+		Exception failure;
+
+		Ticket(T anItem) {
+			this.item = anItem;
+		}
+	}
+
+	private void finished(Ticket<T> ticket) {
+		if (onFinished != null) {
+			onFinished.finished(ticket.item, TimeUnit.NANOSECONDS.toMillis(ticket.serviceNanos), ticket.failure);
+		}
+	}
+
+	private class Stage implements RCPipelineStageMBean {
+		private final String name;
+		private final int threads;
+		private final ArrayBlockingQueue<Ticket<T>> queue;
+		private final StageStep<T> step;
+		private final AtomicInteger workers = new AtomicInteger();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger producers = new AtomicInteger();
+		private final AtomicLong processed = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong waitNanos = new AtomicLong();
+		private final AtomicLong serviceNanos = new AtomicLong();
+		private final AtomicLong maxServiceNanos = new AtomicLong();
+		private volatile boolean closed;
+		private Stage next;
+		private ObjectName mbeanName;
+
+		Stage(String aName, int threadCount, int queueCapacity, StageStep<T> aStep) {
+			this.name = aName;
+			this.threads = Math.max(1, threadCount);
+			this.queue = new ArrayBlockingQueue<Ticket<T>>(Math.max(1, queueCapacity));
+			this.step = aStep;
+		}
+
+		void start(Stage nextStage) {
+			this.next = nextStage;
+			register();
+			workers.set(threads);
+			for (int i = 0; i < threads; i++) {
+				Thread worker = new Thread(this::work, "cotonet-" + name + "-" + i);
+				worker.setDaemon(true);
+				worker.start();
+			}
+		}
+
+		void put(Ticket<T> ticket) throws InterruptedException {
+			if (closed) {
+				throw new IllegalStateException("The stage " + name + " was closed.");
+			}
+			ticket.enqueued = System.nanoTime();
+			producers.incrementAndGet();
+			try {
+				queue.put(ticket);
+			} finally {
+				producers.decrementAndGet();
+			}
+		}
+
+		void close() {
+			closed = true;
+		}
+
+		private void work() {
+			try {
+				while (true) {
+					Ticket<T> ticket = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (ticket == null) {
+						if (closed && queue.isEmpty()) {
+							break;
+						}
+						continue;
+					}
+					if (process(ticket)) {
+						if (next == null) {
+							finished(ticket);
+						} else {
+							next.put(ticket);
+						}
+					} else {
+						finished(ticket);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (workers.decrementAndGet() == 0) {
+					unregister();
+					if (next != null) {
+						next.close();
+					}
+					done.countDown();
+				}
+			}
+		}
+
+		private boolean process(Ticket<T> ticket) {
+			long start = System.nanoTime();
+			waitNanos.addAndGet(start - ticket.enqueued);
+			active.incrementAndGet();
+			try {
+				step.process(ticket.item);
+				return true;
+			} catch (Exception e) {
+				ticket.failure = e;
+				failed.incrementAndGet();
+				Logger.log("[" + name + "] failed to process " + ticket.item + ": " + e.getMessage());
+				Logger.logStackTrace(e);
+				return false;
+			} finally {
+				active.decrementAndGet();
+				long elapsed = System.nanoTime() - start;
+				ticket.serviceNanos += elapsed;
+				serviceNanos.addAndGet(elapsed);
+				maxServiceNanos.accumulateAndGet(elapsed, Math::max);
+				processed.incrementAndGet();
+			}
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public int getThreads() {
+			return threads;
+		}
+
+		@Override
+		public int getQueueSize() {
+			return queue.size();
+		}
+
+		@Override
+		public int getQueueCapacity() {
+			return queue.size() + queue.remainingCapacity();
+		}
+
+		@Override
+		public int getActiveCount() {
+			return active.get();
+		}
+
+		@Override
+		public long getProcessedCount() {
+			return processed.get();
+		}
+
+		@Override
+		public long getFailedCount() {
+			return failed.get();
+		}
+
+		@Override
+		public double getAverageWaitMillis() {
+			long count = processed.get();
+			return (count == 0) ? 0 : waitNanos.get() / 1e6 / count;
+		}
+
+		@Override
+		public double getAverageServiceMillis() {
+			long count = processed.get();
+			return (count == 0) ? 0 : serviceNanos.get() / 1e6 / count;
+		}
+
+		@Override
+		public long getMaxServiceMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maxServiceNanos.get());
+		}
+
+		@Override
+		public int getBlockedProducers() {
+			return producers.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d processed (%d failed), queue %d/%d, wait %.1f ms, service %.1f ms (max %d ms)",
+					name, getProcessedCount(), getFailedCount(), getQueueSize(), getQueueCapacity(),
+					getAverageWaitMillis(), getAverageServiceMillis(), getMaxServiceMillis());
+		}
+
+		private void register() {
+			try {
+				ObjectName oName = new ObjectName(
+						OBJECT_NAME + ",stage=" + ObjectName.quote(name) + ",id=" + System.identityHashCode(RCPipeline.this));
+				ManagementFactory.getPlatformMBeanServer()
+						.registerMBean(new StandardMBean(this, RCPipelineStageMBean.class), oName);
+				mbeanName = oName;
+			} catch (JMException | SecurityException e) {
+				Logger.log("Could not register the pipeline stage MBean: " + e.getMessage());
+			}
+		}
+
+		private void unregister() {
+			if (mbeanName == null) {
+				return;
+			}
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (JMException | SecurityException e) {
+				Logger.log("Could not unregister the pipeline stage MBean: " + e.getMessage());
+			}
+			mbeanName = null;
+		}
+	}
+}
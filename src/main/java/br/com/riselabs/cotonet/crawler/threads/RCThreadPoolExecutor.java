@@ -20,37 +20,230 @@
  */
 package br.com.riselabs.cotonet.crawler.threads;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import br.com.riselabs.cotonet.util.Logger;
+
 /**
+ * This executor runs the crawling tasks. Its size is derived from the number
+ * of cores and the blocking coefficient of the tasks, i.e., the fraction of
+ * time they spend waiting for I/O (cloning, reading objects, and writing to
+ * the database): {@code size = cores / (1 - blockingCoefficient)}.
+ * 
+ * The queue is bounded: {@code #runTask(Runnable)} blocks the caller while
+ * all workers are busy and the queue is full. The pool registers itself as an
+ * MBean, so it can be resized at runtime.
+ * 
  * @author Alcemir R. Santos
  *
  */
-public class RCThreadPoolExecutor {
-	int poolSize = 4;
+public class RCThreadPoolExecutor implements RCExecutor, RCThreadPoolExecutorMBean {
+
+	/** crawling tasks spend most of their time cloning and reading objects */
+	public static final double DEFAULT_BLOCKING_COEFFICIENT = 0.5;
 
-	int maxPoolSize = 24;
+	/** how long a rejected task waits for the slot of a finishing task */
+	private static final long HANDOFF_TIMEOUT_MILLIS = 1000;
+
+	private static final String OBJECT_NAME = "br.com.riselabs.cotonet:type=RCThreadPoolExecutor";
 
 	long keepAliveTime = 60;
 
 	ThreadPoolExecutor threadPool = null;
 
-	final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+	final ArrayBlockingQueue<Runnable> queue;
+
+	/** one permit for each worker and each queue slot */
+	private final Slots slots;
+
+	private ObjectName mbeanName;
 
 	public RCThreadPoolExecutor() {
-		threadPool = new ThreadPoolExecutor(poolSize, maxPoolSize,
-				keepAliveTime, TimeUnit.SECONDS, queue);
+		this(DEFAULT_BLOCKING_COEFFICIENT);
+	}
+
+	/**
+	 * @param blockingCoefficient
+	 *            - the fraction of time the tasks wait for I/O, in [0, 1).
+	 */
+	public RCThreadPoolExecutor(double blockingCoefficient) {
+		this(getPoolSize(Runtime.getRuntime().availableProcessors(), blockingCoefficient));
+	}
+
+	public RCThreadPoolExecutor(int poolSize) {
+		this(poolSize, poolSize);
+	}
+
+	public RCThreadPoolExecutor(int poolSize, int queueCapacity) {
+		poolSize = Math.max(1, poolSize);
+		queue = new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity));
+		slots = new Slots(poolSize + queue.remainingCapacity());
+		threadPool = new ThreadPoolExecutor(poolSize, poolSize, keepAliveTime, TimeUnit.SECONDS, queue,
+				new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+						// a finishing task releases its slot before its worker is
+						// free, so the queue may be full for a moment. The slots
+						// already hold the submitters back, so it is not waited for
+						// long.
+						if (executor.isShutdown()) {
+							throw new RejectedExecutionException("The pool was shut down.");
+						}
+						boolean queued;
+						try {
+							queued = queue.offer(r, HANDOFF_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new RejectedExecutionException(e);
+						}
+						if (!queued) {
+							throw new RejectedExecutionException("The queue is still full.");
+						}
+						// shut down meanwhile, the task would never run
+						if (executor.isShutdown() && queue.remove(r)) {
+							throw new RejectedExecutionException("The pool was shut down.");
+						}
+					}
+				});
+		threadPool.allowCoreThreadTimeOut(true);
+		register();
+	}
+
+	/**
+	 * Returns the number of workers for the given number of cores and
+	 * blocking coefficient.
+	 */
+	public static int getPoolSize(int cores, double blockingCoefficient) {
+		double coefficient = Math.min(Math.max(blockingCoefficient, 0.0), 0.95);
+		return Math.max(1, (int) Math.round(cores / (1 - coefficient)));
 	}
 
-	public void runTask(Runnable task) {
-		threadPool.execute(task);
+	/**
+	 * Executes the given task, blocking until there is a free worker or a
+	 * free slot in the queue.
+	 */
+	@Override
+	public void runTask(final Runnable task) throws InterruptedException {
+		slots.acquire();
+		try {
+			threadPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						slots.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			slots.release();
+			throw e;
+		}
 	}
 
+	@Override
 	public void shutDown() {
 		threadPool.shutdown();
+		unregister();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return threadPool.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public int getPoolSize() {
+		return threadPool.getMaximumPoolSize();
 	}
 
+	@Override
+	public synchronized void setPoolSize(int size) {
+		size = Math.max(1, size);
+		int current = threadPool.getMaximumPoolSize();
+		if (size > current) {
+			threadPool.setMaximumPoolSize(size);
+			threadPool.setCorePoolSize(size);
+			slots.release(size - current);
+		} else if (size < current) {
+			threadPool.setCorePoolSize(size);
+			threadPool.setMaximumPoolSize(size);
+			slots.reducePermits(current - size);
+		}
+	}
+
+	@Override
+	public int getActiveCount() {
+		return threadPool.getActiveCount();
+	}
+
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	@Override
+	public long getCompletedTaskCount() {
+		return threadPool.getCompletedTaskCount();
+	}
 
-}
\ No newline at end of file
+	@Override
+	public int getBlockedSubmitters() {
+		return slots.getQueueLength();
+	}
+
+	private void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME + ",id=" + System.identityHashCode(this));
+			server.registerMBean(this, name);
+			mbeanName = name;
+		} catch (JMException | SecurityException e) {
+			Logger.log("Could not register the thread pool MBean: " + e.getMessage());
+		}
+	}
+
+	private void unregister() {
+		if (mbeanName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+		} catch (JMException | SecurityException e) {
+			Logger.log("Could not unregister the thread pool MBean: " + e.getMessage());
+		}
+		mbeanName = null;
+	}
+
+	/**
+	 * A semaphore whose permits can be reduced when the pool shrinks.
+	 */
+	private static class Slots extends Semaphore {
+		private static final long serialVersionUID = 1L;
+
+		Slots(int permits) {
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
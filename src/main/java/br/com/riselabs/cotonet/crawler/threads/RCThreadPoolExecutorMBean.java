@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+/**
+ * Management interface of the {@code RCThreadPoolExecutor}. It lets one watch
+ * and resize the pool at runtime (e.g., through {@code jconsole}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public interface RCThreadPoolExecutorMBean {
+
+	int getPoolSize();
+
+	/**
+	 * Resizes the pool. The queue capacity is kept.
+	 * 
+	 * @param size
+	 *            - the new number of workers (at least 1).
+	 */
+	void setPoolSize(int size);
+
+	int getActiveCount();
+
+	int getQueueSize();
+
+	int getQueueCapacity();
+
+	long getCompletedTaskCount();
+
+	/**
+	 * Returns the number of callers waiting for a free slot to submit a task.
+	 */
+	int getBlockedSubmitters();
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.crawler.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This executor runs each crawling task in its own virtual thread, so the
+ * tasks blocked on I/O (e.g., cloning, external git processes, and database
+ * writes) do not hold a platform thread. The CPU-bound stages of the tasks
+ * (i.e., the in-core merges and the building of the graphs) run in a
+ * bounded pool of platform threads (see {@code #getComputeExecutor()}).
+ * 
+ * Virtual threads require Java 21 or newer. They are looked up by
+ * reflection, so the project still runs on older JVMs (see
+ * {@code #isSupported()}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCVirtualThreadExecutor implements RCExecutor {
+
+	/** the repositories in flight per compute thread, by default */
+	private static final int IN_FLIGHT_PER_THREAD = 8;
+
+	private final ExecutorService io;
+	private final ExecutorService compute;
+	private final int computeThreads;
+
+	/** bounds the repositories submitted but not finished */
+	private final Semaphore slots;
+
+	public RCVirtualThreadExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param computeThreads
+	 *            - the number of platform threads of the CPU-bound stages.
+	 */
+	public RCVirtualThreadExecutor(int computeThreads) {
+		this(newVirtualThreadPerTaskExecutor(), computeThreads,
+				IN_FLIGHT_PER_THREAD * Math.max(1, computeThreads));
+	}
+
+	/**
+	 * @param ioExecutor
+	 *            - the executor of the tasks
+	 * @param computeThreads
+	 *            - the number of platform threads of the CPU-bound stages
+	 * @param maxInFlight
+	 *            - the maximum number of tasks submitted but not finished
+	 */
+	public RCVirtualThreadExecutor(ExecutorService ioExecutor, int computeThreads, int maxInFlight) {
+		if (ioExecutor == null) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer.");
+		}
+		this.io = ioExecutor;
+		this.computeThreads = Math.max(1, computeThreads);
+		this.compute = Executors.newFixedThreadPool(this.computeThreads);
+		this.slots = new Semaphore(Math.max(1, maxInFlight), true);
+	}
+
+	/**
+	 * @return whether the running JVM has virtual threads.
+	 */
+	public static boolean isSupported() {
+		return getFactoryMethod() != null;
+	}
+
+	private static Method getFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns an executor that starts a virtual thread per task, or
+	 * {@code null} if the running JVM has no virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		Method factory = getFactoryMethod();
+		if (factory == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void runTask(final Runnable task) throws InterruptedException {
+		slots.acquire();
+		try {
+			io.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						slots.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			slots.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public ExecutorService getComputeExecutor() {
+		return compute;
+	}
+
+	@Override
+	public void shutDown() {
+		io.shutdown();
+	}
+
+	/**
+	 * Waits for the tasks and then shuts the compute pool down.
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		if (!io.awaitTermination(timeout, unit)) {
+			return false;
+		}
+		compute.shutdown();
+		return compute.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the number of platform threads of the CPU-bound stages.
+	 */
+	@Override
+	public int getPoolSize() {
+		return computeThreads;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+
+/**
+ * This class holds the distinct authors and commits of the blamed lines of a
+ * file. The blame results of the chunks of the file share the same dictionary
+ * and refer to its entries by index, so each author and each commit id is
+ * kept only once per file.
+ *
+ * @author Alcemir R. Santos
+ */
+public class BlameDictionary {
+
+	private final List<DeveloperNode> authors = new ArrayList<DeveloperNode>();
+	private final Map<String, Integer> authorsByMail = new HashMap<String, Integer>();
+
+	private final List<String> commits = new ArrayList<String>();
+	private final Map<String, Integer> commitsByName = new HashMap<String, Integer>();
+	private final ObjectIdOwnerMap<CommitEntry> commitsById = new ObjectIdOwnerMap<CommitEntry>();
+
+	private boolean keepContents;
+
+	public BlameDictionary() {
+		this(true);
+	}
+
+	/**
+	 * @param keepContents
+	 *            - whether the results using this dictionary keep the content
+	 *            of the blamed lines.
+	 */
+	public BlameDictionary(boolean keepContents) {
+		this.keepContents = keepContents;
+	}
+
+	public boolean isKeepContents() {
+		return keepContents;
+	}
+
+	public synchronized int getAuthorIndex(DeveloperNode author) {
+		String key = getMailKey(author.getEmail());
+		Integer idx = authorsByMail.get(key);
+		if (idx == null) {
+			idx = authors.size();
+			authors.add(author);
+			authorsByMail.put(key, idx);
+		}
+		return idx;
+	}
+
+	/**
+	 * Same as {@link #getAuthorIndex(DeveloperNode)}, but the node is only
+	 * created when the author is not in the dictionary yet.
+	 */
+	public synchronized int getAuthorIndex(String aName, String anEmail) {
+		Integer idx = authorsByMail.get(getMailKey(anEmail));
+		if (idx == null) {
+			return getAuthorIndex(new DeveloperNode(aName, anEmail));
+		}
+		return idx;
+	}
+
+	public synchronized DeveloperNode getAuthor(int idx) {
+		return authors.get(idx);
+	}
+
+	public synchronized int getCommitIndex(String aCommit) {
+		Integer idx = commitsByName.get(aCommit);
+		if (idx == null) {
+			idx = commits.size();
+			commits.add(aCommit);
+			commitsByName.put(aCommit, idx);
+			if (ObjectId.isId(aCommit)) {
+				commitsById.add(new CommitEntry(ObjectId.fromString(aCommit), idx));
+			}
+		}
+		return idx;
+	}
+
+	/**
+	 * Same as {@link #getCommitIndex(String)}, but the name of the commit is
+	 * only computed when the commit is not in the dictionary yet.
+	 */
+	public synchronized int getCommitIndex(AnyObjectId aCommit) {
+		CommitEntry entry = commitsById.get(aCommit);
+		if (entry == null) {
+			return getCommitIndex(aCommit.name());
+		}
+		return entry.index;
+	}
+
+	public synchronized String getCommit(int idx) {
+		return commits.get(idx);
+	}
+
+	public synchronized int getCommitCount() {
+		return commits.size();
+	}
+
+	/**
+	 * Returns a copy of this dictionary. The authors are copied as well, so
+	 * the copy does not share {@code DeveloperNode} instances with this one.
+	 */
+	public synchronized BlameDictionary copy() {
+		BlameDictionary result = new BlameDictionary(keepContents);
+		for (DeveloperNode dev : authors) {
+			result.getAuthorIndex(new DeveloperNode(dev.getName(), dev.getEmail()));
+		}
+		for (String commit : commits) {
+			result.getCommitIndex(commit);
+		}
+		return result;
+	}
+
+	private static String getMailKey(String anEmail) {
+		return (anEmail == null) ? "" : anEmail;
+	}
+
+	private static class CommitEntry extends ObjectIdOwnerMap.Entry {
+		private static final long serialVersionUID = 1L;
+
+		final int index;
+
+		CommitEntry(AnyObjectId id, int index) {
+			super(id);
+			this.index = index;
+		}
+	}
+}
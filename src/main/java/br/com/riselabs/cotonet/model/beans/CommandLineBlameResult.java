@@ -20,87 +20,334 @@
  */
 package br.com.riselabs.cotonet.model.beans;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.lib.AnyObjectId;
 
 /**
+ * This class keeps the blamed lines of a chunk side in columns: the line
+ * numbers in increasing order, and for each line the indexes of its author
+ * and commit in the {@code BlameDictionary} of the file. The content of the
+ * lines is kept only when the dictionary says so.
+ * 
  * @author Alcemir R. Santos
  *
  */
 public class CommandLineBlameResult {
 
+	private static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 8;
+
 	private String filePath;
-	private Map<Integer, DeveloperNode> lineAuthorsMap;
-	private Map<Integer, String> lineContentMap;
-	private Map<Integer, String> lineCommitMap;
-	
-	public CommandLineBlameResult (String aPath){
-		this(aPath, new HashMap<Integer, DeveloperNode>(), new HashMap<Integer, String>(), new HashMap<>());
-	}
-	
-	public CommandLineBlameResult(String aPath, Map<Integer, DeveloperNode> aLineToAuthorMap, Map<Integer, String> aLineToContentMap, Map<Integer, String> aLinetoCommitMap) {
+	private BlameDictionary dictionary;
+
+	private int size;
+	private int[] lines;
+	private int[] authors;
+	private int[] commits;
+	private String[] contents;
+
+	public CommandLineBlameResult(String aPath) {
+		this(aPath, new BlameDictionary());
+	}
+
+	public CommandLineBlameResult(String aPath, BlameDictionary aDictionary) {
 		this.filePath = aPath;
-		this.lineAuthorsMap = aLineToAuthorMap;
-		this.lineContentMap = aLineToContentMap;
-		this.lineCommitMap = aLinetoCommitMap;
+		this.dictionary = aDictionary;
+		this.lines = new int[INITIAL_CAPACITY];
+		this.authors = new int[INITIAL_CAPACITY];
+		this.commits = new int[INITIAL_CAPACITY];
+		if (aDictionary.isKeepContents()) {
+			this.contents = new String[INITIAL_CAPACITY];
+		}
+	}
+
+	public CommandLineBlameResult(String aPath, Map<Integer, DeveloperNode> aLineToAuthorMap,
+			Map<Integer, String> aLineToContentMap, Map<Integer, String> aLinetoCommitMap) {
+		this(aPath);
+		for (Map.Entry<Integer, DeveloperNode> e : aLineToAuthorMap.entrySet()) {
+			addLineAuthor(e.getKey(), e.getValue());
+		}
+		for (Map.Entry<Integer, String> e : aLineToContentMap.entrySet()) {
+			addLineContent(e.getKey(), e.getValue());
+		}
+		for (Map.Entry<Integer, String> e : aLinetoCommitMap.entrySet()) {
+			addLineCommit(e.getKey(), e.getValue());
+		}
 	}
-	
+
 	/**
 	 * may return null if the value does not exist.
 	 * 
 	 * @param idx
 	 * @return
 	 */
-	public DeveloperNode getAuthor(int idx){
-		return lineAuthorsMap.get(idx);
+	public DeveloperNode getAuthor(int idx) {
+		int row = find(idx);
+		return (row < 0 || authors[row] == NONE) ? null : dictionary.getAuthor(authors[row]);
 	}
-	
-	public String getFilePath(){
+
+	public String getFilePath() {
 		return filePath;
 	}
 
+	public BlameDictionary getDictionary() {
+		return dictionary;
+	}
+
 	public void addLineAuthor(Integer lineNumber, DeveloperNode author) {
-		if (lineAuthorsMap == null) {
-			lineAuthorsMap = new HashMap<Integer, DeveloperNode>();
-		}
-		lineAuthorsMap.put(lineNumber, author);
+		int row = row(lineNumber);
+		authors[row] = dictionary.getAuthorIndex(author);
 	}
-	
+
+	/**
+	 * Same as {@link #addLineAuthor(Integer, DeveloperNode)}, but the node is
+	 * only created for authors not yet in the dictionary.
+	 */
+	public void addLineAuthor(int lineNumber, String aName, String anEmail) {
+		int row = row(lineNumber);
+		authors[row] = dictionary.getAuthorIndex(aName, anEmail);
+	}
+
+	/**
+	 * Does nothing when the dictionary does not keep the content of the lines.
+	 */
 	public void addLineContent(Integer lineNumber, String content) {
-		if (lineContentMap == null) {
-			lineContentMap = new HashMap<Integer, String>();
+		if (contents != null) {
+			int row = row(lineNumber);
+			contents[row] = content;
 		}
-		lineContentMap.put(lineNumber,content);
 	}
-	
+
 	public void addLineCommit(Integer lineNumber, String commit) {
-		if (lineCommitMap == null) {
-			lineCommitMap = new HashMap<Integer, String>();
-		}
-		lineCommitMap.put(lineNumber,commit);
+		int row = row(lineNumber);
+		commits[row] = dictionary.getCommitIndex(commit);
+	}
+
+	public void addLineCommit(int lineNumber, AnyObjectId commit) {
+		int row = row(lineNumber);
+		commits[row] = dictionary.getCommitIndex(commit);
+	}
+
+	/**
+	 * Returns the number of blamed lines.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the line number of the given row. The rows are sorted by line
+	 * number.
+	 */
+	public int getLine(int row) {
+		return lines[row];
 	}
-	
-	public Map<Integer, DeveloperNode> getLineAuthorsMap(){
-		return lineAuthorsMap;
+
+	/**
+	 * Returns the index of the author of the given row in the dictionary, or
+	 * {@code -1} when it was not set.
+	 */
+	public int getAuthorIndex(int row) {
+		return authors[row];
 	}
-	
+
+	/**
+	 * Returns the index of the commit of the given row in the dictionary, or
+	 * {@code -1} when it was not set.
+	 */
+	public int getCommitIndex(int row) {
+		return commits[row];
+	}
+
+	/**
+	 * Returns a read-only view of the authors of the lines, ordered by line.
+	 */
+	public Map<Integer, DeveloperNode> getLineAuthorsMap() {
+		return new Column<DeveloperNode>() {
+			@Override
+			DeveloperNode valueAt(int row) {
+				return (authors[row] == NONE) ? null : dictionary.getAuthor(authors[row]);
+			}
+		};
+	}
+
+	/**
+	 * Returns a read-only view of the commits of the lines, ordered by line.
+	 */
 	public Map<Integer, String> getLineCommitMap() {
-		return lineCommitMap;
+		return new Column<String>() {
+			@Override
+			String valueAt(int row) {
+				return (commits[row] == NONE) ? null : dictionary.getCommit(commits[row]);
+			}
+		};
 	}
-	
-	public List<String> getSourceContents(){
+
+	public List<String> getSourceContents() {
 		List<String> result = new ArrayList<String>();
-		result.addAll(lineContentMap.values());
+		if (contents != null) {
+			for (int row = 0; row < size; row++) {
+				if (contents[row] != null) {
+					result.add(contents[row]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of this result for the given path. The authors are copied
+	 * as well, so the copy does not share {@code DeveloperNode} instances with
+	 * this result.
+	 * 
+	 * @param aPath
+	 * @return
+	 */
+	public CommandLineBlameResult copy(String aPath) {
+		CommandLineBlameResult result = new CommandLineBlameResult(aPath, dictionary.copy());
+		result.size = size;
+		result.lines = Arrays.copyOf(lines, lines.length);
+		result.authors = Arrays.copyOf(authors, authors.length);
+		result.commits = Arrays.copyOf(commits, commits.length);
+		if (contents != null) {
+			result.contents = Arrays.copyOf(contents, contents.length);
+		}
 		return result;
 	}
 
 	public List<DeveloperNode> getAuthors() {
 		List<DeveloperNode> result = new ArrayList<DeveloperNode>();
-		result.addAll(lineAuthorsMap.values());
+		for (int row = 0; row < size; row++) {
+			if (authors[row] != NONE) {
+				result.add(dictionary.getAuthor(authors[row]));
+			}
+		}
 		return result;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the row of the given line, or a negative value in case there is
+	 * no such row.
+	 */
+	private int find(int lineNumber) {
+		if (size > 0 && lines[size - 1] == lineNumber) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(lines, 0, size, lineNumber);
+	}
+
+	/**
+	 * Returns the row of the given line, creating it when needed. The lines
+	 * are usually added in increasing order, so the new rows are appended.
+	 */
+	private int row(int lineNumber) {
+		int row = find(lineNumber);
+		if (row >= 0) {
+			return row;
+		}
+		row = -(row + 1);
+		if (size == lines.length) {
+			int capacity = lines.length * 2;
+			lines = Arrays.copyOf(lines, capacity);
+			authors = Arrays.copyOf(authors, capacity);
+			commits = Arrays.copyOf(commits, capacity);
+			if (contents != null) {
+				contents = Arrays.copyOf(contents, capacity);
+			}
+		}
+		if (row < size) {
+			System.arraycopy(lines, row, lines, row + 1, size - row);
+			System.arraycopy(authors, row, authors, row + 1, size - row);
+			System.arraycopy(commits, row, commits, row + 1, size - row);
+			if (contents != null) {
+				System.arraycopy(contents, row, contents, row + 1, size - row);
+			}
+		}
+		lines[row] = lineNumber;
+		authors[row] = NONE;
+		commits[row] = NONE;
+		if (contents != null) {
+			contents[row] = null;
+		}
+		size++;
+		return row;
+	}
+
+	/**
+	 * A read-only map view of one column, skipping the rows where it is not
+	 * set.
+	 */
+	private abstract class Column<V> extends AbstractMap<Integer, V> {
+
+		abstract V valueAt(int row);
+
+		@Override
+		public V get(Object key) {
+			if (!(key instanceof Integer)) {
+				return null;
+			}
+			int row = find((Integer) key);
+			return (row < 0) ? null : valueAt(row);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Set<Map.Entry<Integer, V>> entrySet() {
+			return new AbstractSet<Map.Entry<Integer, V>>() {
+				@Override
+				public Iterator<Map.Entry<Integer, V>> iterator() {
+					return new Iterator<Map.Entry<Integer, V>>() {
+						private int next = skip(0);
+
+						private int skip(int row) {
+							while (row < size && valueAt(row) == null) {
+								row++;
+							}
+							return row;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < size;
+						}
+
+						@Override
+						public Map.Entry<Integer, V> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							int row = next;
+							next = skip(row + 1);
+							return new SimpleImmutableEntry<Integer, V>(lines[row], valueAt(row));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					int count = 0;
+					for (int row = 0; row < size; row++) {
+						if (valueAt(row) != null) {
+							count++;
+						}
+					}
+					return count;
+				}
+			};
+		}
+	}
+}
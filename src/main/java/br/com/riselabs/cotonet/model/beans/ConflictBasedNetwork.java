@@ -38,6 +38,7 @@ public class ConflictBasedNetwork {
 	private NetworkType type;
 	private List<DeveloperNode> nodes;
 	private List<DeveloperEdge> edges;
+	private boolean shared;
 	
 	/**
 	 * Empty network constructor
@@ -156,4 +157,17 @@ public class ConflictBasedNetwork {
 	public Integer getMergeScenarioID() {
 		return this.mergeScenarioID;
 	}
+
+	public void setShared(boolean shared) {
+		this.shared = shared;
+	}
+
+	/**
+	 * @return whether the network was built for another project (e.g., a
+	 *         fork) with the same merge commit, i.e., it came from the
+	 *         {@code ScenarioResultStore}.
+	 */
+	public boolean isShared() {
+		return this.shared;
+	}
 }
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.beans;
+
+import br.com.riselabs.cotonet.model.enums.JobState;
+
+/**
+ * The crawl of a repository, i.e., its state and how many conflicting
+ * scenarios it had. The crawler updates it while it runs, and the
+ * {@code JobTracker} reports it.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class CrawlJob {
+
+	private final String url;
+	private final String name;
+	private volatile JobState state = JobState.QUEUED;
+	private volatile long started = -1;
+	private volatile long finished = -1;
+	private volatile int scenarios = -1;
+	private volatile String error;
+	private volatile String progress;
+
+	public CrawlJob(String anURL) {
+		this.url = anURL;
+		this.name = new Project(anURL).getName();
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public JobState getState() {
+		return state;
+	}
+
+	/**
+	 * Moves the job to the given state. The finished states are final, i.e.,
+	 * a finished job stays in its state.
+	 * 
+	 * @param aState
+	 */
+	public synchronized void setState(JobState aState) {
+		if (state.isFinished()) {
+			return;
+		}
+		if (started < 0 && aState != JobState.QUEUED) {
+			started = System.currentTimeMillis();
+		}
+		if (aState.isFinished()) {
+			finished = System.currentTimeMillis();
+		}
+		this.state = aState;
+	}
+
+	/**
+	 * Finishes the job as failed with the given cause.
+	 * 
+	 * @param cause
+	 */
+	public synchronized void fail(Throwable cause) {
+		if (!state.isFinished()) {
+			this.error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+		}
+		setState(JobState.FAILED);
+	}
+
+	/**
+	 * @return the time (in milliseconds) the job started, or {@code -1}.
+	 */
+	public long getStarted() {
+		return started;
+	}
+
+	/**
+	 * @return the time (in milliseconds) the job finished, or {@code -1}.
+	 */
+	public long getFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return the number of conflicting scenarios, or {@code -1} when they
+	 *         were not found yet.
+	 */
+	public int getScenarios() {
+		return scenarios;
+	}
+
+	public void setScenarios(int count) {
+		this.scenarios = count;
+	}
+
+	/**
+	 * @return the progress of the current task of the job (e.g., "Receiving
+	 *         objects: 45% (450/1000)"), or {@code null}.
+	 */
+	public String getProgress() {
+		return progress;
+	}
+
+	public void setProgress(String aProgress) {
+		this.progress = aProgress;
+	}
+
+	/**
+	 * @return the cause of the failure, or {@code null}.
+	 */
+	public String getError() {
+		return error;
+	}
+}
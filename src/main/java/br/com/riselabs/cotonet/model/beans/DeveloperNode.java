@@ -30,6 +30,7 @@ public class DeveloperNode {
 
 	private Integer id;
 	private Integer systemID;
+	private Integer localID;
 	private String name;
 	private String email;
 	
@@ -82,6 +83,19 @@ public class DeveloperNode {
 		this.email = email;
 	}
 	
+	/**
+	 * Returns the ID of this developer among the developers of its project,
+	 * or {@code null} in case it was not added to a project yet. Unlike the
+	 * database ID, it is known as soon as the developer is found.
+	 */
+	public Integer getLocalID() {
+		return localID;
+	}
+
+	public void setLocalID(Integer localID) {
+		this.localID = localID;
+	}
+
 	public MergeCommitSide getSideCommitComesFrom() {
 		return sideCommitComesFrom;
 	}
@@ -20,28 +20,58 @@
  */
 package br.com.riselabs.cotonet.model.beans;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
 import java.sql.Timestamp;
 
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 /**
+ * A merge scenario keeps the ids of its commits and the merge time. The ids
+ * are packed in a single array of words (five per id, as in {@code ObjectId}),
+ * so a scenario costs about a hundred bytes. When it is bound to a
+ * repository (see {@link #setRepository(Repository)}), the
+ * commits are parsed on demand and held through a {@code SoftReference}, so
+ * the scenarios of a project do not pin the commit buffers nor the
+ * {@code RevWalk} that found them. Unbound scenarios keep strong references
+ * to the commits they were given.
+ * 
  * @author Alcemir R. Santos
  *
  */
 public class MergeScenario {
 
+	private static final int BASE = 0;
+	private static final int LEFT = 1;
+	private static final int RIGHT = 2;
+	private static final int MERGE = 3;
+
+	/** the number of words of an id */
+	private static final int ID_WORDS = Constants.OBJECT_ID_LENGTH / 4;
+
+	private static final long NO_DATE = Long.MIN_VALUE;
+
 	private Integer id;
 	private Integer projectID;
-	private RevCommit base;
-	private String SHA1Base;
-	private RevCommit left;
-	private String SHA1Left;
-	private RevCommit right;
-	private String SHA1Right;
-	private RevCommit merge;
-	private String SHA1Merge;
-	private Timestamp megeDate;
-	
+	/** the raw ids of the commits, one after the other */
+	private final int[] words = new int[4 * ID_WORDS];
+	/** the commits set */
+	private byte present;
+	/** the commits set through the SHA1 setters (e.g., loaded from the database) */
+	private byte fromSHA1;
+	private long mergeTime = NO_DATE;
+
+	private Repository repository;
+	/** the commits given to an unbound scenario */
+	private RevCommit[] pinned;
+	private SoftReference<RevCommit[]> resolved;
+
 	public MergeScenario() {
 		this(null, null, null, null, null, null);
 	}
@@ -78,75 +108,109 @@ public class MergeScenario {
 	public Integer getID(){
 		return this.id;
 	}
+
+	/**
+	 * Binds this scenario to the repository its commits come from. From now
+	 * on, the commits are parsed from the repository on demand.
+	 * 
+	 * @param aRepository
+	 */
+	public synchronized void setRepository(Repository aRepository) {
+		this.repository = aRepository;
+		this.resolved = null;
+		if (aRepository != null) {
+			this.pinned = null;
+		}
+	}
+
+	public synchronized Repository getRepository() {
+		return repository;
+	}
 	
 	public RevCommit getBase() {
-		return base;
+		return getCommit(BASE);
 	}
 
 	public void setBase(RevCommit base) {
-		this.base = base;
+		setCommit(BASE, base);
+	}
+
+	public ObjectId getBaseId() {
+		return getId(BASE);
 	}
 
 	public RevCommit getLeft() {
-		return left;
+		return getCommit(LEFT);
 	}
 
 	public void setLeft(RevCommit left) {
-		this.left = left;
+		setCommit(LEFT, left);
+	}
+
+	public ObjectId getLeftId() {
+		return getId(LEFT);
 	}
 
 	public RevCommit getRight() {
-		return right;
+		return getCommit(RIGHT);
 	}
 
 	public void setRight(RevCommit right) {
-		this.right = right;
+		setCommit(RIGHT, right);
+	}
+
+	public ObjectId getRightId() {
+		return getId(RIGHT);
 	}
 	
 	public String getSHA1Base() {
-		return SHA1Base;
+		return getSHA1(BASE);
 	}
 
 	public void setSHA1Base(String sHA1Base) {
-		SHA1Base = sHA1Base;
+		setSHA1(BASE, sHA1Base);
 	}
 
 	public String getSHA1Left() {
-		return SHA1Left;
+		return getSHA1(LEFT);
 	}
 
 	public void setSHA1Left(String sHA1Left) {
-		SHA1Left = sHA1Left;
+		setSHA1(LEFT, sHA1Left);
 	}
 
 	public String getSHA1Right() {
-		return SHA1Right;
+		return getSHA1(RIGHT);
 	}
 
 	public void setSHA1Right(String sHA1Right) {
-		SHA1Right = sHA1Right;
+		setSHA1(RIGHT, sHA1Right);
 	}
 
 	public void setMerge(RevCommit aCommmit) {
-		this.merge = aCommmit;
+		setCommit(MERGE, aCommmit);
 	}
 
 	public RevCommit getMerge(){
-		return this.merge;
+		return getCommit(MERGE);
+	}
+
+	public ObjectId getMergeId() {
+		return getId(MERGE);
 	}
 
 	public void setSHA1Merge(String sha1Merge) {
-		this.SHA1Merge = sha1Merge;
+		setSHA1(MERGE, sha1Merge);
 	}
 	
 	public String getSHA1Merge(){
-		return this.SHA1Merge;
+		return getSHA1(MERGE);
 	}
 
 	@Override
 	public String toString() {
-		return "MergeScenario [base=" + base + ", left=" + left
-				+ ", right=" + right + "]";
+		return "MergeScenario [base=" + name(BASE) + ", left=" + name(LEFT)
+				+ ", right=" + name(RIGHT) + "]";
 	}
 
 	public void setProjectID(Integer projectID) {
@@ -158,13 +222,86 @@ public class MergeScenario {
 	}
 
 	public Timestamp getMegeDate() {
-		return megeDate;
+		return (mergeTime == NO_DATE) ? null : new Timestamp(mergeTime);
 	}
 
 	public void setMegeDate(Timestamp megeDate) {
-		this.megeDate = megeDate;
+		this.mergeTime = (megeDate == null) ? NO_DATE : megeDate.getTime();
 	}
-	
-	
 
+	private synchronized void setCommit(int idx, RevCommit aCommit) {
+		setId(idx, aCommit);
+		fromSHA1 &= ~(1 << idx);
+		resolved = null;
+		if (repository == null) {
+			if (pinned == null) {
+				pinned = new RevCommit[4];
+			}
+			pinned[idx] = aCommit;
+		}
+	}
+
+	private synchronized void setSHA1(int idx, String sha1) {
+		setId(idx, (sha1 == null) ? null : ObjectId.fromString(sha1));
+		fromSHA1 |= (1 << idx);
+		resolved = null;
+		if (pinned != null) {
+			pinned[idx] = null;
+		}
+	}
+
+	private synchronized String getSHA1(int idx) {
+		return ((fromSHA1 & (1 << idx)) == 0 || !isSet(idx)) ? null : getId(idx).name();
+	}
+
+	private synchronized String name(int idx) {
+		return isSet(idx) ? getId(idx).name() : "null";
+	}
+
+	private boolean isSet(int idx) {
+		return (present & (1 << idx)) != 0;
+	}
+
+	private synchronized ObjectId getId(int idx) {
+		return isSet(idx) ? ObjectId.fromRaw(words, idx * ID_WORDS) : null;
+	}
+
+	private void setId(int idx, AnyObjectId anId) {
+		if (anId == null) {
+			present &= ~(1 << idx);
+		} else {
+			anId.copyRawTo(words, idx * ID_WORDS);
+			present |= (1 << idx);
+		}
+	}
+
+	/**
+	 * Returns the commit with the given index, parsing it from the repository
+	 * in case the scenario is bound to one. It returns {@code null} when the
+	 * commit is not set.
+	 * 
+	 * @throws UncheckedIOException
+	 *             - if the commit cannot be parsed from the repository.
+	 */
+	private synchronized RevCommit getCommit(int idx) {
+		if (!isSet(idx)) {
+			return null;
+		}
+		if (repository == null) {
+			return (pinned == null) ? null : pinned[idx];
+		}
+		RevCommit[] commits = (resolved == null) ? null : resolved.get();
+		if (commits == null) {
+			commits = new RevCommit[4];
+			resolved = new SoftReference<RevCommit[]>(commits);
+		}
+		if (commits[idx] == null) {
+			try (RevWalk walk = new RevWalk(repository)) {
+				commits[idx] = walk.parseCommit(getId(idx));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not parse the commit " + name(idx) + ".", e);
+			}
+		}
+		return commits[idx];
+	}
 }
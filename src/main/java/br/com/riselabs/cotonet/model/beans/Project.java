@@ -21,8 +21,13 @@
 package br.com.riselabs.cotonet.model.beans;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jgit.lib.Repository;
 
@@ -36,8 +41,11 @@ public class Project {
 	private String url;
 	private Repository repository;
 	private Map<MergeScenario, ConflictBasedNetwork> scenarioNetMap;
-	private Map<Integer, DeveloperNode> devs;
+	private ConcurrentMap<Integer, DeveloperNode> devs;
+	private ConcurrentMap<String, DeveloperNode> devsByMail;
+	private AtomicInteger lastDevID;
 	private Integer id;
+	private String sampling;
 
 	public Project() {
 		this(null, null, null, null);
@@ -56,7 +64,8 @@ public class Project {
 		setName(aName);
 		setUrl(anURL);
 		setRepository(aRepository);
-		setScenarioNetMap(new HashMap<MergeScenario, ConflictBasedNetwork>());
+		// keeps the order in which the scenarios were found
+		setScenarioNetMap(new LinkedHashMap<MergeScenario, ConflictBasedNetwork>());
 		setDevs(new HashMap<Integer, DeveloperNode>());
 	}
 	
@@ -102,8 +111,25 @@ public class Project {
 		return this.devs;
 	}
 
-	public void setDevs(Map<Integer, DeveloperNode> devs) {
-		this.devs = devs;
+	/**
+	 * Replaces the developers of this project. The keys of the given map
+	 * become the local IDs of the developers.
+	 * 
+	 * @param devs
+	 */
+	public synchronized void setDevs(Map<Integer, DeveloperNode> devs) {
+		this.devs = new ConcurrentHashMap<Integer, DeveloperNode>();
+		this.devsByMail = new ConcurrentHashMap<String, DeveloperNode>();
+		this.lastDevID = new AtomicInteger();
+		for (Entry<Integer, DeveloperNode> e : devs.entrySet()) {
+			DeveloperNode dev = e.getValue();
+			dev.setLocalID(e.getKey());
+			this.devs.put(e.getKey(), dev);
+			this.devsByMail.put(getMailKey(dev.getEmail()), dev);
+			if (e.getKey() > this.lastDevID.get()) {
+				this.lastDevID.set(e.getKey());
+			}
+		}
 	}
 
 	public Set<MergeScenario> getMergeScenarios(){
@@ -126,19 +152,37 @@ public class Project {
 	}
 
 	public void add(DeveloperNode dev) {
-		if (this.devs == null) {
-			this.devs = new HashMap<Integer, DeveloperNode>();
+		intern(dev);
+	}
+
+	/**
+	 * Returns the developer of this project with the same email of the given
+	 * one. In case there is no such developer, the given one is added to the
+	 * project with the next local ID. It is safe to call this method from
+	 * several threads.
+	 * 
+	 * @param dev
+	 * @return - the project's instance of the developer.
+	 */
+	public DeveloperNode intern(DeveloperNode dev) {
+		DeveloperNode known = devsByMail.get(getMailKey(dev.getEmail()));
+		if (known != null) {
+			return known;
 		}
-		this.devs.put(this.devs.size()+1, dev);
+		return devsByMail.computeIfAbsent(getMailKey(dev.getEmail()), mail -> {
+			int localID = lastDevID.incrementAndGet();
+			dev.setLocalID(localID);
+			devs.put(localID, dev);
+			return dev;
+		});
 	}
 
 	public DeveloperNode getDevByMail(String anEmail) {
-		for (DeveloperNode node : getDevs().values()) {
-			if(node.getEmail().equals(anEmail)){
-				return node;
-			}
-		}
-		return null;
+		return devsByMail.get(getMailKey(anEmail));
+	}
+
+	private static String getMailKey(String anEmail) {
+		return (anEmail == null) ? "" : anEmail;
 	}
 
 	public void setID(Integer anID){
@@ -149,6 +193,19 @@ public class Project {
 		return this.id;
 	}
 
+	/**
+	 * @return the parameters of the sample of the merge scenarios (see
+	 *         {@code ScenarioSample}), or {@code null} when every merge
+	 *         scenario was considered.
+	 */
+	public String getSampling() {
+		return sampling;
+	}
+
+	public void setSampling(String aSampling) {
+		this.sampling = aSampling;
+	}
+
 	public void add(MergeScenario scenario, ConflictBasedNetwork connet) {
 		this.scenarioNetMap.put(scenario, connet);
 	}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.beans;
+
+/**
+ * The size of a repository and how long it took to crawl it. The sizes are
+ * cheap to read from the object database of a cloned repository, so they are
+ * used to predict the cost of crawling it.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RepositoryCost {
+
+	private String url;
+	private long packBytes = -1;
+	private long commits = -1;
+	private long merges = -1;
+	private long millis = -1;
+	private long candidates = -1;
+	private long blameBytes = -1;
+
+	public RepositoryCost(String anURL) {
+		this.url = anURL;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the size (in bytes) of the pack files, or {@code -1} when unknown.
+	 */
+	public long getPackBytes() {
+		return packBytes;
+	}
+
+	public RepositoryCost setPackBytes(long bytes) {
+		this.packBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * @return the number of commits reachable from {@code HEAD}, or {@code -1}
+	 *         when unknown.
+	 */
+	public long getCommits() {
+		return commits;
+	}
+
+	public RepositoryCost setCommits(long count) {
+		this.commits = count;
+		return this;
+	}
+
+	/**
+	 * @return the number of merge commits reachable from {@code HEAD}, or
+	 *         {@code -1} when unknown.
+	 */
+	public long getMerges() {
+		return merges;
+	}
+
+	public RepositoryCost setMerges(long count) {
+		this.merges = count;
+		return this;
+	}
+
+	/**
+	 * @return how long (in milliseconds) the last crawl of the repository
+	 *         took, or {@code -1} when it was never crawled.
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	public RepositoryCost setMillis(long elapsed) {
+		this.millis = elapsed;
+		return this;
+	}
+
+	/**
+	 * @return the number of merges that may conflict, estimated by a dry run
+	 *         (see {@code ScenarioPrefilter}), or {@code -1} when unknown.
+	 */
+	public long getCandidates() {
+		return candidates;
+	}
+
+	public RepositoryCost setCandidates(long count) {
+		this.candidates = count;
+		return this;
+	}
+
+	/**
+	 * @return the projected size (in bytes) of the blamed files, estimated
+	 *         by a dry run, or {@code -1} when unknown.
+	 */
+	public long getBlameBytes() {
+		return blameBytes;
+	}
+
+	public RepositoryCost setBlameBytes(long bytes) {
+		this.blameBytes = bytes;
+		return this;
+	}
+
+	/**
+	 * @return whether there is anything to predict the cost from.
+	 */
+	public boolean isKnown() {
+		return merges >= 0 || millis >= 0 || candidates >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return url + "\t" + packBytes + "\t" + commits + "\t" + merges + "\t" + millis + "\t" + candidates + "\t"
+				+ blameBytes;
+	}
+
+	/**
+	 * Parses a line written by {@code #toString()}, or by the former version
+	 * without the dry-run estimates. Returns {@code null} if the line is
+	 * malformed.
+	 */
+	public static RepositoryCost parse(String line) {
+		String[] fields = line.split("\t");
+		if (fields.length != 5 && fields.length != 7) {
+			return null;
+		}
+		try {
+			RepositoryCost cost = new RepositoryCost(fields[0]).setPackBytes(Long.parseLong(fields[1]))
+					.setCommits(Long.parseLong(fields[2])).setMerges(Long.parseLong(fields[3]))
+					.setMillis(Long.parseLong(fields[4]));
+			if (fields.length == 7) {
+				cost.setCandidates(Long.parseLong(fields[5])).setBlameBytes(Long.parseLong(fields[6]));
+			}
+			return cost;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.beans;
+
+import java.sql.Timestamp;
+
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.enums.TaskState;
+
+/**
+ * A task of the work queue, i.e., a repository (or a single merge scenario of
+ * it) whose networks some worker has to build. A worker holds the task while
+ * its lease does not expire.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkTask {
+
+	private Integer id;
+	private String url;
+	private String scenario;
+	private NetworkType type;
+	private TaskState state = TaskState.PENDING;
+	private String owner;
+	private String token;
+	private Timestamp leaseExpires;
+	private int attempts;
+	private String error;
+
+	public WorkTask() {
+	}
+
+	public WorkTask(String anURL, NetworkType aType) {
+		this(anURL, null, aType);
+	}
+
+	/**
+	 * @param anURL
+	 * @param aMergeCommit
+	 *            - the id of the merge commit of the scenario, or
+	 *            {@code null} for all the scenarios of the repository.
+	 * @param aType
+	 */
+	public WorkTask(String anURL, String aMergeCommit, NetworkType aType) {
+		setUrl(anURL);
+		setScenario(aMergeCommit);
+		setType(aType);
+	}
+
+	public Integer getID() {
+		return id;
+	}
+
+	public void setID(Integer id) {
+		this.id = id;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * @return the id of the merge commit of the scenario, or {@code null}
+	 *         when the task covers the whole repository.
+	 */
+	public String getScenario() {
+		return scenario;
+	}
+
+	public void setScenario(String aMergeCommit) {
+		this.scenario = aMergeCommit;
+	}
+
+	public NetworkType getType() {
+		return type;
+	}
+
+	public void setType(NetworkType type) {
+		this.type = type;
+	}
+
+	public TaskState getState() {
+		return state;
+	}
+
+	public void setState(TaskState state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return the worker holding the lease, or {@code null}.
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * @return the token of the current lease. Only the worker that leased the
+	 *         task knows it, so a worker whose lease expired can not finish
+	 *         the task another worker took.
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	public void setToken(String token) {
+		this.token = token;
+	}
+
+	public Timestamp getLeaseExpires() {
+		return leaseExpires;
+	}
+
+	public void setLeaseExpires(Timestamp leaseExpires) {
+		this.leaseExpires = leaseExpires;
+	}
+
+	/**
+	 * @return how many times the task was leased.
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	/**
+	 * @return the cause of the last failure, or {@code null}.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + id + " " + url + ((scenario == null) ? "" : "@" + scenario) + " (" + state + ")";
+	}
+}
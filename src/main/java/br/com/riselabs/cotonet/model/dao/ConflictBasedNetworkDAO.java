@@ -169,6 +169,77 @@ public class ConflictBasedNetworkDAO implements DAO<ConflictBasedNetwork> {
 		return null;
 	}
 
+	/**
+	 * Returns the ID of the network of the given type built for the given
+	 * merge commit in another system (e.g., the fork the network was built
+	 * for first).
+	 * 
+	 * @param mergeCommit
+	 *            - the SHA-1 of the merge commit.
+	 * @param type
+	 * @param systemID
+	 *            - the system whose networks are left out.
+	 * @return - the ID, or {@code null} in case there is no such network.
+	 */
+	public Integer getSharedID(String mergeCommit, NetworkType type, Integer systemID) {
+		try {
+			conn = Database.getConnection();
+			ps = conn.prepareStatement("select n.`id` from `networks` n "
+					+ "join `merge_scenarios` ms on n.`merge_scenario_id`=ms.`id` "
+					+ "where ms.`commit_merge`=? and n.`type`=? and ms.`system_id`<>? order by n.`id` limit 1;");
+			ps.setString(1, mergeCommit);
+			ps.setString(2, type.toString());
+			ps.setInt(3, systemID);
+			rs = ps.executeQuery();
+			if (rs.next()) {
+				return rs.getInt("id");
+			}
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				Logger.logStackTrace(log, e);
+			}
+			Logger.logStackTrace(log, e);
+		} finally {
+			closeResources();
+		}
+		return null;
+	}
+
+	/**
+	 * Links a merge scenario to the network built for the same merge commit
+	 * in another system (see {@code #getSharedID(String, NetworkType, Integer)}),
+	 * so the network is not saved again.
+	 * 
+	 * @param mergeScenarioID
+	 * @param networkID
+	 * @return - whether the scenario is linked to the network.
+	 */
+	public boolean link(Integer mergeScenarioID, Integer networkID) {
+		boolean hasSaved = false;
+		try {
+			conn = Database.getConnection();
+			// the link is kept when the scenario is persisted again
+			ps = conn.prepareStatement(
+					"insert ignore into `network_links` (`merge_scenario_id`, `network_id`) values (?,?);");
+			ps.setInt(1, mergeScenarioID);
+			ps.setInt(2, networkID);
+			ps.executeUpdate();
+			hasSaved = true;
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				Logger.logStackTrace(log, e);
+			}
+			Logger.logStackTrace(log, e);
+		} finally {
+			closeResources();
+		}
+		return hasSaved;
+	}
+
 	@Override
 	public List<ConflictBasedNetwork> search(ConflictBasedNetwork object)
 			throws InvalidCotonetBeanException {
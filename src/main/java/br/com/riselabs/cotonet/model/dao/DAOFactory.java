@@ -32,7 +32,8 @@ public abstract class DAOFactory {
 		MERGE_SCENARIO,
 		CONFLICT_NETWORK, 
 		EDGE,
-		NODE
+		NODE,
+		WORK_TASK
 	}
 
 	public static DAO<?> getDAO(CotonetBean type) {
@@ -47,6 +48,8 @@ public abstract class DAOFactory {
 			return new DeveloperEdgeDAO();
 		case NODE:
 			return new DeveloperNodeDAO();
+		case WORK_TASK:
+			return new WorkQueueDAO();
 		}
 		return null;
 	}
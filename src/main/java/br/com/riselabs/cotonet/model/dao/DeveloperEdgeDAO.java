@@ -26,6 +26,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import br.com.riselabs.cotonet.model.beans.DeveloperEdge;
@@ -83,6 +84,53 @@ public class DeveloperEdgeDAO implements DAO<DeveloperEdge> {
 		return hasSaved;
 	}
 
+	/**
+	 * Saves the given edges in a single batch. Their network and nodes must
+	 * be in the database already, so only their IDs are checked.
+	 * 
+	 * @param edges
+	 * @return - whether every edge was saved.
+	 * @throws InvalidCotonetBeanException
+	 */
+	public boolean saveAll(Collection<DeveloperEdge> edges) throws InvalidCotonetBeanException {
+		if (edges.isEmpty()) {
+			return true;
+		}
+		boolean hasSaved = false;
+		try {
+			conn = Database.getConnection();
+			ps =  conn.prepareStatement(
+					"insert into `edges` (`network_id`, `dev_a`, `dev_b`, `weight`, `chunk_range`, `filepath`) values (?,?,?,?,?,?);");
+			for (DeveloperEdge edge : edges) {
+				if (edge.getDevA().getID() == null || edge.getDevB().getID() == null
+						|| edge.getNetworkID() == null) {
+					throw new InvalidCotonetBeanException(
+							DeveloperEdge.class, 
+							"Either the `LeftID', the `RightID', or the `NetworkID' are <null>.",
+							new NullPointerException());
+				}
+				ps.setInt(1, edge.getNetworkID());
+				ps.setInt(2, edge.getDevA().getID());
+				ps.setInt(3, edge.getDevB().getID());
+				ps.setInt(4, edge.getWeight());
+				ps.setString(5, edge.getChunkRange());
+				ps.setString(6, edge.getFilepath());
+				ps.addBatch();
+			}
+			hasSaved = DeveloperNodeDAO.allSaved(ps.executeBatch());
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				Logger.logStackTrace(log, e);
+			}
+			Logger.logStackTrace(log, e);
+		}finally{
+			closeResources();
+		}
+		return hasSaved;
+	}
+
 	@Override
 	public void delete(DeveloperEdge object) throws InvalidCotonetBeanException {
 		// TODO Auto-generated method stub
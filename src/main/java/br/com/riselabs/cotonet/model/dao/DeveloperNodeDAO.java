@@ -25,8 +25,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import br.com.riselabs.cotonet.model.beans.DeveloperNode;
 import br.com.riselabs.cotonet.model.dao.validators.DeveloperNodeValidator;
@@ -39,6 +44,9 @@ import br.com.riselabs.cotonet.util.Logger;
  *
  */
 public class DeveloperNodeDAO implements DAO<DeveloperNode> {
+	/** the most emails looked up in a single query */
+	private static final int MAX_PARAMETERS = 1000;
+
 	private Connection conn = null;
 	private PreparedStatement ps = null;
 	private ResultSet rs = null;
@@ -83,6 +91,114 @@ public class DeveloperNodeDAO implements DAO<DeveloperNode> {
 		return hasSaved;
 	}
 
+	/**
+	 * Saves the given nodes in a single batch, and updates them with their
+	 * respective IDs. Their system must be in the database already.
+	 * 
+	 * @param nodes
+	 * @return - whether every node was saved.
+	 * @throws InvalidCotonetBeanException
+	 */
+	public boolean saveAll(Collection<DeveloperNode> nodes) throws InvalidCotonetBeanException {
+		if (nodes.isEmpty()) {
+			return true;
+		}
+		DeveloperNodeValidator validator = new DeveloperNodeValidator();
+		// they all come from the same system
+		validator.validate(nodes.iterator().next());
+		boolean hasSaved = false;
+		try {
+			conn = Database.getConnection();
+			ps =  conn.prepareStatement(
+					"insert into `developers` "
+					+ "(`name`, `email1`, `system_id`)"
+					+ " values (?,?,?);", Statement.RETURN_GENERATED_KEYS);
+			for (DeveloperNode node : nodes) {
+				if (node.getEmail() == null || node.getEmail().equals("") || node.getSystemID() == null) {
+					throw new InvalidCotonetBeanException(
+							DeveloperNode.class, 
+							"Either the `Email', or the `SystemID' are <null>.",
+							new NullPointerException());
+				}
+				if (node.getName() == null) {
+					node.setName(node.getEmail().trim().split("@")[0]);
+				}
+				ps.setString(1, node.getName());
+				ps.setString(2, node.getEmail());
+				ps.setInt(3, node.getSystemID());
+				ps.addBatch();
+			}
+			hasSaved = allSaved(ps.executeBatch());
+			rs = ps.getGeneratedKeys();
+			// in the order they were inserted
+			for (DeveloperNode node : nodes) {
+				if (!rs.next()) {
+					break;
+				}
+				node.setID(rs.getInt(1));
+			}
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				Logger.logStackTrace(log, e);
+			}
+			Logger.logStackTrace(log, e);
+		}finally{
+			closeResources();
+		}
+		return hasSaved;
+	}
+
+	/**
+	 * Returns the IDs of the developers with the given emails, in as few
+	 * queries as possible. The emails without a developer are left out.
+	 * 
+	 * @param emails
+	 * @return - the IDs by email (which are case insensitive, as in the
+	 *         database).
+	 */
+	public Map<String, Integer> getIDsByEmail(List<String> emails) {
+		Map<String, Integer> result = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+		try {
+			conn = Database.getConnection();
+			for (int from = 0; from < emails.size(); from += MAX_PARAMETERS) {
+				List<String> part = emails.subList(from, Math.min(emails.size(), from + MAX_PARAMETERS));
+				ps = conn.prepareStatement("select `id`, `email1` from `developers` where `email1` in ("
+						+ String.join(",", Collections.nCopies(part.size(), "?")) + ") order by `id`;");
+				for (int i = 0; i < part.size(); i++) {
+					ps.setString(i + 1, part.get(i));
+				}
+				rs = ps.executeQuery();
+				while (rs.next()) {
+					// the first one, as in get(DeveloperNode)
+					result.putIfAbsent(rs.getString("email1"), rs.getInt("id"));
+				}
+				rs.close();
+				ps.close();
+			}
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException e1) {
+				Logger.logStackTrace(log, e);
+			}
+			Logger.logStackTrace(log, e);
+		}finally{
+			closeResources();
+		}
+		return result;
+	}
+
+	static boolean allSaved(int[] counts) {
+		for (int count : counts) {
+			if (count == 0 || count == Statement.EXECUTE_FAILED) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public void delete(DeveloperNode object) throws InvalidCotonetBeanException {
 		// TODO Auto-generated method stub
@@ -30,6 +30,8 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jgit.lib.ObjectId;
+
 import br.com.riselabs.cotonet.model.beans.MergeScenario;
 import br.com.riselabs.cotonet.model.dao.validators.MergeScenarioValidator;
 import br.com.riselabs.cotonet.model.db.Database;
@@ -66,10 +68,10 @@ public class MergeScenarioDAO implements DAO<MergeScenario> {
 							+ "(`system_id`, `commit_base`,`commit_left`,`commit_right`, `commit_merge`, `merge_date`) "
 							+ "values (?,?,?,?,?,?);");
 			ps.setInt(1, ms.getProjectID());
-			ps.setString(2, ms.getBase().getName());
-			ps.setString(3, ms.getLeft().getName());
-			ps.setString(4, ms.getRight().getName());
-			ps.setString(5, ms.getMerge().getName());
+			ps.setString(2, ms.getBaseId().getName());
+			ps.setString(3, ms.getLeftId().getName());
+			ps.setString(4, ms.getRightId().getName());
+			ps.setString(5, getName(ms.getMergeId()));
 			ps.setDate(6, new Date(ms.getMegeDate().getTime()));
 			hasSaved = ps.executeUpdate() > 0 ? true : false;
 		} catch (SQLException e) {
@@ -156,23 +158,10 @@ public class MergeScenarioDAO implements DAO<MergeScenario> {
 			if (ms.getID() == null) {
 				sql = "select * from `merge_scenarios` where `commit_base`=? and `commit_left`=? and `commit_right`=?;";
 				ps = conn.prepareStatement(sql);
-				if (ms.getBase() == null && ms.getLeft() == null
-						&& ms.getRight() == null) {
-					if (ms.getSHA1Base() == null && ms.getSHA1Left() == null
-							&& ms.getSHA1Right() == null) {
-						ps.setString(1, "");
-						ps.setString(2, "");
-						ps.setString(3, "");
-					} else {
-						ps.setString(1, ms.getSHA1Base());
-						ps.setString(2, ms.getSHA1Left());
-						ps.setString(3, ms.getSHA1Right());
-					}
-				} else {
-					ps.setString(1, ms.getBase().getName());
-					ps.setString(2, ms.getLeft().getName());
-					ps.setString(3, ms.getRight().getName());
-				}
+				// the ids are set either from the commits or from the SHA1s
+				ps.setString(1, getName(ms.getBaseId()));
+				ps.setString(2, getName(ms.getLeftId()));
+				ps.setString(3, getName(ms.getRightId()));
 				// get with ID
 			} else {
 				sql = "select * from `merge_scenarios` where `id`=?;";
@@ -229,4 +218,8 @@ public class MergeScenarioDAO implements DAO<MergeScenario> {
 			Logger.logStackTrace(log, e);
 		}
 	}
+
+	private static String getName(ObjectId anId) {
+		return (anId == null) ? "" : anId.getName();
+	}
 }
@@ -0,0 +1,469 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.dao;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import br.com.riselabs.cotonet.model.beans.WorkTask;
+import br.com.riselabs.cotonet.model.dao.validators.WorkTaskValidator;
+import br.com.riselabs.cotonet.model.db.Database;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.enums.TaskState;
+import br.com.riselabs.cotonet.model.exceptions.InvalidCotonetBeanException;
+import br.com.riselabs.cotonet.util.Logger;
+
+/**
+ * The work queue shared by the workers (see the {@code work_queue} table). A
+ * worker leases a task for some seconds and renews the lease with heartbeats
+ * while it works on it. When the worker dies, the lease expires and another
+ * worker takes the task.
+ * 
+ * The times are always the ones of the database, so the clocks of the nodes
+ * running the workers do not matter.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkQueueDAO implements DAO<WorkTask> {
+	private Connection conn = null;
+	private PreparedStatement ps = null;
+	private ResultSet rs = null;
+
+	private File log = null;
+
+	public WorkQueueDAO() {
+	}
+
+	public void setLog(File f) {
+		log = f;
+	}
+
+	/**
+	 * Creates the {@code work_queue} table in case it does not exist yet
+	 * (see also {@code cotonet-schema.sql}).
+	 * 
+	 * @throws SQLException
+	 *             - if the table could not be created nor found, e.g., the
+	 *             database is not reachable.
+	 */
+	public void createTable() throws SQLException {
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"create table if not exists `work_queue` ("
+					+ "`id` INT UNSIGNED NOT NULL AUTO_INCREMENT, "
+					+ "`url` VARCHAR(100) NOT NULL, "
+					+ "`scenario` VARCHAR(40) NOT NULL DEFAULT '', "
+					+ "`type` CHAR(2) NOT NULL, "
+					+ "`state` VARCHAR(10) NOT NULL, "
+					+ "`lease_owner` VARCHAR(100) NULL, "
+					+ "`lease_token` CHAR(36) NULL, "
+					+ "`lease_expires` DATETIME NULL, "
+					+ "`heartbeat` DATETIME NULL, "
+					+ "`attempts` INT UNSIGNED NOT NULL DEFAULT 0, "
+					+ "`error` VARCHAR(300) NULL, "
+					+ "PRIMARY KEY (`id`), "
+					+ "UNIQUE INDEX `work_queue_task_UNIQUE` (`url` ASC, `scenario` ASC, `type` ASC), "
+					+ "INDEX `work_queue_state_idx` (`state` ASC, `lease_expires` ASC), "
+					+ "UNIQUE INDEX `work_queue_token_UNIQUE` (`lease_token` ASC)) "
+					+ "ENGINE = InnoDB;");
+			ps.executeUpdate();
+		} catch (SQLException e) {
+			Logger.logStackTrace(log, e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+	}
+
+	/**
+	 * Enqueues a task. A task already in the queue (i.e., with the same URL,
+	 * scenario, and type) is not enqueued again, whatever its state.
+	 * 
+	 * @return - {@code true} whether the task was enqueued, {@code false}
+	 *         otherwise.
+	 */
+	@Override
+	public boolean save(WorkTask t) throws InvalidCotonetBeanException {
+		WorkTaskValidator validator = new WorkTaskValidator();
+		boolean hasSaved = false;
+		validator.validate(t);
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"insert ignore into `work_queue` (`url`, `scenario`, `type`, `state`) values (?,?,?,?);");
+			ps.setString(1, t.getUrl());
+			ps.setString(2, toColumn(t.getScenario()));
+			ps.setString(3, t.getType().toString());
+			ps.setString(4, TaskState.PENDING.name());
+			hasSaved = ps.executeUpdate() > 0 ? true : false;
+		} catch (SQLException e) {
+			rollback(e);
+		} finally {
+			closeResources();
+		}
+		return hasSaved;
+	}
+
+	@Override
+	public void delete(WorkTask t) throws InvalidCotonetBeanException {
+		try {
+			conn = connect();
+			ps = conn.prepareStatement("delete from `work_queue` where `id`=?;");
+			ps.setInt(1, t.getID());
+			ps.executeUpdate();
+		} catch (SQLException e) {
+			rollback(e);
+		} finally {
+			closeResources();
+		}
+	}
+
+	@Override
+	public List<WorkTask> list() throws InvalidCotonetBeanException {
+		List<WorkTask> result = new ArrayList<WorkTask>();
+		try {
+			conn = connect();
+			ps = conn.prepareStatement("select * from `work_queue` order by `id`;");
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				result.add(read(rs));
+			}
+		} catch (SQLException e) {
+			rollback(e);
+		} finally {
+			closeResources();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the task with the id of the given one or, when it has no id, the
+	 * one with its URL, scenario, and type.
+	 */
+	@Override
+	public WorkTask get(WorkTask t) throws InvalidCotonetBeanException {
+		try {
+			conn = connect();
+			if (t.getID() != null) {
+				ps = conn.prepareStatement("select * from `work_queue` where `id`=?;");
+				ps.setInt(1, t.getID());
+			} else {
+				new WorkTaskValidator().validate(t);
+				ps = conn.prepareStatement(
+						"select * from `work_queue` where `url`=? and `scenario`=? and `type`=?;");
+				ps.setString(1, t.getUrl());
+				ps.setString(2, toColumn(t.getScenario()));
+				ps.setString(3, t.getType().toString());
+			}
+			rs = ps.executeQuery();
+			if (rs.next()) {
+				return read(rs);
+			}
+		} catch (SQLException e) {
+			rollback(e);
+		} finally {
+			closeResources();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the tasks in the state of the given one.
+	 */
+	@Override
+	public List<WorkTask> search(WorkTask t) throws InvalidCotonetBeanException {
+		List<WorkTask> result = new ArrayList<WorkTask>();
+		try {
+			conn = connect();
+			ps = conn.prepareStatement("select * from `work_queue` where `state`=? order by `id`;");
+			ps.setString(1, t.getState().name());
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				result.add(read(rs));
+			}
+		} catch (SQLException e) {
+			rollback(e);
+		} finally {
+			closeResources();
+		}
+		return result;
+	}
+
+	/**
+	 * Leases the oldest task that is pending or whose lease expired, as long
+	 * as it was not leased {@code maxAttempts} times yet. The task is taken
+	 * by a single statement, so two workers never get the same lease.
+	 * 
+	 * @param owner
+	 *            - the name of the worker.
+	 * @param leaseSeconds
+	 *            - how long the task is held without a heartbeat.
+	 * @param maxAttempts
+	 * @return - the leased task, or {@code null} when there is none available.
+	 */
+	public WorkTask lease(String owner, int leaseSeconds, int maxAttempts) throws SQLException {
+		String token = UUID.randomUUID().toString();
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"update `work_queue` set `state`=?, `lease_owner`=?, `lease_token`=?, "
+					+ "`lease_expires`=NOW() + INTERVAL ? SECOND, `heartbeat`=NOW(), `attempts`=`attempts`+1 "
+					+ "where (`state`=? or (`state`=? and `lease_expires` < NOW())) and `attempts` < ? "
+					+ "order by `id` limit 1;");
+			ps.setString(1, TaskState.LEASED.name());
+			ps.setString(2, owner);
+			ps.setString(3, token);
+			ps.setInt(4, leaseSeconds);
+			ps.setString(5, TaskState.PENDING.name());
+			ps.setString(6, TaskState.LEASED.name());
+			ps.setInt(7, maxAttempts);
+			if (ps.executeUpdate() == 0) {
+				return null;
+			}
+			ps.close();
+			ps = conn.prepareStatement("select * from `work_queue` where `lease_token`=?;");
+			ps.setString(1, token);
+			rs = ps.executeQuery();
+			if (rs.next()) {
+				return read(rs);
+			}
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return null;
+	}
+
+	/**
+	 * Renews the lease of the given task.
+	 * 
+	 * @return - {@code false} when the worker lost the lease, i.e., it expired
+	 *         and another worker took the task.
+	 */
+	public boolean heartbeat(WorkTask t, int leaseSeconds) throws SQLException {
+		boolean renewed = false;
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"update `work_queue` set `lease_expires`=NOW() + INTERVAL ? SECOND, `heartbeat`=NOW() "
+					+ "where `id`=? and `lease_token`=? and `state`=?;");
+			ps.setInt(1, leaseSeconds);
+			ps.setInt(2, t.getID());
+			ps.setString(3, t.getToken());
+			ps.setString(4, TaskState.LEASED.name());
+			renewed = ps.executeUpdate() > 0;
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return renewed;
+	}
+
+	/**
+	 * Finishes the given task as done.
+	 * 
+	 * @return - {@code false} when the worker lost the lease.
+	 */
+	public boolean complete(WorkTask t) throws SQLException {
+		boolean completed = false;
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"update `work_queue` set `state`=?, `lease_expires`=NULL, `error`=NULL "
+					+ "where `id`=? and `lease_token`=? and `state`=?;");
+			ps.setString(1, TaskState.DONE.name());
+			ps.setInt(2, t.getID());
+			ps.setString(3, t.getToken());
+			ps.setString(4, TaskState.LEASED.name());
+			completed = ps.executeUpdate() > 0;
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return completed;
+	}
+
+	/**
+	 * Gives the given task back to the queue, or finishes it as failed when it
+	 * was already leased {@code maxAttempts} times.
+	 * 
+	 * @return - {@code false} when the worker lost the lease.
+	 */
+	public boolean fail(WorkTask t, String error, int maxAttempts) throws SQLException {
+		boolean failed = false;
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"update `work_queue` set `state`=if(`attempts` >= ?, ?, ?), `lease_owner`=NULL, "
+					+ "`lease_token`=NULL, `lease_expires`=NULL, `error`=? "
+					+ "where `id`=? and `lease_token`=? and `state`=?;");
+			ps.setInt(1, maxAttempts);
+			ps.setString(2, TaskState.FAILED.name());
+			ps.setString(3, TaskState.PENDING.name());
+			ps.setString(4, truncate(error));
+			ps.setInt(5, t.getID());
+			ps.setString(6, t.getToken());
+			ps.setString(7, TaskState.LEASED.name());
+			failed = ps.executeUpdate() > 0;
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return failed;
+	}
+
+	/**
+	 * Finishes as failed the tasks whose lease expired on their last attempt,
+	 * i.e., the ones no worker will lease again.
+	 * 
+	 * @return - how many tasks were finished.
+	 */
+	public int expire(int maxAttempts) throws SQLException {
+		int expired = 0;
+		try {
+			conn = connect();
+			ps = conn.prepareStatement(
+					"update `work_queue` set `state`=?, `lease_token`=NULL, `lease_expires`=NULL, "
+					+ "`error`='The lease expired.' "
+					+ "where `state`=? and `lease_expires` < NOW() and `attempts` >= ?;");
+			ps.setString(1, TaskState.FAILED.name());
+			ps.setString(2, TaskState.LEASED.name());
+			ps.setInt(3, maxAttempts);
+			expired = ps.executeUpdate();
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return expired;
+	}
+
+	/**
+	 * @return - the number of tasks in the given state.
+	 */
+	public int count(TaskState state) throws SQLException {
+		try {
+			conn = connect();
+			ps = conn.prepareStatement("select count(*) from `work_queue` where `state`=?;");
+			ps.setString(1, state.name());
+			rs = ps.executeQuery();
+			if (rs.next()) {
+				return rs.getInt(1);
+			}
+		} catch (SQLException e) {
+			rollback(e);
+			throw e;
+		} finally {
+			closeResources();
+		}
+		return 0;
+	}
+
+	private WorkTask read(ResultSet rs) throws SQLException {
+		WorkTask t = new WorkTask();
+		t.setID(rs.getInt("id"));
+		t.setUrl(rs.getString("url"));
+		String scenario = rs.getString("scenario");
+		t.setScenario(scenario.isEmpty() ? null : scenario);
+		t.setType(toType(rs.getString("type")));
+		t.setState(TaskState.valueOf(rs.getString("state")));
+		t.setOwner(rs.getString("lease_owner"));
+		t.setToken(rs.getString("lease_token"));
+		t.setLeaseExpires(rs.getTimestamp("lease_expires"));
+		t.setAttempts(rs.getInt("attempts"));
+		t.setError(rs.getString("error"));
+		return t;
+	}
+
+	private static NetworkType toType(String code) {
+		for (NetworkType type : NetworkType.values()) {
+			if (type.toString().equals(code)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The whole repository is stored as an empty scenario, so the unique index
+	 * also covers it.
+	 */
+	private static String toColumn(String scenario) {
+		return (scenario == null) ? "" : scenario;
+	}
+
+	private static String truncate(String error) {
+		if (error == null || error.length() <= 300) {
+			return error;
+		}
+		return error.substring(0, 300);
+	}
+
+	/**
+	 * @throws SQLException
+	 *             - when there is no connection to the database.
+	 */
+	private static Connection connect() throws SQLException {
+		Connection connection = Database.getConnection();
+		if (connection == null) {
+			throw new SQLException("Could not connect to the database.");
+		}
+		return connection;
+	}
+
+	private void rollback(SQLException e) {
+		try {
+			if (conn != null) conn.rollback();
+		} catch (SQLException e1) {
+			Logger.logStackTrace(log, e);
+		}
+		Logger.logStackTrace(log, e);
+	}
+
+	@Override
+	public void closeResources() {
+		try {
+			if(rs!=null) rs.close();
+			if(ps!=null) ps.close();
+			if(conn!=null) conn.close();
+		} catch (SQLException e) {
+			Logger.logStackTrace(log, e);
+		}
+	}
+
+}
@@ -36,9 +36,9 @@ public class MergeScenarioValidator implements Validator<MergeScenario> {
 	@Override
 	public boolean validate(MergeScenario ms) throws InvalidCotonetBeanException {
 		if(ms == null
-				|| ms.getRight() == null
-				|| ms.getBase() == null
-				|| ms.getLeft() == null
+				|| ms.getRightId() == null
+				|| ms.getBaseId() == null
+				|| ms.getLeftId() == null
 				|| ms.getProjectID() == null){
 			throw new InvalidCotonetBeanException(
 					MergeScenario.class, 
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.dao.validators;
+
+import br.com.riselabs.cotonet.model.beans.WorkTask;
+import br.com.riselabs.cotonet.model.exceptions.InvalidCotonetBeanException;
+
+/**
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkTaskValidator implements Validator<WorkTask> {
+
+	@Override
+	public boolean validate(WorkTask t) throws InvalidCotonetBeanException {
+		if (t == null 
+		|| t.getUrl() == null
+		|| t.getType() == null) {
+			throw new InvalidCotonetBeanException(
+					WorkTask.class, 
+					"Either the object itself, the `URL', or the `Type' are <null>.",
+					new NullPointerException());
+		}
+
+		if (t.getUrl().equals("")) {
+			throw new InvalidCotonetBeanException(
+					WorkTask.class, 
+					"The `URL' is empty.",
+					new IllegalArgumentException());
+		}
+		return true;
+	}
+
+}
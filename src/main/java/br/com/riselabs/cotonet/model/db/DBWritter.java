@@ -21,6 +21,10 @@
 package br.com.riselabs.cotonet.model.db;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
@@ -61,7 +65,11 @@ public enum DBWritter {
 	}
 
 	/**
-	 * Persists a given project.
+	 * Persists a given project. The scenarios whose network was built for
+	 * another project (see {@code ConflictBasedNetwork#isShared()}) are
+	 * linked to the network already saved. The developers of the other
+	 * networks are saved once for the whole project, and the edges of the
+	 * networks saved now are inserted in a single batch each.
 	 * 
 	 * @param project
 	 */
@@ -70,6 +78,7 @@ public enum DBWritter {
 			// persist the project itself
 			current = persistProject(project);
 
+			List<ConflictBasedNetwork> owned = new ArrayList<ConflictBasedNetwork>();
 			for (Entry<MergeScenario, ConflictBasedNetwork> e : project
 					.getScenarioNetMap().entrySet()) {
 				if(e.getValue()==null)
@@ -80,22 +89,38 @@ public enum DBWritter {
 				scenario.setProjectID(current.getID());
 				scenario = persistScenario(scenario);
 
-				// save networks
 				ConflictBasedNetwork connet = e.getValue();
 				connet.setMergeScenarioID(scenario.getID());
-				connet = persistNetwork(connet);
+				if (!linkNetwork(connet)) {
+					owned.add(connet);
+				}
+			}
+
+			// save developers, indexed by their local IDs
+			int[] devIDs = persistNodes(project, owned);
+
+			for (ConflictBasedNetwork connet : owned) {
+				// save networks
+				boolean isNew = persistNetwork(connet);
 
-				// save developers
 				for (DeveloperNode dev : connet.getNodes()) {
 					dev.setSystemID(current.getID());
-					dev = persistNode(dev);
+					dev.setID(devIDs[project.intern(dev).getLocalID()]);
 				}
 
 				// save edges
 				for (DeveloperEdge edge : connet.getEdges()) {
-//					edge = updateEdgeIDs(edge, connet.getNodes());
 					edge.setNetworkID(connet.getID());
-					edge = persistEdge(edge);
+					edge.getDevA().setID(devIDs[project.intern(edge.getDevA()).getLocalID()]);
+					edge.getDevB().setID(devIDs[project.intern(edge.getDevB()).getLocalID()]);
+				}
+				if (isNew) {
+					// none of them can be in the database yet
+					persistEdges(connet.getEdges());
+				} else {
+					for (DeveloperEdge edge : connet.getEdges()) {
+						persistEdge(edge);
+					}
 				}
 			}
 		} catch (InvalidCotonetBeanException e) {
@@ -148,19 +173,47 @@ public enum DBWritter {
 	 * respective ID.
 	 * 
 	 * @param network
-	 * @return - the network with the updated ID.
+	 * @return - whether the network was not in the database yet.
 	 * @throws InvalidCotonetBeanException
 	 */
-	private synchronized ConflictBasedNetwork persistNetwork(
+	private synchronized boolean persistNetwork(
 			ConflictBasedNetwork connet) throws InvalidCotonetBeanException {
 		cndao = new ConflictBasedNetworkDAO();
 		ConflictBasedNetwork aux;
+		boolean isNew = false;
 		if ((aux = cndao.get(connet)) == null) {
 			cndao.save(connet);
+			isNew = true;
 		}
 		aux = cndao.get(connet);
 		connet.setID(aux.getID());
-		return connet;
+		return isNew;
+	}
+
+	/**
+	 * Links the merge scenario of a shared network to the network saved for
+	 * the same merge commit in another project, so neither the network nor
+	 * its developers and edges are saved again. A scenario that already has
+	 * a network of its own (e.g., saved by a previous run) keeps it.
+	 * 
+	 * @param connet
+	 * @return - whether the scenario was linked, i.e., the network must not
+	 *         be saved.
+	 * @throws InvalidCotonetBeanException
+	 */
+	private synchronized boolean linkNetwork(ConflictBasedNetwork connet)
+			throws InvalidCotonetBeanException {
+		if (!connet.isShared()) {
+			return false;
+		}
+		cndao = new ConflictBasedNetworkDAO();
+		if (cndao.get(connet) != null) {
+			return false;
+		}
+		Integer networkID = cndao.getSharedID(connet.getScenario().getMergeId().getName(), connet.getType(),
+				current.getID());
+		// the project that built it may not have been persisted yet
+		return networkID != null && cndao.link(connet.getMergeScenarioID(), networkID);
 	}
 
 	/**
@@ -184,23 +237,76 @@ public enum DBWritter {
 	}
 
 	/**
-	 * Persists a node in the database and update the parameter with the its
-	 * respective ID.
+	 * Persists the edges of a network that was not in the database in a
+	 * single batch.
 	 * 
-	 * @param edge
-	 * @return - the edge with the updated ID.
+	 * @param edges
+	 * @throws InvalidCotonetBeanException
+	 */
+	private synchronized void persistEdges(List<DeveloperEdge> edges)
+			throws InvalidCotonetBeanException {
+		dedao = new DeveloperEdgeDAO();
+		dedao.saveAll(edges);
+	}
+
+	/**
+	 * Persists the developers of the given networks of a project in the
+	 * database. The existing ones are looked up at once by email, the missing
+	 * ones are inserted in a single batch, and each developer is updated with
+	 * its respective ID.
+	 * 
+	 * @param project
+	 * @param networks
+	 * @return - the IDs of the developers in the database, indexed by their
+	 *         local IDs in the project.
 	 * @throws InvalidCotonetBeanException
 	 */
-	private synchronized DeveloperNode persistNode(DeveloperNode node)
+	private synchronized int[] persistNodes(Project project, List<ConflictBasedNetwork> networks)
 			throws InvalidCotonetBeanException {
-		// save developers
+		// the developers by local ID, in the order they show up
+		Map<Integer, DeveloperNode> devs = new LinkedHashMap<Integer, DeveloperNode>();
+		for (ConflictBasedNetwork connet : networks) {
+			for (DeveloperNode node : connet.getNodes()) {
+				addNode(project, devs, node);
+			}
+			for (DeveloperEdge edge : connet.getEdges()) {
+				addNode(project, devs, edge.getDevA());
+				addNode(project, devs, edge.getDevB());
+			}
+		}
 		dndao = (DeveloperNodeDAO) DAOFactory.getDAO(CotonetBean.NODE);
-		DeveloperNode aux;
-		if ((aux = dndao.get(node)) == null) {
-			dndao.save(node);
+		List<String> emails = new ArrayList<String>();
+		for (DeveloperNode dev : devs.values()) {
+			emails.add(dev.getEmail());
+		}
+		Map<String, Integer> known = dndao.getIDsByEmail(emails);
+		List<DeveloperNode> missing = new ArrayList<DeveloperNode>();
+		int maxLocalID = 0;
+		for (DeveloperNode dev : devs.values()) {
+			dev.setSystemID(current.getID());
+			Integer id = (dev.getEmail() == null) ? null : known.get(dev.getEmail());
+			if (id == null) {
+				missing.add(dev);
+			} else {
+				dev.setID(id);
+			}
+			maxLocalID = Math.max(maxLocalID, dev.getLocalID());
 		}
-		aux = dndao.get(node);
-		node.setID(aux.getID());
-		return node;
+		// sets the IDs of the new ones
+		dndao.saveAll(missing);
+		int[] ids = new int[maxLocalID + 1];
+		for (DeveloperNode dev : devs.values()) {
+			if (dev.getID() == null) {
+				throw new InvalidCotonetBeanException(DeveloperNode.class,
+						"The developer <" + dev.getEmail() + "> could not be saved.", new NullPointerException());
+			}
+			ids[dev.getLocalID()] = dev.getID();
+		}
+		return ids;
+	}
+
+	private static void addNode(Project project, Map<Integer, DeveloperNode> devs, DeveloperNode node) {
+		DeveloperNode dev = project.intern(node);
+		devs.putIfAbsent(dev.getLocalID(), dev);
 	}
 }
@@ -0,0 +1,46 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.enums;
+
+/**
+ * The budgets a merge scenario may exceed while its network is built.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum BudgetType {
+	/**
+	 * the wall time (in milliseconds) spent on the scenario.
+	 */
+	SCENARIO_TIME,
+	/**
+	 * the wall time (in milliseconds) spent on the networks of the repository.
+	 */
+	REPOSITORY_TIME,
+	/**
+	 * the number of conflicting files of the scenario.
+	 */
+	CONFLICTING_FILES,
+	/**
+	 * the size (in bytes) of the files blamed for the scenario.
+	 */
+	BLAMED_BYTES;
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.enums;
+
+/**
+ * Defines how the repositories are crawled concurrently.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum ExecutorType {
+	/**
+	 * one worker crawls a repository from the beginning to the end.
+	 */
+	POOL,
+	/**
+	 * the repositories run in a fork-join pool. Each repository forks the
+	 * replay of its merges (and, with {@code BlameMode.COMMITTED_SIDES}, the
+	 * building of its scenario networks) so that idle workers can steal them.
+	 */
+	FORK_JOIN,
+	/**
+	 * each repository runs in its own virtual thread (Java 21 or newer), and
+	 * the CPU-bound stages of all repositories share a bounded pool of
+	 * platform threads.
+	 */
+	VIRTUAL,
+	/**
+	 * the stages of the repositories (open, build, persist, and codeface) run
+	 * in their own pools, connected by bounded queues.
+	 */
+	PIPELINE;
+
+	/**
+	 * Returns the type with the given command line name (i.e., "pool",
+	 * "forkjoin", "virtual", or "pipeline").
+	 * 
+	 * @throws IllegalArgumentException
+	 *             - for any other name.
+	 */
+	public static ExecutorType fromName(String name) {
+		if ("pool".equalsIgnoreCase(name)) {
+			return POOL;
+		} else if ("forkjoin".equalsIgnoreCase(name)) {
+			return FORK_JOIN;
+		} else if ("virtual".equalsIgnoreCase(name)) {
+			return VIRTUAL;
+		} else if ("pipeline".equalsIgnoreCase(name)) {
+			return PIPELINE;
+		}
+		throw new IllegalArgumentException("Unknown executor type: " + name);
+	}
+}
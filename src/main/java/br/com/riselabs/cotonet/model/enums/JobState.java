@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.enums;
+
+/**
+ * The states of the crawl of a repository.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum JobState {
+	/**
+	 * scheduled, but not started yet.
+	 */
+	QUEUED,
+	/**
+	 * cloning (or fetching) the repository.
+	 */
+	CLONING,
+	/**
+	 * opening the worktree of the repository.
+	 */
+	OPENING,
+	/**
+	 * finding the merge scenarios and building their networks.
+	 */
+	BUILDING,
+	/**
+	 * writing the networks to the database.
+	 */
+	PERSISTING,
+	/**
+	 * writing the Codeface files.
+	 */
+	WRITING,
+	DONE,
+	FAILED,
+	/**
+	 * not finished before the deadline of the run.
+	 */
+	TIMED_OUT;
+
+	/**
+	 * @return whether the crawl is over, either successfully or not.
+	 */
+	public boolean isFinished() {
+		return this == DONE || this == FAILED || this == TIMED_OUT;
+	}
+}
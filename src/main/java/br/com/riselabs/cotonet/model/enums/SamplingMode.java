@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.enums;
+
+/**
+ * Defines how the merge commits of a repository are sampled (see
+ * {@code ScenarioSample}).
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public enum SamplingMode {
+	/**
+	 * every merge commit has the same chance to come first.
+	 */
+	UNIFORM,
+	/**
+	 * the history is split into periods of the same length, and the merge
+	 * commits of each period come in proportion to their number, so any
+	 * prefix of the sample covers the whole history.
+	 */
+	STRATIFIED;
+
+	/**
+	 * Returns the mode with the given command line name (i.e., "uniform" or
+	 * "stratified").
+	 * 
+	 * @throws IllegalArgumentException
+	 *             - for any other name.
+	 */
+	public static SamplingMode fromName(String name) {
+		if ("uniform".equalsIgnoreCase(name)) {
+			return UNIFORM;
+		} else if ("stratified".equalsIgnoreCase(name)) {
+			return STRATIFIED;
+		}
+		throw new IllegalArgumentException("Unknown sampling mode: " + name);
+	}
+}
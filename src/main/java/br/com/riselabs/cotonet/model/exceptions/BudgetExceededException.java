@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.model.exceptions;
+
+import br.com.riselabs.cotonet.model.enums.BudgetType;
+
+/**
+ * Thrown when a merge scenario exceeds one of the budgets of the network
+ * building.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class BudgetExceededException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	private BudgetType type;
+	private long limit;
+	private long actual;
+
+	public BudgetExceededException(BudgetType type, long limit, long actual) {
+		this.type = type;
+		this.limit = limit;
+		this.actual = actual;
+	}
+
+	public BudgetType getType() {
+		return type;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public long getActual() {
+		return actual;
+	}
+
+	@Override
+	public String getMessage() {
+		return "Exceeded the " + type + " budget (" + actual + " > " + limit + ").";
+	}
+}
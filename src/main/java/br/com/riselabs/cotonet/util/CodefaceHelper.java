@@ -131,6 +131,10 @@ public class CodefaceHelper {
 		sb.append("repo: " + project.getName());
 		sb.append(" # Relative to git-dir as specified on the command line\n");
 		sb.append("description: " + project.getName() + "\n");
+		if (project.getSampling() != null) {
+			// to reproduce the sample of the merge scenarios
+			sb.append("# sampling: " + project.getSampling() + "\n");
+		}
 		sb.append("mailinglists: \n");
 		sb.append("    -   name: \n");
 		sb.append("        type:\n");
@@ -53,6 +53,10 @@ public class Directories {
 	public static File getScriptsDir() {
 		return getDir("scripts");
 	}
+
+	public static File getStatsDir() {
+		return getDir("stats");
+	}
 	
 	private static File getDir(String child) {
 		File dir;
@@ -160,7 +160,6 @@ public class IOHandler {
 		File systemDir = new File(Directories.getReposDir(), sytemName);
 		checkAndRemove(systemDir);
 		systemDir.mkdirs();
-		System.gc();
 		return systemDir;
 	}
 
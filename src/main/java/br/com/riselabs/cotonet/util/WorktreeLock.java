@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks the worktree of a repository among the threads of this process and
+ * among the processes sharing the directory of the repositories (through a
+ * lock file). It must be held while the worktree changes, i.e., while it is
+ * opened (or created) and while a scenario is merged and blamed there.
+ * 
+ * The lock is reentrant: the lock file is only locked by the outermost
+ * {@code #lock()} of the thread, and released by its matching
+ * {@code #unlock()}.
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorktreeLock {
+
+	/** the locks of this process, by lock file */
+	private static final ConcurrentHashMap<String, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+	private final File file;
+	private final ReentrantLock local;
+	private FileChannel channel;
+	private FileLock fileLock;
+
+	/**
+	 * @param lockFile
+	 *            - the file locked among the processes. It is created when
+	 *            missing, and never deleted.
+	 */
+	public WorktreeLock(File lockFile) {
+		this.file = lockFile.getAbsoluteFile();
+		this.local = LOCAL_LOCKS.computeIfAbsent(file.getPath(), k -> new ReentrantLock());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Waits until no other thread (of this or another process) holds the
+	 * lock, and takes it.
+	 * 
+	 * @throws IOException
+	 *             - if the lock file could not be locked.
+	 */
+	public void lock() throws IOException {
+		local.lock();
+		if (local.getHoldCount() > 1) {
+			return;
+		}
+		try {
+			file.getParentFile().mkdirs();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			fileLock = channel.lock();
+		} catch (IOException | RuntimeException e) {
+			closeChannel();
+			local.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases the lock taken by the current thread.
+	 */
+	public void unlock() {
+		if (local.getHoldCount() == 1) {
+			try {
+				if (fileLock != null) {
+					fileLock.release();
+				}
+			} catch (IOException e) {
+				// closing the channel releases it anyway
+				Logger.logStackTrace(e);
+			} finally {
+				fileLock = null;
+				closeChannel();
+			}
+		}
+		local.unlock();
+	}
+
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				Logger.logStackTrace(e);
+			}
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+-- MySQL Workbench Forward Engineering
+
+SET @OLD_UNIQUE_CHECKS=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0;
+SET @OLD_FOREIGN_KEY_CHECKS=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0;
+SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='TRADITIONAL,ALLOW_INVALID_DATES';
+
+-- -----------------------------------------------------
+-- The tables of COTONET, created in the database named in db.properties
+-- (e.g., mysql -u root -p cotonet < cotonet-schema.sql). The existing
+-- tables are kept, so it can be run again to add the missing ones.
+-- -----------------------------------------------------
+
+-- -----------------------------------------------------
+-- Table `systems`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `systems` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `name` VARCHAR(45) NOT NULL,
+  `url` VARCHAR(100) NOT NULL,
+  PRIMARY KEY (`id`))
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `developers`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `developers` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `name` VARCHAR(45) NOT NULL,
+  `email1` VARCHAR(100) NOT NULL,
+  `email2` VARCHAR(45) NULL,
+  `system_id` INT UNSIGNED NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `fk_developers_system_idx` (`system_id` ASC),
+  CONSTRAINT `fk_developers_system`
+    FOREIGN KEY (`system_id`)
+    REFERENCES `systems` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `merge_scenarios`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `merge_scenarios` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `system_id` INT UNSIGNED NOT NULL,
+  `commit_base` VARCHAR(40) NOT NULL,
+  `commit_left` VARCHAR(40) NOT NULL,
+  `commit_right` VARCHAR(40) NOT NULL,
+  `commit_merge` VARCHAR(40) NOT NULL,
+  `merge_date` DATETIME NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `fk_mergescenarios_systems_idx` (`system_id` ASC),
+  CONSTRAINT `fk_mergescenarios_systems`
+    FOREIGN KEY (`system_id`)
+    REFERENCES `systems` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `networks`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `networks` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `merge_scenario_id` INT UNSIGNED NOT NULL,
+  `type` CHAR(2) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `fk_tags_merge_scenarios_idx` (`merge_scenario_id` ASC),
+  CONSTRAINT `fk_tags_merge_scenarios`
+    FOREIGN KEY (`merge_scenario_id`)
+    REFERENCES `merge_scenarios` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `edges`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `edges` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `network_id` INT UNSIGNED NOT NULL,
+  `dev_a` INT UNSIGNED NOT NULL,
+  `dev_b` INT UNSIGNED NOT NULL,
+  `weight` INT UNSIGNED NOT NULL,
+  `chunk_range` VARCHAR(12) NOT NULL,
+  `filepath` VARCHAR(300) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `id_UNIQUE` (`id` ASC),
+  INDEX `fk_developers_a_idx` (`dev_a` ASC),
+  INDEX `fk_edge_developerb_idx` (`dev_b` ASC),
+  INDEX `fk_edge_network_idx` (`network_id` ASC),
+  CONSTRAINT `fk_edge_developersa`
+    FOREIGN KEY (`dev_a`)
+    REFERENCES `developers` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_edge_developerb`
+    FOREIGN KEY (`dev_b`)
+    REFERENCES `developers` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_edge_network`
+    FOREIGN KEY (`network_id`)
+    REFERENCES `networks` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `network_links`
+-- The merge scenarios whose network was built for another system (e.g.,
+-- a fork with the same merge commit). Each scenario keeps its own system,
+-- while the network, its developers, and its edges are stored only once.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `network_links` (
+  `merge_scenario_id` INT UNSIGNED NOT NULL,
+  `network_id` INT UNSIGNED NOT NULL,
+  PRIMARY KEY (`merge_scenario_id`, `network_id`),
+  INDEX `fk_network_links_networks_idx` (`network_id` ASC),
+  CONSTRAINT `fk_network_links_merge_scenarios`
+    FOREIGN KEY (`merge_scenario_id`)
+    REFERENCES `merge_scenarios` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_network_links_networks`
+    FOREIGN KEY (`network_id`)
+    REFERENCES `networks` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `work_queue`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `work_queue` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `url` VARCHAR(100) NOT NULL,
+  `scenario` VARCHAR(40) NOT NULL DEFAULT '',
+  `type` CHAR(2) NOT NULL,
+  `state` VARCHAR(10) NOT NULL,
+  `lease_owner` VARCHAR(100) NULL,
+  `lease_token` CHAR(36) NULL,
+  `lease_expires` DATETIME NULL,
+  `heartbeat` DATETIME NULL,
+  `attempts` INT UNSIGNED NOT NULL DEFAULT 0,
+  `error` VARCHAR(300) NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `work_queue_task_UNIQUE` (`url` ASC, `scenario` ASC, `type` ASC),
+  INDEX `work_queue_state_idx` (`state` ASC, `lease_expires` ASC),
+  UNIQUE INDEX `work_queue_token_UNIQUE` (`lease_token` ASC))
+ENGINE = InnoDB;
+
+
+SET SQL_MODE=@OLD_SQL_MODE;
+SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
+SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.BuildBudget;
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.builder.SkipLog;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.BudgetType;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.exceptions.BudgetExceededException;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class BuildBudgetTest extends ConflictBasedRepositoryTestCase {
+
+	@After
+	public void teardown() {
+		SkipLog.INSTANCE.setFile(null);
+		MergeMemo.INSTANCE.clear();
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	@Test
+	public void shouldParseTheBudgets() {
+		BuildBudget budget = BuildBudget.parse("scenarioSeconds=2, files=10,blamedMB=1");
+		assertEquals(2000, budget.getMaxScenarioMillis());
+		assertEquals(10, budget.getMaxConflictingFiles());
+		assertEquals(1024 * 1024, budget.getMaxBlamedBytes());
+		assertEquals(BuildBudget.UNLIMITED, budget.getMaxRepositoryMillis());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnknownBudgets() {
+		BuildBudget.parse("lines=10");
+	}
+
+	@Test
+	public void shouldThrowWhenTheMeterExceedsTheBudget() throws Exception {
+		BuildBudget.Meter meter = new BuildBudget().setMaxBlamedBytes(100).setMaxConflictingFiles(2)
+				.newMeter(System.nanoTime());
+		meter.checkConflictingFiles(2);
+		meter.addBlamedBytes(60);
+		meter.checkTime();
+		try {
+			meter.addBlamedBytes(41);
+			fail();
+		} catch (BudgetExceededException e) {
+			assertEquals(BudgetType.BLAMED_BYTES, e.getType());
+			assertEquals(100, e.getLimit());
+			assertEquals(101, e.getActual());
+		}
+	}
+
+	@Test
+	public void shouldSkipAndRecordTheScenariosOverBudget() throws Exception {
+		MergeMemo.INSTANCE.clear();
+		File skipFile = new File(db.getDirectory().getParentFile(), SkipLog.FILE_NAME);
+		SkipLog.INSTANCE.setFile(skipFile);
+		// no results of other runs
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		setResolvedMergeConflictScenario();
+
+		Project project = new Project("", db);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+		builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		// the scenario has two conflicting files
+		builder.setBudget(new BuildBudget().setMaxConflictingFiles(1));
+		builder.build();
+
+		assertTrue(project.getMergeScenarios().isEmpty());
+		List<String> records = Files.readAllLines(skipFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(1, records.size());
+		assertTrue(records.get(0).contains("\"budget\": \"CONFLICTING_FILES\", \"limit\": 1, \"actual\": 2"));
+
+		builder.setBudget(new BuildBudget().setMaxConflictingFiles(2));
+		builder.build();
+		assertEquals(1, project.getMergeScenarios().size());
+	}
+}
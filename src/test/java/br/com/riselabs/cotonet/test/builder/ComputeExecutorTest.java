@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
+import br.com.riselabs.cotonet.model.beans.ConflictChunk;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.exceptions.BlameException;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ComputeExecutorTest extends ConflictBasedRepositoryTestCase {
+
+	private static final String COMPUTE = "compute";
+
+	private ExecutorService compute;
+	private ExecutorService io;
+
+	@Before
+	public void setup() {
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		compute = Executors.newFixedThreadPool(1, r -> new Thread(r, COMPUTE));
+		io = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void teardown() {
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+		compute.shutdownNow();
+		io.shutdownNow();
+	}
+
+	@Test
+	public void shouldNotHoldAComputeThreadWhileBlaming() throws Exception {
+		setResolvedMergeConflictScenario();
+		final CountDownLatch blaming = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> blamingThreads = new CopyOnWriteArrayList<String>();
+		Project project = new Project("https://github.com/riselabs/blocked", db);
+		final NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED) {
+			@Override
+			protected List<ConflictChunk<CommandLineBlameResult>> getConflictChunks(MergeScenario scenario,
+					File file) throws BlameException {
+				blamingThreads.add(Thread.currentThread().getName());
+				blaming.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.getConflictChunks(scenario, file);
+			}
+		};
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		builder.setComputeExecutor(compute);
+
+		Future<Void> built = io.submit(() -> {
+			builder.build();
+			return null;
+		});
+		try {
+			assertTrue(blaming.await(30, TimeUnit.SECONDS));
+			// the only compute thread is free while the blame blocks
+			assertEquals(COMPUTE, compute.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+		built.get(30, TimeUnit.SECONDS);
+		assertFalse(blamingThreads.contains(COMPUTE));
+		assertEquals(1, project.getScenarioNetMap().size());
+	}
+}
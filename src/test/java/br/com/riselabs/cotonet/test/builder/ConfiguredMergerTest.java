@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.errors.NoMergeBaseException;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.ConfiguredMerger;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ConfiguredMergerTest extends ConflictBasedRepositoryTestCase {
+
+	private RevCommit left;
+	private RevCommit right;
+
+	/**
+	 * Creates a criss-cross merge, i.e., the sides of the merge have two
+	 * merge bases.
+	 */
+	@Before
+	public void setCrissCrossScenario() throws Exception {
+		TestRepository<Repository> repo = new TestRepository<Repository>(db);
+		RevCommit base = repo.commit().add("a.txt", "1\n2\n3\n").create();
+		RevCommit b1 = repo.commit().parent(base).add("a.txt", "1-b\n2\n3\n").create();
+		RevCommit c1 = repo.commit().parent(base).add("a.txt", "1\n2\n3-c\n").create();
+		RevCommit b2 = repo.commit().parent(b1).parent(c1).add("a.txt", "1-b\n2\n3-c\n").create();
+		RevCommit c2 = repo.commit().parent(c1).parent(b1).add("a.txt", "1-b\n2\n3-c\n").create();
+		left = repo.commit().parent(b2).add("a.txt", "1-b\n2-b\n3-c\n").author(devs.get("devA")).create();
+		right = repo.commit().parent(c2).add("a.txt", "1-b\n2-c\n3-c\n").author(devs.get("devB")).create();
+		RevCommit merge = repo.commit().parent(left).parent(right).add("a.txt", "1-b\n2-bc\n3-c\n")
+				.author(devs.get("devY")).create();
+		repo.update("refs/heads/master", merge);
+	}
+
+	@After
+	public void teardown() {
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	@Test
+	public void shouldParseTheStrategiesAndTheAlgorithms() {
+		assertEquals(MergeStrategy.RECURSIVE, ConfiguredMerger.parseStrategy(null));
+		assertEquals(MergeStrategy.RESOLVE, ConfiguredMerger.parseStrategy("Resolve"));
+		assertNull(ConfiguredMerger.parseDiffAlgorithm(null));
+		assertEquals(SupportedAlgorithm.MYERS, ConfiguredMerger.parseDiffAlgorithm("myers"));
+		assertEquals(SupportedAlgorithm.HISTOGRAM, ConfiguredMerger.parseDiffAlgorithm("histogram"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectOtherStrategies() {
+		ConfiguredMerger.parseStrategy("ours");
+	}
+
+	@Test
+	public void shouldMergeTheMergeBasesRecursively() throws Exception {
+		for (SupportedAlgorithm algorithm : SupportedAlgorithm.values()) {
+			ConfiguredMerger merger = new ConfiguredMerger(db, true).setDiffAlgorithm(algorithm);
+			assertFalse(merger.merge(left, right));
+			assertTrue(merger.getMergeResults().get("a.txt").containsConflicts());
+		}
+	}
+
+	@Test(expected = NoMergeBaseException.class)
+	public void shouldNotResolveCrissCrossMerges() throws Exception {
+		new ConfiguredMerger(db, true).setStrategy(MergeStrategy.RESOLVE).merge(left, right);
+	}
+
+	@Test
+	public void shouldSkipTheCrissCrossScenariosWithResolve() throws Exception {
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		assertTrue(build(MergeStrategy.RESOLVE, SupportedAlgorithm.MYERS).getMergeScenarios().isEmpty());
+		assertEquals(1, build(MergeStrategy.RECURSIVE, SupportedAlgorithm.MYERS).getMergeScenarios().size());
+		assertEquals(1, build(MergeStrategy.RECURSIVE, null).getMergeScenarios().size());
+	}
+
+	private Project build(ThreeWayMergeStrategy strategy, SupportedAlgorithm algorithm) throws Exception {
+		Project project = new Project("", db);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+		builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		builder.setMergeStrategy(strategy);
+		builder.setDiffAlgorithm(algorithm);
+		builder.build();
+		return project;
+	}
+}
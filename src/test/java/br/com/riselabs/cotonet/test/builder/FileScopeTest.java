@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.FileScope;
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
+import br.com.riselabs.cotonet.model.beans.DeveloperEdge;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class FileScopeTest extends ConflictBasedRepositoryTestCase {
+
+	@After
+	public void teardown() {
+		MergeMemo.INSTANCE.clear();
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	@Test
+	public void shouldParseTheScope() {
+		FileScope scope = FileScope.parse("include=*.java;*.c, exclude=vendor/**;*.min.js,maxBlobKB=2");
+		assertEquals(2048, scope.getMaxBlobBytes());
+		assertEquals("include=*.java;*.c,exclude=vendor/**;*.min.js,maxBlobKB=2", scope.toString());
+		assertTrue(FileScope.parse(null).isEverything());
+		assertFalse(scope.isEverything());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnknownEntries() {
+		FileScope.parse("lines=10");
+	}
+
+	@Test
+	public void shouldMatchTheNamesAndThePaths() {
+		FileScope scope = new FileScope().include("*.java").include("*.js").exclude("vendor/**").exclude("*.min.js");
+		assertTrue(scope.accepts("Foo.java"));
+		assertTrue(scope.accepts("src/main/Foo.java"));
+		assertTrue(scope.accepts("web/app.js"));
+		assertFalse(scope.accepts("web/app.min.js"));
+		assertFalse(scope.accepts("vendor/lib/Foo.java"));
+		assertFalse(scope.accepts("package-lock.json"));
+		assertFalse(scope.acceptsDirectory("vendor"));
+		assertTrue(scope.acceptsDirectory("src"));
+	}
+
+	@Test
+	public void shouldBlameOnlyTheFilesInTheScope() throws Exception {
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		setResolvedMergeConflictScenario();
+
+		// both Foo.java and Bar.java conflict
+		Project project = build(new FileScope().exclude("Bar.java"));
+		assertEquals(1, project.getMergeScenarios().size());
+		for (ConflictBasedNetwork network : project.getConflictBasedNetworks()) {
+			for (DeveloperEdge edge : network.getEdges()) {
+				assertTrue(edge.getFilepath().endsWith("Foo.java"));
+			}
+		}
+		// the conflicts are all out of the scope, so the merge is clean
+		assertTrue(build(new FileScope().include("*.txt")).getMergeScenarios().isEmpty());
+		assertTrue(build(new FileScope().setMaxBlobBytes(4)).getMergeScenarios().isEmpty());
+		// the results of other scopes are kept apart
+		assertEquals(1, build(new FileScope()).getMergeScenarios().size());
+	}
+
+	private Project build(FileScope scope) throws Exception {
+		Project project = new Project("", db);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+		builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		builder.setFileScope(scope);
+		builder.build();
+		return project;
+	}
+}
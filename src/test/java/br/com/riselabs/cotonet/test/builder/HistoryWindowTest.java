@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.HistoryWindow;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class HistoryWindowTest extends ConflictBasedRepositoryTestCase {
+
+	private RevCommit oldMerge;
+	private RevCommit newMerge;
+	private RevCommit featureMerge;
+
+	/**
+	 * Creates a master with an old and a new merge, and a feature branch
+	 * (forked after the old merge) with a merge of its own.
+	 */
+	@Before
+	public void setHistory() throws Exception {
+		TestRepository<Repository> repo = new TestRepository<Repository>(db);
+		RevCommit base = repo.commit().add("a.txt", "a").create();
+		RevCommit left = repo.commit().parent(base).add("l.txt", "l").create();
+		RevCommit right = repo.commit().parent(base).add("r.txt", "r").create();
+		oldMerge = repo.commit().parent(left).parent(right).create();
+		repo.tick(10 * 24 * 60 * 60);
+		RevCommit feature = repo.commit().parent(oldMerge).add("f.txt", "f").create();
+		RevCommit fix = repo.commit().parent(oldMerge).add("x.txt", "x").create();
+		featureMerge = repo.parseBody(repo.commit().parent(feature).parent(fix).create());
+		repo.tick(10 * 24 * 60 * 60);
+		RevCommit next = repo.commit().parent(oldMerge).add("n.txt", "n").create();
+		RevCommit other = repo.commit().parent(oldMerge).add("o.txt", "o").create();
+		newMerge = repo.commit().parent(next).parent(other).create();
+		repo.update("refs/heads/master", newMerge);
+		repo.update("refs/heads/feature", featureMerge);
+	}
+
+	@Test
+	public void shouldWalkTheWholeHistoryOfHeadByDefault() throws Exception {
+		assertTrue(new HistoryWindow().isEverything());
+		assertEquals(Arrays.asList(newMerge, oldMerge), new HistoryWindow().findMerges(db));
+	}
+
+	@Test
+	public void shouldWalkTheMergesOfTheTimeWindow() throws Exception {
+		Date middle = new Date(featureMerge.getCommitTime() * 1000L);
+		assertEquals(Arrays.asList(newMerge), new HistoryWindow().setSince(middle).findMerges(db));
+		assertEquals(Arrays.asList(oldMerge), new HistoryWindow().setUntil(middle).findMerges(db));
+		Date before = new Date(oldMerge.getCommitTime() * 1000L - 1000);
+		assertTrue(new HistoryWindow().setSince(before).setUntil(middle).findMerges(db).contains(oldMerge));
+	}
+
+	@Test
+	public void shouldWalkTheMergesOfTheRefs() throws Exception {
+		assertEquals(Arrays.asList(featureMerge, oldMerge),
+				new HistoryWindow().setRefs(Arrays.asList("feature", "missing")).findMerges(db));
+		assertEquals(3, new HistoryWindow().setRefs(Arrays.asList("master", "feature")).findMerges(db).size());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldFailWhenNoneOfTheRefsResolves() throws Exception {
+		new HistoryWindow().setRefs(Collections.singletonList("missing")).findMerges(db);
+	}
+
+	@Test
+	public void shouldParseTheDates() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(HistoryWindow.parseDate("2016-05-31", true));
+		assertEquals(23, calendar.get(Calendar.HOUR_OF_DAY));
+		assertEquals(59, calendar.get(Calendar.SECOND));
+		calendar.setTime(HistoryWindow.parseDate("2016-05-31", false));
+		assertEquals(0, calendar.get(Calendar.HOUR_OF_DAY));
+		calendar.setTime(HistoryWindow.parseDate("2016-05-31T18:30:00", true));
+		assertEquals(18, calendar.get(Calendar.HOUR_OF_DAY));
+		assertNull(HistoryWindow.parseDate(null, false));
+		assertEquals(Arrays.asList("master", "release-1.x"), HistoryWindow.parseRefs(" master,,release-1.x"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectMalformedDates() {
+		HistoryWindow.parseDate("31/05/2016", false);
+	}
+}
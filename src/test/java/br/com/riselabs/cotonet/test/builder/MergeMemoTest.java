@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeFormatter;
+import org.eclipse.jgit.merge.MergeResult;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.ConfiguredMerger;
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MergeMemoTest extends ConflictBasedRepositoryTestCase {
+
+	private TestRepository<Repository> repo;
+	private RevCommit base;
+
+	@Before
+	public void setMemo() throws Exception {
+		MergeMemo.INSTANCE.setEnabled(true);
+		MergeMemo.INSTANCE.clear();
+		repo = new TestRepository<Repository>(db);
+		base = repo.commit().add("a.txt", "1\n2\n3\n").add("b.txt", "1\n2\n3\n").create();
+	}
+
+	@After
+	public void teardown() {
+		MergeMemo.INSTANCE.setEnabled(true);
+	}
+
+	private RevCommit side(String content) throws Exception {
+		return repo.commit().parent(base).add("a.txt", content).add("b.txt", content).create();
+	}
+
+	private String merge(SupportedAlgorithm algorithm, RevCommit left, RevCommit right, String path)
+			throws IOException {
+		ConfiguredMerger merger = new ConfiguredMerger(db, true).setDiffAlgorithm(algorithm);
+		assertFalse(merger.merge(left, right));
+		@SuppressWarnings("unchecked")
+		MergeResult<RawText> result = (MergeResult<RawText>) merger.getMergeResults().get(path);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new MergeFormatter().formatMerge(out, result, "BASE", "LEFT", "RIGHT", "UTF-8");
+		return out.toString("UTF-8");
+	}
+
+	@Test
+	public void shouldDiffTheSameContentsOnlyOnce() throws Exception {
+		RevCommit left = side("1\n2-b\n3\n");
+		RevCommit right = side("1\n2-c\n3\n");
+
+		String merged = merge(SupportedAlgorithm.HISTOGRAM, left, right, "a.txt");
+		// the base of both files against each side
+		assertEquals(2, MergeMemo.INSTANCE.getMisses());
+		assertEquals(2, MergeMemo.INSTANCE.getHits());
+
+		// the merges of other paths and commits with the same contents
+		RevCommit otherLeft = repo.commit().parent(left).add("c.txt", "c\n").create();
+		assertEquals(merged, merge(SupportedAlgorithm.HISTOGRAM, otherLeft, right, "b.txt"));
+		assertEquals(2, MergeMemo.INSTANCE.getMisses());
+		assertEquals(6, MergeMemo.INSTANCE.getHits());
+	}
+
+	@Test
+	public void shouldMergeTheSameWithoutTheMemo() throws Exception {
+		RevCommit left = side("1\n2-b\n3\n4\n");
+		RevCommit right = side("0\n1\n2-c\n3\n");
+
+		// b.txt is merged from the memo
+		String memoized = merge(SupportedAlgorithm.MYERS, left, right, "b.txt");
+		MergeMemo.INSTANCE.setEnabled(false);
+		assertEquals(memoized, merge(SupportedAlgorithm.MYERS, left, right, "b.txt"));
+		assertEquals(2, MergeMemo.INSTANCE.getMisses());
+		assertEquals(2, MergeMemo.INSTANCE.getHits());
+	}
+
+	@Test
+	public void shouldKeyTheDiffsByTheAlgorithm() throws Exception {
+		RevCommit left = side("1\n2-b\n3\n");
+		RevCommit right = side("1\n2-c\n3\n");
+
+		merge(SupportedAlgorithm.MYERS, left, right, "a.txt");
+		merge(SupportedAlgorithm.HISTOGRAM, left, right, "a.txt");
+		assertEquals(4, MergeMemo.INSTANCE.getMisses());
+		assertEquals(4, MergeMemo.INSTANCE.getHits());
+	}
+}
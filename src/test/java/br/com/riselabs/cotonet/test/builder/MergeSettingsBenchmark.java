@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMergeStrategy;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+
+/**
+ * Compares the merge strategies and the diff algorithms (see
+ * {@code NetworkBuilder#setMergeStrategy(ThreeWayMergeStrategy)} and
+ * {@code NetworkBuilder#setDiffAlgorithm(SupportedAlgorithm)}) on a corpus
+ * repository. It builds the chunk-based networks of the repository (in-core,
+ * i.e., with {@code BlameMode.COMMITTED_SIDES}) with each combination, and
+ * reports the median time of the builds, the number of conflicting
+ * scenarios, and the number of edges. The memo of the chunks and the store
+ * of the results are disabled, so each build does the whole work.
+ * 
+ * Usage: {@code MergeSettingsBenchmark <repository> [runs]}
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MergeSettingsBenchmark {
+
+	private static final int DEFAULT_RUNS = 3;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: MergeSettingsBenchmark <repository> [runs]");
+			System.exit(1);
+		}
+		int runs = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+		MergeMemo.INSTANCE.setEnabled(false);
+		ScenarioResultStore.INSTANCE.setEnabled(false);
+		File log = File.createTempFile("cotonet-benchmark", ".log");
+		log.deleteOnExit();
+
+		try (Repository repository = new FileRepositoryBuilder().findGitDir(new File(args[0])).setMustExist(true)
+				.build()) {
+			// warms up the JVM and the caches of the repository
+			build(repository, MergeStrategy.RECURSIVE, SupportedAlgorithm.HISTOGRAM, log);
+
+			System.out.println(String.format("%-10s %-10s %12s %10s %8s", "strategy", "diff", "median (ms)",
+					"scenarios", "edges"));
+			for (ThreeWayMergeStrategy strategy : Arrays.asList(MergeStrategy.RECURSIVE, MergeStrategy.RESOLVE)) {
+				for (SupportedAlgorithm algorithm : SupportedAlgorithm.values()) {
+					long[] millis = new long[runs];
+					Project project = null;
+					for (int i = 0; i < runs; i++) {
+						long start = System.nanoTime();
+						project = build(repository, strategy, algorithm, log);
+						millis[i] = (System.nanoTime() - start) / 1000000;
+					}
+					Arrays.sort(millis);
+					int edges = 0;
+					for (ConflictBasedNetwork network : project.getConflictBasedNetworks()) {
+						edges += network.getEdges().size();
+					}
+					System.out.println(String.format("%-10s %-10s %12d %10d %8d", strategy.getName(),
+							algorithm.name().toLowerCase(), millis[runs / 2], project.getMergeScenarios().size(),
+							edges));
+				}
+			}
+		}
+	}
+
+	private static Project build(Repository repository, ThreeWayMergeStrategy strategy,
+			SupportedAlgorithm algorithm, File log) throws Exception {
+		Project project = new Project("", repository);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+		builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+		builder.setLogFile(log);
+		builder.setMergeStrategy(strategy);
+		builder.setDiffAlgorithm(algorithm);
+		builder.build();
+		return project;
+	}
+}
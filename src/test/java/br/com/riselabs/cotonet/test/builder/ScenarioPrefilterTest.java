@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.FileScope;
+import br.com.riselabs.cotonet.builder.ScenarioPrefilter;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ScenarioPrefilterTest extends ConflictBasedRepositoryTestCase {
+
+	/**
+	 * Creates a history with a merge of disjoint changes and a merge whose
+	 * sides changed the same two files (one of them identically).
+	 */
+	@Before
+	public void setHistory() throws Exception {
+		TestRepository<Repository> repo = new TestRepository<Repository>(db);
+		RevCommit base = repo.commit().add("A.java", "a").add("b.txt", "b").add("c.txt", "c").create();
+		RevCommit left = repo.commit().parent(base).add("A.java", "left").create();
+		RevCommit right = repo.commit().parent(base).add("b.txt", "right").create();
+		RevCommit clean = repo.commit().parent(left).parent(right).create();
+		RevCommit next = repo.commit().parent(clean).add("A.java", "next!").add("b.txt", "same")
+				.add("c.txt", "cc").create();
+		RevCommit other = repo.commit().parent(clean).add("A.java", "other").add("b.txt", "same")
+				.add("c.txt", "ccc").create();
+		repo.update("refs/heads/master", repo.commit().parent(next).parent(other).create());
+	}
+
+	@Test
+	public void shouldFindTheMergesWhoseSidesChangedTheSameFiles() throws Exception {
+		ScenarioPrefilter prefilter = new ScenarioPrefilter(db).call();
+		assertEquals(2, prefilter.getMerges());
+		assertEquals(1, prefilter.getCandidates());
+		// b.txt was changed identically
+		assertEquals(2, prefilter.getOverlappingPaths());
+		assertEquals("next!".length() + "other".length() + "cc".length() + "ccc".length(),
+				prefilter.getBlameBytes());
+	}
+
+	@Test
+	public void shouldOnlyCountTheFilesInTheScope() throws Exception {
+		ScenarioPrefilter prefilter = new ScenarioPrefilter(db).setFileScope(FileScope.parse("include=*.java"))
+				.call();
+		assertEquals(1, prefilter.getCandidates());
+		assertEquals(1, prefilter.getOverlappingPaths());
+		assertEquals(10, prefilter.getBlameBytes());
+		prefilter.setFileScope(FileScope.parse("exclude=*.java;*.txt")).call();
+		assertEquals(2, prefilter.getMerges());
+		assertEquals(0, prefilter.getCandidates());
+		assertEquals(0, prefilter.getBlameBytes());
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.MergeMemo;
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.ConflictBasedNetwork;
+import br.com.riselabs.cotonet.model.beans.DeveloperEdge;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ScenarioResultStoreTest extends ConflictBasedRepositoryTestCase {
+
+	/** the variant of the results blamed at the committed sides */
+	private static final String SIDES = "committed-sides";
+
+	private File results;
+
+	@Before
+	public void setup() {
+		MergeMemo.INSTANCE.clear();
+		results = new File(db.getDirectory().getParentFile(), "results");
+		ScenarioResultStore.INSTANCE.setDirectory(results);
+	}
+
+	@After
+	public void teardown() {
+		MergeMemo.INSTANCE.clear();
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	private Project build(String url, NetworkType type) throws Exception {
+		return build(url, type, BlameMode.COMMITTED_SIDES);
+	}
+
+	private Project build(String url, NetworkType type, BlameMode mode) throws Exception {
+		Project project = new Project(url, db);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, type);
+		builder.setBlameMode(mode);
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		builder.build();
+		return project;
+	}
+
+	private static List<String> describe(ConflictBasedNetwork network) {
+		List<String> result = new ArrayList<String>();
+		for (DeveloperEdge edge : network.getEdges()) {
+			result.add(edge.getDevA().getEmail() + "-" + edge.getDevB().getEmail() + ":" + edge.getWeight() + "@"
+					+ edge.getChunkRange() + " " + edge.getFilepath());
+		}
+		return result;
+	}
+
+	@Test
+	public void shouldReuseTheResultsOfOtherProjects() throws Exception {
+		setResolvedMergeConflictScenario();
+		Project upstream = build("https://github.com/riselabs/upstream", NetworkType.CHUNK_BASED);
+		assertEquals(1, upstream.getMergeScenarios().size());
+		long hits = ScenarioResultStore.INSTANCE.getHits();
+
+		Project fork = build("https://github.com/someone/upstream", NetworkType.CHUNK_BASED);
+		assertEquals(hits + 1, ScenarioResultStore.INSTANCE.getHits());
+		assertEquals(1, fork.getMergeScenarios().size());
+
+		MergeScenario scenario = upstream.getMergeScenarios().iterator().next();
+		MergeScenario forked = fork.getMergeScenarios().iterator().next();
+		assertEquals(scenario.getMergeId(), forked.getMergeId());
+		assertEquals(scenario.getBaseId(), forked.getBaseId());
+		ConflictBasedNetwork network = upstream.getScenarioNetMap().get(scenario);
+		ConflictBasedNetwork reused = fork.getScenarioNetMap().get(forked);
+		assertEquals(describe(network), describe(reused));
+		assertEquals(network.getNodes().size(), reused.getNodes().size());
+		// the database links the fork to the network of the upstream
+		assertFalse(network.isShared());
+		assertTrue(reused.isShared());
+		// the developers are the fork's own
+		assertNotNull(fork.getDevByMail(reused.getNodes().get(0).getEmail()));
+		assertEquals(reused.getNodes().get(0), fork.getDevByMail(reused.getNodes().get(0).getEmail()));
+	}
+
+	@Test
+	public void shouldKeyTheResultsByNetworkType() throws Exception {
+		setResolvedMergeConflictScenario();
+		Project project = build("https://github.com/riselabs/upstream", NetworkType.CHUNK_BASED);
+		MergeScenario scenario = project.getMergeScenarios().iterator().next();
+		assertNotNull(ScenarioResultStore.INSTANCE.get(scenario.getMergeId(), NetworkType.CHUNK_BASED, SIDES));
+		assertNull(ScenarioResultStore.INSTANCE.get(scenario.getMergeId(), NetworkType.FILE_BASED, SIDES));
+	}
+
+	@Test
+	public void shouldKeyTheResultsByBlameMode() throws Exception {
+		setResolvedMergeConflictScenario();
+		Project project = build("https://github.com/riselabs/upstream", NetworkType.CHUNK_BASED);
+		MergeScenario scenario = project.getMergeScenarios().iterator().next();
+		assertNull(ScenarioResultStore.INSTANCE.get(scenario.getMergeId(), NetworkType.CHUNK_BASED));
+
+		long hits = ScenarioResultStore.INSTANCE.getHits();
+		build("https://github.com/riselabs/upstream", NetworkType.CHUNK_BASED, BlameMode.MERGED_FILE);
+		assertEquals(hits, ScenarioResultStore.INSTANCE.getHits());
+		assertNotNull(ScenarioResultStore.INSTANCE.get(scenario.getMergeId(), NetworkType.CHUNK_BASED));
+	}
+
+	@Test
+	public void shouldNotStoreWhenDisabled() throws Exception {
+		ScenarioResultStore.INSTANCE.setEnabled(false);
+		try {
+			setResolvedMergeConflictScenario();
+			build("https://github.com/riselabs/upstream", NetworkType.CHUNK_BASED);
+			assertNull(results.list());
+		} finally {
+			ScenarioResultStore.INSTANCE.setEnabled(true);
+		}
+	}
+}
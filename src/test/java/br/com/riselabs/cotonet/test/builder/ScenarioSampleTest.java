@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.builder.ScenarioSample;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.enums.SamplingMode;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ScenarioSampleTest extends ConflictBasedRepositoryTestCase {
+
+	@After
+	public void teardown() {
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	@Test
+	public void shouldParseTheSample() {
+		ScenarioSample sample = ScenarioSample.parse("mode=stratified, seed=42,conflicts=200,strata=12");
+		assertEquals(SamplingMode.STRATIFIED, sample.getMode());
+		assertEquals(42, sample.getSeed());
+		assertEquals(200, sample.getMaxConflicting());
+		assertEquals(12, sample.getStrata());
+		assertEquals("mode=stratified,seed=42,conflicts=200,strata=12", sample.toString());
+		assertEquals("mode=uniform,seed=0", ScenarioSample.parse("").toString());
+		assertNull(ScenarioSample.parse(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnknownModes() {
+		ScenarioSample.parse("mode=systematic");
+	}
+
+	@Test
+	public void shouldSampleTheSameOrderForTheSameSeed() throws Exception {
+		List<RevCommit> commits = createCommits(40, 0);
+		ScenarioSample sample = new ScenarioSample().setSeed(42);
+		List<RevCommit> order = sample.order(commits);
+		assertEquals(new HashSet<RevCommit>(commits), new HashSet<RevCommit>(order));
+		List<RevCommit> reversed = new ArrayList<RevCommit>(commits);
+		Collections.reverse(reversed);
+		assertEquals(order, sample.order(reversed));
+		assertNotEquals(order, new ScenarioSample().setSeed(43).order(commits));
+	}
+
+	@Test
+	public void shouldTakeFromEachPeriodInProportionToItsSize() throws Exception {
+		List<RevCommit> commits = createCommits(30, 0);
+		// a later period with a third of the commits
+		commits.addAll(createCommits(10, 365 * 24 * 60 * 60));
+		RevCommit firstLate = commits.get(30);
+		ScenarioSample sample = new ScenarioSample().setMode(SamplingMode.STRATIFIED).setStrata(2).setSeed(7);
+		List<RevCommit> order = sample.order(commits);
+		assertEquals(40, order.size());
+		for (int prefix = 4; prefix <= 40; prefix += 4) {
+			int late = 0;
+			for (RevCommit commit : order.subList(0, prefix)) {
+				if (commit.getCommitTime() >= firstLate.getCommitTime()) {
+					late++;
+				}
+			}
+			assertTrue("prefix " + prefix + " has " + late, Math.abs(late - prefix / 4) <= 1);
+		}
+	}
+
+	@Test
+	public void shouldRecordTheSampleWithTheProject() throws Exception {
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		setResolvedMergeConflictScenario();
+		Project project = new Project("", db);
+		NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+		builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+		builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+		builder.setSample(new ScenarioSample().setSeed(7).setMaxConflicting(1));
+		builder.build();
+		assertEquals(1, project.getMergeScenarios().size());
+		assertEquals("mode=uniform,seed=7,conflicts=1,merges=1,examined=1", project.getSampling());
+	}
+
+	private List<RevCommit> createCommits(int count, int delay) throws Exception {
+		TestRepository<Repository> repo = new TestRepository<Repository>(db);
+		repo.tick(delay);
+		List<RevCommit> commits = new ArrayList<RevCommit>();
+		for (int i = 0; i < count; i++) {
+			repo.tick(60);
+			commits.add(repo.parseBody(repo.commit().add("file.txt", "" + i + delay).create()));
+		}
+		return commits;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.eclipse.jgit.api.BlameCommand;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.commands.IncrementalBlame;
+import br.com.riselabs.cotonet.builder.commands.IncrementalBlame.FileBlame;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class IncrementalBlameTest extends ConflictBasedRepositoryTestCase {
+
+	private void assertSameBlame(RevCommit commit, String path, FileBlame blame) throws Exception {
+		BlameResult expected = new BlameCommand(db).setStartCommit(commit).setFilePath(path).call();
+		assertEquals(expected.getResultContents().size(), blame.size());
+		for (int i = 0; i < blame.size(); i++) {
+			assertEquals(expected.getSourceCommit(i).getId(), blame.getSourceCommit(i));
+			assertEquals(expected.getSourceAuthor(i), blame.getSourceAuthor(i));
+		}
+	}
+
+	@Test
+	public void shouldDeriveTheBlameOfADescendant() throws Exception {
+		MergeScenario scenario = setCollaborationScenarioInTempRepository();
+		IncrementalBlame engine = new IncrementalBlame(db);
+
+		FileBlame atBase = engine.blame("Foo.java", scenario.getBase(), 0, Integer.MAX_VALUE);
+		assertSameBlame(scenario.getBase(), "Foo.java", atBase);
+
+		FileBlame atLeft = engine.blame("Foo.java", scenario.getLeft(), 0, Integer.MAX_VALUE);
+		assertSameBlame(scenario.getLeft(), "Foo.java", atLeft);
+		assertEquals(1, engine.getMisses());
+		assertEquals(1, engine.getDerived());
+
+		FileBlame again = engine.blame("Foo.java", scenario.getLeft(), 0, Integer.MAX_VALUE);
+		assertEquals(atLeft, again);
+		assertEquals(1, engine.getHits());
+	}
+
+	@Test
+	public void shouldNotDeriveFromOtherBranches() throws Exception {
+		MergeScenario scenario = setCollaborationScenarioInTempRepository();
+		IncrementalBlame engine = new IncrementalBlame(db);
+
+		engine.blame("Bar.java", scenario.getLeft(), 0, Integer.MAX_VALUE);
+		FileBlame atRight = engine.blame("Bar.java", scenario.getRight(), 0, Integer.MAX_VALUE);
+
+		assertSameBlame(scenario.getRight(), "Bar.java", atRight);
+		assertEquals(2, engine.getMisses());
+		assertEquals(0, engine.getDerived());
+	}
+
+	@Test
+	public void shouldBlameOnlyTheRequestedLines() throws Exception {
+		MergeScenario scenario = setCollaborationScenarioInTempRepository();
+		IncrementalBlame engine = new IncrementalBlame(db);
+
+		FileBlame blame = engine.blame("Foo.java", scenario.getRight(), 3, 4);
+
+		BlameResult expected = new BlameCommand(db).setStartCommit(scenario.getRight()).setFilePath("Foo.java")
+				.call();
+		assertEquals(expected.getSourceCommit(3).getId(), blame.getSourceCommit(3));
+		assertEquals("s1", expected.getSourceCommit(3).getFullMessage());
+		assertFalse(blame.hasSourceData(0));
+		assertNull(engine.blame("Baz.java", scenario.getRight(), 0, 1));
+	}
+
+	@Test
+	public void shouldBlameConcurrently() throws Exception {
+		final MergeScenario scenario = setCollaborationScenarioInTempRepository();
+		final IncrementalBlame engine = new IncrementalBlame(db);
+		final RevCommit[] commits = { scenario.getBase(), scenario.getLeft(), scenario.getRight() };
+		final String[] paths = { "Foo.java", "Bar.java" };
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<ForkJoinTask<FileBlame>> tasks = new ArrayList<ForkJoinTask<FileBlame>>();
+			for (int i = 0; i < 24; i++) {
+				final RevCommit commit = commits[i % commits.length];
+				final String path = paths[(i / commits.length) % paths.length];
+				tasks.add(pool.submit(() -> engine.blame(path, commit, 0, Integer.MAX_VALUE)));
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				assertSameBlame(commits[i % commits.length], paths[(i / commits.length) % paths.length],
+						tasks.get(i).get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(24, engine.getHits() + engine.getDerived() + engine.getMisses());
+	}
+}
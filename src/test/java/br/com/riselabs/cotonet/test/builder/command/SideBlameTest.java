@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.builder.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.commands.ExternalGitCommand;
+import br.com.riselabs.cotonet.builder.commands.ExternalGitCommand.CommandType;
+import br.com.riselabs.cotonet.builder.commands.SideBlame;
+import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
+import br.com.riselabs.cotonet.model.beans.ConflictChunk;
+import br.com.riselabs.cotonet.model.beans.DeveloperNode;
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class SideBlameTest extends ConflictBasedRepositoryTestCase {
+
+	private List<ConflictChunk<CommandLineBlameResult>> blameSides(MergeScenario scenario, String path)
+			throws Exception {
+		ResolveMerger merger = (ResolveMerger) MergeStrategy.RECURSIVE.newMerger(db, true);
+		merger.merge(scenario.getLeft(), scenario.getRight());
+		return new SideBlame(db).setMergeScenario(scenario).setFilePath(path)
+				.setMergeResult(merger.getMergeResults().get(path)).call();
+	}
+
+	@Test
+	public void shouldBlameEachSideAtItsOwnCommit() throws Exception {
+		MergeScenario scenario = setCollaborationScenarioInTempRepository();
+
+		List<ConflictChunk<CommandLineBlameResult>> chunks = blameSides(scenario, "Bar.java");
+
+		assertEquals(1, chunks.size());
+		ConflictChunk<CommandLineBlameResult> chunk = chunks.get(0);
+		assertEquals("4-10", chunk.getChunkRange());
+		Map<Integer, DeveloperNode> left = chunk.getLeft().getResult().getLineAuthorsMap();
+		assertEquals(2, left.size());
+		assertTrue(left.get(4).equals(new DeveloperNode("devb@project.com")));
+		assertTrue(left.get(5).equals(new DeveloperNode("devc@project.com")));
+		Map<Integer, DeveloperNode> right = chunk.getRight().getResult().getLineAuthorsMap();
+		assertEquals(3, right.size());
+		assertTrue(right.get(7).equals(new DeveloperNode("deva@project.com")));
+		assertTrue(right.get(8).equals(new DeveloperNode("deva@project.com")));
+		assertTrue(right.get(9).equals(new DeveloperNode("deve@project.com")));
+	}
+
+	@Test
+	public void shouldMatchTheBlameOfTheMergedFile() throws Exception {
+		MergeScenario scenario = setCollaborationScenarioInTempRepository();
+		List<ConflictChunk<CommandLineBlameResult>> sides = blameSides(scenario, "Foo.java");
+
+		runMerge(scenario);
+		File merged = new File(db.getWorkTree(), "Foo.java");
+		List<ConflictChunk<CommandLineBlameResult>> worktree = new ExternalGitCommand()
+				.setMergeScenario(scenario).setType(CommandType.BLAME).setDirectory(merged).call();
+
+		assertEquals(worktree.size(), sides.size());
+		for (int i = 0; i < sides.size(); i++) {
+			assertEquals(worktree.get(i).getChunkRange(), sides.get(i).getChunkRange());
+			assertEquals(worktree.get(i).getLeft().getResult().getLineAuthorsMap(),
+					sides.get(i).getLeft().getResult().getLineAuthorsMap());
+			assertEquals(worktree.get(i).getRight().getResult().getLineAuthorsMap(),
+					sides.get(i).getRight().getResult().getLineAuthorsMap());
+			assertEquals(worktree.get(i).getLeft().getResult().getLineCommitMap(),
+					sides.get(i).getLeft().getResult().getLineCommitMap());
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.CloneThrottle;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class CloneThrottleTest {
+
+	@After
+	public void teardown() {
+		CloneThrottle.INSTANCE.setLimit(CloneThrottle.getDefaultLimit());
+	}
+
+	@Test
+	public void shouldLimitTheTransfersAtTheSameTime() throws Exception {
+		CloneThrottle throttle = CloneThrottle.INSTANCE;
+		throttle.setLimit(1);
+		throttle.acquire();
+		CountDownLatch started = new CountDownLatch(1);
+		Thread other = new Thread(() -> {
+			try {
+				throttle.acquire();
+				started.countDown();
+				throttle.release();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		other.start();
+		assertEquals(false, started.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, throttle.getRunning());
+
+		throttle.release();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		other.join();
+		assertEquals(0, throttle.getRunning());
+	}
+
+	@Test
+	public void shouldAdmitMoreWhenTheLimitIsRaised() throws Exception {
+		CloneThrottle throttle = CloneThrottle.INSTANCE;
+		throttle.setLimit(1);
+		throttle.acquire();
+		CountDownLatch started = new CountDownLatch(1);
+		Thread other = new Thread(() -> {
+			try {
+				throttle.acquire();
+				started.countDown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		other.start();
+		throttle.setLimit(2);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(2, throttle.getRunning());
+		throttle.release();
+		throttle.release();
+		other.join();
+	}
+}
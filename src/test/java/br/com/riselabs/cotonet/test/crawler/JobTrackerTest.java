@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import br.com.riselabs.cotonet.crawler.JobTracker;
+import br.com.riselabs.cotonet.model.beans.CrawlJob;
+import br.com.riselabs.cotonet.model.enums.JobState;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class JobTrackerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File statusFile;
+	private JobTracker tracker;
+
+	@Before
+	public void setup() {
+		statusFile = new File(folder.getRoot(), JobTracker.STATUS_FILE);
+		tracker = new JobTracker(statusFile);
+	}
+
+	@Test
+	public void shouldKeepTheFinishedStates() {
+		CrawlJob job = tracker.add("https://github.com/riselabs/a");
+		assertEquals("a", job.getName());
+		assertEquals(JobState.QUEUED, job.getState());
+		assertEquals(-1, job.getStarted());
+
+		job.setState(JobState.OPENING);
+		assertTrue(job.getStarted() > 0);
+		job.fail(new IllegalStateException("broken"));
+		assertEquals(JobState.FAILED, job.getState());
+		assertEquals("IllegalStateException: broken", job.getError());
+
+		job.setState(JobState.DONE);
+		assertEquals(JobState.FAILED, job.getState());
+	}
+
+	@Test
+	public void shouldTimeOutTheUnfinishedJobs() {
+		tracker.add("https://github.com/riselabs/a").setState(JobState.DONE);
+		tracker.add("https://github.com/riselabs/b").setState(JobState.BUILDING);
+		tracker.add("https://github.com/riselabs/c");
+		assertEquals(-1, new JobTracker(statusFile).getEtaMillis());
+		assertTrue(tracker.getEtaMillis() >= 0);
+
+		tracker.timeOutUnfinished();
+		assertEquals(1, tracker.getJobs(JobState.DONE).size());
+		assertEquals(2, tracker.getJobs(JobState.TIMED_OUT).size());
+		assertNull(tracker.get("https://github.com/riselabs/c").getError());
+	}
+
+	@Test
+	public void shouldWriteTheStatusFile() throws Exception {
+		CrawlJob done = tracker.add("https://github.com/riselabs/a");
+		done.setScenarios(3);
+		done.setState(JobState.DONE);
+		tracker.add("https://github.com/riselabs/b").fail(new RuntimeException("a \"quoted\"\nmessage"));
+		tracker.writeStatus();
+
+		String json = new String(Files.readAllBytes(statusFile.toPath()), StandardCharsets.UTF_8);
+		assertTrue(json.contains("\"total\": 2,"));
+		assertTrue(json.contains("\"done\": 1,"));
+		assertTrue(json.contains("\"failed\": 1,"));
+		assertTrue(json.contains("\"scenarios\": 3,"));
+		assertTrue(json.contains("\"error\": \"RuntimeException: a \\\"quoted\\\"\\nmessage\""));
+		assertTrue(tracker.getProgress().startsWith("[progress] 2/2 repositories finished (1 failed, 0 running)"));
+	}
+}
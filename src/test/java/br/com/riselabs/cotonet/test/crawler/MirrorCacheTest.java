@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import br.com.riselabs.cotonet.crawler.MirrorCache;
+import br.com.riselabs.cotonet.crawler.RepositoryCostEstimator;
+import br.com.riselabs.cotonet.model.beans.Project;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MirrorCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File reposDir;
+	private File upstreamDir;
+	private Git upstream;
+	private Project project;
+	private MirrorCache cache;
+
+	@Before
+	public void setup() throws Exception {
+		reposDir = folder.newFolder("repos");
+		upstreamDir = new File(folder.getRoot(), "demo.git");
+		upstream = Git.init().setDirectory(upstreamDir).call();
+		commitFile("a.txt", "first");
+		project = new Project(new File(folder.getRoot(), "demo").getPath());
+		cache = new MirrorCache(reposDir);
+	}
+
+	private RevCommit commitFile(String name, String content) throws Exception {
+		Files.write(new File(upstreamDir, name).toPath(), content.getBytes("UTF-8"));
+		upstream.add().addFilepattern(name).call();
+		return upstream.commit().setMessage(content).call();
+	}
+
+	@Test
+	public void shouldCloneOnceAndThenFetch() throws Exception {
+		assertTrue(cache.update(project, upstreamDir.getPath()));
+		assertTrue(new File(cache.getMirrorDir(project), Constants.HEAD).exists());
+
+		RevCommit second = commitFile("b.txt", "second");
+		assertFalse(cache.update(project, upstreamDir.getPath()));
+		try (Repository mirror = cache.openMirror(project)) {
+			assertTrue(mirror.isBare());
+			assertEquals(second.getId(), mirror.resolve(Constants.HEAD));
+		}
+	}
+
+	@Test
+	public void shouldShareTheObjectsOfTheMirror() throws Exception {
+		cache.update(project, upstreamDir.getPath());
+		try (Repository worktree = cache.openWorktree(project, false)) {
+			assertEquals(upstream.getRepository().resolve(Constants.HEAD), worktree.resolve(Constants.HEAD));
+			File objects = new File(worktree.getDirectory(), "objects");
+			assertTrue(new File(objects, "info/alternates").exists());
+			// only the .git directory, nothing was checked out
+			assertEquals(1, cache.getWorktreeDir(project).list().length);
+		}
+		assertFalse(cache.isStandaloneClone(project));
+
+		RevCommit second = commitFile("b.txt", "second");
+		cache.update(project, upstreamDir.getPath());
+		try (Repository worktree = cache.openWorktree(project, true)) {
+			assertEquals(second.getId(), worktree.resolve(Constants.HEAD));
+			assertTrue(new File(worktree.getWorkTree(), "a.txt").exists());
+			assertTrue(new File(worktree.getWorkTree(), "b.txt").exists());
+			assertEquals(0, RepositoryCostEstimator.getPackBytes(worktree));
+		}
+	}
+
+	@Test
+	public void shouldEstimateFromTheMirror() throws Exception {
+		commitFile("b.txt", "second");
+		cache.update(project, upstreamDir.getPath());
+		cache.openWorktree(project, false).close();
+
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator(new File(folder.getRoot(), "costs.tsv"),
+				reposDir);
+		assertEquals(2, estimator.estimate(project.getUrl()).getCommits());
+		assertTrue(estimator.estimate(project.getUrl()).getPackBytes() > 0);
+	}
+
+	@Test
+	public void shouldShareTheObjectsOfForks() throws Exception {
+		// enough content to tell the packs apart
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append(i).append('\n');
+		}
+		commitFile("big.txt", sb.toString());
+		assertTrue(cache.update(project, upstreamDir.getPath()));
+
+		File forkDir = new File(folder.getRoot(), "fork.git");
+		try (Git fork = Git.cloneRepository().setURI(upstreamDir.getPath()).setDirectory(forkDir).call()) {
+			Files.write(new File(forkDir, "c.txt").toPath(), "fork".getBytes("UTF-8"));
+			fork.add().addFilepattern("c.txt").call();
+			RevCommit tip = fork.commit().setMessage("fork").call();
+
+			Project forked = new Project(new File(folder.getRoot(), "fork").getPath());
+			assertTrue(cache.update(forked, forkDir.getPath()));
+			assertEquals("demo", cache.getBorrowedMirror(forked));
+			try (Repository mirror = cache.openMirror(forked); Repository base = cache.openMirror(project)) {
+				assertEquals(tip.getId(), mirror.resolve(Constants.HEAD));
+				assertTrue(RepositoryCostEstimator.getPackBytes(mirror) < RepositoryCostEstimator
+						.getPackBytes(base));
+			}
+			try (Repository worktree = cache.openWorktree(forked, true)) {
+				assertTrue(new File(worktree.getWorkTree(), "big.txt").exists());
+				assertTrue(new File(worktree.getWorkTree(), "c.txt").exists());
+			}
+		}
+		assertNull(cache.getBorrowedMirror(project));
+	}
+
+	@Test
+	public void shouldCloneFromFileURLsReportingTheProgress() throws Exception {
+		RecordingMonitor monitor = new RecordingMonitor(false);
+		assertTrue(cache.update(project, "file://" + upstreamDir.getAbsolutePath(), monitor));
+		assertFalse(monitor.tasks.isEmpty());
+		try (Repository mirror = cache.openMirror(project)) {
+			assertEquals(upstream.getRepository().resolve(Constants.HEAD), mirror.resolve(Constants.HEAD));
+		}
+	}
+
+	@Test
+	public void shouldResumeAFailedClone() throws Exception {
+		String remote = "file://" + upstreamDir.getAbsolutePath();
+		try {
+			cache.update(project, remote, new RecordingMonitor(true));
+			fail("The clone should have been cancelled.");
+		} catch (IOException e) {
+			// expected
+		}
+		assertFalse(cache.getMirrorDir(project).exists());
+		File partial = cache.getPartialDir(project);
+		assertTrue(partial.exists());
+		// what a killed transfer leaves behind
+		File leftover = new File(partial, "objects/pack/incoming_1.pack");
+		leftover.getParentFile().mkdirs();
+		Files.write(leftover.toPath(), new byte[] { 1 });
+		File lock = new File(partial, "refs/heads/master.lock");
+		Files.write(lock.toPath(), new byte[] { 1 });
+
+		RevCommit second = commitFile("b.txt", "second");
+		assertTrue(cache.update(project, remote));
+		assertFalse(partial.exists());
+		File mirrorDir = cache.getMirrorDir(project);
+		assertFalse(new File(mirrorDir, "objects/pack/incoming_1.pack").exists());
+		assertFalse(new File(mirrorDir, "refs/heads/master.lock").exists());
+		try (Repository mirror = cache.openMirror(project)) {
+			assertEquals(second.getId(), mirror.resolve(Constants.HEAD));
+		}
+	}
+
+	@Test
+	public void shouldDiscardThePartialClonesOfOtherRemotes() throws Exception {
+		File otherDir = new File(folder.getRoot(), "other.git");
+		try (Git other = Git.init().setDirectory(otherDir).call()) {
+			Files.write(new File(otherDir, "x.txt").toPath(), "other".getBytes("UTF-8"));
+			other.add().addFilepattern("x.txt").call();
+			other.commit().setMessage("other").call();
+		}
+		File partial = cache.getPartialDir(project);
+		try (Git git = Git.cloneRepository().setURI(otherDir.getPath()).setDirectory(partial).setBare(true).call()) {
+			assertTrue(git.getRepository().isBare());
+			assertTrue(partial.exists());
+		}
+		assertTrue(cache.update(project, upstreamDir.getPath()));
+		try (Repository mirror = cache.openMirror(project)) {
+			assertEquals(upstream.getRepository().resolve(Constants.HEAD), mirror.resolve(Constants.HEAD));
+			assertNull(mirror.resolve("refs/heads/master:x.txt"));
+		}
+	}
+
+	private static class RecordingMonitor implements ProgressMonitor {
+		private final List<String> tasks = new ArrayList<String>();
+		private final boolean cancelled;
+
+		RecordingMonitor(boolean cancel) {
+			this.cancelled = cancel;
+		}
+
+		@Override
+		public void start(int totalTasks) {
+		}
+
+		@Override
+		public void beginTask(String title, int totalWork) {
+			tasks.add(title);
+		}
+
+		@Override
+		public void update(int completed) {
+		}
+
+		@Override
+		public void endTask() {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
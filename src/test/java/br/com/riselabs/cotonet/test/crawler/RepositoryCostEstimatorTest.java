@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import br.com.riselabs.cotonet.builder.ScenarioPrefilter;
+import br.com.riselabs.cotonet.crawler.RepositoryCostEstimator;
+import br.com.riselabs.cotonet.model.beans.RepositoryCost;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RepositoryCostEstimatorTest {
+
+	private static final String SMALL = "https://github.com/riselabs/small";
+	private static final String LARGE = "https://github.com/riselabs/large";
+	private static final String UNKNOWN = "https://github.com/riselabs/unknown";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File reposDir;
+	private File statsFile;
+
+	@Before
+	public void setup() throws Exception {
+		reposDir = folder.newFolder("repos");
+		statsFile = new File(folder.getRoot(), RepositoryCostEstimator.STATS_FILE);
+		createRepository("small", 0);
+		createRepository("large", 3);
+	}
+
+	/**
+	 * Creates a repository with the given number of merges.
+	 */
+	private void createRepository(String name, int merges) throws Exception {
+		try (Git git = Git.init().setDirectory(new File(reposDir, name)).call()) {
+			git.commit().setMessage("initial").call();
+			for (int i = 0; i < merges; i++) {
+				git.branchCreate().setName("side" + i).call();
+				git.commit().setMessage("master " + i).call();
+				git.checkout().setName("side" + i).call();
+				RevCommit side = git.commit().setMessage("side " + i).call();
+				git.checkout().setName("master").call();
+				git.merge().include(side).call();
+			}
+		}
+	}
+
+	@Test
+	public void shouldReadTheSizesOfClonedRepositories() {
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator(statsFile, reposDir);
+		RepositoryCost large = estimator.estimate(LARGE);
+		assertEquals(3, large.getMerges());
+		assertEquals(10, large.getCommits());
+		RepositoryCost small = estimator.estimate(SMALL);
+		assertEquals(0, small.getMerges());
+		assertEquals(1, small.getCommits());
+		assertFalse(estimator.estimate(UNKNOWN).isKnown());
+	}
+
+	@Test
+	public void shouldScheduleUnknownAndThenLargestFirst() {
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator(statsFile, reposDir);
+		List<String> order = estimator.sort(Arrays.asList(SMALL, LARGE, UNKNOWN));
+		assertEquals(Arrays.asList(UNKNOWN, LARGE, SMALL), order);
+	}
+
+	@Test
+	public void shouldPreferTheRecordedTimes() throws Exception {
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator(statsFile, reposDir);
+		estimator.record(SMALL, 50000);
+		estimator.record(LARGE, 30);
+		estimator.save();
+		assertTrue(statsFile.exists());
+
+		RepositoryCostEstimator reloaded = new RepositoryCostEstimator(statsFile, reposDir);
+		assertEquals(50000, reloaded.estimate(SMALL).getMillis());
+		assertEquals(Arrays.asList(SMALL, LARGE), reloaded.sort(Arrays.asList(LARGE, SMALL)));
+		// 30 ms for 3 merges
+		RepositoryCost other = new RepositoryCost(UNKNOWN).setMerges(6);
+		assertEquals(60.0, reloaded.predict(other), 0.001);
+	}
+
+	@Test
+	public void shouldScheduleFromTheDryRun() throws Exception {
+		RepositoryCostEstimator estimator = new RepositoryCostEstimator(statsFile, reposDir);
+		ScenarioPrefilter prefilter = new ScenarioPrefilter();
+		// the merges of 'large' are clean
+		RepositoryCost large = estimator.dryRun(LARGE, prefilter);
+		assertEquals(3, prefilter.getMerges());
+		assertEquals(0, large.getCandidates());
+		assertEquals(0, large.getBlameBytes());
+		estimator.save();
+
+		RepositoryCostEstimator reloaded = new RepositoryCostEstimator(statsFile, reposDir);
+		assertEquals(0, reloaded.estimate(LARGE).getCandidates());
+		// no merge of 'large' is blamed, while 'small' took 50 ms
+		assertEquals(0.0, reloaded.predict(reloaded.getCost(LARGE)), 0.001);
+		reloaded.record(SMALL, 50);
+		assertEquals(Arrays.asList(SMALL, LARGE), reloaded.sort(Arrays.asList(LARGE, SMALL)));
+	}
+
+	@Test
+	public void shouldParseTheCostsWithoutTheDryRun() {
+		RepositoryCost cost = RepositoryCost.parse(LARGE + "\t10\t5\t2\t300");
+		assertEquals(2, cost.getMerges());
+		assertEquals(-1, cost.getCandidates());
+		cost.setCandidates(1).setBlameBytes(2048);
+		assertEquals(cost.toString(), RepositoryCost.parse(cost.toString()).toString());
+		assertNull(RepositoryCost.parse(LARGE + "\t10\t5"));
+	}
+}
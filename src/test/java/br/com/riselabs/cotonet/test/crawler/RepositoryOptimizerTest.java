@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import br.com.riselabs.cotonet.crawler.MirrorCache;
+import br.com.riselabs.cotonet.crawler.RepositoryOptimizer;
+import br.com.riselabs.cotonet.model.beans.Project;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RepositoryOptimizerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File reposDir;
+	private File upstreamDir;
+	private Git upstream;
+	private Project project;
+	private MirrorCache cache;
+
+	@Before
+	public void setup() throws Exception {
+		reposDir = folder.newFolder("repos");
+		upstreamDir = new File(folder.getRoot(), "demo.git");
+		upstream = Git.init().setDirectory(upstreamDir).call();
+		commitFile("a.txt", "first");
+		project = new Project(new File(folder.getRoot(), "demo").getPath());
+		cache = new MirrorCache(reposDir);
+	}
+
+	private RevCommit commitFile(String name, String content) throws Exception {
+		Files.write(new File(upstreamDir, name).toPath(), content.getBytes("UTF-8"));
+		upstream.add().addFilepattern(name).call();
+		return upstream.commit().setMessage(content).call();
+	}
+
+	private int countPacks() {
+		return new File(cache.getMirrorDir(project), "objects/pack").list((d, n) -> n.endsWith(".pack")).length;
+	}
+
+	@Test
+	public void shouldRepackWithJGit() throws Exception {
+		cache.update(project, upstreamDir.getPath());
+		commitFile("b.txt", "second");
+		cache.update(project, upstreamDir.getPath());
+		assertEquals(2, countPacks());
+
+		RepositoryOptimizer optimizer = new RepositoryOptimizer(false);
+		assertFalse(optimizer.isOptimized(cache.getMirrorDir(project)));
+		assertTrue(cache.optimize(project, optimizer));
+		assertEquals(1, countPacks());
+		assertTrue(optimizer.isOptimized(cache.getMirrorDir(project)));
+		// nothing was fetched since
+		assertFalse(cache.optimize(project, optimizer));
+	}
+
+	@Test
+	public void shouldOnlyUseNativeGitsThatWriteCommitGraphs() {
+		assertFalse(RepositoryOptimizer.writesCommitGraphs("git version 2.17.1"));
+		assertTrue(RepositoryOptimizer.writesCommitGraphs("git version 2.18.0"));
+		assertTrue(RepositoryOptimizer.writesCommitGraphs("git version 2.39.2 (Apple Git-143)"));
+		assertFalse(RepositoryOptimizer.writesCommitGraphs("unknown"));
+	}
+
+	@Test
+	public void shouldWriteTheCommitGraphWithNativeGit() throws Exception {
+		assumeTrue(RepositoryOptimizer.isNativeGitAvailable());
+		cache.update(project, upstreamDir.getPath());
+		commitFile("b.txt", "second");
+		cache.update(project, upstreamDir.getPath());
+
+		RepositoryOptimizer optimizer = new RepositoryOptimizer(true);
+		assertTrue(cache.optimize(project, optimizer));
+		assertEquals(1, countPacks());
+		File objects = new File(cache.getMirrorDir(project), "objects");
+		assertTrue(new File(objects, "info/commit-graph").exists());
+		assertEquals(1, new File(objects, "pack").list((d, n) -> n.endsWith(".bitmap")).length);
+		assertFalse(cache.optimize(project, optimizer));
+	}
+
+	@Test
+	public void shouldKeepTheObjectsLentToForks() throws Exception {
+		upstream.checkout().setCreateBranch(true).setName("feature").call();
+		RevCommit feature = commitFile("b.txt", "feature");
+		upstream.checkout().setName("master").call();
+		cache.update(project, upstreamDir.getPath());
+
+		File forkDir = new File(folder.getRoot(), "fork.git");
+		try (Git fork = Git.cloneRepository().setURI(upstreamDir.getPath()).setDirectory(forkDir).call()) {
+			fork.branchCreate().setName("feature").setStartPoint("origin/feature").call();
+		}
+		Project forked = new Project(new File(folder.getRoot(), "fork").getPath());
+		cache.update(forked, forkDir.getPath());
+		assertTrue(cache.isBorrowed(project));
+		assertFalse(cache.isBorrowed(forked));
+
+		// the commit is no longer reachable in the base mirror
+		upstream.branchDelete().setBranchNames("feature").setForce(true).call();
+		cache.update(project, upstreamDir.getPath());
+		cache.openWorktree(project, false).close();
+
+		for (boolean nativeGit : new boolean[] { false, true }) {
+			if (nativeGit && !RepositoryOptimizer.isNativeGitAvailable()) {
+				continue;
+			}
+			cache.optimize(project, new RepositoryOptimizer(nativeGit));
+			cache.optimize(forked, new RepositoryOptimizer(nativeGit));
+			try (Repository fork = cache.openMirror(forked)) {
+				assertTrue(fork.hasObject(feature));
+				assertEquals(feature.getId(), fork.resolve("feature"));
+			}
+		}
+		try (Repository worktree = cache.openWorktree(project, false)) {
+			// the deleted branch is gone from the worktree as well
+			assertNull(worktree.exactRef(Constants.R_HEADS + "feature"));
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.threads.MemoryGovernor;
+import br.com.riselabs.cotonet.model.beans.RepositoryCost;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MemoryGovernorTest {
+
+	private MemoryGovernor governor;
+
+	@Before
+	public void setup() {
+		// a heap so large that the pressure is always low
+		governor = new MemoryGovernor(Long.MAX_VALUE / 2, 100);
+	}
+
+	@After
+	public void teardown() {
+		governor.close();
+	}
+
+	@Test
+	public void shouldEstimateTheFootprintFromThePackSize() {
+		assertEquals(MemoryGovernor.DEFAULT_FOOTPRINT, MemoryGovernor.estimateFootprint(null));
+		assertEquals(MemoryGovernor.DEFAULT_FOOTPRINT,
+				MemoryGovernor.estimateFootprint(new RepositoryCost("https://github.com/riselabs/a")));
+		long pack = 1L << 30;
+		assertEquals(2 * pack, MemoryGovernor
+				.estimateFootprint(new RepositoryCost("https://github.com/riselabs/a").setPackBytes(pack)));
+	}
+
+	@Test
+	public void shouldWaitForRoomInTheBudget() throws Exception {
+		final long first = governor.admit(60);
+		assertEquals(60, governor.getReservedBytes());
+
+		final AtomicBoolean admitted = new AtomicBoolean();
+		Thread second = new Thread() {
+			@Override
+			public void run() {
+				try {
+					governor.admit(60);
+					admitted.set(true);
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		second.start();
+		second.join(200);
+		assertFalse(admitted.get());
+		assertEquals(1, governor.getWaiting());
+
+		governor.release(first);
+		second.join(5000);
+		assertTrue(admitted.get());
+		assertEquals(60, governor.getReservedBytes());
+		assertEquals(1, governor.getRunning());
+	}
+
+	@Test
+	public void shouldAdmitALargeCrawlAlone() throws Exception {
+		long reservation = governor.admit(1000);
+		assertEquals(100, reservation);
+		assertEquals(1, governor.getRunning());
+		governor.release(reservation);
+		assertEquals(0, governor.getReservedBytes());
+		assertEquals(0, governor.getRunning());
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.threads.RCForkJoinExecutor;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCForkJoinExecutorTest {
+
+	@Test
+	public void shouldRunTheTasksInsideTheForkJoinPool() throws Exception {
+		RCForkJoinExecutor pool = new RCForkJoinExecutor(2);
+		assertEquals(2, pool.getPoolSize());
+		final AtomicInteger inPool = new AtomicInteger();
+		for (int i = 0; i < 10; i++) {
+			pool.runTask(new Runnable() {
+				@Override
+				public void run() {
+					if (ForkJoinTask.inForkJoinPool()) {
+						inPool.incrementAndGet();
+					}
+				}
+			});
+		}
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(10, inPool.get());
+	}
+
+	@Test
+	public void shouldJoinTheForkedSubtasks() throws Exception {
+		RCForkJoinExecutor pool = new RCForkJoinExecutor(4);
+		final AtomicInteger total = new AtomicInteger();
+		for (int i = 0; i < 4; i++) {
+			pool.runTask(new Runnable() {
+				@Override
+				public void run() {
+					List<Square> tasks = new ArrayList<Square>();
+					for (int n = 1; n <= 10; n++) {
+						tasks.add(new Square(n));
+					}
+					for (Square task : ForkJoinTask.invokeAll(tasks)) {
+						total.addAndGet(task.join());
+					}
+				}
+			});
+		}
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		// 4 * (1^2 + 2^2 + ... + 10^2)
+		assertEquals(4 * 385, total.get());
+	}
+
+	@SuppressWarnings("serial")
+	private static class Square extends RecursiveTask<Integer> {
+		private final int n;
+
+		Square(int n) {
+			this.n = n;
+		}
+
+		@Override
+		protected Integer compute() {
+			return n * n;
+		}
+	}
+}
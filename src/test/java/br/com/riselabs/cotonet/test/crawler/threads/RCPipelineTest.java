@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.CrawlerPipeline;
+import br.com.riselabs.cotonet.crawler.threads.RCPipeline;
+import br.com.riselabs.cotonet.crawler.threads.RCPipelineStageMBean;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCPipelineTest {
+
+	@Test
+	public void shouldPassEachItemThroughAllStages() throws Exception {
+		final Map<Integer, String> trace = new ConcurrentHashMap<Integer, String>();
+		final List<Integer> finished = new CopyOnWriteArrayList<Integer>();
+		RCPipeline<Integer> pipeline = new RCPipeline<Integer>()
+				.addStage("first", 2, 2, item -> trace.merge(item, "a", String::concat))
+				.addStage("second", 3, 2, item -> trace.merge(item, "b", String::concat))
+				.setOnFinished((item, millis, failure) -> finished.add(item));
+		for (int i = 0; i < 20; i++) {
+			pipeline.submit(i);
+		}
+		pipeline.shutDown();
+		assertTrue(pipeline.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(20, finished.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("ab", trace.get(i));
+		}
+		for (RCPipelineStageMBean stage : pipeline.getStages()) {
+			assertEquals(20, stage.getProcessedCount());
+			assertEquals(0, stage.getQueueSize());
+		}
+	}
+
+	@Test
+	public void shouldNotStallTheEarlierStagesOnASlowStage() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch firstDone = new CountDownLatch(4);
+		RCPipeline<Integer> pipeline = new RCPipeline<Integer>()
+				.addStage("fast", 1, 4, item -> firstDone.countDown())
+				.addStage("slow", 1, 4, item -> release.await());
+		for (int i = 0; i < 4; i++) {
+			pipeline.submit(i);
+		}
+		// the slow stage holds one item, the others wait in its queue
+		assertTrue(firstDone.await(5, TimeUnit.SECONDS));
+		RCPipelineStageMBean slow = pipeline.getStages().get(1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((slow.getActiveCount() != 1 || slow.getQueueSize() != 3) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(4, pipeline.getStages().get(0).getProcessedCount());
+		assertEquals(1, slow.getActiveCount());
+		assertEquals(3, slow.getQueueSize());
+
+		release.countDown();
+		pipeline.shutDown();
+		assertTrue(pipeline.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(4, slow.getProcessedCount());
+	}
+
+	@Test
+	public void shouldDropTheItemsThatFail() throws Exception {
+		final List<Integer> reachedLast = new CopyOnWriteArrayList<Integer>();
+		final List<Integer> finished = new CopyOnWriteArrayList<Integer>();
+		final List<Integer> failed = new CopyOnWriteArrayList<Integer>();
+		RCPipeline<Integer> pipeline = new RCPipeline<Integer>().addStage("check", 1, 1, item -> {
+			if (item % 2 == 0) {
+				throw new IllegalStateException("even");
+			}
+		}).addStage("last", 1, 1, item -> reachedLast.add(item))
+				.setOnFinished((item, millis, failure) -> {
+					finished.add(item);
+					if (failure != null) {
+						failed.add(item);
+					}
+				});
+		for (int i = 0; i < 6; i++) {
+			pipeline.submit(i);
+		}
+		pipeline.shutDown();
+		assertTrue(pipeline.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(3, reachedLast.size());
+		assertEquals(6, finished.size());
+		assertEquals(3, failed.size());
+		assertEquals(3, pipeline.getStages().get(0).getFailedCount());
+	}
+
+	@Test
+	public void shouldParseTheThreadsOfTheCrawlerStages() {
+		Map<String, Integer> threads = CrawlerPipeline.parseThreads("clone=2, open=8, build=4");
+		assertEquals(Integer.valueOf(2), threads.get(CrawlerPipeline.CLONE));
+		assertEquals(Integer.valueOf(8), threads.get(CrawlerPipeline.OPEN));
+		assertEquals(Integer.valueOf(4), threads.get(CrawlerPipeline.BUILD));
+		assertEquals(3, threads.size());
+		assertEquals(5, new CrawlerPipeline(threads).getStages().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnknownStages() {
+		CrawlerPipeline.parseThreads("blame=2");
+	}
+}
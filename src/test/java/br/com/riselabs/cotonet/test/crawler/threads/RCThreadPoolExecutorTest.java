@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.threads.RCThreadPoolExecutor;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCThreadPoolExecutorTest {
+
+	@Test
+	public void shouldDeriveThePoolSizeFromTheBlockingCoefficient() {
+		assertEquals(4, RCThreadPoolExecutor.getPoolSize(4, 0.0));
+		assertEquals(8, RCThreadPoolExecutor.getPoolSize(4, 0.5));
+		assertEquals(40, RCThreadPoolExecutor.getPoolSize(4, 0.9));
+		assertEquals(1, RCThreadPoolExecutor.getPoolSize(0, 0.5));
+	}
+
+	@Test
+	public void shouldBlockTheSubmitterWhenSaturated() throws Exception {
+		final RCThreadPoolExecutor pool = new RCThreadPoolExecutor(1, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Runnable blocked = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		pool.runTask(blocked);
+		pool.runTask(blocked);
+
+		final AtomicBoolean submitted = new AtomicBoolean();
+		Thread submitter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					pool.runTask(new Runnable() {
+						@Override
+						public void run() {
+						}
+					});
+					submitted.set(true);
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		submitter.start();
+		submitter.join(200);
+		assertFalse(submitted.get());
+		assertEquals(1, pool.getBlockedSubmitters());
+
+		release.countDown();
+		submitter.join(5000);
+		assertTrue(submitted.get());
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(3, pool.getCompletedTaskCount());
+	}
+
+	@Test
+	public void shouldResizeAtRuntime() throws Exception {
+		RCThreadPoolExecutor pool = new RCThreadPoolExecutor(1, 1);
+		final CountDownLatch started = new CountDownLatch(3);
+		final CountDownLatch release = new CountDownLatch(1);
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		pool.setPoolSize(3);
+		assertEquals(3, pool.getPoolSize());
+		for (int i = 0; i < 3; i++) {
+			pool.runTask(task);
+		}
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		pool.setPoolSize(1);
+		assertEquals(1, pool.getPoolSize());
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
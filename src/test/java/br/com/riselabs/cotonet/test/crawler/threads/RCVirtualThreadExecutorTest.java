@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.crawler.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.crawler.threads.RCVirtualThreadExecutor;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class RCVirtualThreadExecutorTest {
+
+	@Test
+	public void shouldOnlyCreateVirtualThreadsWhenSupported() {
+		ExecutorService executor = RCVirtualThreadExecutor.newVirtualThreadPerTaskExecutor();
+		assertEquals(RCVirtualThreadExecutor.isSupported(), executor != null);
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldNotCapTheBlockedTasksByTheComputeThreads() throws Exception {
+		// a cached pool stands for the virtual threads on older JVMs
+		RCVirtualThreadExecutor pool = new RCVirtualThreadExecutor(Executors.newCachedThreadPool(), 1, 4);
+		assertEquals(1, pool.getPoolSize());
+		final CountDownLatch blocked = new CountDownLatch(4);
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 4; i++) {
+			pool.runTask(new Runnable() {
+				@Override
+				public void run() {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+					}
+				}
+			});
+		}
+		// all the tasks block on "I/O" at the same time
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldRunTheComputeStagesInTheBoundedPool() throws Exception {
+		final RCVirtualThreadExecutor pool = new RCVirtualThreadExecutor(Executors.newCachedThreadPool(), 2, 8);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		final AtomicInteger sameThread = new AtomicInteger();
+		for (int i = 0; i < 8; i++) {
+			pool.runTask(new Runnable() {
+				@Override
+				public void run() {
+					final Thread task = Thread.currentThread();
+					try {
+						pool.getComputeExecutor().submit(new Runnable() {
+							@Override
+							public void run() {
+								if (Thread.currentThread() == task) {
+									sameThread.incrementAndGet();
+								}
+								peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+								try {
+									Thread.sleep(20);
+								} catch (InterruptedException e) {
+								}
+								running.decrementAndGet();
+							}
+						}).get();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+		pool.shutDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(0, sameThread.get());
+		assertTrue(peak.get() <= 2);
+		assertNotEquals(0, peak.get());
+	}
+}
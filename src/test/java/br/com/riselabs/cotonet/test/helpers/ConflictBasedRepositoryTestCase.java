@@ -38,7 +38,9 @@ import org.eclipse.jgit.junit.TestRepository.BranchBuilder;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
 
+import br.com.riselabs.cotonet.builder.MergeMemo;
 import br.com.riselabs.cotonet.model.beans.MergeScenario;
 
 /**
@@ -49,6 +51,15 @@ import br.com.riselabs.cotonet.model.beans.MergeScenario;
 public abstract class ConflictBasedRepositoryTestCase extends
 		RepositoryTestCase {
 
+	/**
+	 * The memo outlives the repository of each test, so the tests must not
+	 * depend on the order they run.
+	 */
+	@After
+	public void resetMergeMemo() {
+		MergeMemo.INSTANCE.clear();
+	}
+
 	public void printDBpath() {
 		System.out.println(db.getDirectory().getAbsolutePath());
 	}
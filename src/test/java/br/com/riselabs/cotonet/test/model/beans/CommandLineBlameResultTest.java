@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.model.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.model.beans.BlameDictionary;
+import br.com.riselabs.cotonet.model.beans.CommandLineBlameResult;
+import br.com.riselabs.cotonet.model.beans.DeveloperNode;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class CommandLineBlameResultTest {
+
+	private static final String COMMIT = "0123456789012345678901234567890123456789";
+
+	@Test
+	public void shouldKeepTheLinesOrdered() {
+		CommandLineBlameResult result = new CommandLineBlameResult("Foo.java");
+		result.addLineAuthor(7, new DeveloperNode("a", "a@d.com"));
+		result.addLineAuthor(3, new DeveloperNode("b", "b@d.com"));
+		result.addLineAuthor(5, new DeveloperNode("a", "a@d.com"));
+		result.addLineCommit(5, COMMIT);
+
+		Iterator<Entry<Integer, DeveloperNode>> i = result.getLineAuthorsMap().entrySet().iterator();
+		assertEquals(Integer.valueOf(3), i.next().getKey());
+		assertEquals(Integer.valueOf(5), i.next().getKey());
+		assertEquals(Integer.valueOf(7), i.next().getKey());
+		assertEquals(1, result.getLineCommitMap().size());
+		assertEquals(COMMIT, result.getLineCommitMap().get(5));
+		assertNull(result.getLineCommitMap().get(3));
+		assertNull(result.getAuthor(4));
+	}
+
+	@Test
+	public void shouldShareAuthorsAndCommitsOfTheFile() {
+		BlameDictionary dictionary = new BlameDictionary(false);
+		CommandLineBlameResult left = new CommandLineBlameResult("Foo.java", dictionary);
+		CommandLineBlameResult right = new CommandLineBlameResult("Foo.java", dictionary);
+		left.addLineAuthor(2, "a", "a@d.com");
+		left.addLineCommit(2, ObjectId.fromString(COMMIT));
+		left.addLineContent(2, "int x;");
+		right.addLineAuthor(4, new DeveloperNode("a", "a@d.com"));
+		right.addLineCommit(4, COMMIT);
+
+		assertSame(left.getAuthor(2), right.getAuthor(4));
+		assertEquals(left.getCommitIndex(0), right.getCommitIndex(0));
+		assertEquals(1, dictionary.getCommitCount());
+		assertTrue(left.getSourceContents().isEmpty());
+	}
+
+	@Test
+	public void shouldBeEquivalentToTheMapsItWasBuiltFrom() {
+		Map<Integer, DeveloperNode> authors = new HashMap<Integer, DeveloperNode>();
+		Map<Integer, String> contents = new HashMap<Integer, String>();
+		Map<Integer, String> commits = new HashMap<Integer, String>();
+		for (int line = 1; line <= 20; line++) {
+			authors.put(line, new DeveloperNode("dev" + (line % 3), "dev" + (line % 3) + "@d.com"));
+			contents.put(line, "line " + line);
+			commits.put(line, COMMIT);
+		}
+		CommandLineBlameResult result = new CommandLineBlameResult("Foo.java", authors, contents, commits);
+
+		assertEquals(authors, result.getLineAuthorsMap());
+		assertEquals(commits, result.getLineCommitMap());
+		assertEquals(20, result.getAuthors().size());
+		assertEquals(Arrays.asList("line 1", "line 2"), result.getSourceContents().subList(0, 2));
+
+		CommandLineBlameResult copy = result.copy("Bar.java");
+		assertEquals(authors, copy.getLineAuthorsMap());
+		assertEquals("Bar.java", copy.getFilePath());
+	}
+}
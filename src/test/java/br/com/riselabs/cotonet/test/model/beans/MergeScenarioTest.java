@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.model.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.model.beans.MergeScenario;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class MergeScenarioTest extends ConflictBasedRepositoryTestCase {
+
+	private TestRepository<Repository> util;
+
+	@Before
+	public void setup() throws Exception {
+		super.setUp();
+		util = new TestRepository<Repository>(db, new RevWalk(db));
+	}
+
+	@Test
+	public void shouldKeepTheCommitsWhenUnbound() throws Exception {
+		RevCommit base = commit();
+		RevCommit left = commit(base);
+		MergeScenario ms = new MergeScenario(base, left, null, null, new Timestamp(1000L));
+
+		assertSame(base, ms.getBase());
+		assertSame(left, ms.getLeft());
+		assertNull(ms.getRight());
+		assertNull(ms.getSHA1Base());
+		assertEquals(new Timestamp(1000L), ms.getMegeDate());
+	}
+
+	@Test
+	public void shouldParseTheCommitsOnDemandWhenBound() throws Exception {
+		RevCommit base = commit();
+		RevCommit left = commit(base);
+		RevCommit right = commit(base);
+		RevCommit merge = commit(left, right);
+		MergeScenario ms = new MergeScenario(base, left, right, merge, null);
+		ms.setRepository(db);
+
+		assertEquals(right, ms.getRight());
+		assertNotSame(right, ms.getRight());
+		assertNotNull(ms.getMerge().getTree());
+		assertEquals(left, ms.getMerge().getParent(0));
+		assertNull(ms.getMegeDate());
+	}
+
+	@Test
+	public void shouldKeepTheSHA1sAsSet() throws Exception {
+		RevCommit base = commit();
+		MergeScenario ms = new MergeScenario(1, 1, base.name(), null, null, null, null);
+
+		assertEquals(base.name(), ms.getSHA1Base());
+		assertEquals(base, ms.getBaseId());
+		assertNull(ms.getBase());
+		ms.setRepository(db);
+		assertEquals(base, ms.getBase());
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void shouldFailWhenTheCommitIsMissing() throws Exception {
+		MergeScenario ms = new MergeScenario(1, 1, ObjectId.zeroId().name(), null, null, null, null);
+		ms.setRepository(db);
+		ms.getBase();
+	}
+
+	protected RevCommit commit(final RevCommit... parents) throws Exception {
+		return util.commit(parents);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.model.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.model.beans.DeveloperNode;
+import br.com.riselabs.cotonet.model.beans.Project;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class ProjectTest {
+
+	@Test
+	public void shouldInternDevelopersByEmail() {
+		Project project = new Project("https://github.com/riselabs-ufba/cotonet.git");
+		DeveloperNode a = project.intern(new DeveloperNode("a", "a@d.com"));
+		DeveloperNode b = project.intern(new DeveloperNode("b", "b@d.com"));
+
+		assertSame(a, project.intern(new DeveloperNode("A", "a@d.com")));
+		assertSame(b, project.getDevByMail("b@d.com"));
+		assertNull(project.getDevByMail("c@d.com"));
+		assertEquals(Integer.valueOf(1), a.getLocalID());
+		assertEquals(Integer.valueOf(2), b.getLocalID());
+		assertEquals(2, project.getDevs().size());
+		assertSame(b, project.getDevs().get(2));
+	}
+
+	@Test
+	public void shouldAssignUniqueLocalIDsConcurrently() throws Exception {
+		final Project project = new Project("https://github.com/riselabs-ufba/cotonet.git");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < 4; t++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < 500; i++) {
+						project.intern(new DeveloperNode("dev" + i, "dev" + i + "@d.com"));
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> f : futures) {
+			f.get();
+		}
+		executor.shutdown();
+
+		assertEquals(500, project.getDevs().size());
+		Set<Integer> ids = new HashSet<Integer>();
+		for (DeveloperNode dev : project.getDevs().values()) {
+			ids.add(dev.getLocalID());
+			assertSame(dev, project.getDevs().get(dev.getLocalID()));
+		}
+		assertEquals(500, ids.size());
+	}
+}
@@ -27,6 +27,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
 
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.Repository;
@@ -163,6 +165,33 @@ public class ConflictBasedNetworkDAOTest extends ConflictBasedRepositoryTestCase
 		assertEquals(NetworkType.CHUNK_BASED, conet.getType());
 	}
 	
+	@Test
+	public void linkScenarioToTheNetworkOfAnotherSystem() throws Exception {
+		RevCommit base = commit();
+		RevCommit left = commit(base);
+		RevCommit right = commit(base);
+		RevCommit merge = commit(left, right);
+		Timestamp date = new Timestamp(new Date().getTime());
+		MergeScenario upstream = new MergeScenario(1, base, left, right, merge, date);
+		msdao.save(upstream);
+		ConflictBasedNetwork conet = new ConflictBasedNetwork(p, upstream);
+		conet.setMergeScenarioID(msdao.get(upstream).getID());
+		dao.save(conet);
+		Integer networkID = dao.get(conet).getID();
+
+		Project fork = new Project("http://github.com/fork/test", null);
+		((ProjectDAO) DAOFactory.getDAO(CotonetBean.PROJECT)).save(fork);
+		MergeScenario forked = new MergeScenario(2, base, left, right, merge, date);
+		msdao.save(forked);
+
+		assertEquals(networkID, dao.getSharedID(merge.getName(), NetworkType.CHUNK_BASED, 2));
+		assertNull(dao.getSharedID(merge.getName(), NetworkType.CHUNK_BASED, 1));
+		assertNull(dao.getSharedID(merge.getName(), NetworkType.FILE_BASED, 2));
+		assertTrue(dao.link(msdao.get(forked).getID(), networkID));
+		// linking again keeps the link
+		assertTrue(dao.link(msdao.get(forked).getID(), networkID));
+	}
+
 	protected RevCommit commit(final RevCommit... parents) throws Exception {
 		return util.commit(parents);
 	}
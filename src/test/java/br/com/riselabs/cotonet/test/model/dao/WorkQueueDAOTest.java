@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.model.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.model.beans.WorkTask;
+import br.com.riselabs.cotonet.model.dao.DAOFactory;
+import br.com.riselabs.cotonet.model.dao.DAOFactory.CotonetBean;
+import br.com.riselabs.cotonet.model.dao.WorkQueueDAO;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.model.enums.TaskState;
+import br.com.riselabs.cotonet.model.exceptions.InvalidCotonetBeanException;
+import br.com.riselabs.cotonet.test.helpers.DBTestCase;
+
+/**
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorkQueueDAOTest {
+
+	private WorkQueueDAO dao;
+
+	@Before
+	public void setup() throws Exception {
+		DBTestCase.resetTestDB();
+		dao = (WorkQueueDAO) DAOFactory.getDAO(CotonetBean.WORK_TASK);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		DBTestCase.resetTestDB();
+	}
+
+	@Test(expected = InvalidCotonetBeanException.class)
+	public void saveEmptyTask() throws InvalidCotonetBeanException {
+		dao.save(new WorkTask());
+	}
+
+	@Test
+	public void saveTaskOnlyOnce() throws Exception {
+		assertTrue(dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED)));
+		assertFalse(dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED)));
+		assertTrue(dao.save(new WorkTask("http://hub.com/test", "abc123", NetworkType.CHUNK_BASED)));
+		assertTrue(dao.save(new WorkTask("http://hub.com/test", NetworkType.FILE_BASED)));
+		assertEquals(3, dao.count(TaskState.PENDING));
+
+		WorkTask t = dao.get(new WorkTask("http://hub.com/test", "abc123", NetworkType.CHUNK_BASED));
+		assertNotNull(t);
+		assertEquals("abc123", t.getScenario());
+		assertEquals(TaskState.PENDING, t.getState());
+	}
+
+	@Test
+	public void leaseAndComplete() throws Exception {
+		dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED));
+
+		WorkTask t = dao.lease("worker-a", 60, 3);
+		assertNotNull(t);
+		assertEquals(TaskState.LEASED, t.getState());
+		assertEquals("worker-a", t.getOwner());
+		assertEquals(1, t.getAttempts());
+		assertNull(t.getScenario());
+		// the only task is held
+		assertNull(dao.lease("worker-b", 60, 3));
+
+		assertTrue(dao.heartbeat(t, 60));
+		assertTrue(dao.complete(t));
+		assertEquals(TaskState.DONE, dao.get(t).getState());
+		assertNull(dao.lease("worker-b", 60, 3));
+	}
+
+	@Test
+	public void leaseEachTaskOnceAmongWorkers() throws Exception {
+		int tasks = 20;
+		for (int i = 0; i < tasks; i++) {
+			dao.save(new WorkTask("http://hub.com/test" + i, NetworkType.CHUNK_BASED));
+		}
+		ExecutorService workers = Executors.newFixedThreadPool(4);
+		List<Future<List<Integer>>> leased = new ArrayList<Future<List<Integer>>>();
+		for (int w = 0; w < 4; w++) {
+			String name = "worker-" + w;
+			leased.add(workers.submit(new Callable<List<Integer>>() {
+				@Override
+				public List<Integer> call() throws SQLException {
+					WorkQueueDAO own = new WorkQueueDAO();
+					List<Integer> ids = new ArrayList<Integer>();
+					WorkTask t;
+					while ((t = own.lease(name, 60, 3)) != null) {
+						ids.add(t.getID());
+						own.complete(t);
+					}
+					return ids;
+				}
+			}));
+		}
+		Set<Integer> ids = new HashSet<Integer>();
+		int total = 0;
+		for (Future<List<Integer>> f : leased) {
+			List<Integer> some = f.get();
+			total += some.size();
+			ids.addAll(some);
+		}
+		workers.shutdown();
+		assertEquals(tasks, total);
+		assertEquals(tasks, ids.size());
+		assertEquals(tasks, dao.count(TaskState.DONE));
+	}
+
+	@Test
+	public void leaseExpiredTask() throws Exception {
+		dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED));
+		WorkTask first = dao.lease("worker-a", 1, 3);
+		assertNotNull(first);
+		Thread.sleep(2500);
+
+		WorkTask second = dao.lease("worker-b", 60, 3);
+		assertNotNull(second);
+		assertEquals(first.getID(), second.getID());
+		assertEquals(2, second.getAttempts());
+		// the first worker can not renew nor finish the task anymore
+		assertFalse(dao.heartbeat(first, 60));
+		assertFalse(dao.complete(first));
+		assertTrue(dao.complete(second));
+	}
+
+	@Test
+	public void failUntilMaxAttempts() throws Exception {
+		dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED));
+
+		WorkTask t = dao.lease("worker-a", 60, 2);
+		assertTrue(dao.fail(t, "first", 2));
+		assertEquals(TaskState.PENDING, dao.get(t).getState());
+
+		t = dao.lease("worker-a", 60, 2);
+		assertNotNull(t);
+		assertTrue(dao.fail(t, "second", 2));
+		WorkTask failed = dao.get(t);
+		assertEquals(TaskState.FAILED, failed.getState());
+		assertEquals("second", failed.getError());
+		assertNull(dao.lease("worker-a", 60, 2));
+	}
+
+	@Test
+	public void expireLastAttempt() throws Exception {
+		dao.save(new WorkTask("http://hub.com/test", NetworkType.CHUNK_BASED));
+		assertNotNull(dao.lease("worker-a", 1, 1));
+		Thread.sleep(2500);
+
+		assertEquals(1, dao.expire(1));
+		assertEquals(1, dao.count(TaskState.FAILED));
+		assertEquals(0, dao.count(TaskState.LEASED));
+	}
+}
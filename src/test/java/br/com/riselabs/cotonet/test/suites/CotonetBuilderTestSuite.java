@@ -23,9 +23,20 @@ package br.com.riselabs.cotonet.test.suites;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import br.com.riselabs.cotonet.test.builder.BuildBudgetTest;
+import br.com.riselabs.cotonet.test.builder.ComputeExecutorTest;
+import br.com.riselabs.cotonet.test.builder.ConfiguredMergerTest;
+import br.com.riselabs.cotonet.test.builder.FileScopeTest;
+import br.com.riselabs.cotonet.test.builder.HistoryWindowTest;
+import br.com.riselabs.cotonet.test.builder.MergeMemoTest;
+import br.com.riselabs.cotonet.test.builder.ScenarioPrefilterTest;
+import br.com.riselabs.cotonet.test.builder.ScenarioResultStoreTest;
+import br.com.riselabs.cotonet.test.builder.ScenarioSampleTest;
 import br.com.riselabs.cotonet.test.builder.NetworkBuilderTest;
 import br.com.riselabs.cotonet.test.builder.command.ExternalGitComandTest;
+import br.com.riselabs.cotonet.test.builder.command.IncrementalBlameTest;
 import br.com.riselabs.cotonet.test.builder.command.RecursiveBlameTest;
+import br.com.riselabs.cotonet.test.builder.command.SideBlameTest;
 
 /**
  * 
@@ -37,7 +48,18 @@ import br.com.riselabs.cotonet.test.builder.command.RecursiveBlameTest;
 	// Commands
 	RecursiveBlameTest.class,
 	ExternalGitComandTest.class,
+	SideBlameTest.class,
+	IncrementalBlameTest.class,
 	// Builders
+	MergeMemoTest.class,
+	ScenarioResultStoreTest.class,
+	BuildBudgetTest.class,
+	FileScopeTest.class,
+	ConfiguredMergerTest.class,
+	ComputeExecutorTest.class,
+	HistoryWindowTest.class,
+	ScenarioSampleTest.class,
+	ScenarioPrefilterTest.class,
 	NetworkBuilderTest.class,
 })
 
@@ -23,7 +23,18 @@ package br.com.riselabs.cotonet.test.suites;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import br.com.riselabs.cotonet.test.crawler.CloneThrottleTest;
+import br.com.riselabs.cotonet.test.crawler.JobTrackerTest;
+import br.com.riselabs.cotonet.test.crawler.MirrorCacheTest;
+import br.com.riselabs.cotonet.test.crawler.RepositoryCostEstimatorTest;
 import br.com.riselabs.cotonet.test.crawler.RepositoryCrawlerTest;
+import br.com.riselabs.cotonet.test.crawler.RepositoryOptimizerTest;
+import br.com.riselabs.cotonet.test.crawler.threads.MemoryGovernorTest;
+import br.com.riselabs.cotonet.test.crawler.threads.RCForkJoinExecutorTest;
+import br.com.riselabs.cotonet.test.crawler.threads.RCPipelineTest;
+import br.com.riselabs.cotonet.test.crawler.threads.RCThreadPoolExecutorTest;
+import br.com.riselabs.cotonet.test.crawler.threads.RCVirtualThreadExecutorTest;
+import br.com.riselabs.cotonet.test.util.WorktreeLockTest;
 
 /**
  * @author Alcemir R. Santos
@@ -31,7 +42,18 @@ import br.com.riselabs.cotonet.test.crawler.RepositoryCrawlerTest;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-	RepositoryCrawlerTest.class
+	RepositoryCrawlerTest.class,
+	RepositoryCostEstimatorTest.class,
+	JobTrackerTest.class,
+	MirrorCacheTest.class,
+	RepositoryOptimizerTest.class,
+	CloneThrottleTest.class,
+	RCThreadPoolExecutorTest.class,
+	RCForkJoinExecutorTest.class,
+	RCVirtualThreadExecutorTest.class,
+	RCPipelineTest.class,
+	MemoryGovernorTest.class,
+	WorktreeLockTest.class
 })
 public class CotonetCrawlerTestSuite {
 
@@ -23,14 +23,18 @@ package br.com.riselabs.cotonet.test.suites;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import br.com.riselabs.cotonet.test.model.beans.CommandLineBlameResultTest;
 import br.com.riselabs.cotonet.test.model.beans.ConflictBasedNetworkTest;
 import br.com.riselabs.cotonet.test.model.beans.DeveloperEdgeTest;
 import br.com.riselabs.cotonet.test.model.beans.DeveloperNodeTest;
+import br.com.riselabs.cotonet.test.model.beans.MergeScenarioTest;
+import br.com.riselabs.cotonet.test.model.beans.ProjectTest;
 import br.com.riselabs.cotonet.test.model.dao.ConflictBasedNetworkDAOTest;
 import br.com.riselabs.cotonet.test.model.dao.DeveloperEdgeDAOTest;
 import br.com.riselabs.cotonet.test.model.dao.DeveloperNodeDAOTest;
 import br.com.riselabs.cotonet.test.model.dao.MergeScenarioDAOTest;
 import br.com.riselabs.cotonet.test.model.dao.ProjectDAOTest;
+import br.com.riselabs.cotonet.test.model.dao.WorkQueueDAOTest;
 import br.com.riselabs.cotonet.test.model.db.DBWritterTest;
 import br.com.riselabs.cotonet.test.model.handlers.FilesWritingTest;
 
@@ -44,12 +48,16 @@ import br.com.riselabs.cotonet.test.model.handlers.FilesWritingTest;
 	DeveloperNodeTest.class,
 	DeveloperEdgeTest.class,
 	ConflictBasedNetworkTest.class,
+	ProjectTest.class,
+	CommandLineBlameResultTest.class,
+	MergeScenarioTest.class,
 	// DAOs	
 	ProjectDAOTest.class,
 	ConflictBasedNetworkDAOTest.class,
 	DeveloperNodeDAOTest.class,
 	DeveloperEdgeDAOTest.class,
 	MergeScenarioDAOTest.class,
+	WorkQueueDAOTest.class,
 	// Handlers
 	FilesWritingTest.class,
 	// Model
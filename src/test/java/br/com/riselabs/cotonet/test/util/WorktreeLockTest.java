@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Alcemir R. Santos
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package br.com.riselabs.cotonet.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.riselabs.cotonet.builder.NetworkBuilder;
+import br.com.riselabs.cotonet.builder.ScenarioResultStore;
+import br.com.riselabs.cotonet.model.beans.Project;
+import br.com.riselabs.cotonet.model.enums.BlameMode;
+import br.com.riselabs.cotonet.model.enums.NetworkType;
+import br.com.riselabs.cotonet.test.helpers.ConflictBasedRepositoryTestCase;
+import br.com.riselabs.cotonet.util.WorktreeLock;
+
+/**
+ * 
+ * @author Alcemir R. Santos
+ *
+ */
+public class WorktreeLockTest extends ConflictBasedRepositoryTestCase {
+
+	@After
+	public void teardown() {
+		ScenarioResultStore.INSTANCE.setDirectory(null);
+	}
+
+	@Test
+	public void shouldExcludeTheOtherThreads() throws Exception {
+		File lockFile = new File(db.getDirectory().getParentFile(), "repo.lock");
+		WorktreeLock lock = new WorktreeLock(lockFile);
+		lock.lock();
+		// reentrant
+		lock.lock();
+		lock.unlock();
+		assertTrue(lockFile.exists());
+
+		CountDownLatch acquired = new CountDownLatch(1);
+		Thread other = new Thread(() -> {
+			WorktreeLock same = new WorktreeLock(lockFile);
+			try {
+				same.lock();
+				acquired.countDown();
+				same.unlock();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		other.start();
+		assertFalse(acquired.await(300, TimeUnit.MILLISECONDS));
+		lock.unlock();
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		other.join();
+	}
+
+	@Test
+	public void shouldNotLockTheSideBlames() throws Exception {
+		ScenarioResultStore.INSTANCE.setDirectory(new File(db.getDirectory().getParentFile(), "results"));
+		setResolvedMergeConflictScenario();
+		WorktreeLock lock = new WorktreeLock(new File(db.getDirectory().getParentFile(), "repo.lock"));
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> {
+			try {
+				lock.lock();
+				held.countDown();
+				release.await();
+				lock.unlock();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		holder.start();
+		try {
+			assertTrue(held.await(5, TimeUnit.SECONDS));
+			Project project = new Project("", db);
+			NetworkBuilder<Object> builder = new NetworkBuilder<Object>(project, NetworkType.CHUNK_BASED);
+			builder.setBlameMode(BlameMode.COMMITTED_SIDES);
+			builder.setLogFile(new File(db.getDirectory().getParentFile(), "log.txt"));
+			builder.setWorktreeLock(lock);
+			// it would wait for the holder if the lock were taken
+			builder.build();
+			assertEquals(1, project.getMergeScenarios().size());
+		} finally {
+			release.countDown();
+			holder.join();
+		}
+	}
+}
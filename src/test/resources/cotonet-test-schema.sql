@@ -127,6 +127,53 @@ CREATE TABLE IF NOT EXISTS `cotonet-test`.`edges` (
 ENGINE = InnoDB;
 
 
+-- -----------------------------------------------------
+-- Table `cotonet-test`.`network_links`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `cotonet-test`.`network_links` ;
+
+CREATE TABLE IF NOT EXISTS `cotonet-test`.`network_links` (
+  `merge_scenario_id` INT UNSIGNED NOT NULL,
+  `network_id` INT UNSIGNED NOT NULL,
+  PRIMARY KEY (`merge_scenario_id`, `network_id`),
+  INDEX `fk_network_links_networks_idx` (`network_id` ASC),
+  CONSTRAINT `fk_network_links_merge_scenarios`
+    FOREIGN KEY (`merge_scenario_id`)
+    REFERENCES `cotonet-test`.`merge_scenarios` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION,
+  CONSTRAINT `fk_network_links_networks`
+    FOREIGN KEY (`network_id`)
+    REFERENCES `cotonet-test`.`networks` (`id`)
+    ON DELETE NO ACTION
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `cotonet-test`.`work_queue`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `cotonet-test`.`work_queue` ;
+
+CREATE TABLE IF NOT EXISTS `cotonet-test`.`work_queue` (
+  `id` INT UNSIGNED NOT NULL AUTO_INCREMENT,
+  `url` VARCHAR(100) NOT NULL,
+  `scenario` VARCHAR(40) NOT NULL DEFAULT '',
+  `type` CHAR(2) NOT NULL,
+  `state` VARCHAR(10) NOT NULL,
+  `lease_owner` VARCHAR(100) NULL,
+  `lease_token` CHAR(36) NULL,
+  `lease_expires` DATETIME NULL,
+  `heartbeat` DATETIME NULL,
+  `attempts` INT UNSIGNED NOT NULL DEFAULT 0,
+  `error` VARCHAR(300) NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `work_queue_task_UNIQUE` (`url` ASC, `scenario` ASC, `type` ASC),
+  INDEX `work_queue_state_idx` (`state` ASC, `lease_expires` ASC),
+  UNIQUE INDEX `work_queue_token_UNIQUE` (`lease_token` ASC))
+ENGINE = InnoDB;
+
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;